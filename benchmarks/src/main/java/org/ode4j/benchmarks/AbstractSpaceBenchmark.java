@@ -0,0 +1,140 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.benchmarks;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Broadphase of a space filled with unit boxes at random positions in a
+ * cube. The cube grows with the number of geoms so that every box overlaps
+ * about the same number of neighbours. The near callback only counts pairs,
+ * narrowphase is not measured.
+ * <p>
+ * A part of the boxes can be static, see {@link #getStaticPercent()}. Static
+ * boxes have no body and are never moved, all other boxes are attached to a
+ * body.
+ */
+public abstract class AbstractSpaceBenchmark {
+
+	/** volume of the cube per box */
+	private static final double VOLUME_PER_GEOM = 8;
+	private static final double MOVE = 0.01;
+
+	private DWorld world;
+	private DSpace space;
+	private DGeom[] geoms;
+	private int staticCount;
+	private double[] positions;
+	private double offset = MOVE;
+	private int pairs;
+
+	private final DNearCallback countingCallback = new DNearCallback() {
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			pairs++;
+		}
+	};
+
+	/**
+	 * @param size edge length of the cube with the geoms, centered at the origin
+	 */
+	protected abstract DSpace createSpace(double size);
+
+	protected abstract int getGeomCount();
+
+	/**
+	 * @return percentage of static boxes, 0 by default
+	 */
+	protected int getStaticPercent() {
+		return 0;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		int n = getGeomCount();
+		double size = Math.cbrt(n * VOLUME_PER_GEOM);
+		world = OdeHelper.createWorld();
+		space = createSpace(size);
+		geoms = new DGeom[n];
+		staticCount = n * getStaticPercent() / 100;
+		positions = new double[n * 3];
+		Random r = new Random(n);
+		for (int i = 0; i < n; i++) {
+			geoms[i] = OdeHelper.createBox(space, 1, 1, 1);
+			if (i >= staticCount) {
+				DBody body = OdeHelper.createBody(world);
+				geoms[i].setBody(body);
+			}
+			for (int k = 0; k < 3; k++) {
+				positions[i * 3 + k] = (r.nextDouble() - 0.5) * (size - 1);
+			}
+			geoms[i].setPosition(positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		space.destroy();
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	/**
+	 * Collide the space without moving any geom.
+	 */
+	@Benchmark
+	public void collide(Blackhole bh) {
+		pairs = 0;
+		space.collide(null, countingCallback);
+		bh.consume(pairs);
+	}
+
+	/**
+	 * Move every geom that is not static a little and collide the space.
+	 */
+	@Benchmark
+	public void moveAndCollide(Blackhole bh) {
+		offset = -offset;
+		for (int i = staticCount; i < geoms.length; i++) {
+			geoms[i].setPosition(positions[i * 3] + offset, positions[i * 3 + 1], positions[i * 3 + 2]);
+		}
+		pairs = 0;
+		space.collide(null, countingCallback);
+		bh.consume(pairs);
+	}
+}
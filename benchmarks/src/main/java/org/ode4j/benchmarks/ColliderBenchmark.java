@@ -0,0 +1,176 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ode4j.math.DMatrix3;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DRotation;
+import org.ode4j.ode.DTriMeshData;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Narrowphase of single pairs of intersecting geoms, called through
+ * {@link OdeHelper#collide(DGeom, DGeom, int, DContactGeomBuffer)}.
+ * The trimesh is a flat grid of 2 * 16 * 16 triangles. The cylinder pair
+ * uses the libccd collider.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColliderBenchmark {
+
+	private static final int MAX_CONTACTS = 16;
+	private static final int GRID = 16;
+	private static final double CELL = 0.5;
+
+	/** a cube with half size 0.25 */
+	private static final double[] CUBE_PLANES = {
+		1, 0, 0, 0.25,   0, 1, 0, 0.25,   0, 0, 1, 0.25,
+		0, 0, -1, 0.25,  0, -1, 0, 0.25,  -1, 0, 0, 0.25 };
+	private static final double[] CUBE_POINTS = {
+		0.25, 0.25, 0.25,    -0.25, 0.25, 0.25,
+		0.25, -0.25, 0.25,   -0.25, -0.25, 0.25,
+		0.25, 0.25, -0.25,   -0.25, 0.25, -0.25,
+		0.25, -0.25, -0.25,  -0.25, -0.25, -0.25 };
+	private static final int[] CUBE_POLYGONS = {
+		4, 0, 2, 6, 4,
+		4, 1, 0, 4, 5,
+		4, 0, 1, 3, 2,
+		4, 3, 1, 5, 7,
+		4, 2, 3, 7, 6,
+		4, 5, 4, 6, 7 };
+
+	@Param({"box-box", "sphere-trimesh", "capsule-trimesh", "convex-convex", "cylinder-cylinder"})
+	public String pair;
+
+	private DGeom g1;
+	private DGeom g2;
+	private DTriMeshData meshData;
+	private final DContactGeomBuffer contacts = new DContactGeomBuffer(MAX_CONTACTS);
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		DMatrix3 R = new DMatrix3();
+		DRotation.dRFromAxisAndAngle(R, 1, 1, 0.5, 0.3);
+		if ("box-box".equals(pair)) {
+			g1 = OdeHelper.createBox(1, 1, 1);
+			g2 = OdeHelper.createBox(1, 1, 1);
+			g2.setPosition(0.9, 0.2, 0.1);
+			g2.setRotation(R);
+		} else if ("sphere-trimesh".equals(pair)) {
+			g1 = OdeHelper.createSphere(0.5);
+			g1.setPosition(0.1, 0.1, 0.4);
+			g2 = createGrid();
+		} else if ("capsule-trimesh".equals(pair)) {
+			g1 = OdeHelper.createCapsule(0.3, 1);
+			g1.setPosition(0.1, 0.1, 0.25);
+			DRotation.dRFromAxisAndAngle(R, 1, 0, 0, Math.PI / 2);
+			g1.setRotation(R);
+			g2 = createGrid();
+		} else if ("convex-convex".equals(pair)) {
+			g1 = OdeHelper.createConvex(CUBE_PLANES, 6, CUBE_POINTS, 8, CUBE_POLYGONS);
+			g2 = OdeHelper.createConvex(CUBE_PLANES, 6, CUBE_POINTS, 8, CUBE_POLYGONS);
+			g2.setPosition(0.4, 0.1, 0.05);
+			g2.setRotation(R);
+		} else if ("cylinder-cylinder".equals(pair)) {
+			g1 = OdeHelper.createCylinder(0.5, 1);
+			g2 = OdeHelper.createCylinder(0.5, 1);
+			g2.setPosition(0.8, 0.1, 0.2);
+			g2.setRotation(R);
+		} else {
+			throw new IllegalArgumentException(pair);
+		}
+		// the trimesh colliders rely on the space to update the AABBs
+		g1.getAABB();
+		g2.getAABB();
+	}
+
+	private DGeom createGrid() {
+		int n = GRID + 1;
+		float[] vertices = new float[n * n * 3];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				int v = (i * n + j) * 3;
+				vertices[v] = (float) ((i - GRID / 2) * CELL);
+				vertices[v + 1] = (float) ((j - GRID / 2) * CELL);
+				vertices[v + 2] = 0;
+			}
+		}
+		int[] indices = new int[GRID * GRID * 6];
+		int k = 0;
+		for (int i = 0; i < GRID; i++) {
+			for (int j = 0; j < GRID; j++) {
+				int v = i * n + j;
+				indices[k++] = v;
+				indices[k++] = v + n;
+				indices[k++] = v + 1;
+				indices[k++] = v + 1;
+				indices[k++] = v + n;
+				indices[k++] = v + n + 1;
+			}
+		}
+		meshData = OdeHelper.createTriMeshData();
+		meshData.build(vertices, indices);
+		return OdeHelper.createTriMesh(null, meshData, null, null, null);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		g1.destroy();
+		g2.destroy();
+		if (meshData != null) {
+			meshData.destroy();
+		}
+		OdeHelper.closeODE();
+	}
+
+	/**
+	 * @return the number of contacts, always &gt; 0
+	 */
+	@Benchmark
+	public int collide() {
+		return OdeHelper.collide(g1, g2, MAX_CONTACTS, contacts);
+	}
+}
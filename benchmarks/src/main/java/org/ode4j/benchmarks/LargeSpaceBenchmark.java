@@ -0,0 +1,88 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ode4j.ode.DSapSpace;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.internal.DxSAPSpace2;
+
+/**
+ * Broadphase of the sweep and prune spaces and the BVH space in large
+ * worlds, see {@link AbstractSpaceBenchmark}. <tt>sap2</tt> is the
+ * temporally coherent SAP space that is not available through
+ * <tt>OdeHelper</tt>. With <tt>staticPercent=90</tt> most of the world does
+ * not move.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LargeSpaceBenchmark extends AbstractSpaceBenchmark {
+
+	@Param({"sap", "sap2", "bvh"})
+	public String type;
+
+	@Param({"10000", "50000", "200000"})
+	public int geoms;
+
+	@Param({"0", "90"})
+	public int staticPercent;
+
+	@Override
+	protected DSpace createSpace(double size) {
+		if ("sap".equals(type)) {
+			return OdeHelper.createSapSpace(DSapSpace.AXES.XYZ);
+		} else if ("sap2".equals(type)) {
+			return DxSAPSpace2.dSweepAndPruneSpaceCreate(null, DSapSpace.AXES.XYZ.getCode());
+		} else if ("bvh".equals(type)) {
+			return OdeHelper.createBVHSpace();
+		}
+		throw new IllegalArgumentException(type);
+	}
+
+	@Override
+	protected int getGeomCount() {
+		return geoms;
+	}
+
+	@Override
+	protected int getStaticPercent() {
+		return staticPercent;
+	}
+}
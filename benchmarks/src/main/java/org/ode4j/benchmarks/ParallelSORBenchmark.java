@@ -0,0 +1,124 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.threading.DThreadingImplementation;
+import org.ode4j.ode.threading.ThreadingImpl_H.dxSelfThreadedThreading;
+import org.ode4j.ode.threading.Threading_H;
+
+/**
+ * QuickStep of a single large island (a brick wall) with the serial SOR and
+ * with the parallel SOR ({@link org.ode4j.ode.DWorld#setQuickStepParallelSOR(boolean)})
+ * for 1 to 8 stepper threads.
+ * <p>
+ * ode4j has no multi-threaded threading implementation yet: 
+ * {@link OdeHelper#allocateThreadPool(int, int, Object[][])} is not 
+ * supported and {@link DThreadingImplementation} cannot be implemented 
+ * outside of ode4j. The threads are provided by a self-threaded 
+ * implementation that reports <tt>threads</tt> threads but runs all calls
+ * in the calling thread. The figures therefore show the cost of splitting
+ * the color batches into threaded calls, not a speed-up. They do not show
+ * how the parallel SOR scales until a multi-threaded implementation 
+ * replaces the self-threaded one in {@link #initODE()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelSORBenchmark {
+
+	private static final double STEP_SIZE = 0.01;
+
+	@Param({"sor", "parallelSOR"})
+	public String solver;
+
+	@Param({"1", "2", "4", "8"})
+	public int threads;
+
+	@Param({"1000"})
+	public int bodies;
+
+	private Scene s;
+	private DThreadingImplementation threading;
+	private boolean threadingDisabled;
+
+	@Setup(Level.Trial)
+	public void initODE() {
+		OdeHelper.initODE2(0);
+		// the threading interface is disabled by default
+		threadingDisabled = Threading_H.dTHREADING_INTF_DISABLED;
+		Threading_H.dTHREADING_INTF_DISABLED = false;
+		final int count = threads;
+		threading = new dxSelfThreadedThreading() {
+			@Override
+			public int RetrieveActiveThreadsCount() {
+				return count;
+			}
+		};
+	}
+
+	@TearDown(Level.Trial)
+	public void closeODE() {
+		threading.free();
+		Threading_H.dTHREADING_INTF_DISABLED = threadingDisabled;
+		OdeHelper.closeODE();
+	}
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		s = Scene.wall(bodies, 10);
+		s.getWorld().setStepThreadingImplementation(
+				threading.dThreadingImplementationGetFunctions(), threading);
+		s.getWorld().setQuickStepParallelSOR("parallelSOR".equals(solver));
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		s.destroy();
+	}
+
+	@Benchmark
+	public void quickStep() {
+		s.quickStep(STEP_SIZE);
+	}
+}
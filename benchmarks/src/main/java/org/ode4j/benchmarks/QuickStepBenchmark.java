@@ -0,0 +1,118 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * One collide / quickStep / empty cycle of stacks and chains of
+ * increasing size, solved with SOR ({@link org.ode4j.ode.DWorld#quickStep(double)})
+ * or NNCG ({@link org.ode4j.ode.DWorld#nncgStep(double)}). Both perform the
+ * same number of iterations, so the difference is the cost of an iteration.
+ * Use more <tt>iterations</tt> and a <tt>tolerance</tt> to let the solvers
+ * stop when they have converged, e.g. <tt>-p iterations=200 -p tolerance=1e-3</tt>.
+ * The scene is rebuilt for every iteration so that all iterations measure
+ * the same part of the simulation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuickStepBenchmark {
+
+	private static final double STEP_SIZE = 0.01;
+
+	@Param({"stack", "chain"})
+	public String scene;
+
+	@Param({"10", "100", "1000"})
+	public int bodies;
+
+	@Param({"sor", "nncg"})
+	public String solver;
+
+	@Param({"20"})
+	public int iterations;
+
+	@Param({"0"})
+	public double tolerance;
+
+	private boolean nncg;
+
+	private Scene s;
+
+	@Setup(Level.Trial)
+	public void initODE() {
+		OdeHelper.initODE2(0);
+	}
+
+	@TearDown(Level.Trial)
+	public void closeODE() {
+		OdeHelper.closeODE();
+	}
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		if ("stack".equals(scene)) {
+			s = Scene.stacks(bodies, 10);
+		} else {
+			s = Scene.chains(bodies, 10);
+		}
+		s.getWorld().setQuickStepNumIterations(iterations);
+		s.getWorld().setQuickStepTolerance(tolerance);
+		nncg = "nncg".equals(solver);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		s.destroy();
+	}
+
+	@Benchmark
+	public void quickStep() {
+		if (nncg) {
+			s.nncgStep(STEP_SIZE);
+		} else {
+			s.quickStep(STEP_SIZE);
+		}
+	}
+}
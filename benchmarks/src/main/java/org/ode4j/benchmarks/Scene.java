@@ -0,0 +1,230 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.benchmarks;
+
+import static org.ode4j.ode.OdeConstants.dContactApprox1;
+import static org.ode4j.ode.OdeConstants.dContactSoftCFM;
+
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DBox;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DContactJoint;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * A world with a ground plane, a hash space and a contact group, filled with
+ * one of the benchmark layouts. {@link #quickStep(double)},
+ * {@link #nncgStep(double)} and {@link #step(double)} collide and step the
+ * scene the way the demos do.
+ * <p>
+ * Scenes are deterministic: the same layout with the same parameters always
+ * produces the same simulation.
+ */
+public class Scene {
+
+	private static final int MAX_CONTACTS = 4;
+	private static final double BOX_SIZE = 0.5;
+
+	private final DWorld world;
+	private final DSpace space;
+	private final DJointGroup contactGroup;
+	private int bodyCount;
+
+	private final DNearCallback nearCallback = new DNearCallback() {
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			nearCallback(o1, o2);
+		}
+	};
+
+	private Scene() {
+		world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		world.setCFM(1e-5);
+		world.setContactMaxCorrectingVel(1);
+		world.setContactSurfaceLayer(0.001);
+		world.setQuickStepNumIterations(20);
+		space = OdeHelper.createHashSpace();
+		contactGroup = OdeHelper.createJointGroup();
+		OdeHelper.createPlane(space, 0, 0, 1, 0);
+	}
+
+	/**
+	 * Columns of boxes resting on the ground.
+	 * @param bodies total number of boxes
+	 * @param height boxes per column
+	 */
+	public static Scene stacks(int bodies, int height) {
+		return stacks(bodies, height, 0);
+	}
+
+	/**
+	 * Columns of boxes that are created overlapping each other and the 
+	 * ground, the solver has to push them apart.
+	 * @param bodies total number of boxes
+	 * @param height boxes per column
+	 * @param overlap fraction of a box that overlaps the box below
+	 */
+	public static Scene stacks(int bodies, int height, double overlap) {
+		Scene s = new Scene();
+		int columns = (bodies + height - 1) / height;
+		int side = (int) Math.ceil(Math.sqrt(columns));
+		for (int i = 0; i < bodies; i++) {
+			int column = i / height;
+			double x = (column % side) * 2 * BOX_SIZE;
+			double y = (column / side) * 2 * BOX_SIZE;
+			s.box(x, y, BOX_SIZE * (1 - overlap) * (0.5 + (i % height)));
+		}
+		return s;
+	}
+
+	/**
+	 * Chains of boxes connected by ball joints, each hanging from a fixed
+	 * point and swinging onto the ground. Every chain is an island of its own.
+	 * @param bodies total number of boxes
+	 * @param links boxes per chain
+	 */
+	public static Scene chains(int bodies, int links) {
+		Scene s = new Scene();
+		int chains = (bodies + links - 1) / links;
+		int side = (int) Math.ceil(Math.sqrt(chains));
+		double z = (links + 1) * BOX_SIZE;
+		DBody prev = null;
+		for (int i = 0; i < bodies; i++) {
+			int chain = i / links;
+			int link = i % links;
+			double x = (chain % side) * (links + 1) * BOX_SIZE + link * BOX_SIZE;
+			double y = (chain / side) * 2 * BOX_SIZE;
+			DBody b = s.box(x, y, z);
+			DBallJoint j = OdeHelper.createBallJoint(s.world);
+			j.attach(b, link == 0 ? null : prev);
+			j.setAnchor(x - 0.5 * BOX_SIZE, y, z);
+			prev = b;
+		}
+		return s;
+	}
+
+	/**
+	 * A wall of bricks resting on the ground. Every row is shifted by half a
+	 * brick, so that each brick rests on two bricks of the row below and the
+	 * whole wall is a single island.
+	 * @param bodies total number of bricks
+	 * @param height number of rows
+	 */
+	public static Scene wall(int bodies, int height) {
+		Scene s = new Scene();
+		int width = (bodies + height - 1) / height;
+		for (int i = 0; i < bodies; i++) {
+			int row = i / width;
+			double x = (i % width + 0.5 * (row % 2)) * BOX_SIZE;
+			s.box(x, 0, BOX_SIZE * (0.5 + row));
+		}
+		return s;
+	}
+
+	private DBody box(double x, double y, double z) {
+		DBody b = OdeHelper.createBody(world);
+		DMass m = OdeHelper.createMass();
+		m.setBox(1, BOX_SIZE, BOX_SIZE, BOX_SIZE);
+		b.setMass(m);
+		b.setPosition(x, y, z);
+		DBox g = OdeHelper.createBox(space, BOX_SIZE, BOX_SIZE, BOX_SIZE);
+		g.setBody(b);
+		bodyCount++;
+		return b;
+	}
+
+	private void nearCallback(DGeom o1, DGeom o2) {
+		DBody b1 = o1.getBody();
+		DBody b2 = o2.getBody();
+		if (b1 != null && b2 != null && OdeHelper.areConnected(b1, b2)) {
+			return;
+		}
+		// contact joints keep a reference to their DContact
+		DContactBuffer contacts = new DContactBuffer(MAX_CONTACTS);
+		int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, contacts.getGeomBuffer());
+		for (int i = 0; i < n; i++) {
+			DContact contact = contacts.get(i);
+			contact.surface.mode = dContactApprox1 | dContactSoftCFM;
+			contact.surface.mu = 0.5;
+			contact.surface.soft_cfm = 1e-4;
+			DContactJoint c = OdeHelper.createContactJoint(world, contactGroup, contact);
+			c.attach(b1, b2);
+		}
+	}
+
+	/**
+	 * Collide, step with {@link DWorld#quickStep(double)} and remove the contacts.
+	 */
+	public void quickStep(double stepSize) {
+		space.collide(null, nearCallback);
+		world.quickStep(stepSize);
+		contactGroup.empty();
+	}
+
+	/**
+	 * Collide, step with {@link DWorld#nncgStep(double)} and remove the contacts.
+	 */
+	public void nncgStep(double stepSize) {
+		space.collide(null, nearCallback);
+		world.nncgStep(stepSize);
+		contactGroup.empty();
+	}
+
+	/**
+	 * Collide, step with {@link DWorld#step(double)} and remove the contacts.
+	 */
+	public void step(double stepSize) {
+		space.collide(null, nearCallback);
+		world.step(stepSize);
+		contactGroup.empty();
+	}
+
+	public DWorld getWorld() {
+		return world;
+	}
+
+	public DSpace getSpace() {
+		return space;
+	}
+
+	public int getBodyCount() {
+		return bodyCount;
+	}
+
+	public void destroy() {
+		contactGroup.destroy();
+		space.destroy();
+		world.destroy();
+	}
+}
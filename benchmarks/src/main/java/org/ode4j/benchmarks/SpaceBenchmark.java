@@ -0,0 +1,83 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DSapSpace;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Broadphase of the hash, SAP, BVH and quadtree spaces, see
+ * {@link AbstractSpaceBenchmark}. The simple space is measured by
+ * {@link SimpleSpaceBenchmark} because it can not handle the larger sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpaceBenchmark extends AbstractSpaceBenchmark {
+
+	@Param({"hash", "sap", "bvh", "quadtree"})
+	public String type;
+
+	@Param({"1000", "10000", "100000"})
+	public int geoms;
+
+	@Override
+	protected DSpace createSpace(double size) {
+		if ("hash".equals(type)) {
+			return OdeHelper.createHashSpace();
+		} else if ("sap".equals(type)) {
+			return OdeHelper.createSapSpace(DSapSpace.AXES.XYZ);
+		} else if ("bvh".equals(type)) {
+			return OdeHelper.createBVHSpace();
+		} else if ("quadtree".equals(type)) {
+			// about 10 geoms per leaf
+			int depth = Math.max(1, (int) Math.round(Math.log(geoms / 10.0) / Math.log(4)));
+			return OdeHelper.createQuadTreeSpace(new DVector3(0, 0, 0),
+					new DVector3(size / 2, size / 2, size / 2), depth);
+		}
+		throw new IllegalArgumentException(type);
+	}
+
+	@Override
+	protected int getGeomCount() {
+		return geoms;
+	}
+}
@@ -0,0 +1,109 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * The cost of split impulse position correction 
+ * ({@link DWorld#setContactSplitImpulse(boolean)}) compared with the default
+ * ERP correction, with warm starting. <tt>rest</tt> stacks are created 
+ * touching, <tt>overlap</tt> stacks are created with a fifth of each box 
+ * overlapping the box below, so that the first steps of each iteration 
+ * remove deep penetrations.
+ * <p>
+ * How much the stacks jitter and how fast overlapping boxes pop apart is 
+ * checked by <tt>ContactSplitImpulseTest</tt>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SplitImpulseBenchmark {
+
+	@Param({"rest", "overlap"})
+	public String scene;
+
+	@Param({"erp", "split"})
+	public String correction;
+
+	@Param({"0.01", "0.02"})
+	public double stepSize;
+
+	@Param({"10", "20"})
+	public int iterations;
+
+	@Param({"100"})
+	public int bodies;
+
+	private Scene s;
+
+	@Setup(Level.Trial)
+	public void initODE() {
+		OdeHelper.initODE2(0);
+	}
+
+	@TearDown(Level.Trial)
+	public void closeODE() {
+		OdeHelper.closeODE();
+	}
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		s = Scene.stacks(bodies, 10, "overlap".equals(scene) ? 0.2 : 0);
+		DWorld world = s.getWorld();
+		world.setQuickStepNumIterations(iterations);
+		world.setQuickStepWarmStarting(true);
+		world.setContactSplitImpulse("split".equals(correction));
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		s.destroy();
+	}
+
+	@Benchmark
+	public void quickStep() {
+		s.quickStep(stepSize);
+	}
+}
@@ -279,6 +279,26 @@ public abstract class ApiCppWorld extends ApiCppBody {
 	}
 
 
+	/**
+	 * Enable or disable split impulse position correction of contacts.
+	 * @param enabled The default is false.
+	 * @see DWorld#setContactSplitImpulse(boolean)
+	 */
+	//ODE_API 
+	public static void dWorldSetContactSplitImpulse (DWorld w, boolean enabled) {
+		w.setContactSplitImpulse(enabled);
+	}
+
+
+	/**
+	 * Get whether contacts use split impulse position correction.
+	 */
+	//ODE_API 
+	public static boolean dWorldGetContactSplitImpulse (DWorld w) {
+		return w.getContactSplitImpulse();
+	}
+
+
 	/**
 	 * Set the depth of the surface layer around all geometry objects.
 	 * <p>REMARK:
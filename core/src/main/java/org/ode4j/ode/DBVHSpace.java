@@ -0,0 +1,50 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+/**
+ * Bounding volume hierarchy space.
+ * <p>
+ * This space keeps its geoms in dynamic AABB trees, one for static geoms
+ * (geoms without a body) and one for geoms with a body. It works well for
+ * large worlds where most geoms are static and where geoms differ a lot in
+ * size.
+ */
+public interface DBVHSpace extends DSpace {
+
+	/**
+	 * Set the margin by which the AABBs in the trees are enlarged. A geom can
+	 * move this far before the trees need to be updated. A larger margin
+	 * means fewer updates but more candidate pairs. The default is 0.1.
+	 * The new margin is used for geoms that are updated after this call.
+	 * @param margin margin, must not be negative
+	 */
+	void setMargin(double margin);
+
+	/**
+	 * @return the margin by which the AABBs in the trees are enlarged
+	 */
+	double getMargin();
+}
@@ -0,0 +1,202 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import org.ode4j.ode.threading.DThreadingImplementation;
+import org.ode4j.ode.threading.Threading_H.DThreadingFunctionsInfo;
+
+/**
+ * Collides the geoms of a space and runs the narrowphase in parallel.
+ * <p>
+ * <tt>collide()</tt> collects the candidate pairs of the space into a list,
+ * calls the colliders of the pairs on the threading implementation of the
+ * pipeline, and keeps the contacts in the order of the pairs, whatever the
+ * number of threads. This replaces a near callback that calls
+ * {@link OdeHelper#collide(DGeom, DGeom, int, DContactGeomBuffer)}:
+ * <pre>
+ * int n = pipeline.collide(space, 4);
+ * for (int i = 0; i &lt; n; i++) {
+ *     DContact contact = pipeline.getContact(i);
+ *     contact.surface.mode = OdeConstants.dContactApprox1;
+ *     contact.surface.mu = 0.5;
+ *     DJoint c = OdeHelper.createContactJoint(world, contactGroup, contact);
+ *     c.attach(contact.geom.g1.getBody(), contact.geom.g2.getBody());
+ * }
+ * </pre>
+ * Pairs with a nested space are expanded with
+ * {@link OdeHelper#spaceCollide2(DGeom, DGeom, Object, DGeom.DNearCallback)}
+ * before the narrowphase, the pairs inside a nested space are not collected.
+ * <p>
+ * The contacts belong to the pipeline and are reused by the next call of
+ * <tt>collide()</tt>, the surface parameters set on them are kept.
+ * <p>
+ * With more than one thread, trimesh callbacks, heightfield height callbacks
+ * and a tracer set with {@link OdeConfig#setTracer(DTracer)} are called
+ * concurrently and must be thread safe.
+ */
+public interface DCollidePipeline {
+
+	/**
+	 * Assign a threading implementation to run the narrowphase on
+	 * (see {@link #setMaxThreadCount(int)}).
+	 * <p>
+	 * Without a threading implementation the colliders run on the calling
+	 * thread.
+	 *
+	 * @param functions_info threading functions, or null
+	 * @param threading_impl threading implementation, or null
+	 * @see DWorld#setStepThreadingImplementation(DThreadingFunctionsInfo, DThreadingImplementation)
+	 */
+	void setThreadingImplementation(DThreadingFunctionsInfo functions_info,
+			DThreadingImplementation threading_impl);
+
+	/**
+	 * Set the number of parts the pairs are split into, to be collided in
+	 * parallel on the threading implementation of the pipeline.
+	 *
+	 * @param count 1 (the default) collides the pairs serially.
+	 */
+	void setMaxThreadCount(int count);
+
+	/**
+	 * @return the number of parts the pairs are split into
+	 * @see #setMaxThreadCount(int)
+	 */
+	int getMaxThreadCount();
+
+	/**
+	 * Collide the geoms of a space.
+	 *
+	 * @param space the space
+	 * @param flags the maximum number of contacts per pair in the lower 16 bits,
+	 * as for {@link OdeHelper#collide(DGeom, DGeom, int, DContactGeomBuffer)}
+	 * @return the number of contacts
+	 */
+	int collide(DSpace space, int flags);
+
+	/**
+	 * Keep the pairs and their contacts between calls of <tt>collide()</tt>,
+	 * and reuse the contacts of a pair instead of colliding it again while
+	 * neither geom has moved since the contacts were computed, see
+	 * {@link #setPairCacheTolerance(double, double)}. Resting geoms then cost
+	 * little more than the pair search.
+	 * <p>
+	 * Only the transforms of the geoms are compared, non-placeable geoms such
+	 * as planes count as unchanged. Call {@link #clearPairCache()} after
+	 * changing a geom in any other way, e.g. its size, the parameters of a
+	 * plane or the data of a trimesh. The cache is also cleared when
+	 * <tt>collide()</tt> is called with other flags.
+	 *
+	 * @param enabled false (the default) collides all pairs
+	 */
+	void setPairCache(boolean enabled);
+
+	/**
+	 * @return whether the contacts of unchanged pairs are reused
+	 * @see #setPairCache(boolean)
+	 */
+	boolean getPairCache();
+
+	/**
+	 * Set how far the geoms of a cached pair may move before the pair is
+	 * collided again. The distance is measured from the transforms the cached
+	 * contacts were computed for, so slow movements do not add up.
+	 *
+	 * @param linear maximum distance of the position, 0 (the default) to 
+	 * reuse contacts only while the position is unchanged
+	 * @param angular maximum change of any element of the rotation matrix, 
+	 * for small rotations about the angle in radians, 0 by default
+	 */
+	void setPairCacheTolerance(double linear, double angular);
+
+	/**
+	 * @return the maximum distance of the position of a cached pair
+	 * @see #setPairCacheTolerance(double, double)
+	 */
+	double getPairCacheLinearTolerance();
+
+	/**
+	 * @return the maximum change of the rotation of a cached pair
+	 * @see #setPairCacheTolerance(double, double)
+	 */
+	double getPairCacheAngularTolerance();
+
+	/**
+	 * Forget all cached pairs, the next <tt>collide()</tt> collides all pairs.
+	 */
+	void clearPairCache();
+
+	/**
+	 * @return the number of pairs of the last <tt>collide()</tt> whose
+	 * contacts were taken from the cache
+	 */
+	int getCachedPairCount();
+
+	/**
+	 * @return the number of candidate pairs of the last <tt>collide()</tt>,
+	 * including pairs without contacts
+	 */
+	int getPairCount();
+
+	/**
+	 * @param pair index of the pair
+	 * @return the first geom of the pair
+	 */
+	DGeom getPairGeom1(int pair);
+
+	/**
+	 * @param pair index of the pair
+	 * @return the second geom of the pair
+	 */
+	DGeom getPairGeom2(int pair);
+
+	/**
+	 * @param pair index of the pair
+	 * @return the index of the first contact of the pair
+	 */
+	int getPairContactStart(int pair);
+
+	/**
+	 * @param pair index of the pair
+	 * @return the number of contacts of the pair
+	 */
+	int getPairContactCount(int pair);
+
+	/**
+	 * @return the number of contacts of the last <tt>collide()</tt>
+	 */
+	int getContactCount();
+
+	/**
+	 * @param index index of the contact
+	 * @return the contact, with the contact geometry filled in
+	 */
+	DContact getContact(int index);
+
+	/**
+	 * Destroy the pipeline.
+	 */
+	void destroy();
+}
@@ -75,7 +75,14 @@ public interface DGeom {
 	 */
 	public static final int   dFirstUserClass = 14;
 	public static final int   dLastUserClass = dFirstUserClass + dMaxUserClasses - 1;
-	public static final int   dGeomNumClasses = dLastUserClass + 1; 
+	/**
+	 * The BVH space comes after the user classes, so that the IDs of the user
+	 * classes stay the same. It is not in the range 
+	 * <tt>dFirstSpaceClass</tt> to <tt>dLastSpaceClass</tt>, use 
+	 * <tt>instanceof DSpace</tt> to tell spaces from other geoms.
+	 */
+	public static final int   dBVHSpaceClass = dLastUserClass + 1; //18
+	public static final int   dGeomNumClasses = dBVHSpaceClass + 1; 
 	//	};
 
 
@@ -110,6 +117,7 @@ public interface DGeom {
 	 *  <li> dSimpleSpaceClass </li>
 	 *  <li> dHashSpaceClass </li>
 	 *  <li> dQuadTreeSpaceClass </li>
+	 *  <li> dBVHSpaceClass </li>
 	 *  <li> dFirstUserClass </li>
 	 *  <li> dLastUserClass </li>
 	 * <p>
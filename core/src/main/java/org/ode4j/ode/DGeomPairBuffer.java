@@ -0,0 +1,160 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import java.util.Arrays;
+
+
+/**
+ * A reusable buffer for the candidate pairs of a space, see
+ * {@link DSpace#collidePairs(DGeomPairBuffer)}.
+ * <p>
+ * The buffer holds a table of geoms and two geom indices per pair, so pairs
+ * can be sorted, filtered or split up without any calls per pair. A geom may
+ * be in the table more than once, and the table may contain geoms (or null
+ * entries) that are not part of any pair. The arrays only grow, a buffer that
+ * is kept between steps does not allocate once it is large enough.
+ * <pre>
+ * DGeomPairBuffer pairs = new DGeomPairBuffer();
+ * ...
+ * space.collidePairs(pairs);
+ * int[] p = pairs.getPairs();
+ * for (int i = 0; i &lt; pairs.getPairCount(); i++) {
+ *     DGeom o1 = pairs.getGeom(p[2*i]);
+ *     DGeom o2 = pairs.getGeom(p[2*i+1]);
+ *     ...
+ * }
+ * </pre>
+ */
+public final class DGeomPairBuffer {
+
+	private DGeom[] geoms = new DGeom[16];
+	private int geomCount = 0;
+	private int[] pairs = new int[32];
+	private int pairCount = 0;
+
+	public DGeomPairBuffer() {
+		// nothing
+	}
+
+	/**
+	 * Remove all pairs and geoms.
+	 */
+	public void clear() {
+		Arrays.fill(geoms, 0, geomCount, null);
+		geomCount = 0;
+		pairCount = 0;
+	}
+
+	/**
+	 * @return The number of pairs.
+	 */
+	public int getPairCount() {
+		return pairCount;
+	}
+
+	/**
+	 * The geom indices of pair <tt>i</tt> are at <tt>2*i</tt> and 
+	 * <tt>2*i+1</tt>. The array is only valid until the next pair is added.
+	 * @return The geom indices of all pairs.
+	 */
+	public int[] getPairs() {
+		return pairs;
+	}
+
+	/**
+	 * @param pair pair index
+	 * @return The first geom of the pair.
+	 */
+	public DGeom getGeom1(int pair) {
+		return geoms[pairs[2 * pair]];
+	}
+
+	/**
+	 * @param pair pair index
+	 * @return The second geom of the pair.
+	 */
+	public DGeom getGeom2(int pair) {
+		return geoms[pairs[2 * pair + 1]];
+	}
+
+	/**
+	 * @return The number of geoms in the table.
+	 */
+	public int getGeomCount() {
+		return geomCount;
+	}
+
+	/**
+	 * @param index geom index, as stored in {@link #getPairs()}
+	 * @return The geom.
+	 */
+	public DGeom getGeom(int index) {
+		return geoms[index];
+	}
+
+	/**
+	 * Append a geom to the table.
+	 * @param geom geom
+	 * @return The index of the geom.
+	 */
+	public int addGeom(DGeom geom) {
+		if (geomCount == geoms.length) {
+			geoms = Arrays.copyOf(geoms, geomCount * 2);
+		}
+		geoms[geomCount] = geom;
+		return geomCount++;
+	}
+
+	/**
+	 * Append <tt>count</tt> geoms to the table.
+	 * @param src geoms, entries may be null
+	 * @param count number of geoms to copy from the start of <tt>src</tt>
+	 * @return The index of the first geom.
+	 */
+	public int addGeoms(DGeom[] src, int count) {
+		if (geomCount + count > geoms.length) {
+			geoms = Arrays.copyOf(geoms, Math.max(geomCount + count, geoms.length * 2));
+		}
+		System.arraycopy(src, 0, geoms, geomCount, count);
+		int first = geomCount;
+		geomCount += count;
+		return first;
+	}
+
+	/**
+	 * Append a pair.
+	 * @param geom1 index of the first geom
+	 * @param geom2 index of the second geom
+	 */
+	public void addPair(int geom1, int geom2) {
+		if (2 * pairCount == pairs.length) {
+			pairs = Arrays.copyOf(pairs, pairs.length * 2);
+		}
+		pairs[2 * pairCount] = geom1;
+		pairs[2 * pairCount + 1] = geom2;
+		pairCount++;
+	}
+}
@@ -25,6 +25,8 @@
 package org.ode4j.ode;
 
 import org.ode4j.ode.internal.DxGeom;
+import org.ode4j.ode.threading.DThreadingImplementation;
+import org.ode4j.ode.threading.Threading_H.DThreadingFunctionsInfo;
 
 /**
  * collision space.
@@ -53,6 +55,21 @@ public interface DSpace extends DGeom {
 
 	/** This is equivalent to OdeHelper.spaceCollide(...) */
 	void collide (Object data, DNearCallback callback);
+
+	/**
+	 * Write the candidate pairs of this space into <tt>pairs</tt>, instead of
+	 * calling a near callback for each of them.
+	 * <p>
+	 * The buffer is cleared first. The pairs are the same, and in the same
+	 * order, as the pairs that <tt>collide()</tt> passes to its callback,
+	 * pairs with a space geom have to be expanded by the caller, e.g. with
+	 * <tt>OdeHelper.spaceCollide2()</tt>. The simple, hash and SAP spaces
+	 * write the pairs without any calls per pair.
+	 *
+	 * @param pairs buffer for the pairs, best reused between calls
+	 * @see #collide(Object, org.ode4j.ode.DGeom.DNearCallback)
+	 */
+	void collidePairs (DGeomPairBuffer pairs);
 	
 	
 	/**
@@ -117,4 +134,44 @@ public interface DSpace extends DGeom {
 	 * @see OdeHelper#spaceCollide2(DGeom, DGeom, Object, org.ode4j.ode.DGeom.DNearCallback)
 	 */
 	int getSublevel ();
+
+
+	/**
+	 * Assign a threading implementation to be used by <tt>collide()</tt>
+	 * (see {@link #setCollideMaxThreadCount(int)}).
+	 * <p>
+	 * Without a threading implementation the parts of the pair search run one
+	 * after the other on the calling thread. The same implementation as for
+	 * stepping the world may be used, as long as the world is not stepped
+	 * while the space collides.
+	 *
+	 * @param functions_info threading functions, or null
+	 * @param threading_impl threading implementation, or null
+	 * @see DWorld#setStepThreadingImplementation(DThreadingFunctionsInfo, DThreadingImplementation)
+	 */
+	void setThreadingImplementation(DThreadingFunctionsInfo functions_info,
+			DThreadingImplementation threading_impl);
+
+	/**
+	 * Set the number of parts the pair search of <tt>collide()</tt> is split
+	 * into, to be run in parallel on the threading implementation of the
+	 * space.
+	 * <p>
+	 * The hash, SAP and BVH spaces write the candidate pairs of each part into
+	 * a buffer of their own and merge them before the near callback is called
+	 * on the calling thread, so the callback does not need to be thread safe.
+	 * Pairs are reported in the same order for any count greater than one.
+	 * Other spaces ignore this setting.
+	 *
+	 * @param count 1 (the default) searches pairs serially.
+	 * @see #setThreadingImplementation(DThreadingFunctionsInfo, DThreadingImplementation)
+	 */
+	void setCollideMaxThreadCount(int count);
+
+	/**
+	 * @return the number of parts the pair search of <tt>collide()</tt> is
+	 * split into
+	 * @see #setCollideMaxThreadCount(int)
+	 */
+	int getCollideMaxThreadCount();
 }
@@ -0,0 +1,98 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+/**
+ * Receives the begin and end of expensive operations, e.g. to record them 
+ * as JDK Flight Recorder events with the <tt>jfr</tt> module.
+ * <p>
+ * A tracer is installed globally with {@link OdeConfig#setTracer(DTracer)}.
+ * Without a tracer each traced operation costs a single field read. 
+ * <p>
+ * Each <tt>begin</tt> method returns a token which is passed to the 
+ * matching <tt>end</tt> method. If it returns <code>null</code>, e.g. 
+ * because recording is disabled, the <tt>end</tt> method is not called.
+ * The methods may be called concurrently by several threads and calls 
+ * may be nested, e.g. a space may be collided from the near callback 
+ * of another space.
+ */
+public interface DTracer {
+
+	/**
+	 * Called by {@link DWorld#step(double)}, {@link DWorld#quickStep(double)}
+	 * and {@link DWorld#nncgStep(double)}.
+	 * @param stepper "step", "quickStep" or "nncgStep"
+	 */
+	Object beginWorldStep(DWorld world, String stepper, double stepSize);
+
+	/**
+	 * @param islands number of islands stepped, islands that sleep are not counted
+	 * @param bodies number of bodies in the stepped islands
+	 * @param joints number of joints in the stepped islands
+	 */
+	void endWorldStep(Object token, int islands, int bodies, int joints);
+
+	/**
+	 * Called when an island is solved by the QuickStep pipeline. The island 
+	 * may end on another thread than it began.
+	 */
+	Object beginIslandStep(DWorld world);
+
+	/**
+	 * @param rows number of constraint rows
+	 * @param iterations number of solver iterations
+	 */
+	void endIslandStep(Object token, int bodies, int joints, int rows, int iterations);
+
+	/**
+	 * Called by {@link DSpace#collide(Object, DGeom.DNearCallback)}.
+	 */
+	Object beginSpaceCollide(DSpace space);
+
+	/**
+	 * Called by {@link DGeom#collide2(DGeom, Object, DGeom.DNearCallback)}.
+	 */
+	Object beginSpaceCollide2(DGeom o1, DGeom o2);
+
+	/**
+	 * Ends {@link #beginSpaceCollide(DSpace)} and 
+	 * {@link #beginSpaceCollide2(DGeom, DGeom)}.
+	 * @param pairs number of calls to the near callback
+	 */
+	void endSpaceCollide(Object token, int pairs);
+
+	/**
+	 * Called by {@link OdeHelper#collide(DGeom, DGeom, int, DContactGeomBuffer)} 
+	 * for the expensive colliders only: pairs with a trimesh, convex or 
+	 * heightfield and the libccd colliders.
+	 * @param maxContacts maximum number of contacts requested
+	 */
+	Object beginNarrowphase(DGeom o1, DGeom o2, int maxContacts);
+
+	/**
+	 * @param contacts number of contacts found
+	 */
+	void endNarrowphase(Object token, int contacts);
+}
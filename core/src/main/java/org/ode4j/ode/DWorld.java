@@ -24,6 +24,8 @@
  *************************************************************************/
 package org.ode4j.ode;
 
+import java.util.Arrays;
+
 import org.ode4j.math.DVector3;
 import org.ode4j.math.DVector3C;
 import org.ode4j.ode.threading.DThreadingImplementation;
@@ -302,6 +304,107 @@ public interface DWorld {
 	    public int reserve_minimum;
 	};
 
+	/**
+	 * Statistics of the last call to {@link DWorld#quickStep(double)}.
+	 * 
+	 * @see DWorld#setQuickStepStats(DQuickStepStats)
+	 */
+	public static class DQuickStepStats {
+		/** 
+		 * number of islands stepped. Islands without constraints are 
+		 * counted with zero iterations. 
+		 */
+		public int islandCount;
+		/** 
+		 * iterations used per island, in the order the islands were solved.
+		 * Only the first <code>islandCount</code> entries are valid. 
+		 */
+		public int[] iterations = new int[16];
+		/** sum of the iterations of all islands */
+		public int totalIterations;
+		/** largest number of iterations used by an island */
+		public int maxIterations;
+	}
+
+	/**
+	 * Timings and sizes of the last call to {@link DWorld#step(double)}, 
+	 * {@link DWorld#quickStep(double)} or {@link DWorld#nncgStep(double)}.
+	 * <p>
+	 * All times are in nanoseconds. Stages that are processed by several 
+	 * threads, either because islands are stepped concurrently or because
+	 * the stage itself is threaded, report the sum of the time spent by 
+	 * all threads. The stage timings are only recorded by the QuickStep 
+	 * pipeline.
+	 * 
+	 * @see DWorld#setStepProfile(DStepProfile)
+	 */
+	public static class DStepProfile {
+		/** index of {@link #stageNanos}: gravity and inertia of the bodies */
+		public static final int STAGE0_BODIES = 0;
+		/** index of {@link #stageNanos}: collecting the joint rows */
+		public static final int STAGE0_JOINTS = 1;
+		/** index of {@link #stageNanos}: memory layout of the constraint rows */
+		public static final int STAGE1 = 2;
+		/** index of {@link #stageNanos}: filling the Jacobian and the constraint rows */
+		public static final int STAGE2A = 3;
+		/** index of {@link #stageNanos}: velocities and external forces of the bodies */
+		public static final int STAGE2B = 4;
+		/** index of {@link #stageNanos}: right hand side of the constraint rows */
+		public static final int STAGE2C = 5;
+		/** index of {@link #stageNanos}: solving the LCP, i.e. the SOR iterations */
+		public static final int STAGE3 = 6;
+		/** index of {@link #stageNanos}: velocity and position integration */
+		public static final int STAGE4 = 7;
+		/** number of entries of {@link #stageNanos} */
+		public static final int STAGE_COUNT = 8;
+
+		/** time of the whole step */
+		public long totalNanos;
+		/** time spent on finding the islands, without auto-disabling */
+		public long islandsNanos;
+		/** time spent on auto-disabling */
+		public long autoDisableNanos;
+		/** time of the stepper stages, indexed by <code>STAGE*</code> */
+		public final long[] stageNanos = new long[STAGE_COUNT];
+		/** number of islands stepped, islands that sleep are not counted */
+		public int islandCount;
+		/** number of bodies in the stepped islands */
+		public int bodyCount;
+		/** number of joints in the stepped islands */
+		public int jointCount;
+		/** number of constraint rows (QuickStep pipeline only) */
+		public int rowCount;
+
+		/**
+		 * Called by the world at the beginning of each step.
+		 */
+		public void reset() {
+			totalNanos = 0;
+			islandsNanos = 0;
+			autoDisableNanos = 0;
+			Arrays.fill(stageNanos, 0);
+			islandCount = 0;
+			bodyCount = 0;
+			jointCount = 0;
+			rowCount = 0;
+		}
+	}
+
+	/**
+	 * Receives the profile of each step.
+	 * 
+	 * @see DWorld#setStepProfileListener(DStepProfileListener)
+	 */
+	public interface DStepProfileListener {
+		/**
+		 * Called at the end of each step, after <code>profile</code> has 
+		 * been filled. The profile is reused by the next step.
+		 * @param world the world that has been stepped
+		 * @param profile the profile set with {@link DWorld#setStepProfile(DStepProfile)}
+		 */
+		void stepProfiled(DWorld world, DStepProfile profile);
+	}
+
 	/**
 	 * Set memory reservation policy for world to be used with simulation stepping functions
 	 *
@@ -402,6 +505,26 @@ public interface DWorld {
 	 */
 	boolean quickStep(double stepsize);
 	
+	
+	/**
+	 * Step the world using the nonsmooth nonlinear conjugate gradient (NNCG) 
+	 * method.
+	 * <p>
+	 * This works like {@link #quickStep(double)}, but the constraints are
+	 * solved with NNCG instead of SOR. Each iteration is one SOR sweep 
+	 * followed by a conjugate gradient correction, which propagates forces
+	 * through tall stacks and long chains considerably faster. 
+	 * <p>
+	 * The QuickStep parameters ({@link #setQuickStepNumIterations(int)},
+	 * {@link #setQuickStepW(double)}, {@link #setQuickStepTolerance(double)},
+	 * warm starting and statistics) apply to this method as well. 
+	 * Parallel SOR is not used.
+	 *
+	 * @param stepsize The number of seconds that the simulation has to advance.
+	 * @return 1 for success and 0 for failure
+	 */
+	boolean nncgStep(double stepsize);
+	
 	/**
 	* Converts an impulse to a force.
     *
@@ -453,6 +576,189 @@ public interface DWorld {
 	 * @return the over-relaxation setting
 	 */
 	double getQuickStepW();
+	
+	
+	/**
+	 * Set the convergence tolerance of the QuickStep method.
+	 * 
+	 * <p>REMARK:
+	 * When positive, the solver of an island stops iterating as soon as 
+	 * no lambda (constraint force) changed by more than <code>tolerance</code>
+	 * during a full sweep over the constraint rows. 
+	 * {@link #setQuickStepNumIterations(int)} remains the upper limit.
+	 * Resting islands usually converge in a few iterations.
+	 * Use {@link #setQuickStepStats(DQuickStepStats)} to see the number of 
+	 * iterations actually used.
+	 * 
+	 * @param tolerance The default is 0, i.e. always perform all iterations.
+	 */
+	void setQuickStepTolerance(double tolerance);
+	
+	
+	/**
+	 * Get the convergence tolerance of the QuickStep method.
+	 * @return the tolerance, 0 if disabled
+	 */
+	double getQuickStepTolerance();
+	
+	
+	/**
+	 * Set an object that receives statistics of each call to 
+	 * {@link #quickStep(double)}.
+	 * 
+	 * <p>REMARK:
+	 * The object is reset at the beginning of each step and then filled 
+	 * while the islands are solved. It should not be read while the world
+	 * is stepping.
+	 * 
+	 * @param stats Statistics object, or <code>null</code> to disable 
+	 * statistics. The default is <code>null</code>.
+	 */
+	void setQuickStepStats(DQuickStepStats stats);
+	
+	
+	/**
+	 * @return the statistics object set with 
+	 * {@link #setQuickStepStats(DQuickStepStats)}, or <code>null</code>
+	 */
+	DQuickStepStats getQuickStepStats();
+	
+	
+	/**
+	 * Set an object that receives the timings of each step.
+	 * 
+	 * <p>REMARK:
+	 * Profiling is meant to be cheap enough to stay enabled in production, 
+	 * the profile is preallocated and filled in place. It is reset at the
+	 * beginning of each step and should not be read while the world is 
+	 * stepping, use {@link #setStepProfileListener(DStepProfileListener)} 
+	 * to be notified when a step is done.
+	 * 
+	 * @param profile Profile object, or <code>null</code> to disable 
+	 * profiling. The default is <code>null</code>.
+	 */
+	void setStepProfile(DStepProfile profile);
+	
+	
+	/**
+	 * @return the profile object set with 
+	 * {@link #setStepProfile(DStepProfile)}, or <code>null</code>
+	 */
+	DStepProfile getStepProfile();
+	
+	
+	/**
+	 * Set a listener that is called after each step with the profile set
+	 * with {@link #setStepProfile(DStepProfile)}. The listener is not 
+	 * called while profiling is disabled.
+	 * 
+	 * @param listener Listener, or <code>null</code>. The default is <code>null</code>.
+	 */
+	void setStepProfileListener(DStepProfileListener listener);
+	
+	
+	/**
+	 * @return the listener set with 
+	 * {@link #setStepProfileListener(DStepProfileListener)}, or <code>null</code>
+	 */
+	DStepProfileListener getStepProfileListener();
+	
+	
+	/**
+	 * Enable or disable the parallel SOR solver of the QuickStep method.
+	 * 
+	 * <p>REMARK:
+	 * When enabled, the constraint rows of an island are partitioned into
+	 * color batches such that no two rows of a batch act on the same body.
+	 * Each batch is then solved in parallel by the threads allowed for
+	 * the world (see {@link #setStepIslandsProcessingMaxThreadCount(int)}).
+	 * The row ordering differs from the serial solver, but the result 
+	 * does not depend on the number of threads used.
+	 * 
+	 * @param enabled The default is false.
+	 */
+	void setQuickStepParallelSOR(boolean enabled);
+	
+	
+	/**
+	 * Get whether the QuickStep method uses the parallel SOR solver.
+	 * @return true if the parallel SOR solver is enabled
+	 */
+	boolean getQuickStepParallelSOR();
+	
+	
+	/**
+	 * Enable or disable the Jacobi solver of the QuickStep method.
+	 * 
+	 * <p>REMARK:
+	 * When enabled, all constraint rows of an island are updated at once 
+	 * against the body velocities of the previous iteration, so every 
+	 * iteration can be shared among all threads allowed for the world
+	 * (see {@link #setStepIslandsProcessingMaxThreadCount(int)}).
+	 * To keep this stable, the mass of each body is split evenly among 
+	 * the constraint rows acting on it. Jacobi iterations converge more 
+	 * slowly than SOR, so more iterations are usually needed; it pays off 
+	 * for very large islands on many cores. 
+	 * An over-relaxation parameter above 1 is not used for Jacobi.
+	 * This setting takes precedence over 
+	 * {@link #setQuickStepParallelSOR(boolean)}.
+	 * 
+	 * @param enabled The default is false.
+	 */
+	void setQuickStepJacobi(boolean enabled);
+	
+	
+	/**
+	 * Get whether the QuickStep method uses the Jacobi solver.
+	 * @return true if the Jacobi solver is enabled
+	 */
+	boolean getQuickStepJacobi();
+	
+	
+	/**
+	 * Enable or disable warm starting of the QuickStep method.
+	 * 
+	 * <p>REMARK:
+	 * When enabled, the solver starts from the impulses of the previous 
+	 * step instead of zero, which improves the stability of stacks and
+	 * resting contacts for a given number of iterations.
+	 * Impulses of contact joints are kept in a per-world cache, keyed
+	 * by the pair of bodies and the contact feature (side1/side2).
+	 * Contacts that were not generated again in the last step are evicted.
+	 * Disabling warm starting clears the cache.
+	 * 
+	 * @param enabled The default is false.
+	 */
+	void setQuickStepWarmStarting(boolean enabled);
+	
+	
+	/**
+	 * Get whether the QuickStep method uses warm starting.
+	 * @return true if warm starting is enabled
+	 */
+	boolean getQuickStepWarmStarting();
+	
+	
+	/**
+	 * Set the maximal number of contacts whose impulses are kept 
+	 * for warm starting.
+	 * 
+	 * <p>REMARK:
+	 * When the cache is full, the contacts of sleeping bodies are evicted 
+	 * first, the oldest first, then the contacts that were not generated 
+	 * again. Contacts beyond this limit within a single step are solved 
+	 * from zero, and a warning is issued the first time this happens.
+	 * 
+	 * @param maxContacts The default is 8192.
+	 */
+	void setQuickStepWarmStartingCacheSize(int maxContacts);
+	
+	
+	/**
+	 * Get the maximal number of contacts kept for warm starting.
+	 * @return the cache size
+	 */
+	int getQuickStepWarmStartingCacheSize();
 
 	
 	/**
@@ -572,6 +878,61 @@ public interface DWorld {
 	double getContactMaxCorrectingVel();
 	
 	
+	/**
+	 * Enable or disable split impulse position correction of contacts.
+	 * 
+	 * <p>REMARK:
+	 * By default the penetration of a contact is corrected by its velocity
+	 * constraint (see {@link #setERP(double)}), so the correcting velocity
+	 * remains in the bodies and adds energy. In split impulse mode the 
+	 * QuickStep method corrects the penetration in a separate pass that 
+	 * computes pseudo velocities. They are used to move the bodies in this
+	 * step, but are not added to their velocities. Penetrations up to 
+	 * {@link #setContactSplitImpulseThreshold(double)} are still corrected 
+	 * the default way.
+	 * The correction still obeys {@link #setContactMaxCorrectingVel(double)},
+	 * {@link #setContactSurfaceLayer(double)} and the soft ERP of contacts.
+	 * Contacts with rolling friction are corrected the default way and 
+	 * {@link #step(double)} is not affected.
+	 * 
+	 * @param enabled The default is false.
+	 */
+	void setContactSplitImpulse(boolean enabled);
+	
+	
+	/**
+	 * Get whether contacts use split impulse position correction.
+	 * @return true if split impulse is enabled
+	 */
+	boolean getContactSplitImpulse();
+	
+	
+	/**
+	 * Set the penetration depth that is still corrected by the velocity 
+	 * constraint of a contact in split impulse mode.
+	 * 
+	 * <p>REMARK:
+	 * Only the penetration beyond this depth (and beyond the surface 
+	 * layer) is corrected with pseudo velocities. Shallow contacts, like 
+	 * those of resting stacks, are corrected the default way, where 
+	 * friction keeps the bodies from sliding. Deep penetrations are removed
+	 * without adding energy. With 0, the whole penetration is corrected 
+	 * with pseudo velocities, except for a slop of 0.001 that keeps the 
+	 * bodies in contact.
+	 * 
+	 * @param depth The default is 0.005.
+	 */
+	void setContactSplitImpulseThreshold(double depth);
+	
+	
+	/**
+	 * Get the penetration depth that is still corrected by the velocity 
+	 * constraint of a contact in split impulse mode.
+	 * @return the threshold depth
+	 */
+	double getContactSplitImpulseThreshold();
+	
+	
 	/**
 	 * Destroy a world and everything in it.
 	 *
@@ -619,11 +980,44 @@ public interface DWorld {
 
 	/**
 	 * Set auto disable flag for newly created bodies.
+	 * 
+	 * <p>REMARK:
+	 * Connected bodies are put to sleep together: an island is disabled once
+	 * each of its bodies has been idle for the configured steps and time. A
+	 * sleeping island is not stepped, it is woken up as a whole by a contact
+	 * or joint with an awake body.
+	 * 
 	 * @param do_auto_disable default is false.
+	 * @see #setAutoDisableSkipSleepingPairs(boolean)
 	 */
 	void setAutoDisableFlag (boolean do_auto_disable);
 
 
+	/**
+	 * Get whether space collision skips the pairs of sleeping geoms.
+	 * @return <tt>true</tt> if the pairs are skipped
+	 */
+	boolean getAutoDisableSkipSleepingPairs ();
+
+
+	/**
+	 * Set whether space collision skips the pairs of geoms that cannot move: 
+	 * geoms of bodies that have been put to sleep by auto-disabling, against 
+	 * each other or against static geoms.
+	 * 
+	 * <p>REMARK:
+	 * The near callback is not called for these pairs at all, this includes 
+	 * static sensor geoms. Bodies disabled with {@link DBody#disable()} are 
+	 * not asleep and still collide. As the contacts inside a sleeping island
+	 * are not created, an island that is woken up by a contact with an awake
+	 * body is stepped from the next step on, once all of its contacts have 
+	 * been created again.
+	 * 
+	 * @param skip default is false.
+	 */
+	void setAutoDisableSkipSleepingPairs (boolean skip);
+
+
 
 
 	/**
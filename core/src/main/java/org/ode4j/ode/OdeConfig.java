@@ -86,6 +86,25 @@ public class OdeConfig {
 	public static void setLibCCDEndabled(boolean enable) {
 		dLIBCCD = enable;
 	}
+
+	private static volatile DTracer tracer;
+
+	/**
+	 * @return The tracer set with {@link #setTracer(DTracer)}, or <code>null</code>.
+	 */
+	public static DTracer getTracer() {
+		return tracer;
+	}
+
+	/**
+	 * Install a tracer that is notified of world steps, space collisions
+	 * and expensive narrowphase calls. 
+	 * @param tracer The tracer, or <code>null</code> to disable tracing. 
+	 * The default is <code>null</code>.
+	 */
+	public static void setTracer(DTracer tracer) {
+		OdeConfig.tracer = tracer;
+	}
 	
 /* Pull in the standard headers */
 //#include <stdio.h>
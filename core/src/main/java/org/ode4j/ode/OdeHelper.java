@@ -33,9 +33,11 @@ import org.ode4j.ode.DGeom.DNearCallback;
 import org.ode4j.ode.DTriMesh.DTriArrayCallback;
 import org.ode4j.ode.DTriMesh.DTriCallback;
 import org.ode4j.ode.DTriMesh.DTriRayCallback;
+import org.ode4j.ode.internal.DxBVHSpace;
 import org.ode4j.ode.internal.DxBody;
 import org.ode4j.ode.internal.DxBox;
 import org.ode4j.ode.internal.DxCapsule;
+import org.ode4j.ode.internal.DxCollidePipeline;
 import org.ode4j.ode.internal.DxConvex;
 import org.ode4j.ode.internal.DxCylinder;
 import org.ode4j.ode.internal.DxGeom;
@@ -488,6 +490,23 @@ public abstract class OdeHelper {
 	public static DHashSpace createHashSpace (DSpace space) {
 		return DxHashSpace.dHashSpaceCreate((DxSpace)space);
 	}
+	/**
+	 * Create a bounding volume hierarchy space.
+	 * @return BVH space
+	 * @see DBVHSpace
+	 */
+	public static DBVHSpace createBVHSpace () {
+		return DxBVHSpace.dBVHSpaceCreate(null);
+	}
+	/**
+	 * Create a bounding volume hierarchy space.
+	 * @param space parent space, may be <tt>null</tt>
+	 * @return BVH space
+	 * @see DBVHSpace
+	 */
+	public static DBVHSpace createBVHSpace (DSpace space) {
+		return DxBVHSpace.dBVHSpaceCreate((DxSpace) space);
+	}
 	//ODE_API 
 	public static DQuadTreeSpace createQuadTreeSpace (
 			DVector3C Center, DVector3C Extents, int Depth) {
@@ -735,6 +754,16 @@ public abstract class OdeHelper {
 			DContactGeomBuffer contacts) {
 		return DxGeom.dCollide((DxGeom)o1, (DxGeom)o2, flags, contacts, 1);
 	}
+
+	/**
+	 * Create a pipeline that collides the geoms of a space with the
+	 * narrowphase running in parallel.
+	 * @return collide pipeline
+	 * @see DCollidePipeline
+	 */
+	public static DCollidePipeline createCollidePipeline () {
+		return DxCollidePipeline.dCollidePipelineCreate();
+	}
 	
 
 	/**
@@ -0,0 +1,581 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.OdeConstants.dInfinity;
+import static org.ode4j.ode.internal.Common.dIASSERT;
+import static org.ode4j.ode.internal.Common.dPAD;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.ode4j.ode.internal.processmem.DxWorldProcessMemArena;
+
+/**
+ * Sparse front end of the Dantzig LCP solver for large islands of the
+ * accurate stepper.
+ * <p>
+ * The dense path of {@link Step} builds the full m*m matrix A = J*invM*J' and
+ * hands it to {@link DLCP#dSolveLCP}, which is cubic in time and quadratic in
+ * memory. Here A is kept in the block-sparse form given by the joint graph:
+ * block (i,j) is only nonzero if joints i and j have at least one body in
+ * common. The problem is then solved in three parts:
+ * <ol>
+ * <li> the unbounded rows (U) are ordered with a minimum degree heuristic on
+ *      the joint graph and factored with a sparse L*D*L' decomposition;
+ * <li> the bounded rows (B) are reduced to their Schur complement
+ *      A_BB - A_BU*inv(A_UU)*A_UB, on which the usual Dantzig pivoting runs;
+ * <li> the unbounded part of the solution is recovered from the factor.
+ * </ol>
+ * This is exactly what the dense solver does internally (it factors the
+ * unbounded rows first and pivots on the rest), so the results only differ by
+ * round-off. Problems that do not fit this structure, i.e. those without
+ * unbounded rows or with friction rows that depend on an unbounded row, are
+ * assembled densely and passed on unchanged.
+ */
+class DLCPSparse {
+
+	private final int m_nj;
+	private final int m_m;
+	private final int[] m_mindex;
+	/** the joint each row belongs to. */
+	private final int[] m_rowJoint;
+	/** neighbour blocks of each joint: m_blkJoint[m_blkStart[ji]..m_blkStart[ji+1]-1]. */
+	private int[] m_blkStart;
+	private int[] m_blkJoint;
+	/** offset of the (row major) block values in m_blkVal. */
+	private int[] m_blkOfs;
+	private double[] m_blkVal;
+
+	// the sparse factor of A_UU (columns of L, Davis' LDL layout)
+	private int[] m_Lp;
+	private int[] m_Li;
+	private double[] m_Lx;
+	private double[] m_D;
+
+	private DLCPSparse(int nj, int[] mindex) {
+		m_nj = nj;
+		m_m = mindex[nj];
+		m_mindex = mindex;
+		m_rowJoint = new int[m_m];
+		for (int ji = 0; ji != nj; ++ji) {
+			for (int r = mindex[ji]; r != mindex[ji + 1]; ++r) {
+				m_rowJoint[r] = ji;
+			}
+		}
+	}
+
+	/**
+	 * Solve the LCP problem A*x = b+w of an island where A = J*invM*J' + diag(Adiag).
+	 * @param memarena arena for the temporary arrays of the dense solver
+	 * @param nj number of joints
+	 * @param nb number of bodies
+	 * @param mindex row offsets of the joints, mindex[nj] == m
+	 * @param jointBodies the (island local) indexes of the two bodies of
+	 *        each joint, -1 if the joint is attached to the static environment
+	 * @param J the Jacobian, in the format used by {@link Step}
+	 * @param JinvM J*invM, in the same format as J
+	 * @param Adiag the constraint force mixing terms on the diagonal of A
+	 * @param x output, the solution
+	 * @param b the right hand side
+	 * @param nub the first nub rows are known to be unbounded
+	 * @param lo lower bounds
+	 * @param hi upper bounds
+	 * @param findex friction indexes
+	 */
+	static void dSolveLCP (DxWorldProcessMemArena memarena,
+			int nj, int nb, int[] mindex, int[] jointBodies,
+			double[] J, double[] JinvM, double[] Adiag,
+			double[] x, double[] b, int nub, double[] lo, double[] hi, int[] findex)
+	{
+		DLCPSparse lcp = new DLCPSparse(nj, mindex);
+		lcp.buildBlocks(nb, jointBodies, J, JinvM, Adiag);
+		if (!lcp.solve(memarena, x, b, nub, lo, hi, findex)) {
+			lcp.solveDense(memarena, x, b, nub, lo, hi, findex);
+		}
+	}
+
+	//****************************************************************************
+	// block matrix assembly
+
+	// this assumes the 4th and 8th rows of B and C are zero.
+
+	private static void MultiplyAdd2_p8r (double[] A, int APos,
+			double[] B, int BPos, double[] C, int CPos, int p, int r)
+	{
+		int aa = APos;
+		int bb = BPos;
+		for (int i = p; i != 0; --i) {
+			int cc = CPos;
+			for (int j = r; j != 0; --j) {
+				double sum;
+				sum  = B[bb] * C[cc];
+				sum += B[bb+1] * C[cc+1];
+				sum += B[bb+2] * C[cc+2];
+				sum += B[bb+4] * C[cc+4];
+				sum += B[bb+5] * C[cc+5];
+				sum += B[bb+6] * C[cc+6];
+				A[aa++] += sum;
+				cc += 8;
+			}
+			bb += 8;
+		}
+	}
+
+	private void buildBlocks(int nb, int[] jointBodies, double[] J, double[] JinvM, double[] Adiag)
+	{
+		final int nj = m_nj;
+		final int[] mindex = m_mindex;
+
+		// joints attached to each body
+		int[] bjStart = new int[nb + 1];
+		for (int k = 0; k != 2*nj; ++k) {
+			if (jointBodies[k] >= 0) bjStart[jointBodies[k] + 1]++;
+		}
+		for (int bi = 0; bi != nb; ++bi) bjStart[bi + 1] += bjStart[bi];
+		int[] bjList = new int[bjStart[nb]];
+		{
+			int[] fill = new int[nb];
+			for (int k = 0; k != 2*nj; ++k) {
+				int bi = jointBodies[k];
+				if (bi >= 0) bjList[bjStart[bi] + fill[bi]++] = k >> 1;
+			}
+		}
+
+		// count the neighbour blocks; a joint pair sharing both bodies
+		// must only get one block
+		int[] marker = new int[nj];
+		Arrays.fill(marker, -1);
+		m_blkStart = new int[nj + 1];
+		int nblk = 0, nval = 0;
+		for (int ji = 0; ji != nj; ++ji) {
+			final int infom = mindex[ji + 1] - mindex[ji];
+			for (int s = 0; s != 2; ++s) {
+				int bi = jointBodies[2*ji + s];
+				if (bi < 0) continue;
+				for (int k = bjStart[bi]; k != bjStart[bi + 1]; ++k) {
+					int jo = bjList[k];
+					if (marker[jo] != ji) {
+						marker[jo] = ji;
+						nblk++;
+						nval += infom * (mindex[jo + 1] - mindex[jo]);
+					}
+				}
+			}
+			m_blkStart[ji + 1] = nblk;
+		}
+
+		m_blkJoint = new int[nblk];
+		m_blkOfs = new int[nblk];
+		m_blkVal = new double[nval];
+		Arrays.fill(marker, -1);
+		int[] blkOf = new int[nj];
+		int blk = 0, vofs = 0;
+		for (int ji = 0; ji != nj; ++ji) {
+			final int ofsi = mindex[ji];
+			final int infom = mindex[ji + 1] - ofsi;
+			for (int s = 0; s != 2; ++s) {
+				int bi = jointBodies[2*ji + s];
+				if (bi < 0) continue;
+				for (int k = bjStart[bi]; k != bjStart[bi + 1]; ++k) {
+					int jo = bjList[k];
+					if (marker[jo] != ji) {
+						marker[jo] = ji;
+						blkOf[jo] = blk;
+						m_blkJoint[blk] = jo;
+						m_blkOfs[blk] = vofs;
+						vofs += infom * (mindex[jo + 1] - mindex[jo]);
+						blk++;
+					}
+					// add the contribution of the shared body
+					final int ofso = mindex[jo];
+					final int infomo = mindex[jo + 1] - ofso;
+					int so = (jointBodies[2*jo] == bi) ? 0 : 1;
+					MultiplyAdd2_p8r (m_blkVal, m_blkOfs[blkOf[jo]],
+							JinvM, 2*8*ofsi + s*8*infom,
+							J, 2*8*ofso + so*8*infomo, infom, infomo);
+				}
+			}
+			// the diagonal block always exists since every joint has a body
+			dIASSERT (marker[ji] == ji);
+			int diag = m_blkOfs[blkOf[ji]];
+			for (int i = 0; i != infom; ++i) {
+				m_blkVal[diag + i*infom + i] += Adiag[ofsi + i];
+			}
+		}
+	}
+
+	//****************************************************************************
+	// solvers
+
+	private boolean solve (DxWorldProcessMemArena memarena,
+			double[] x, double[] b, int nub, double[] lo, double[] hi, int[] findex)
+	{
+		final int m = m_m;
+		final int nj = m_nj;
+		final int[] mindex = m_mindex;
+
+		// split the rows into unbounded and bounded ones
+		int[] uIndex = memarena.AllocateArrayInt(m);
+		int[] bIndex = memarena.AllocateArrayInt(m);
+		int nU = 0, nB = 0;
+		for (int r = 0; r != m; ++r) {
+			if (r < nub || ((findex == null || findex[r] < 0) && lo[r] == -dInfinity && hi[r] == dInfinity)) {
+				uIndex[r] = nU++;
+				bIndex[r] = -1;
+			} else {
+				uIndex[r] = -1;
+				bIndex[r] = nB++;
+			}
+		}
+		if (nU == 0) {
+			return false;
+		}
+		int[] bRows = memarena.AllocateArrayInt(nB);
+		int[] findexB = null;
+		for (int r = 0; r != m; ++r) {
+			if (bIndex[r] >= 0) bRows[bIndex[r]] = r;
+		}
+		if (findex != null) {
+			findexB = memarena.AllocateArrayInt(nB);
+			for (int i = 0; i != nB; ++i) {
+				int f = findex[bRows[i]];
+				if (f >= 0 && bIndex[f] < 0) {
+					return false;
+				}
+				findexB[i] = f >= 0 ? bIndex[f] : -1;
+			}
+		}
+
+		// fill reducing order of the unbounded rows, the rows of a joint stay together
+		int[] P = memarena.AllocateArrayInt(nU);
+		{
+			int[] ujIndex = memarena.AllocateArrayInt(nj);
+			int nuj = 0;
+			for (int ji = 0; ji != nj; ++ji) {
+				ujIndex[ji] = -1;
+				for (int r = mindex[ji]; r != mindex[ji + 1]; ++r) {
+					if (uIndex[r] >= 0) {
+						ujIndex[ji] = nuj++;
+						break;
+					}
+				}
+			}
+			int[] ujJoints = memarena.AllocateArrayInt(nuj);
+			for (int ji = 0; ji != nj; ++ji) {
+				if (ujIndex[ji] >= 0) ujJoints[ujIndex[ji]] = ji;
+			}
+			int[] order = minimumDegreeOrder(nuj, ujJoints, ujIndex);
+			int k = 0;
+			for (int q = 0; q != nuj; ++q) {
+				int ji = ujJoints[order[q]];
+				for (int r = mindex[ji]; r != mindex[ji + 1]; ++r) {
+					if (uIndex[r] >= 0) P[k++] = r;
+				}
+			}
+			dIASSERT (k == nU);
+			for (k = 0; k != nU; ++k) uIndex[P[k]] = k;
+		}
+
+		if (!factor(nU, P, uIndex)) {
+			return false;
+		}
+
+		double[] t = memarena.AllocateArrayDReal(nU);
+
+		// solve for the unbounded rows alone if there is nothing else
+		if (nB == 0) {
+			for (int k = 0; k != nU; ++k) t[k] = b[P[k]];
+			solveFactor(t, nU);
+			for (int k = 0; k != nU; ++k) x[P[k]] = t[k];
+			return true;
+		}
+
+		// Schur complement S = A_BB - A_BU*inv(A_UU)*A_UB of the bounded rows
+		final int nskip = dPAD(nB);
+		double[] S = memarena.AllocateArrayDReal(nB * nskip);
+		double[] q = memarena.AllocateArrayDReal(nB);
+		for (int j = 0; j != nB; ++j) {
+			// t = inv(A_UU) * A_UB(:,j), which is row j of A_BU by symmetry
+			Arrays.fill(t, 0, nU, 0);
+			final int rj = bRows[j];
+			final int ji = m_rowJoint[rj];
+			final int aj = rj - mindex[ji];
+			for (int blk = m_blkStart[ji]; blk != m_blkStart[ji + 1]; ++blk) {
+				final int jo = m_blkJoint[blk];
+				final int ofso = mindex[jo];
+				final int infomo = mindex[jo + 1] - ofso;
+				int v = m_blkOfs[blk] + aj*infomo;
+				for (int c = 0; c != infomo; ++c) {
+					int k = uIndex[ofso + c];
+					if (k >= 0) t[k] = m_blkVal[v + c];
+					else if (bIndex[ofso + c] >= j) {
+						// A_BB, lower triangle
+						int i = bIndex[ofso + c];
+						S[i*nskip + j] = m_blkVal[v + c];
+					}
+				}
+			}
+			solveFactor(t, nU);
+			// S(i,j) -= A_BU(i,:) * t for i >= j
+			for (int i = j; i != nB; ++i) {
+				S[i*nskip + j] -= rowDot(bRows[i], uIndex, t);
+			}
+		}
+		for (int i = 0; i != nB; ++i) {
+			for (int j = i + 1; j != nB; ++j) S[i*nskip + j] = S[j*nskip + i];
+		}
+
+		// q = b_B - A_BU*inv(A_UU)*b_U
+		for (int k = 0; k != nU; ++k) t[k] = b[P[k]];
+		solveFactor(t, nU);
+		for (int i = 0; i != nB; ++i) {
+			q[i] = b[bRows[i]] - rowDot(bRows[i], uIndex, t);
+		}
+
+		double[] xB = memarena.AllocateArrayDReal(nB);
+		double[] loB = memarena.AllocateArrayDReal(nB);
+		double[] hiB = memarena.AllocateArrayDReal(nB);
+		for (int i = 0; i != nB; ++i) {
+			loB[i] = lo[bRows[i]];
+			hiB[i] = hi[bRows[i]];
+		}
+		DLCP.dSolveLCP (memarena, nB, S, xB, q, null, 0, loB, hiB, findexB);
+
+		// x_U = inv(A_UU) * (b_U - A_UB*x_B)
+		for (int k = 0; k != nU; ++k) {
+			t[k] = b[P[k]] - rowDot(P[k], bIndex, xB);
+		}
+		solveFactor(t, nU);
+		for (int k = 0; k != nU; ++k) x[P[k]] = t[k];
+		for (int i = 0; i != nB; ++i) x[bRows[i]] = xB[i];
+		return true;
+	}
+
+	/**
+	 * Row r of A times t, restricted to the columns c with index[c] >= 0.
+	 * t is indexed by index[c].
+	 */
+	private double rowDot(int r, int[] index, double[] t)
+	{
+		final int[] mindex = m_mindex;
+		final int ji = m_rowJoint[r];
+		final int a = r - mindex[ji];
+		double sum = 0;
+		for (int blk = m_blkStart[ji]; blk != m_blkStart[ji + 1]; ++blk) {
+			final int jo = m_blkJoint[blk];
+			final int ofso = mindex[jo];
+			final int infomo = mindex[jo + 1] - ofso;
+			int v = m_blkOfs[blk] + a*infomo;
+			for (int c = 0; c != infomo; ++c) {
+				int k = index[ofso + c];
+				if (k >= 0) sum += m_blkVal[v + c] * t[k];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Dense fallback: assemble A and call the dense solver.
+	 */
+	private void solveDense (DxWorldProcessMemArena memarena,
+			double[] x, double[] b, int nub, double[] lo, double[] hi, int[] findex)
+	{
+		final int m = m_m;
+		final int[] mindex = m_mindex;
+		final int mskip = dPAD(m);
+		double[] A = memarena.AllocateArrayDReal(m * mskip);
+		for (int ji = 0; ji != m_nj; ++ji) {
+			final int ofsi = mindex[ji];
+			final int infom = mindex[ji + 1] - ofsi;
+			for (int blk = m_blkStart[ji]; blk != m_blkStart[ji + 1]; ++blk) {
+				final int jo = m_blkJoint[blk];
+				final int ofso = mindex[jo];
+				final int infomo = mindex[jo + 1] - ofso;
+				for (int a = 0; a != infom; ++a) {
+					System.arraycopy(m_blkVal, m_blkOfs[blk] + a*infomo, A, (ofsi + a)*mskip + ofso, infomo);
+				}
+			}
+		}
+		DLCP.dSolveLCP (memarena, m, A, x, b, null, nub, lo, hi, findex);
+	}
+
+	//****************************************************************************
+	// ordering
+
+	/**
+	 * Minimum degree ordering of the joints with unbounded rows. The graph is
+	 * small (one node per joint) so the elimination graph is kept explicitly.
+	 * @return the elimination order, as indexes into ujJoints
+	 */
+	private int[] minimumDegreeOrder(int n, int[] ujJoints, int[] ujIndex)
+	{
+		BitSet[] adj = new BitSet[n];
+		int[] deg = new int[n];
+		for (int u = 0; u != n; ++u) {
+			final int ji = ujJoints[u];
+			BitSet au = new BitSet(n);
+			for (int blk = m_blkStart[ji]; blk != m_blkStart[ji + 1]; ++blk) {
+				int v = ujIndex[m_blkJoint[blk]];
+				if (v >= 0 && v != u) au.set(v);
+			}
+			adj[u] = au;
+			deg[u] = au.cardinality();
+		}
+		int[] order = new int[n];
+		boolean[] done = new boolean[n];
+		for (int q = 0; q != n; ++q) {
+			int best = -1;
+			for (int u = 0; u != n; ++u) {
+				if (!done[u] && (best < 0 || deg[u] < deg[best])) best = u;
+			}
+			order[q] = best;
+			done[best] = true;
+			// eliminating a node turns its neighbourhood into a clique
+			BitSet ab = adj[best];
+			for (int u = ab.nextSetBit(0); u >= 0; u = ab.nextSetBit(u + 1)) {
+				BitSet au = adj[u];
+				au.or(ab);
+				au.clear(u);
+				au.clear(best);
+				deg[u] = au.cardinality();
+			}
+			adj[best] = null;
+		}
+		return order;
+	}
+
+	//****************************************************************************
+	// sparse L*D*L' factorization of A_UU, after T. A. Davis' LDL
+
+	private boolean factor(int n, int[] P, int[] uIndex)
+	{
+		final int[] mindex = m_mindex;
+		int[] parent = new int[n];
+		int[] lnz = new int[n];
+		int[] flag = new int[n];
+
+		// symbolic: elimination tree and column counts
+		for (int k = 0; k != n; ++k) {
+			parent[k] = -1;
+			flag[k] = k;
+			lnz[k] = 0;
+			final int r = P[k];
+			final int ji = m_rowJoint[r];
+			for (int blk = m_blkStart[ji]; blk != m_blkStart[ji + 1]; ++blk) {
+				final int jo = m_blkJoint[blk];
+				for (int c = mindex[jo]; c != mindex[jo + 1]; ++c) {
+					int i = uIndex[c];
+					if (i < 0 || i >= k) continue;
+					for (; flag[i] != k; i = parent[i]) {
+						if (parent[i] == -1) parent[i] = k;
+						lnz[i]++;
+						flag[i] = k;
+					}
+				}
+			}
+		}
+		int[] Lp = new int[n + 1];
+		for (int k = 0; k != n; ++k) Lp[k + 1] = Lp[k] + lnz[k];
+		int[] Li = new int[Lp[n]];
+		double[] Lx = new double[Lp[n]];
+		double[] D = new double[n];
+		double[] Y = new double[n];
+		int[] pattern = new int[n];
+
+		// numeric
+		for (int k = 0; k != n; ++k) {
+			Y[k] = 0;
+			int top = n;
+			flag[k] = k;
+			lnz[k] = 0;
+			final int r = P[k];
+			final int ji = m_rowJoint[r];
+			final int a = r - mindex[ji];
+			for (int blk = m_blkStart[ji]; blk != m_blkStart[ji + 1]; ++blk) {
+				final int jo = m_blkJoint[blk];
+				final int ofso = mindex[jo];
+				final int infomo = mindex[jo + 1] - ofso;
+				int v = m_blkOfs[blk] + a*infomo;
+				for (int c = 0; c != infomo; ++c) {
+					int i = uIndex[ofso + c];
+					if (i < 0 || i > k) continue;
+					Y[i] += m_blkVal[v + c];
+					int len = 0;
+					for (; flag[i] != k; i = parent[i]) {
+						pattern[len++] = i;
+						flag[i] = k;
+					}
+					while (len > 0) pattern[--top] = pattern[--len];
+				}
+			}
+			double dk = Y[k];
+			Y[k] = 0;
+			for (; top < n; ++top) {
+				final int i = pattern[top];
+				final double yi = Y[i];
+				Y[i] = 0;
+				final int p2 = Lp[i] + lnz[i];
+				for (int p = Lp[i]; p < p2; ++p) {
+					Y[Li[p]] -= Lx[p] * yi;
+				}
+				final double l_ki = yi / D[i];
+				dk -= l_ki * yi;
+				Li[p2] = k;
+				Lx[p2] = l_ki;
+				lnz[i]++;
+			}
+			if (!(dk > 0)) {
+				// not positive definite (or NaN) - leave it to the dense solver
+				return false;
+			}
+			D[k] = dk;
+		}
+		m_Lp = Lp;
+		m_Li = Li;
+		m_Lx = Lx;
+		m_D = D;
+		return true;
+	}
+
+	/** t = inv(L*D*L') * t */
+	private void solveFactor(double[] t, int n)
+	{
+		final int[] Lp = m_Lp, Li = m_Li;
+		final double[] Lx = m_Lx, D = m_D;
+		for (int j = 0; j != n; ++j) {
+			final double tj = t[j];
+			if (tj != 0) {
+				for (int p = Lp[j]; p != Lp[j + 1]; ++p) t[Li[p]] -= Lx[p] * tj;
+			}
+		}
+		for (int j = 0; j != n; ++j) t[j] /= D[j];
+		for (int j = n - 1; j >= 0; --j) {
+			double tj = t[j];
+			for (int p = Lp[j]; p != Lp[j + 1]; ++p) tj -= Lx[p] * t[Li[p]];
+			t[j] = tj;
+		}
+	}
+}
@@ -0,0 +1,586 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import java.util.Arrays;
+
+import org.ode4j.ode.DAABBC;
+
+/**
+ * Dynamic bounding volume tree over geom AABBs, used by {@link DxBVHSpace}.
+ * <p>
+ * Every leaf stores one geom with an AABB that has been enlarged by a margin.
+ * As long as the geom stays inside this 'fat' AABB the tree does not need to
+ * be touched. Leaves that leave their fat AABB are either refitted in place,
+ * when they moved only a little, or removed and reinserted. Insertion uses the
+ * surface area heuristic to find a sibling, and tree rotations on the way up
+ * keep the tree balanced without rebuilding it.
+ * <p>
+ * Nodes are stored in parallel primitive arrays and recycled through a free
+ * list, so the tree does not allocate once it has grown to its working size.
+ */
+final class DxAABBTree {
+
+	static final int NULL_NODE = -1;
+
+	// AABB of each node: min0, min1, min2, max0, max1, max2
+	private double[] box;
+	private int[] parent;
+	// child1 is NULL_NODE for leaves, child2 is the next free node for
+	// unused nodes
+	private int[] child1;
+	private int[] child2;
+	private DxGeom[] geom;
+
+	private int root = NULL_NODE;
+	private int capacity;
+	private int freeList;
+	private int leafCount;
+
+	// traversal stack and query results
+	private int[] stack = new int[64];
+	private int[] hits = new int[64];
+
+	DxAABBTree() {
+		capacity = 16;
+		box = new double[capacity * 6];
+		parent = new int[capacity];
+		child1 = new int[capacity];
+		child2 = new int[capacity];
+		geom = new DxGeom[capacity];
+		freeList = linkFree(0);
+	}
+
+	private int linkFree(int first) {
+		for (int i = first; i < capacity; i++) {
+			parent[i] = NULL_NODE;
+			child1[i] = NULL_NODE;
+			child2[i] = i + 1 < capacity ? i + 1 : NULL_NODE;
+		}
+		return first;
+	}
+
+	private int allocateNode() {
+		if (freeList == NULL_NODE) {
+			int old = capacity;
+			capacity *= 2;
+			box = Arrays.copyOf(box, capacity * 6);
+			parent = Arrays.copyOf(parent, capacity);
+			child1 = Arrays.copyOf(child1, capacity);
+			child2 = Arrays.copyOf(child2, capacity);
+			geom = Arrays.copyOf(geom, capacity);
+			freeList = linkFree(old);
+		}
+		int node = freeList;
+		freeList = child2[node];
+		parent[node] = NULL_NODE;
+		child1[node] = NULL_NODE;
+		child2[node] = NULL_NODE;
+		return node;
+	}
+
+	private void freeNode(int node) {
+		geom[node] = null;
+		parent[node] = NULL_NODE;
+		child1[node] = NULL_NODE;
+		child2[node] = freeList;
+		freeList = node;
+	}
+
+	int getLeafCount() {
+		return leafCount;
+	}
+
+	/**
+	 * @return the number of node slots, valid node ids are below this value
+	 */
+	int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the geom of a leaf, or <tt>null</tt> if the node is not a leaf
+	 */
+	DxGeom getGeom(int node) {
+		return geom[node];
+	}
+
+	/**
+	 * Insert a geom with a valid and finite AABB.
+	 * @return the id of the new leaf
+	 */
+	int insert(DxGeom g, double margin) {
+		int leaf = allocateNode();
+		geom[leaf] = g;
+		setFat(leaf, g._aabb, margin);
+		insertLeaf(leaf);
+		leafCount++;
+		return leaf;
+	}
+
+	void remove(int leaf) {
+		removeLeaf(leaf);
+		freeNode(leaf);
+		leafCount--;
+	}
+
+	/**
+	 * Update the tree after the AABB of the geom in a leaf has changed.
+	 */
+	void update(int leaf, double margin) {
+		DAABBC aabb = geom[leaf]._aabb;
+		int b = leaf * 6;
+		if (box[b] <= aabb.getMin0() && box[b+1] <= aabb.getMin1() && box[b+2] <= aabb.getMin2() &&
+				box[b+3] >= aabb.getMax0() && box[b+4] >= aabb.getMax1() && box[b+5] >= aabb.getMax2()) {
+			// still inside the fat AABB
+			return;
+		}
+		double oldArea = area(b);
+		double m0 = Math.min(box[b], aabb.getMin0() - margin);
+		double m1 = Math.min(box[b+1], aabb.getMin1() - margin);
+		double m2 = Math.min(box[b+2], aabb.getMin2() - margin);
+		double x0 = Math.max(box[b+3], aabb.getMax0() + margin);
+		double x1 = Math.max(box[b+4], aabb.getMax1() + margin);
+		double x2 = Math.max(box[b+5], aabb.getMax2() + margin);
+		setFat(leaf, aabb, margin);
+		double joinedArea = (x0-m0)*(x1-m1) + (x1-m1)*(x2-m2) + (x2-m2)*(x0-m0);
+		if (joinedArea <= 2 * oldArea || leaf == root) {
+			// coherent motion: refit the parents, the rotations on the way up
+			// repair the tree locally
+			refit(parent[leaf]);
+		} else {
+			removeLeaf(leaf);
+			insertLeaf(leaf);
+		}
+	}
+
+	/**
+	 * Find all leaves whose fat AABB overlaps the given AABB.
+	 * @return the number of leaves found, see {@link #getHit(int)}
+	 */
+	int query(DAABBC aabb) {
+		int nHits = 0;
+		if (root == NULL_NODE) {
+			return 0;
+		}
+		final double m0 = aabb.getMin0(), m1 = aabb.getMin1(), m2 = aabb.getMin2();
+		final double x0 = aabb.getMax0(), x1 = aabb.getMax1(), x2 = aabb.getMax2();
+		int sp = 0;
+		stack[sp++] = root;
+		while (sp > 0) {
+			int node = stack[--sp];
+			int b = node * 6;
+			if (box[b] > x0 || box[b+3] < m0 || box[b+1] > x1 || box[b+4] < m1 ||
+					box[b+2] > x2 || box[b+5] < m2) {
+				continue;
+			}
+			if (child1[node] == NULL_NODE) {
+				if (nHits == hits.length) {
+					hits = Arrays.copyOf(hits, nHits * 2);
+				}
+				hits[nHits++] = node;
+			} else {
+				if (sp + 2 > stack.length) {
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				}
+				stack[sp++] = child2[node];
+				stack[sp++] = child1[node];
+			}
+		}
+		return nHits;
+	}
+
+	/**
+	 * @return a leaf found by the last call to {@link #query(DAABBC)}
+	 */
+	int getHit(int i) {
+		return hits[i];
+	}
+
+	/**
+	 * State of a traversal that collides two trees, see
+	 * {@link DxAABBTree#collide(DxAABBTree, int, int, Traversal)}.
+	 * Pair <tt>i</tt> consists of the leaves <tt>pairs[2*i]</tt> of the first
+	 * tree and <tt>pairs[2*i+1]</tt> of the second tree.
+	 */
+	static final class Traversal {
+		private int[] stack = new int[64];
+		int[] pairs = new int[64];
+		int pairCount;
+	}
+
+	private final Traversal traversal = new Traversal();
+	// start pairs for parallel traversals, see seed()
+	private int[] seeds = new int[64];
+	private int[] nextSeeds = new int[64];
+
+	/**
+	 * Find all pairs of leaves in this tree whose fat AABBs overlap.
+	 * @return the pairs, valid until the next call
+	 */
+	Traversal collide() {
+		return collide(this);
+	}
+
+	/**
+	 * Find all pairs of a leaf in this tree and a leaf in another tree
+	 * whose fat AABBs overlap. This descends both trees at the same time,
+	 * which is much faster than querying the other tree for each leaf.
+	 * If the other tree is this tree, each pair is only reported once.
+	 * @return the pairs, valid until the next call
+	 */
+	Traversal collide(DxAABBTree other) {
+		traversal.pairCount = 0;
+		if (root != NULL_NODE && other.root != NULL_NODE) {
+			collide(other, root, other.root, traversal);
+		}
+		return traversal;
+	}
+
+	/**
+	 * Split {@link #collide(DxAABBTree)} into independent parts: node pairs
+	 * are expanded level by level, in the same way as the traversal does,
+	 * until there are at least <tt>minCount</tt> of them or only pairs of
+	 * leaves are left. The seeds only depend on the trees, not on how they
+	 * are distributed later.
+	 * @return the number of seeds, see {@link #getSeed(int)}
+	 */
+	int seed(DxAABBTree other, int minCount) {
+		if (root == NULL_NODE || other.root == NULL_NODE) {
+			return 0;
+		}
+		final boolean self = other == this;
+		seeds[0] = root;
+		seeds[1] = other.root;
+		int n = 1;
+		boolean expanded = true;
+		while (n < minCount && expanded) {
+			expanded = false;
+			int m = 0;
+			if (nextSeeds.length < 6 * n) {
+				nextSeeds = new int[6 * n];
+			}
+			for (int i = 0; i < n; i++) {
+				int n1 = seeds[2 * i];
+				int n2 = seeds[2 * i + 1];
+				if (self && n1 == n2) {
+					if (child1[n1] != NULL_NODE) {
+						int c1 = child1[n1];
+						int c2 = child2[n1];
+						nextSeeds[2 * m] = c1; nextSeeds[2 * m++ + 1] = c1;
+						nextSeeds[2 * m] = c1; nextSeeds[2 * m++ + 1] = c2;
+						nextSeeds[2 * m] = c2; nextSeeds[2 * m++ + 1] = c2;
+						expanded = true;
+					}
+					continue;
+				}
+				int a = n1 * 6, b = n2 * 6;
+				if (isDisjoint(a, other.box, b)) {
+					continue;
+				}
+				boolean leaf1 = child1[n1] == NULL_NODE;
+				boolean leaf2 = other.child1[n2] == NULL_NODE;
+				if (leaf1 && leaf2) {
+					nextSeeds[2 * m] = n1; nextSeeds[2 * m++ + 1] = n2;
+				} else if (leaf2 || (!leaf1 && area(a) >= other.area(b))) {
+					nextSeeds[2 * m] = child1[n1]; nextSeeds[2 * m++ + 1] = n2;
+					nextSeeds[2 * m] = child2[n1]; nextSeeds[2 * m++ + 1] = n2;
+					expanded = true;
+				} else {
+					nextSeeds[2 * m] = n1; nextSeeds[2 * m++ + 1] = other.child1[n2];
+					nextSeeds[2 * m] = n1; nextSeeds[2 * m++ + 1] = other.child2[n2];
+					expanded = true;
+				}
+			}
+			int[] tmp = seeds;
+			seeds = nextSeeds;
+			nextSeeds = tmp;
+			n = m;
+		}
+		return n;
+	}
+
+	/**
+	 * @return a node of a seed found by the last call to
+	 * {@link #seed(DxAABBTree, int)}: <tt>getSeed(2*i)</tt> is in this tree
+	 * and <tt>getSeed(2*i+1)</tt> in the other tree.
+	 */
+	int getSeed(int i) {
+		return seeds[i];
+	}
+
+	private boolean isDisjoint(int a, double[] box2, int b) {
+		return box[a] > box2[b+3] || box[a+3] < box2[b] || box[a+1] > box2[b+4] || box[a+4] < box2[b+1] ||
+				box[a+2] > box2[b+5] || box[a+5] < box2[b+2];
+	}
+
+	/**
+	 * Add the overlapping leaf pairs below node <tt>n1</tt> of this tree and
+	 * node <tt>n2</tt> of another tree to a traversal. If the other tree is
+	 * this tree and <tt>n1 == n2</tt>, the pairs within the subtree are
+	 * added. This only reads the trees, so several traversals may run at the
+	 * same time.
+	 */
+	void collide(DxAABBTree other, int n1, int n2, Traversal t) {
+		final boolean self = other == this;
+		final double[] box2 = other.box;
+		final int[] child12 = other.child1;
+		final int[] child22 = other.child2;
+		int[] stack = t.stack;
+		int[] pairs = t.pairs;
+		int nPairs = t.pairCount;
+		// stack of node pairs, a pair of a node with itself stands for all
+		// pairs within the subtree when colliding a tree with itself
+		int sp = 0;
+		stack[sp++] = n1;
+		stack[sp++] = n2;
+		while (sp > 0) {
+			n2 = stack[--sp];
+			n1 = stack[--sp];
+			if (sp + 6 > stack.length) {
+				stack = t.stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			if (self && n1 == n2) {
+				if (child1[n1] != NULL_NODE) {
+					int c1 = child1[n1];
+					int c2 = child2[n1];
+					stack[sp++] = c1; stack[sp++] = c1;
+					stack[sp++] = c2; stack[sp++] = c2;
+					stack[sp++] = c1; stack[sp++] = c2;
+				}
+				continue;
+			}
+			int a = n1 * 6, b = n2 * 6;
+			if (isDisjoint(a, box2, b)) {
+				continue;
+			}
+			boolean leaf1 = child1[n1] == NULL_NODE;
+			boolean leaf2 = child12[n2] == NULL_NODE;
+			if (leaf1 && leaf2) {
+				if (nPairs * 2 + 2 > pairs.length) {
+					pairs = t.pairs = Arrays.copyOf(pairs, pairs.length * 2);
+				}
+				pairs[nPairs * 2] = n1;
+				pairs[nPairs * 2 + 1] = n2;
+				nPairs++;
+			} else if (leaf2 || (!leaf1 && area(a) >= other.area(b))) {
+				// descend into the larger node
+				stack[sp++] = child1[n1]; stack[sp++] = n2;
+				stack[sp++] = child2[n1]; stack[sp++] = n2;
+			} else {
+				stack[sp++] = n1; stack[sp++] = child12[n2];
+				stack[sp++] = n1; stack[sp++] = child22[n2];
+			}
+		}
+		t.pairCount = nPairs;
+	}
+
+	private void setFat(int node, DAABBC aabb, double margin) {
+		int b = node * 6;
+		box[b] = aabb.getMin0() - margin;
+		box[b+1] = aabb.getMin1() - margin;
+		box[b+2] = aabb.getMin2() - margin;
+		box[b+3] = aabb.getMax0() + margin;
+		box[b+4] = aabb.getMax1() + margin;
+		box[b+5] = aabb.getMax2() + margin;
+	}
+
+	/** half the surface area of a node's AABB */
+	private double area(int b) {
+		double d0 = box[b+3] - box[b];
+		double d1 = box[b+4] - box[b+1];
+		double d2 = box[b+5] - box[b+2];
+		return d0*d1 + d1*d2 + d2*d0;
+	}
+
+	/** half the surface area of the union of two nodes' AABBs */
+	private double unionArea(int n1, int n2) {
+		int a = n1 * 6, b = n2 * 6;
+		double d0 = Math.max(box[a+3], box[b+3]) - Math.min(box[a], box[b]);
+		double d1 = Math.max(box[a+4], box[b+4]) - Math.min(box[a+1], box[b+1]);
+		double d2 = Math.max(box[a+5], box[b+5]) - Math.min(box[a+2], box[b+2]);
+		return d0*d1 + d1*d2 + d2*d0;
+	}
+
+	private void setUnion(int node, int n1, int n2) {
+		int d = node * 6, a = n1 * 6, b = n2 * 6;
+		for (int i = 0; i < 3; i++) {
+			box[d+i] = Math.min(box[a+i], box[b+i]);
+			box[d+3+i] = Math.max(box[a+3+i], box[b+3+i]);
+		}
+	}
+
+	private void insertLeaf(int leaf) {
+		if (root == NULL_NODE) {
+			root = leaf;
+			parent[leaf] = NULL_NODE;
+			return;
+		}
+
+		// find the best sibling with the surface area heuristic
+		int index = root;
+		while (child1[index] != NULL_NODE) {
+			int c1 = child1[index];
+			int c2 = child2[index];
+			double area = area(index * 6);
+			double combinedArea = unionArea(index, leaf);
+			// cost of creating a new parent for this node and the new leaf
+			double cost = 2 * combinedArea;
+			// minimum cost of pushing the leaf further down the tree
+			double inheritanceCost = 2 * (combinedArea - area);
+			double cost1 = unionArea(c1, leaf) + inheritanceCost;
+			if (child1[c1] != NULL_NODE) {
+				cost1 -= area(c1 * 6);
+			}
+			double cost2 = unionArea(c2, leaf) + inheritanceCost;
+			if (child1[c2] != NULL_NODE) {
+				cost2 -= area(c2 * 6);
+			}
+			if (cost < cost1 && cost < cost2) {
+				break;
+			}
+			index = cost1 < cost2 ? c1 : c2;
+		}
+		int sibling = index;
+
+		// create a new parent
+		int oldParent = parent[sibling];
+		int newParent = allocateNode();
+		parent[newParent] = oldParent;
+		setUnion(newParent, leaf, sibling);
+		child1[newParent] = sibling;
+		child2[newParent] = leaf;
+		parent[sibling] = newParent;
+		parent[leaf] = newParent;
+		if (oldParent == NULL_NODE) {
+			root = newParent;
+		} else if (child1[oldParent] == sibling) {
+			child1[oldParent] = newParent;
+		} else {
+			child2[oldParent] = newParent;
+		}
+
+		refit(oldParent);
+	}
+
+	private void removeLeaf(int leaf) {
+		if (leaf == root) {
+			root = NULL_NODE;
+			return;
+		}
+		int p = parent[leaf];
+		int grandParent = parent[p];
+		int sibling = child1[p] == leaf ? child2[p] : child1[p];
+		if (grandParent == NULL_NODE) {
+			root = sibling;
+			parent[sibling] = NULL_NODE;
+		} else {
+			if (child1[grandParent] == p) {
+				child1[grandParent] = sibling;
+			} else {
+				child2[grandParent] = sibling;
+			}
+			parent[sibling] = grandParent;
+			refit(grandParent);
+		}
+		freeNode(p);
+		parent[leaf] = NULL_NODE;
+	}
+
+	/**
+	 * Recompute the AABBs from a node up to the root and rotate each node
+	 * on the way if that reduces the area of its children.
+	 */
+	private void refit(int index) {
+		while (index != NULL_NODE) {
+			rotate(index);
+			setUnion(index, child1[index], child2[index]);
+			index = parent[index];
+		}
+	}
+
+	/**
+	 * Try to swap a child of a node with one of the grandchildren on the
+	 * other side. This does not change the AABB of the node itself, only
+	 * that of the child whose grandchild is swapped out.
+	 */
+	private void rotate(int a) {
+		int b = child1[a];
+		int c = child2[a];
+		double bestArea = 0;
+		int bestChild = NULL_NODE;
+		int bestGrandChild = NULL_NODE;
+		if (child1[c] != NULL_NODE) {
+			// swap b with one of c's children
+			double area = area(c * 6);
+			double a1 = unionArea(b, child2[c]);
+			double a2 = unionArea(b, child1[c]);
+			if (area - a1 > bestArea) {
+				bestArea = area - a1;
+				bestChild = b;
+				bestGrandChild = child1[c];
+			}
+			if (area - a2 > bestArea) {
+				bestArea = area - a2;
+				bestChild = b;
+				bestGrandChild = child2[c];
+			}
+		}
+		if (child1[b] != NULL_NODE) {
+			// swap c with one of b's children
+			double area = area(b * 6);
+			double a1 = unionArea(c, child2[b]);
+			double a2 = unionArea(c, child1[b]);
+			if (area - a1 > bestArea) {
+				bestArea = area - a1;
+				bestChild = c;
+				bestGrandChild = child1[b];
+			}
+			if (area - a2 > bestArea) {
+				bestArea = area - a2;
+				bestChild = c;
+				bestGrandChild = child2[b];
+			}
+		}
+		if (bestChild == NULL_NODE) {
+			return;
+		}
+		// 'other' is the child of a that receives bestChild
+		int other = parent[bestGrandChild];
+		if (child1[a] == bestChild) {
+			child1[a] = bestGrandChild;
+		} else {
+			child2[a] = bestGrandChild;
+		}
+		parent[bestGrandChild] = a;
+		if (child1[other] == bestGrandChild) {
+			child1[other] = bestChild;
+		} else {
+			child2[other] = bestChild;
+		}
+		parent[bestChild] = other;
+		setUnion(other, child1[other], child2[other]);
+	}
+}
@@ -0,0 +1,344 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.OdeConstants.dInfinity;
+import static org.ode4j.ode.internal.Common.dAASSERT;
+import static org.ode4j.ode.internal.Common.dUASSERT;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ode4j.ode.DAABBC;
+import org.ode4j.ode.DBVHSpace;
+
+/**
+ * Bounding volume hierarchy space.
+ * <p>
+ * Geoms are kept in two dynamic AABB trees (see {@link DxAABBTree}): one for
+ * static geoms, i.e. geoms without a body, and one for geoms with a body and
+ * for nested spaces. Geoms with infinite AABBs, like planes, are kept in a
+ * separate list and tested against everything.
+ * <p>
+ * The trees store AABBs that are enlarged by a margin, so geoms that move
+ * only a little do not change the trees at all. Pairs are found by
+ * descending the dynamic tree against itself and against the static tree.
+ * Pairs of two static geoms are cached until a static geom is added, removed
+ * or moved, which makes this space a good choice for large worlds where most
+ * geoms do not move.
+ */
+public class DxBVHSpace extends DxSpace implements DBVHSpace {
+
+	// values of DxGeom._bvhIdxEx other than leaf ids
+	private static final int GEOM_INVALID_IDX = -1;
+	private static final int GEOM_INF_IDX = -2;
+	// static leaves are stored as GEOM_STATIC_IDX - leaf
+	private static final int GEOM_STATIC_IDX = -3;
+
+	private final DxAABBTree dynamicTree = new DxAABBTree();
+	private final DxAABBTree staticTree = new DxAABBTree();
+	// geoms with infinite AABBs
+	private final List<DxGeom> infGeomList = new ArrayList<DxGeom>();
+
+	// cached overlapping pairs of static geoms, two geoms per pair
+	private DxGeom[] staticPairs = new DxGeom[16];
+	private int staticPairCount;
+	private boolean staticPairsDirty;
+
+	private double margin = 0.1;
+
+	// parallel traversals, see collideParallel()
+	private static final int SEED_COUNT = 256;
+	private DxAABBTree.Traversal[] traversals = new DxAABBTree.Traversal[0];
+	private DxAABBTree pairTree1;
+	private DxAABBTree pairTree2;
+	private int seedCount;
+
+	/**
+	 * Creation.
+	 */
+	public static DxBVHSpace dBVHSpaceCreate(DxSpace space) {
+		return new DxBVHSpace(space);
+	}
+
+	private DxBVHSpace(DxSpace space) {
+		super(space);
+		type = dBVHSpaceClass;
+	}
+
+	@Override
+	public void setMargin(double margin) {
+		dUASSERT(margin >= 0, "margin must not be negative");
+		this.margin = margin;
+	}
+
+	@Override
+	public double getMargin() {
+		return margin;
+	}
+
+	@Override
+	void add(DxGeom g) {
+		CHECK_NOT_LOCKED(this);
+		g._bvhIdxEx = GEOM_INVALID_IDX;
+		super.add(g);
+	}
+
+	@Override
+	void remove(DxGeom g) {
+		CHECK_NOT_LOCKED(this);
+		dUASSERT(g.parent_space == this, "object is not in this space");
+		removeFromTree(g);
+		super.remove(g);
+	}
+
+	private void removeFromTree(DxGeom g) {
+		int idx = g._bvhIdxEx;
+		if (idx >= 0) {
+			dynamicTree.remove(idx);
+		} else if (idx <= GEOM_STATIC_IDX) {
+			staticTree.remove(GEOM_STATIC_IDX - idx);
+			staticPairsDirty = true;
+		} else if (idx == GEOM_INF_IDX) {
+			infGeomList.remove(g);
+		}
+		g._bvhIdxEx = GEOM_INVALID_IDX;
+	}
+
+	private static boolean isInfinite(DAABBC aabb) {
+		return aabb.getMin0() == -dInfinity || aabb.getMax0() == dInfinity ||
+				aabb.getMin1() == -dInfinity || aabb.getMax1() == dInfinity ||
+				aabb.getMin2() == -dInfinity || aabb.getMax2() == dInfinity;
+	}
+
+	/**
+	 * Move a geom with a fresh AABB to the right tree, or update its leaf.
+	 */
+	private void updateGeom(DxGeom g) {
+		int idx = g._bvhIdxEx;
+		if (isInfinite(g._aabb)) {
+			if (idx != GEOM_INF_IDX) {
+				removeFromTree(g);
+				infGeomList.add(g);
+				g._bvhIdxEx = GEOM_INF_IDX;
+			}
+		} else if (g.body == null && !(g instanceof DxSpace)) {
+			if (idx <= GEOM_STATIC_IDX) {
+				staticTree.update(GEOM_STATIC_IDX - idx, margin);
+			} else {
+				removeFromTree(g);
+				g._bvhIdxEx = GEOM_STATIC_IDX - staticTree.insert(g, margin);
+			}
+			// the cached pairs depend on the exact AABB, not the fat one
+			staticPairsDirty = true;
+		} else {
+			if (idx >= 0) {
+				dynamicTree.update(idx, margin);
+			} else {
+				removeFromTree(g);
+				g._bvhIdxEx = dynamicTree.insert(g, margin);
+			}
+		}
+	}
+
+	@Override
+	public void cleanGeoms() {
+		// compute the AABBs of all dirty geoms, clear the dirty flags and
+		// update the trees. dirty geoms are at the front of the list.
+		lock_count++;
+		for (DxGeom g = _first; g != null && g.hasFlagDirty(); g = g.getNext()) {
+			if (g instanceof DxSpace) {
+				((DxSpace) g).cleanGeoms();
+			}
+			g.recomputeAABB();
+			g.unsetFlagDirtyAndBad();
+			updateGeom(g);
+		}
+		lock_count--;
+	}
+
+	private void buildStaticPairs() {
+		staticPairCount = 0;
+		DxAABBTree.Traversal pairs = staticTree.collide();
+		for (int i = 0; i < pairs.pairCount; i++) {
+			DxGeom g1 = staticTree.getGeom(pairs.pairs[2 * i]);
+			DxGeom g2 = staticTree.getGeom(pairs.pairs[2 * i + 1]);
+			if (!g1._aabb.isDisjoint(g2._aabb)) {
+				if (staticPairCount * 2 == staticPairs.length) {
+					staticPairs = Arrays.copyOf(staticPairs, staticPairs.length * 2);
+				}
+				staticPairs[staticPairCount * 2] = g1;
+				staticPairs[staticPairCount * 2 + 1] = g2;
+				staticPairCount++;
+			}
+		}
+		staticPairsDirty = false;
+	}
+
+	@Override
+	void collideImpl(Object data, DNearCallback callback) {
+		dAASSERT(callback);
+
+		lock_count++;
+		cleanGeoms();
+
+		if (getCollideMaxThreadCount() > 1) {
+			// dynamic geoms against each other and against static geoms
+			collideParallel(dynamicTree, dynamicTree, data, callback);
+			collideParallel(dynamicTree, staticTree, data, callback);
+		} else {
+			// dynamic geoms against each other
+			collideTrees(dynamicTree, dynamicTree, data, callback);
+			// dynamic geoms against static geoms
+			collideTrees(dynamicTree, staticTree, data, callback);
+		}
+
+		// static geoms against each other
+		if (staticPairsDirty) {
+			buildStaticPairs();
+		}
+		for (int i = 0; i < staticPairCount; i++) {
+			DxGeom g1 = staticPairs[i * 2];
+			DxGeom g2 = staticPairs[i * 2 + 1];
+			if (GEOM_ENABLED(g1) && GEOM_ENABLED(g2)) {
+				collideAABBs(g1, g2, data, callback);
+			}
+		}
+
+		// infinite geoms against everything
+		int infSize = infGeomList.size();
+		for (int m = 0; m < infSize; m++) {
+			DxGeom g1 = infGeomList.get(m);
+			if (!GEOM_ENABLED(g1)) {
+				continue;
+			}
+			for (int n = m + 1; n < infSize; n++) {
+				DxGeom g2 = infGeomList.get(n);
+				if (GEOM_ENABLED(g2)) {
+					collideAABBs(g1, g2, data, callback);
+				}
+			}
+			collideTree(dynamicTree, g1, data, callback);
+			collideTree(staticTree, g1, data, callback);
+		}
+
+		lock_count--;
+	}
+
+	private void collideTrees(DxAABBTree tree1, DxAABBTree tree2, Object data, DNearCallback callback) {
+		DxAABBTree.Traversal pairs = tree1.collide(tree2);
+		for (int i = 0; i < pairs.pairCount; i++) {
+			DxGeom g1 = tree1.getGeom(pairs.pairs[2 * i]);
+			DxGeom g2 = tree2.getGeom(pairs.pairs[2 * i + 1]);
+			if (GEOM_ENABLED(g1) && GEOM_ENABLED(g2)) {
+				collideAABBs(g1, g2, data, callback);
+			}
+		}
+	}
+
+	/**
+	 * Split the traversal of two trees into a fixed number of seeds, which
+	 * are distributed in consecutive ranges to the tasks, so the pairs are
+	 * reported in the same order for any number of tasks.
+	 */
+	private void collideParallel(DxAABBTree tree1, DxAABBTree tree2, Object data, DNearCallback callback) {
+		int count = getCollideMaxThreadCount();
+		if (traversals.length < count) {
+			int old = traversals.length;
+			traversals = Arrays.copyOf(traversals, count);
+			for (int i = old; i < count; i++) {
+				traversals[i] = new DxAABBTree.Traversal();
+			}
+		}
+		pairTree1 = tree1;
+		pairTree2 = tree2;
+		seedCount = tree1.seed(tree2, SEED_COUNT);
+		DxCollideTasks tasks = getCollideTasks();
+		tasks.run(pairTask, count);
+		for (int t = 0; t < count; t++) {
+			int[] pairs = tasks.getPairs(t);
+			for (int i = 0, n = tasks.getPairCount(t); i < n; i++) {
+				collideAABBs(tree1.getGeom(pairs[2 * i]), tree2.getGeom(pairs[2 * i + 1]), data, callback);
+			}
+		}
+		pairTree1 = null;
+		pairTree2 = null;
+	}
+
+	private final DxCollideTasks.Task pairTask = new DxCollideTasks.Task() {
+		@Override
+		public void run(DxCollideTasks tasks, int index, int count) {
+			int from = seedCount * index / count;
+			int to = seedCount * (index + 1) / count;
+			DxAABBTree.Traversal t = traversals[index];
+			t.pairCount = 0;
+			for (int i = from; i < to; i++) {
+				pairTree1.collide(pairTree2, pairTree1.getSeed(2 * i), pairTree1.getSeed(2 * i + 1), t);
+			}
+			// only keep pairs whose exact AABBs overlap
+			for (int i = 0; i < t.pairCount; i++) {
+				DxGeom g1 = pairTree1.getGeom(t.pairs[2 * i]);
+				DxGeom g2 = pairTree2.getGeom(t.pairs[2 * i + 1]);
+				if (GEOM_ENABLED(g1) && GEOM_ENABLED(g2) && !g1._aabb.isDisjoint(g2._aabb)) {
+					tasks.addPair(index, t.pairs[2 * i], t.pairs[2 * i + 1]);
+				}
+			}
+		}
+	};
+
+	/**
+	 * Collide a geom with the geoms of a tree, the geom of the tree is passed
+	 * to the callback first.
+	 */
+	private void collideTree(DxAABBTree tree, DxGeom geom, Object data, DNearCallback callback) {
+		int n = tree.query(geom._aabb);
+		for (int i = 0; i < n; i++) {
+			DxGeom g = tree.getGeom(tree.getHit(i));
+			if (GEOM_ENABLED(g)) {
+				collideAABBs(g, geom, data, callback);
+			}
+		}
+	}
+
+	@Override
+	void collide2(Object data, DxGeom geom, DNearCallback callback) {
+		dAASSERT(geom != null && callback != null);
+
+		lock_count++;
+		cleanGeoms();
+		geom.recomputeAABB();
+
+		collideTree(dynamicTree, geom, data, callback);
+		collideTree(staticTree, geom, data, callback);
+		for (DxGeom g : infGeomList) {
+			if (GEOM_ENABLED(g)) {
+				collideAABBs(g, geom, data, callback);
+			}
+		}
+
+		lock_count--;
+	}
+}
@@ -134,6 +134,21 @@ public class DxBody extends DObject implements DBody, Cloneable {
 	private dxDampingParameters dampingp; // damping parameters, depends on flags
 	double max_angular_speed;      // limit the angular velocity to this magnitude
 
+	// persistent island membership, see DxIslandGraph
+	DxBody islandParent;		// union-find parent
+	DxBody islandNext, islandPrev;	// circular list of the bodies in the same set
+	int islandSize;			// set size, valid for roots only
+	int islandStamp;		// last island search/rebuild this body was visited in
+	boolean islandDirty;		// set (root) needs to be rebuilt
+	DxIslandGraph.SleepingIsland islandSleeping;	// island this body went to sleep with
+
+	// temporaries of dxStepBody(), a body is only stepped by one thread at a
+	// time. The ones for finite rotations are created on first use.
+	private final DQuaternion step_dq = new DQuaternion();
+	private DQuaternion step_q;
+	private DVector3 step_irv, step_frv;
+	private DVector3 step_plvel, step_pavel;
+
 	protected DxBody(DxWorld w)
 	{
 		super(w);
@@ -150,6 +165,7 @@ public class DxBody extends DObject implements DBody, Cloneable {
 		dAASSERT (w);
 		DxBody b = new DxBody(w);
 		b.firstjoint.set(null);
+		w.islandGraph().bodyCreated(b);
 		b.flags = 0;
 		b.geom = null;
 		b.average_lvel_buffer = null;
@@ -232,6 +248,11 @@ public class DxBody extends DObject implements DBody, Cloneable {
 			n.joint.removeJointReferencesFromAttachedBodies ();
 			n = next;
 		}
+		world.islandGraph().bodyDestroyed(this);
+		if (!dBodyIsEnabled()) {
+			// contacts of disabled bodies are kept for warm starting
+			world.contactImpulseCache().bodyDestroyed(this);
+		}
 		removeObjectFromList ();
 		world.nb--;
 
@@ -720,6 +741,7 @@ public class DxBody extends DObject implements DBody, Cloneable {
     public void dBodyEnable ()
     {
         flags &= ~dxBodyDisabled;
+        islandSleeping = null;
         adis_stepsleft = adis.idle_steps;
         adis_timeleft = adis.idle_time;
         // no code for average-processing needed here
@@ -739,6 +761,20 @@ public class DxBody extends DObject implements DBody, Cloneable {
 	public void dBodyDisable ()
 	{
 		flags |= dxBodyDisabled;
+		// the joints leave the islands until the body is enabled again
+		for (DxJointNode n = firstjoint.get(); n != null; n = n.next) {
+			n.joint.tag = -1;
+		}
+	}
+
+
+	/**
+	 * @return whether the body has been put to sleep with its island by 
+	 * auto-disabling. Bodies disabled by the user are not asleep.
+	 */
+	boolean dBodyIsAsleep ()
+	{
+		return islandSleeping != null && (flags & dxBodyDisabled) != 0;
 	}
 
 
@@ -1027,6 +1063,19 @@ public class DxBody extends DObject implements DBody, Cloneable {
 	// interval h, thereby adjusting its position and orientation.
 
 	void dxStepBody (double h)
+	{
+		dxStepBody(h, null, 0);
+	}
+
+	/**
+	 * Same as {@link #dxStepBody(double)}, but the position and 
+	 * orientation are updated with the velocity plus a pseudo velocity that is 
+	 * not kept in the body. This is used by the split impulse mode of the
+	 * QuickStep stepper.
+	 * @param pvel linear and angular pseudo velocity or <tt>null</tt>
+	 * @param pvelOfs offset of the pseudo velocity in <tt>pvel</tt>
+	 */
+	void dxStepBody (double h, double[] pvel, int pvelOfs)
 	{
 		// cap the angular velocity
 		if ((flags & dxBodyMaxAngularSpeed) != 0) {
@@ -1039,19 +1088,34 @@ public class DxBody extends DObject implements DBody, Cloneable {
 		}
 		// end of angular velocity cap
 
+		DVector3C lv = lvel, av = avel;
+		if (pvel != null) {
+			if (step_plvel == null) {
+				step_plvel = new DVector3();
+				step_pavel = new DVector3();
+			}
+			lv = step_plvel.set(lv).add(pvel[pvelOfs], pvel[pvelOfs+1], pvel[pvelOfs+2]);
+			av = step_pavel.set(av).add(pvel[pvelOfs+3], pvel[pvelOfs+4], pvel[pvelOfs+5]);
+		}
+
 		// handle linear velocity
 		//for (j=0; j<3; j++) _posr.pos.v[j] += h * lvel.v[j];
-		_posr.pos.eqSum(_posr.pos(), lvel, h);
+		_posr.pos.eqSum(_posr.pos(), lv, h);
 
 		if ((flags & dxBodyFlagFiniteRotation) != 0) {
-			DVector3 irv = new DVector3();	// infitesimal rotation vector
-			DQuaternion q = new DQuaternion();	// quaternion for finite rotation
+			if (step_q == null) {
+				step_q = new DQuaternion();
+				step_irv = new DVector3();
+				step_frv = new DVector3();
+			}
+			DVector3 irv = step_irv;	// infitesimal rotation vector
+			DQuaternion q = step_q;	// quaternion for finite rotation
 
 			if ((flags & dxBodyFlagFiniteRotationAxis) != 0) {
 				// split the angular velocity vector into a component along the finite
 				// rotation axis, and a component orthogonal to it.
-				DVector3 frv = new DVector3();		// finite rotation vector
-				double k = dCalcVectorDot3 (finite_rot_axis,avel);
+				DVector3 frv = step_frv;		// finite rotation vector
+				double k = dCalcVectorDot3 (finite_rot_axis,av);
 				//				frv.v[0] = finite_rot_axis.v[0] * k;
 				//				frv.v[1] = finite_rot_axis.v[1] * k;
 				//				frv.v[2] = finite_rot_axis.v[2] * k;
@@ -1059,7 +1123,7 @@ public class DxBody extends DObject implements DBody, Cloneable {
 				//				irv.v[0] = avel.v[0] - frv.v[0];
 				//				irv.v[1] = avel.v[1] - frv.v[1];
 				//				irv.v[2] = avel.v[2] - frv.v[2];
-				irv.eqDiff(avel, frv);
+				irv.eqDiff(av, frv);
 
 				// make a rotation quaternion q that corresponds to frv * h.
 				// compare this with the full-finite-rotation case below.
@@ -1074,7 +1138,7 @@ public class DxBody extends DObject implements DBody, Cloneable {
 			}
 			else {
 				// make a rotation quaternion q that corresponds to w * h
-				double wlen = avel.length();//dSqrt (avel.v[0]*avel.v[0] + avel.v[1]*avel.v[1] +
+				double wlen = av.length();//dSqrt (avel.v[0]*avel.v[0] + avel.v[1]*avel.v[1] +
 				//avel.v[2]*avel.v[2]);
 				h *= 0.5;
 				double theta = wlen * h;
@@ -1083,18 +1147,18 @@ public class DxBody extends DObject implements DBody, Cloneable {
 				//				q.v[1] = avel.v[0] * s;
 				//				q.v[2] = avel.v[1] * s;
 				//				q.v[3] = avel.v[2] * s;
-				q.set( dCos(theta), avel.get0()*s, avel.get1()*s, avel.get2()*s);
+				q.set( dCos(theta), av.get0()*s, av.get1()*s, av.get2()*s);
 			}
 
 			// do the finite rotation
-			DQuaternion q2 = new DQuaternion();
+			DQuaternion q2 = step_dq;
 			dQMultiply0 (q2,q,_q);
 			//for (j=0; j<4; j++) _q.v[j] = q2.v[j];
 			_q.set(q2);
 
 			// do the infitesimal rotation if required
 			if ((flags & dxBodyFlagFiniteRotationAxis) != 0) {
-				DQuaternion dq = new DQuaternion();
+				DQuaternion dq = step_dq;
 				dDQfromW (dq,irv,_q);
 				//for (j=0; j<4; j++) _q.v[j] += h * dq[j];
 				_q.sum( _q, dq, h);
@@ -1102,8 +1166,8 @@ public class DxBody extends DObject implements DBody, Cloneable {
 		}
 		else {
 			// the normal way - do an infitesimal rotation
-			DQuaternion dq = new DQuaternion();
-			dDQfromW (dq,avel,_q);
+			DQuaternion dq = step_dq;
+			dDQfromW (dq,av,_q);
 			//for (j=0; j<4; j++) _q.v[j] += h * dq[j];
 			_q.sum( _q, dq, h);
 		}
@@ -0,0 +1,606 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.internal.Common.dUASSERT;
+
+import java.util.Arrays;
+
+import org.ode4j.ode.DCollidePipeline;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DGeomPairBuffer;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.internal.Objects_H.DxPosRC;
+import org.ode4j.ode.threading.DThreadingImplementation;
+import org.ode4j.ode.threading.Threading_H.DThreadingFunctionsInfo;
+import org.ode4j.ode.threading.Threading_H.DxThreadingFunctionsInfo;
+
+/**
+ * Parallel narrowphase, see {@link DCollidePipeline}.
+ * <p>
+ * The candidate pairs are collected on the calling thread with
+ * {@link DSpace#collidePairs(DGeomPairBuffer)}, pairs with a nested space are
+ * expanded with {@link DxSpace#dSpaceCollide2}. The colliders
+ * then run as tasks of a {@link DxCollideTasks}, each task writes the
+ * contacts of its pairs into a contact buffer of its own. Finally the
+ * contacts are gathered in pair order.
+ * <p>
+ * Colliders only read the geoms, with one exception: the heightfield
+ * colliders move the other geom into heightfield space while they run. Pairs
+ * with a heightfield are therefore collided after all other pairs, and all
+ * heightfield pairs of a geom are collided by the same task.
+ * <p>
+ * The pair cache keeps the pairs of the last call with their contacts and
+ * the transforms the contacts were computed for. A pair that is found in the
+ * cache with both geoms within the tolerance is not collided, its contacts
+ * are copied on the calling thread. The transforms of a reused pair are kept,
+ * so small movements cannot add up to more than the tolerance.
+ */
+public class DxCollidePipeline implements DCollidePipeline {
+
+	/** Task of a heightfield pair before it is collided. */
+	private static final int HEIGHTFIELD_PAIR = -1;
+	/** Task of a pair with contacts from the cache. */
+	private static final int CACHED_PAIR = -2;
+	/** Position and rotation matrix of a geom. */
+	private static final int TRANSFORM_SIZE = 12;
+
+	private final DxCollideTasks tasks = new DxCollideTasks();
+	private int maxThreadCount = 1;
+	private int flags;
+	private final DGeomPairBuffer spacePairs = new DGeomPairBuffer();
+
+	// two geoms per pair
+	private DxGeom[] pairGeoms = new DxGeom[128];
+	private int pairCount;
+	// the task that collided a pair, and where its contacts are in the
+	// buffer of that task
+	private int[] pairTask = new int[64];
+	private int[] pairOffset = new int[64];
+	private int[] pairContactCount = new int[64];
+	private int[] pairContactStart = new int[64];
+	private int[] heightfieldPairs = new int[16];
+	private int heightfieldPairCount;
+
+	// the pairs of the last call and the pairs of this call, see PairCache
+	private boolean pairCacheEnabled = false;
+	private double linearTolerance = 0;
+	private double angularTolerance = 0;
+	private int cacheFlags;
+	private PairCache cache = new PairCache();
+	private PairCache nextCache = new PairCache();
+	private final TaskContacts cachedContacts = new TaskContacts();
+	private int[] pairCacheEntry = new int[64];
+	private int cachedPairCount;
+
+	private TaskContacts[] taskContacts = new TaskContacts[0];
+	private DContact[] contacts = new DContact[64];
+	private int contactCount;
+
+	/**
+	 * The contacts found by one task.
+	 */
+	private static final class TaskContacts {
+		DContactBuffer buffer = new DContactBuffer(64);
+		DContactGeomBuffer geomBuffer = buffer.getGeomBuffer();
+		int size = 64;
+		int count;
+
+		void ensureCapacity(int capacity) {
+			if (capacity > size) {
+				int newSize = Math.max(capacity, 2 * size);
+				DContactBuffer newBuffer = new DContactBuffer(newSize);
+				for (int i = 0; i < count; i++) {
+					newBuffer.set(i, buffer.get(i));
+				}
+				buffer = newBuffer;
+				geomBuffer = newBuffer.getGeomBuffer();
+				size = newSize;
+			}
+		}
+	}
+
+	/**
+	 * The pairs of one call of collide(), with their contacts and the 
+	 * transforms of both geoms the contacts were computed for. Pairs are
+	 * looked up by the identity of their geoms, in the same order.
+	 */
+	private static final class PairCache {
+		DxGeom[] geoms = new DxGeom[128];
+		double[] transforms = new double[128 * TRANSFORM_SIZE];
+		int[] contactStart = new int[64];
+		int[] contactCount = new int[64];
+		int pairCount;
+		DContactGeom[] contacts = new DContactGeom[0];
+		int contactTotal;
+		// pair index + 1 of each bucket, 0 if empty
+		int[] table = new int[128];
+
+		void clear() {
+			Arrays.fill(geoms, 0, 2 * pairCount, null);
+			for (int i = 0; i < contactTotal; i++) {
+				contacts[i].g1 = null;
+				contacts[i].g2 = null;
+			}
+			Arrays.fill(table, 0);
+			pairCount = 0;
+			contactTotal = 0;
+		}
+
+		private int bucket(DxGeom g1, DxGeom g2) {
+			int h = System.identityHashCode(g1) * 31 + System.identityHashCode(g2);
+			return (h ^ (h >>> 16)) & (table.length - 1);
+		}
+
+		/**
+		 * @return the index of the pair, or -1
+		 */
+		int find(DxGeom g1, DxGeom g2) {
+			for (int b = bucket(g1, g2); table[b] != 0; b = (b + 1) & (table.length - 1)) {
+				int p = table[b] - 1;
+				if (geoms[2 * p] == g1 && geoms[2 * p + 1] == g2) {
+					return p;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Append a pair without contacts.
+		 * @return the index of the pair
+		 */
+		int add(DxGeom g1, DxGeom g2) {
+			int p = pairCount;
+			if (p == contactStart.length) {
+				int n = 2 * p;
+				geoms = Arrays.copyOf(geoms, 2 * n);
+				transforms = Arrays.copyOf(transforms, 2 * n * TRANSFORM_SIZE);
+				contactStart = Arrays.copyOf(contactStart, n);
+				contactCount = Arrays.copyOf(contactCount, n);
+			}
+			if (2 * (p + 1) > table.length) {
+				table = new int[2 * table.length];
+				for (int i = 0; i < p; i++) {
+					insert(i);
+				}
+			}
+			geoms[2 * p] = g1;
+			geoms[2 * p + 1] = g2;
+			contactStart[p] = contactTotal;
+			contactCount[p] = 0;
+			pairCount = p + 1;
+			insert(p);
+			return p;
+		}
+
+		private void insert(int p) {
+			int b = bucket(geoms[2 * p], geoms[2 * p + 1]);
+			while (table[b] != 0) {
+				b = (b + 1) & (table.length - 1);
+			}
+			table[b] = p + 1;
+		}
+
+		/**
+		 * Append a contact to the last pair.
+		 */
+		void addContact(DContactGeom c) {
+			if (contactTotal == contacts.length) {
+				int old = contacts.length;
+				contacts = Arrays.copyOf(contacts, Math.max(64, 2 * old));
+				for (int i = old; i < contacts.length; i++) {
+					contacts[i] = new DContactGeom();
+				}
+			}
+			copy(c, contacts[contactTotal++]);
+			contactCount[pairCount - 1]++;
+		}
+	}
+
+	private static void copy(DContactGeom src, DContactGeom dst) {
+		dst.pos.set(src.pos);
+		dst.normal.set(src.normal);
+		dst.depth = src.depth;
+		dst.g1 = src.g1;
+		dst.g2 = src.g2;
+		dst.side1 = src.side1;
+		dst.side2 = src.side2;
+	}
+
+	public static DxCollidePipeline dCollidePipelineCreate() {
+		return new DxCollidePipeline();
+	}
+
+	private DxCollidePipeline() {
+		//
+	}
+
+	@Override
+	public void setThreadingImplementation(DThreadingFunctionsInfo functions_info,
+			DThreadingImplementation threading_impl) {
+		tasks.setThreadingImplementation((DxThreadingFunctionsInfo) functions_info, threading_impl);
+	}
+
+	@Override
+	public void setMaxThreadCount(int count) {
+		dUASSERT (count >= 1, "thread count must be at least 1");
+		maxThreadCount = count;
+	}
+
+	@Override
+	public int getMaxThreadCount() {
+		return maxThreadCount;
+	}
+
+	@Override
+	public int collide(DSpace space, int flags) {
+		dUASSERT((flags & DxGeom.NUMC_MASK) > 0, "no contacts requested");
+		if (flags != cacheFlags) {
+			// the cached contacts were computed for other flags
+			clearPairCache();
+			cacheFlags = flags;
+		}
+		this.flags = flags;
+		pairCount = 0;
+		heightfieldPairCount = 0;
+		cachedPairCount = 0;
+		space.collidePairs(spacePairs);
+		for (int i = 0, n = spacePairs.getPairCount(); i < n; i++) {
+			DxGeom o1 = (DxGeom) spacePairs.getGeom1(i);
+			DxGeom o2 = (DxGeom) spacePairs.getGeom2(i);
+			if (o1 instanceof DxSpace || o2 instanceof DxSpace) {
+				DxSpace.dSpaceCollide2(o1, o2, this, gatherCallback);
+			} else {
+				addPair(o1, o2);
+			}
+		}
+		spacePairs.clear();
+
+		int count = Math.max(1, Math.min(maxThreadCount, pairCount));
+		if (taskContacts.length < count) {
+			int old = taskContacts.length;
+			taskContacts = Arrays.copyOf(taskContacts, count);
+			for (int i = old; i < count; i++) {
+				taskContacts[i] = new TaskContacts();
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			taskContacts[i].count = 0;
+		}
+		tasks.run(narrowphaseTask, count);
+		if (heightfieldPairCount != 0) {
+			tasks.run(heightfieldTask, Math.min(count, heightfieldPairCount));
+		}
+		if (cachedPairCount != 0) {
+			copyCachedContacts();
+		}
+
+		int n = 0;
+		for (int p = 0; p < pairCount; p++) {
+			pairContactStart[p] = n;
+			int c = pairContactCount[p];
+			if (c == 0) {
+				continue;
+			}
+			if (n + c > contacts.length) {
+				contacts = Arrays.copyOf(contacts, Math.max(n + c, 2 * contacts.length));
+			}
+			DContactBuffer buffer = pairTask[p] == CACHED_PAIR ?
+					cachedContacts.buffer : taskContacts[pairTask[p]].buffer;
+			int offset = pairOffset[p];
+			for (int k = 0; k < c; k++) {
+				contacts[n++] = buffer.get(offset + k);
+			}
+		}
+		contactCount = n;
+		if (pairCacheEnabled) {
+			updatePairCache();
+		}
+		return n;
+	}
+
+	/**
+	 * @return whether the geom is within the tolerance of a transform in the
+	 * cache. Geoms that are not placeable never move.
+	 */
+	private boolean isUnchanged(DxGeom g, double[] t, int i) {
+		DxPosRC posr = g.final_posr();
+		if (posr == null) {
+			return true;
+		}
+		double dx = posr.pos().get0() - t[i];
+		double dy = posr.pos().get1() - t[i + 1];
+		double dz = posr.pos().get2() - t[i + 2];
+		if (dx*dx + dy*dy + dz*dz > linearTolerance * linearTolerance) {
+			return false;
+		}
+		for (int r = 0; r < 3; r++) {
+			for (int c = 0; c < 3; c++) {
+				if (Math.abs(posr.R().get(r, c) - t[i + 3 + 3*r + c]) > angularTolerance) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static void getTransform(DxGeom g, double[] t, int i) {
+		DxPosRC posr = g.final_posr();
+		if (posr == null) {
+			Arrays.fill(t, i, i + TRANSFORM_SIZE, 0);
+			return;
+		}
+		t[i] = posr.pos().get0();
+		t[i + 1] = posr.pos().get1();
+		t[i + 2] = posr.pos().get2();
+		for (int r = 0; r < 3; r++) {
+			for (int c = 0; c < 3; c++) {
+				t[i + 3 + 3*r + c] = posr.R().get(r, c);
+			}
+		}
+	}
+
+	/**
+	 * Copy the contacts of the pairs found in the cache into a buffer of
+	 * their own.
+	 */
+	private void copyCachedContacts() {
+		TaskContacts tc = cachedContacts;
+		tc.count = 0;
+		for (int p = 0; p < pairCount; p++) {
+			if (pairTask[p] != CACHED_PAIR) {
+				continue;
+			}
+			int e = pairCacheEntry[p];
+			int n = cache.contactCount[e];
+			tc.ensureCapacity(tc.count + n);
+			for (int k = 0; k < n; k++) {
+				copy(cache.contacts[cache.contactStart[e] + k], tc.buffer.get(tc.count + k).geom);
+			}
+			pairOffset[p] = tc.count;
+			pairContactCount[p] = n;
+			tc.count += n;
+		}
+	}
+
+	/**
+	 * Keep the pairs of this call for the next one. Reused pairs keep the
+	 * transforms their contacts were computed for.
+	 */
+	private void updatePairCache() {
+		PairCache next = nextCache;
+		next.clear();
+		for (int p = 0; p < pairCount; p++) {
+			DxGeom g1 = pairGeoms[2 * p];
+			DxGeom g2 = pairGeoms[2 * p + 1];
+			int e = next.add(g1, g2);
+			int t = 2 * e * TRANSFORM_SIZE;
+			if (pairTask[p] == CACHED_PAIR) {
+				System.arraycopy(cache.transforms, 2 * pairCacheEntry[p] * TRANSFORM_SIZE,
+						next.transforms, t, 2 * TRANSFORM_SIZE);
+			} else {
+				getTransform(g1, next.transforms, t);
+				getTransform(g2, next.transforms, t + TRANSFORM_SIZE);
+			}
+			for (int k = 0, start = pairContactStart[p]; k < pairContactCount[p]; k++) {
+				next.addContact(contacts[start + k].geom);
+			}
+		}
+		nextCache = cache;
+		cache = next;
+	}
+
+	private static final DNearCallback gatherCallback = new DNearCallback() {
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			if (o1 instanceof DxSpace || o2 instanceof DxSpace) {
+				DxSpace.dSpaceCollide2((DxGeom) o1, (DxGeom) o2, data, this);
+			} else {
+				((DxCollidePipeline) data).addPair((DxGeom) o1, (DxGeom) o2);
+			}
+		}
+	};
+
+	private void addPair(DxGeom g1, DxGeom g2) {
+		int p = pairCount;
+		if (p == pairTask.length) {
+			int n = 2 * p;
+			pairGeoms = Arrays.copyOf(pairGeoms, 2 * n);
+			pairTask = Arrays.copyOf(pairTask, n);
+			pairOffset = Arrays.copyOf(pairOffset, n);
+			pairContactCount = Arrays.copyOf(pairContactCount, n);
+			pairContactStart = Arrays.copyOf(pairContactStart, n);
+			pairCacheEntry = Arrays.copyOf(pairCacheEntry, n);
+		}
+		pairGeoms[2 * p] = g1;
+		pairGeoms[2 * p + 1] = g2;
+		pairContactCount[p] = 0;
+		if (pairCacheEnabled) {
+			int e = cache.find(g1, g2);
+			if (e >= 0 && isUnchanged(g1, cache.transforms, 2 * e * TRANSFORM_SIZE) &&
+					isUnchanged(g2, cache.transforms, (2 * e + 1) * TRANSFORM_SIZE)) {
+				pairTask[p] = CACHED_PAIR;
+				pairCacheEntry[p] = e;
+				cachedPairCount++;
+				pairCount = p + 1;
+				return;
+			}
+		}
+		if (g1 instanceof DxAbstractHeightfield || g2 instanceof DxAbstractHeightfield) {
+			pairTask[p] = HEIGHTFIELD_PAIR;
+			if (heightfieldPairCount == heightfieldPairs.length) {
+				heightfieldPairs = Arrays.copyOf(heightfieldPairs, 2 * heightfieldPairCount);
+			}
+			heightfieldPairs[heightfieldPairCount++] = p;
+		} else {
+			pairTask[p] = 0;
+		}
+		pairCount = p + 1;
+	}
+
+	/**
+	 * Collide a pair and append its contacts to the buffer of a task.
+	 */
+	private void collidePair(int p, int index) {
+		TaskContacts tc = taskContacts[index];
+		int max = flags & DxGeom.NUMC_MASK;
+		tc.ensureCapacity(tc.count + max);
+		int n = DxGeom.dCollide(pairGeoms[2 * p], pairGeoms[2 * p + 1], flags,
+				tc.geomBuffer.createView(tc.count), 1);
+		pairTask[p] = index;
+		pairOffset[p] = tc.count;
+		pairContactCount[p] = n;
+		tc.count += n;
+	}
+
+	/**
+	 * Collides a consecutive range of the pairs, except the heightfield pairs
+	 * and the pairs found in the cache.
+	 */
+	private final DxCollideTasks.Task narrowphaseTask = new DxCollideTasks.Task() {
+		@Override
+		public void run(DxCollideTasks tasks, int index, int count) {
+			int begin = (int) ((long) pairCount * index / count);
+			int end = (int) ((long) pairCount * (index + 1) / count);
+			for (int p = begin; p < end; p++) {
+				if (pairTask[p] != HEIGHTFIELD_PAIR && pairTask[p] != CACHED_PAIR) {
+					collidePair(p, index);
+				}
+			}
+		}
+	};
+
+	/**
+	 * Collides the heightfield pairs, the pairs of a geom always in the same
+	 * task.
+	 */
+	private final DxCollideTasks.Task heightfieldTask = new DxCollideTasks.Task() {
+		@Override
+		public void run(DxCollideTasks tasks, int index, int count) {
+			for (int i = 0; i < heightfieldPairCount; i++) {
+				int p = heightfieldPairs[i];
+				DxGeom g = pairGeoms[2 * p];
+				if (g instanceof DxAbstractHeightfield) {
+					g = pairGeoms[2 * p + 1];
+				}
+				if ((System.identityHashCode(g) & 0x7fffffff) % count == index) {
+					collidePair(p, index);
+				}
+			}
+		}
+	};
+
+	@Override
+	public void setPairCache(boolean enabled) {
+		if (!enabled) {
+			clearPairCache();
+		}
+		pairCacheEnabled = enabled;
+	}
+
+	@Override
+	public boolean getPairCache() {
+		return pairCacheEnabled;
+	}
+
+	@Override
+	public void setPairCacheTolerance(double linear, double angular) {
+		dUASSERT(linear >= 0 && angular >= 0, "tolerance must not be negative");
+		linearTolerance = linear;
+		angularTolerance = angular;
+	}
+
+	@Override
+	public double getPairCacheLinearTolerance() {
+		return linearTolerance;
+	}
+
+	@Override
+	public double getPairCacheAngularTolerance() {
+		return angularTolerance;
+	}
+
+	@Override
+	public void clearPairCache() {
+		cache.clear();
+		nextCache.clear();
+	}
+
+	@Override
+	public int getCachedPairCount() {
+		return cachedPairCount;
+	}
+
+	@Override
+	public int getPairCount() {
+		return pairCount;
+	}
+
+	@Override
+	public DGeom getPairGeom1(int pair) {
+		return pairGeoms[2 * pair];
+	}
+
+	@Override
+	public DGeom getPairGeom2(int pair) {
+		return pairGeoms[2 * pair + 1];
+	}
+
+	@Override
+	public int getPairContactStart(int pair) {
+		return pairContactStart[pair];
+	}
+
+	@Override
+	public int getPairContactCount(int pair) {
+		return pairContactCount[pair];
+	}
+
+	@Override
+	public int getContactCount() {
+		return contactCount;
+	}
+
+	@Override
+	public DContact getContact(int index) {
+		return contacts[index];
+	}
+
+	@Override
+	public void destroy() {
+		tasks.setThreadingImplementation(null, null);
+		Arrays.fill(pairGeoms, null);
+		Arrays.fill(contacts, null);
+		pairCount = 0;
+		contactCount = 0;
+		taskContacts = new TaskContacts[0];
+		clearPairCache();
+	}
+}
@@ -0,0 +1,168 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import java.util.Arrays;
+
+import org.ode4j.ode.internal.cpp4j.java.Ref;
+import org.ode4j.ode.threading.DThreadingImplementation;
+import org.ode4j.ode.threading.DxThreadingBase;
+import org.ode4j.ode.threading.Threading_H.CallContext;
+import org.ode4j.ode.threading.Threading_H.DCallReleasee;
+import org.ode4j.ode.threading.Threading_H.DCallWait;
+import org.ode4j.ode.threading.Threading_H.DxThreadingFunctionsInfo;
+import org.ode4j.ode.threading.Threading_H.dThreadedCallFunction;
+
+/**
+ * Runs the pair search of a space's collide() as a number of tasks. Each task
+ * writes the candidate pairs of its part of the search into its own buffer
+ * of ints, the space then reads the buffers in task order and calls the near
+ * callback on its own thread.
+ * <p>
+ * The tasks run on the threading implementation assigned to the space with
+ * {@link DxSpace#setThreadingImplementation}, or one after the other on the
+ * calling thread if there is none.
+ * <p>
+ * Spaces split the search into consecutive ranges of their serial search
+ * order, so the merged pairs come out in the same order for any number of
+ * tasks.
+ * <p>
+ * {@link DxCollidePipeline} runs its narrowphase as tasks as well, with
+ * contact buffers of its own instead of the pair buffers.
+ */
+final class DxCollideTasks implements CallContext {
+
+	/**
+	 * A part of a pair search.
+	 */
+	interface Task {
+		/**
+		 * Search the pairs of task <tt>index</tt> of <tt>count</tt> and add
+		 * them with {@link DxCollideTasks#addPair(int, int, int)}.
+		 * This is called concurrently for different tasks.
+		 */
+		void run(DxCollideTasks tasks, int index, int count);
+	}
+
+	private final DxThreadingBase threading = new DxThreadingBase();
+	private boolean threaded;
+	private DCallWait callWait;
+	private final Ref<DCallReleasee> groupReleasee = new Ref<DCallReleasee>();
+
+	private Task task;
+	private int taskCount;
+	// two ints per pair for each task
+	private int[][] pairs = new int[0][];
+	private int[] pairCounts = new int[0];
+
+	void setThreadingImplementation(DxThreadingFunctionsInfo functions_info,
+			DThreadingImplementation threading_impl) {
+		if (callWait != null) {
+			threading.FreeThreadedCallWait(callWait);
+			callWait = null;
+		}
+		threading.AssignThreadingImpl(functions_info, threading_impl);
+		threaded = threading_impl != null;
+	}
+
+	/**
+	 * Run <tt>count</tt> tasks and wait for all of them.
+	 */
+	void run(Task task, int count) {
+		if (pairs.length < count) {
+			int old = pairs.length;
+			pairs = Arrays.copyOf(pairs, count);
+			for (int i = old; i < count; i++) {
+				pairs[i] = new int[64];
+			}
+			pairCounts = new int[count];
+		}
+		Arrays.fill(pairCounts, 0, count, 0);
+		this.task = task;
+		this.taskCount = count;
+		if (!threaded || count == 1) {
+			for (int i = 0; i < count; i++) {
+				task.run(this, i, count);
+			}
+		} else {
+			if (callWait == null) {
+				callWait = threading.AllocThreadedCallWait();
+			}
+			threading.PreallocateResourcesForThreadedCalls(count + 1);
+			// the group call completes after all tasks, which are its dependencies
+			threading.PostThreadedCall(null, groupReleasee, count, null, callWait,
+					groupCallback, this, 0, "Collide Group");
+			threading.PostThreadedCallsGroup(null, count, groupReleasee.get(),
+					taskCallback, this, "Collide Task");
+			threading.WaitThreadedCallExclusively(null, callWait, null, "Collide Wait");
+		}
+		this.task = null;
+	}
+
+	private static final dThreadedCallFunction taskCallback = new dThreadedCallFunction() {
+		@Override
+		public boolean run(CallContext call_context, int instance_index, DCallReleasee this_releasee) {
+			DxCollideTasks tasks = (DxCollideTasks) call_context;
+			tasks.task.run(tasks, instance_index, tasks.taskCount);
+			return true;
+		}
+	};
+
+	private static final dThreadedCallFunction groupCallback = new dThreadedCallFunction() {
+		@Override
+		public boolean run(CallContext call_context, int instance_index, DCallReleasee this_releasee) {
+			return true;
+		}
+	};
+
+	/**
+	 * Add a pair to the buffer of a task, only to be called by that task.
+	 */
+	void addPair(int index, int a, int b) {
+		int n = pairCounts[index];
+		int[] buf = pairs[index];
+		if (2 * n + 2 > buf.length) {
+			buf = pairs[index] = Arrays.copyOf(buf, buf.length * 2);
+		}
+		buf[2 * n] = a;
+		buf[2 * n + 1] = b;
+		pairCounts[index] = n + 1;
+	}
+
+	/**
+	 * @return the number of pairs found by a task of the last run
+	 */
+	int getPairCount(int index) {
+		return pairCounts[index];
+	}
+
+	/**
+	 * @return the pair buffer of a task, pair <tt>i</tt> is at <tt>2*i</tt>
+	 * and <tt>2*i+1</tt>
+	 */
+	int[] getPairs(int index) {
+		return pairs[index];
+	}
+}
@@ -0,0 +1,498 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.internal.ErrorHandler.dMessage;
+
+import java.util.Arrays;
+
+import org.ode4j.math.DMatrix3C;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DContactGeom;
+
+
+/**
+ * Per-world cache of contact impulses (lambda) used for warm starting
+ * the QuickStep solver.
+ * <p>
+ * Contact joints are recreated every step, so their impulses are stored
+ * here between steps. An entry is keyed by the body pair and the contact
+ * feature (<tt>side1</tt>, <tt>side2</tt>). Contacts of the same key are 
+ * matched by their position in the frame of the first body.
+ * <p>
+ * The islands of a step only read the table. The impulses they store are
+ * collected in one {@link Batch} per island and merged into the table by 
+ * {@link #endStep()}, after all islands have been stepped. Only acquiring
+ * and submitting a batch is synchronized.
+ * <p>
+ * Entries are kept in two lists, ordered by the step in which they were
+ * last stored. Entries that were not stored again during a step are 
+ * evicted at its end, unless their bodies are disabled or asleep; these 
+ * are moved to the sleeping list and kept until they are stored again. 
+ * The number of entries is limited by <tt>maxSize</tt>. When the limit is
+ * reached, the oldest sleeping entry is evicted first, then the oldest
+ * entry that was not stored again during this step. Only if all entries
+ * were stored during this step, new contacts are not cached (and solved 
+ * from zero); a warning is issued the first time this happens.
+ */
+public class DxContactImpulseCache {
+
+	/** Maximal number of rows cached per contact (see DxJointContact). */
+	public static final int MAX_ROWS = 6;
+	
+	/** 
+	 * Contacts of the same feature that are further apart than this 
+	 * (in body1 coordinates) are considered different contacts. 
+	 */
+	private static final double MATCH_DISTANCE_SQ = 0.02 * 0.02;
+	
+	private static final int MIN_BUCKETS = 64;
+	
+	private static final class Entry {
+		DxBody b1, b2;
+		int side1, side2;
+		double x, y, z;
+		final double[] lambda = new double[MAX_ROWS];
+		int stamp;
+		boolean sleeping;
+		/** next entry of the bucket */
+		Entry next;
+		/** neighbours in the awake or sleeping list */
+		Entry older, newer;
+	}
+	
+	/** A doubly linked list of entries, the oldest entry first. */
+	private static final class EntryList {
+		Entry oldest, newest;
+		
+		void add(Entry e) {
+			e.older = newest;
+			e.newer = null;
+			if (newest == null) {
+				oldest = e;
+			} else {
+				newest.newer = e;
+			}
+			newest = e;
+		}
+		
+		void remove(Entry e) {
+			if (e.older == null) {
+				oldest = e.newer;
+			} else {
+				e.older.newer = e.newer;
+			}
+			if (e.newer == null) {
+				newest = e.older;
+			} else {
+				e.newer.older = e.older;
+			}
+			e.older = null;
+			e.newer = null;
+		}
+	}
+	
+	/**
+	 * The impulses stored by one island during a step. Batches are pooled 
+	 * by the cache, their arrays grow as needed.
+	 */
+	static final class Batch {
+		private int count = 0;
+		private DxBody[] bodies = new DxBody[2 * 16];
+		private int[] sides = new int[2 * 16];
+		private double[] pos = new double[3 * 16];
+		private double[] lambda = new double[MAX_ROWS * 16];
+		/** contact position in body1 coordinates, see load() */
+		private final double[] local = new double[3];
+		private Batch next;
+		
+		/**
+		 * Store the impulses of a contact for the next step.
+		 */
+		void store(DxBody b1, DxBody b2, DContactGeom geom, 
+				double[] lambda, int ofs, int rows) {
+			if (b1 == null) {
+				return;
+			}
+			if (count * 2 == bodies.length) {
+				int capacity = count * 2;
+				bodies = Arrays.copyOf(bodies, 2 * capacity);
+				sides = Arrays.copyOf(sides, 2 * capacity);
+				pos = Arrays.copyOf(pos, 3 * capacity);
+				this.lambda = Arrays.copyOf(this.lambda, MAX_ROWS * capacity);
+			}
+			bodies[count * 2] = b1;
+			bodies[count * 2 + 1] = b2;
+			sides[count * 2] = geom.side1;
+			sides[count * 2 + 1] = geom.side2;
+			toBodyFrame(b1, geom, pos, count * 3);
+			int lambdaOfs = count * MAX_ROWS;
+			System.arraycopy(lambda, ofs, this.lambda, lambdaOfs, rows);
+			for (int i = rows; i < MAX_ROWS; i++) {
+				this.lambda[lambdaOfs + i] = 0;
+			}
+			count++;
+		}
+		
+		private void reset() {
+			for (int i = 0; i < count * 2; i++) {
+				bodies[i] = null;
+			}
+			count = 0;
+		}
+	}
+
+	private Entry[] buckets = new Entry[MIN_BUCKETS];
+	private final EntryList awake = new EntryList();
+	private final EntryList sleeping = new EntryList();
+	private Entry freeList = null;
+	private int size = 0;
+	private int maxSize;
+	private int stamp = 0;
+	private boolean fullReported = false;
+	/** batches submitted during this step */
+	private Batch submitted = null;
+	private Batch freeBatches = null;
+	
+	DxContactImpulseCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+	
+	void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		while (size > maxSize) {
+			evictOldest();
+		}
+		fullReported = false;
+	}
+	
+	int getMaxSize() {
+		return maxSize;
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	void clear() {
+		for (int i = 0; i < buckets.length; i++) {
+			Entry e = buckets[i];
+			while (e != null) {
+				Entry next = e.next;
+				release(e);
+				e = next;
+			}
+			buckets[i] = null;
+		}
+		awake.oldest = awake.newest = null;
+		sleeping.oldest = sleeping.newest = null;
+		size = 0;
+		while (submitted != null) {
+			Batch b = submitted;
+			submitted = b.next;
+			releaseBatch(b);
+		}
+	}
+	
+	/**
+	 * Called once per step after all islands have been stepped. Merges the
+	 * submitted batches and evicts the entries that were not stored during 
+	 * this step, except for those of sleeping bodies.
+	 */
+	void endStep() {
+		stamp++;
+		while (submitted != null) {
+			Batch b = submitted;
+			submitted = b.next;
+			merge(b);
+			releaseBatch(b);
+		}
+		Entry e = awake.oldest;
+		while (e != null && e.stamp != stamp) {
+			Entry newer = e.newer;
+			awake.remove(e);
+			if (isAsleep(e)) {
+				e.sleeping = true;
+				sleeping.add(e);
+			} else {
+				remove(e);
+			}
+			e = newer;
+		}
+	}
+	
+	/**
+	 * Evict all entries of a body that is destroyed while disabled. Entries of
+	 * awake bodies are evicted by the next step anyway.
+	 */
+	void bodyDestroyed(DxBody b) {
+		bodyDestroyed(b, sleeping);
+		// the body may have been put to sleep by the last step
+		bodyDestroyed(b, awake);
+	}
+	
+	private void bodyDestroyed(DxBody b, EntryList list) {
+		Entry e = list.oldest;
+		while (e != null) {
+			Entry newer = e.newer;
+			if (e.b1 == b || e.b2 == b) {
+				list.remove(e);
+				remove(e);
+			}
+			e = newer;
+		}
+	}
+
+	/**
+	 * Copy the cached impulses of a contact into <tt>lambda</tt>. This only
+	 * reads the table and may be called by several islands concurrently.
+	 * @param scale factor applied to the cached values
+	 * @param batch the batch of the island
+	 * @return <tt>true</tt> if a matching entry was found, otherwise
+	 * <tt>lambda</tt> is left unmodified.
+	 */
+	boolean load(DxBody b1, DxBody b2, DContactGeom geom, 
+			double[] lambda, int ofs, int rows, double scale, Batch batch) {
+		if (size == 0 || b1 == null) {
+			return false;
+		}
+		final double[] local = batch.local;
+		toBodyFrame(b1, geom, local, 0);
+		Entry e = find(b1, b2, geom.side1, geom.side2, local[0], local[1], local[2], -1);
+		if (e == null) {
+			return false;
+		}
+		for (int i = 0; i < rows; i++) {
+			lambda[ofs + i] = e.lambda[i] * scale;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return an empty batch for the impulses of an island
+	 */
+	synchronized Batch acquireBatch() {
+		Batch b = freeBatches;
+		if (b == null) {
+			return new Batch();
+		}
+		freeBatches = b.next;
+		b.next = null;
+		return b;
+	}
+	
+	/**
+	 * Hand the impulses of an island over to the cache, they are merged 
+	 * by {@link #endStep()}. Empty batches are released right away.
+	 */
+	synchronized void submit(Batch b) {
+		if (b.count == 0) {
+			releaseBatch(b);
+			return;
+		}
+		b.next = submitted;
+		submitted = b;
+	}
+	
+	private void releaseBatch(Batch b) {
+		b.reset();
+		b.next = freeBatches;
+		freeBatches = b;
+	}
+	
+	private void merge(Batch b) {
+		for (int i = 0; i < b.count; i++) {
+			DxBody b1 = b.bodies[i * 2];
+			DxBody b2 = b.bodies[i * 2 + 1];
+			int side1 = b.sides[i * 2];
+			int side2 = b.sides[i * 2 + 1];
+			double x = b.pos[i * 3], y = b.pos[i * 3 + 1], z = b.pos[i * 3 + 2];
+			// Only reuse entries of previous steps, two contacts of this step 
+			// must not overwrite each other.
+			Entry e = find(b1, b2, side1, side2, x, y, z, stamp);
+			if (e == null) {
+				if (size >= maxSize && !evictStale()) {
+					if (!fullReported) {
+						fullReported = true;
+						dMessage (0, "warning: the warm starting cache is full (" + maxSize 
+								+ " contacts), further contacts are solved from zero");
+					}
+					continue;
+				}
+				if (size >= buckets.length) {
+					rehash(buckets.length * 2);
+				}
+				e = allocate();
+				e.b1 = b1;
+				e.b2 = b2;
+				e.side1 = side1;
+				e.side2 = side2;
+				int h = hash(b1, b2, side1, side2) & (buckets.length - 1);
+				e.next = buckets[h];
+				buckets[h] = e;
+				size++;
+			} else if (e.sleeping) {
+				e.sleeping = false;
+				sleeping.remove(e);
+			} else {
+				awake.remove(e);
+			}
+			awake.add(e);
+			e.x = x;
+			e.y = y;
+			e.z = z;
+			e.stamp = stamp;
+			System.arraycopy(b.lambda, i * MAX_ROWS, e.lambda, 0, MAX_ROWS);
+		}
+	}
+	
+	/**
+	 * Evict the oldest sleeping entry or else the oldest entry that was not
+	 * stored during this step.
+	 * @return <tt>false</tt> if there is no such entry
+	 */
+	private boolean evictStale() {
+		Entry e = sleeping.oldest;
+		if (e != null) {
+			sleeping.remove(e);
+		} else {
+			e = awake.oldest;
+			if (e == null || e.stamp == stamp) {
+				return false;
+			}
+			awake.remove(e);
+		}
+		remove(e);
+		return true;
+	}
+	
+	/** Evict the oldest entry, sleeping entries first. */
+	private void evictOldest() {
+		EntryList list = sleeping.oldest != null ? sleeping : awake;
+		Entry e = list.oldest;
+		list.remove(e);
+		remove(e);
+	}
+	
+	/** local = R1^T * (pos - p1) */
+	private static void toBodyFrame(DxBody b1, DContactGeom geom, double[] local, int ofs) {
+		DVector3C p = b1.posr().pos();
+		DMatrix3C R = b1.posr().R();
+		double dx = geom.pos.get0() - p.get0();
+		double dy = geom.pos.get1() - p.get1();
+		double dz = geom.pos.get2() - p.get2();
+		local[ofs] = R.get00()*dx + R.get10()*dy + R.get20()*dz;
+		local[ofs + 1] = R.get01()*dx + R.get11()*dy + R.get21()*dz;
+		local[ofs + 2] = R.get02()*dx + R.get12()*dy + R.get22()*dz;
+	}
+	
+	/** Disabled bodies are not stepped, so their contacts are not stored. */
+	private static boolean isAsleep(Entry e) {
+		return !e.b1.dBodyIsEnabled() && (e.b2 == null || !e.b2.dBodyIsEnabled());
+	}
+	
+	/**
+	 * @param skipStamp entries stored in this step are skipped
+	 */
+	private Entry find(DxBody b1, DxBody b2, int side1, int side2, 
+			double x, double y, double z, int skipStamp) {
+		int h = hash(b1, b2, side1, side2) & (buckets.length - 1);
+		Entry best = null;
+		double bestDist = MATCH_DISTANCE_SQ;
+		for (Entry e = buckets[h]; e != null; e = e.next) {
+			if (e.b1 != b1 || e.b2 != b2 || e.side1 != side1 || e.side2 != side2) {
+				continue;
+			}
+			if (e.stamp == skipStamp) {
+				continue;
+			}
+			double dx = e.x - x, dy = e.y - y, dz = e.z - z;
+			double dist = dx*dx + dy*dy + dz*dz;
+			if (dist <= bestDist) {
+				bestDist = dist;
+				best = e;
+			}
+		}
+		return best;
+	}
+	
+	/** Remove an entry, that is in neither list, from its bucket. */
+	private void remove(Entry e) {
+		int h = hash(e.b1, e.b2, e.side1, e.side2) & (buckets.length - 1);
+		if (buckets[h] == e) {
+			buckets[h] = e.next;
+		} else {
+			Entry prev = buckets[h];
+			while (prev.next != e) {
+				prev = prev.next;
+			}
+			prev.next = e.next;
+		}
+		release(e);
+		size--;
+	}
+	
+	private void rehash(int newLength) {
+		Entry[] old = buckets;
+		buckets = new Entry[newLength];
+		for (int i = 0; i < old.length; i++) {
+			Entry e = old[i];
+			while (e != null) {
+				Entry next = e.next;
+				int h = hash(e.b1, e.b2, e.side1, e.side2) & (newLength - 1);
+				e.next = buckets[h];
+				buckets[h] = e;
+				e = next;
+			}
+		}
+	}
+	
+	private Entry allocate() {
+		Entry e = freeList;
+		if (e != null) {
+			freeList = e.next;
+			e.next = null;
+			return e;
+		}
+		return new Entry();
+	}
+	
+	private void release(Entry e) {
+		e.b1 = null;
+		e.b2 = null;
+		e.sleeping = false;
+		e.older = null;
+		e.newer = null;
+		e.next = freeList;
+		freeList = e;
+	}
+	
+	private static int hash(DxBody b1, DxBody b2, int side1, int side2) {
+		int h = System.identityHashCode(b1) * 31 + System.identityHashCode(b2);
+		h = h * 31 + side1;
+		h = h * 31 + side2;
+		return h ^ (h >>> 16);
+	}
+}
@@ -41,6 +41,7 @@ import org.ode4j.ode.DContactGeom;
 import org.ode4j.ode.DContactGeomBuffer;
 import org.ode4j.ode.DGeom;
 import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DTracer;
 import org.ode4j.ode.OdeConfig;
 import org.ode4j.ode.internal.DBase;
 import org.ode4j.ode.internal.DxSpace;
@@ -171,6 +172,8 @@ public abstract class DxGeom extends DBase implements DGeom {
 	int _sapIdxDirtyEx; // TZ: Used by SAP-Space.
 	int _sapIdxGeomEx; // TZ: Used by SAP-Space.
 	Block _qtIdxEx; // TZ: Used by QuadTree-Space.
+	int _bvhIdxEx; // Used by BVH-Space.
+	int _hashIdxEx; // Used by Hash-Space.
 	
 	//double[] aabb = new double[6];	// cached AABB for this space
 	DAABB _aabb = new DAABB();	// cached AABB for this space
@@ -1478,6 +1481,7 @@ public abstract class DxGeom extends DBase implements DGeom {
 	private static class dColliderEntry {
 		DColliderFn fn;	// collider function, 0 = no function available
 		boolean reverse;		// 1 = reverse o1 and o2
+		boolean traced;		// reported to the DTracer, see isTracedCollider()
 	}
 	private static final dColliderEntry[][] colliders = new dColliderEntry[dGeomNumClasses][dGeomNumClasses];
 	private static boolean colliders_initialized = false;
@@ -1542,7 +1546,8 @@ public abstract class DxGeom extends DBase implements DGeom {
 		}
 
 		// setup space colliders
-		for (int i=dFirstSpaceClass; i <= dLastSpaceClass; i++) {
+		for (int i=0; i < dGeomNumClasses; i++) {
+			if (!isSpaceClass(i)) continue;
 			for (int j=0; j < dGeomNumClasses; j++) {
 				//setCollider (i,j, dCollideSpaceGeom);
 				//setCollider(i, j, createFn(dxGeom.class, "dCollideSpaceGeom"));
@@ -1634,6 +1639,37 @@ public abstract class DxGeom extends DBase implements DGeom {
 			setCollider (dHeightfieldClass,dTriMeshClass, new DxHeightfield.CollideHeightfield());//dCollideHeightfield);
 //		}
 //		//<-- dHeightfield Collision
+
+		for (int i = 0; i < dGeomNumClasses; i++) {
+			for (int j = 0; j < dGeomNumClasses; j++) {
+				colliders[i][j].traced = isTracedCollider(i, j, colliders[i][j].fn);
+			}
+		}
+	}
+
+	/**
+	 * @return whether the class ID is one of a space, the BVH space is 
+	 * after the user classes
+	 */
+	private static boolean isSpaceClass (int i)
+	{
+		return (i >= dFirstSpaceClass && i <= dLastSpaceClass) || i == dBVHSpaceClass;
+	}
+
+	/**
+	 * Only the expensive colliders are reported to the {@link DTracer}:
+	 * pairs with a trimesh, convex or heightfield, and the libccd colliders.
+	 */
+	private static boolean isTracedCollider (int i, int j, DColliderFn fn)
+	{
+		if (fn == null || isSpaceClass(i) || isSpaceClass(j)) {
+			return false;
+		}
+		if (i == dTriMeshClass || i == dConvexClass || i == dHeightfieldClass ||
+				j == dTriMeshClass || j == dConvexClass || j == dHeightfieldClass) {
+			return true;
+		}
+		return fn.getClass().getEnclosingClass() == CollisionLibccd.class;
 	}
 
 	/*extern */
@@ -1650,8 +1686,10 @@ public abstract class DxGeom extends DBase implements DGeom {
 
 		colliders[i][j].fn = fn;
 		colliders[i][j].reverse = false;
+		colliders[i][j].traced = isTracedCollider(i, j, fn);
 		colliders[j][i].fn = fn;
 		colliders[j][i].reverse = true;
+		colliders[j][i].traced = colliders[i][j].traced;
 	}
 
 	/**
@@ -1685,6 +1723,23 @@ public abstract class DxGeom extends DBase implements DGeom {
 		o2.recomputePosr();
 
 		dColliderEntry ce = colliders[o1.type][o2.type];
+		if (ce.traced) {
+			DTracer tracer = OdeConfig.getTracer();
+			if (tracer != null) {
+				Object token = tracer.beginNarrowphase(o1, o2, flags & NUMC_MASK);
+				if (token != null) {
+					int count = dCollideEntry (ce, o1, o2, flags, contacts);
+					tracer.endNarrowphase(token, count);
+					return count;
+				}
+			}
+		}
+		return dCollideEntry (ce, o1, o2, flags, contacts);
+	}
+
+	private static int dCollideEntry (dColliderEntry ce, DxGeom o1, DxGeom o2, int flags, 
+			DContactGeomBuffer contacts)
+	{
 		int count = 0;
 		if (ce.fn != null) {
 			if (ce.reverse) {
@@ -1720,6 +1775,25 @@ public abstract class DxGeom extends DBase implements DGeom {
 	//		    "invalid operation for locked space");
 
 
+	/**
+	 * @return whether neither geom can move, i.e. each one is static or 
+	 * attached to a body that has been put to sleep by auto-disabling, and
+	 * at least one of them is attached to a body of a world that skips these
+	 * pairs. Spaces are never asleep.
+	 * @see DxWorld#setAutoDisableSkipSleepingPairs(boolean)
+	 */
+	static boolean isAsleepPair(DxGeom g1, DxGeom g2) {
+		DxBody b = g1.body != null ? g1.body : g2.body;
+		return b != null && b.world.adis_skip_pairs && isAsleepOrStatic(g1) && isAsleepOrStatic(g2);
+	}
+
+	static boolean isAsleepOrStatic(DxGeom g) {
+		if (g.body == null) {
+			return !(g instanceof DxSpace);
+		}
+		return g.body.dBodyIsAsleep();
+	}
+
 	// collide two geoms together. for the hash table space, this is
 	// called if the two AABBs inhabit the same hash table cells.
 	// this only calls the callback function if the AABBs actually
@@ -1731,17 +1805,32 @@ public abstract class DxGeom extends DBase implements DGeom {
 
 	static void collideAABBs (DxGeom g1, DxGeom g2,
 			Object data, DNearCallback callback)
+	{
+		// the objects might actually intersect - call the space callback function
+		if (testAABBs (g1,g2)) callback.call (data,g1,g2);
+	}
+
+	/**
+	 * The tests of collideAABBs(), for spaces that write their pairs into a
+	 * buffer instead of calling a callback.
+	 * @return whether the geoms might intersect
+	 */
+	static boolean testAABBs (DxGeom g1, DxGeom g2)
 	{
 		dIASSERT((g1._gflags & GEOM_AABB_BAD)==0);
 		dIASSERT((g2._gflags & GEOM_AABB_BAD)==0);
 
 		// no contacts if both geoms on the same body, and the body is not 0
-		if (g1.body == g2.body && g1.body!= null) return;
+		if (g1.body == g2.body && g1.body!= null) return false;
+
+		// no contacts if neither geom can move, if enabled: islands that have
+		// been put to sleep are only woken up by contacts with awake bodies
+		if (isAsleepPair(g1, g2)) return false;
 
 		// test if the category and collide bitfields match
 		if ( ((g1.category_bits & g2.collide_bits)!=0 ||
 				(g2.category_bits & g1.collide_bits)!=0) == false) {
-			return;
+			return false;
 		}
 
 		// if the bounding boxes are disjoint then don't do anything
@@ -1756,16 +1845,13 @@ public abstract class DxGeom extends DBase implements DGeom {
 //			return;
 //		}
 		if (bounds1.isDisjoint( bounds2 )) {
-			return;
+			return false;
 		}
 
 		// check if either object is able to prove that it doesn't intersect the
 		// AABB of the other
-		if (!g1.AABBTest (g2,bounds2)) return;
-		if (!g2.AABBTest (g1,bounds1)) return;
-
-		// the objects might actually intersect - call the space callback function
-		callback.call (data,g1,g2);
+		if (!g1.AABBTest (g2,bounds2)) return false;
+		return g2.AABBTest (g1,bounds1);
 	}
 
 	@Override
@@ -24,17 +24,24 @@
  *************************************************************************/
 package org.ode4j.ode.internal;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.ode4j.ode.DAABB;
+import org.ode4j.ode.DGeomPairBuffer;
 import org.ode4j.ode.DHashSpace;
-import org.ode4j.ode.internal.cpp4j.java.RefInt;
 
 import static org.ode4j.ode.OdeMath.*;
 import static org.ode4j.ode.internal.cpp4j.C_All.*;
 
 /**
  * From collision_space.cpp
+ * <p>
+ * Unlike the C++ version, which builds a new hash table in every collide(),
+ * the cells of each geom are kept in a persistent hash table and only
+ * updated when a geom is dirty. All state is kept in arrays that are reused
+ * between steps, and the pairs that have already been tested are recorded in
+ * a hash set instead of an n*n bit matrix, so the memory grows linearly with
+ * the number of geoms and collide() does not allocate.
  */
 public class DxHashSpace extends DxSpace implements DHashSpace {
 	//****************************************************************************
@@ -59,25 +66,8 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		524287,1048573,2097143,4194301,8388593,16777213,33554393,
 		67108859,134217689,268435399,536870909,1073741789};
 
-
-	// an axis aligned bounding box in the hash table
-	private static class dxAABB {
-		int level;		// the level this is stored in (cell size = 2^level)
-		//TODO do not initialise?
-		int[] dbounds = new int[6];	// AABB bounds, discretized to cell size
-		DxGeom geom;		// corresponding geometry object (AABB stored here)
-		int index;		// index of this AABB, starting from 0
-	}
-
-
-	// a hash table node that represents an AABB that intersects a particular cell
-	// at a particular level
-	private static class Node {
-		Node next;		// next node in hash table collision list, 0 if none
-		int x,y,z;		// cell position in space, discretized to cell size
-		dxAABB aabb;		// axis aligned bounding box that intersects this cell
-	};
-
+	// each AABB occupies at most 8 cells at its level (see findLevel())
+	private static final int MAX_CELLS = 8;
 
 	// return the `level' of an AABB. the AABB will be put into cells at this
 	// level - the cell size will be 2^level. the level is chosen to be the
@@ -88,12 +78,6 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 
 	private static int findLevel (DAABB boundsV) //[6])
 	{
-		//double[] bounds = boundsV.v;
-		//	  if (bounds[0] <= -dInfinity || bounds[1] >= dInfinity ||
-		//	      bounds[2] <= -dInfinity || bounds[3] >= dInfinity ||
-		//	      bounds[4] <= -dInfinity || bounds[5] >= dInfinity) {
-		//	    return MAXINT;
-		//	  }
 		if (!boundsV.isValid()) {
 			return MAXINT;
 		}
@@ -107,27 +91,24 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		if (q2 > q) q = q2;
 
 		// find level such that 0.5 * 2^level < q <= 2^level
-		RefInt level = new RefInt();
-		frexp (q,level);	// q = (0.5 .. 1.0) * 2^level (definition of frexp)
-		return level.i;
+		// this is the exponent returned by frexp(q, &level), computed
+		// without allocating a RefInt.
+		if (q == 0 || Double.isNaN(q)) {
+			return 0;
+		}
+		return Math.getExponent(q) + 1;
 	}
+
 	// find a virtual memory address for a cell at the given level and x,y,z
 	// position.
-	// @@@ currently this is not very sophisticated, e.g. the scaling
-	// factors could be better designed to avoid collisions, and they should
-	// probably depend on the hash table physical size.
-
-	//	static unsigned long getVirtualAddress (int level, int x, int y, int z)
+	// The C++ version uses level*1000 + x*100 + y*10 + z, which maps
+	// many neighbouring cells to the same address. Now that the table
+	// persists, the coordinates are mixed with large odd factors instead.
 	private static int getVirtualAddress (int level, int x, int y, int z)
 	{
-		int r = level*1000 + x*100 + y*10 + z;
-		//TODO remove check ?!?
-		if (r>=Integer.MAX_VALUE) {
-		    throw new IllegalArgumentException("level: " + level + " x=" + x + 
-		            " y=" + y + " z="+ z);
-		}
-		return Math.abs(r);
-		//return level*1000 + x*100 + y*10 + z;
+		int r = level * 0x9E3779B1 + x * 0x85EBCA77 + y * 0xC2B2AE3D + z * 0x27D4EB2F;
+		r ^= r >>> 15;
+		return r & MAXINT;
 	}
 
 	//****************************************************************************
@@ -138,6 +119,43 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 	private int global_maxlevel;	// objects that need a level larger than this will be
 	// put in a "big objects" list instead of a hash table
 
+	// Every geom in this space has a slot, geom._hashIdxEx is the slot index.
+	private DxGeom[] slotGeom = new DxGeom[16];	// null for free slots
+	private int[] slotLevel = new int[16];	// level, or one of the LEVEL_... values
+	private int[] slotBounds = new int[6 * 16];	// AABB bounds, discretized to cell size
+	private int slotCount;	// number of used and free slots
+	private int[] freeSlots = new int[16];
+	private int freeCount;
+	// slot is not in the hash table or in the big boxes list
+	private static final int LEVEL_NONE = MAXINT - 1;
+	// slot is in the big boxes list, slotBounds[6*slot] is its position there
+	private static final int LEVEL_BIG = MAXINT;
+
+	// The hash table with all cells of all geoms. Node 8*slot+k is the k-th
+	// cell of a slot, nodes are chained via nodeNext, -1 ends a chain.
+	private int[] table = new int[0];
+	private int tableSize;
+	private int[] nodeNext = new int[MAX_CELLS * 16];
+	private int[] nodeCell = new int[3 * MAX_CELLS * 16];	// x,y,z of each node
+	// number of slots in the hash table for each level starting at global_minlevel
+	private int[] levelCount;
+	// put all geoms into the table again in the next cleanGeoms()
+	private boolean rebuildTable;
+
+	// slots of AABBs too big for the hash table
+	private int[] bigSlots = new int[16];
+	private int bigCount;
+
+	// pairs of slots that have been tested against each other in collide()
+	private final DxPairSet tested = new DxPairSet();
+	private final int[] db = new int[6];	// discrete bounds at current level
+	private final int[] newBounds = new int[6];	// discrete bounds in place()
+
+	// parallel pair search, see collideParallel()
+	private int collideMaxLevel;
+	private int[][] taskBounds = new int[0][];
+	private int[][] taskCandidates = new int[0][];
+
 	//	  dxHashSpace (dSpace _space);
 	//	  void setLevels (int minlevel, int maxlevel);
 	//	  void getLevels (int *minlevel, int *maxlevel);
@@ -153,6 +171,7 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		type = dHashSpaceClass;
 		global_minlevel = -3;
 		global_maxlevel = 10;
+		levelCount = new int[global_maxlevel - global_minlevel + 1];
 	}
 
 
@@ -162,6 +181,12 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		dAASSERT (minlevel <= maxlevel);
 		global_minlevel = minlevel;
 		global_maxlevel = maxlevel;
+		// the cells depend on the levels, start over
+		for (int slot = 0; slot < slotCount; slot++) {
+			slotLevel[slot] = LEVEL_NONE;
+		}
+		bigCount = 0;
+		rebuildTable = true;
 	}
 
 
@@ -178,29 +203,228 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 	}
 
 
+	@Override
+	void add (DxGeom g)
+	{
+		CHECK_NOT_LOCKED (this);
+		int slot;
+		if (freeCount > 0) {
+			slot = freeSlots[--freeCount];
+		} else {
+			if (slotCount == slotGeom.length) {
+				growSlots();
+			}
+			slot = slotCount++;
+		}
+		slotGeom[slot] = g;
+		slotLevel[slot] = LEVEL_NONE;
+		g._hashIdxEx = slot;
+		// the new geom is dirty and put into the table by cleanGeoms()
+		super.add(g);
+	}
+
+
+	@Override
+	void remove (DxGeom g)
+	{
+		CHECK_NOT_LOCKED (this);
+		dUASSERT (g.parent_space == this, "object is not in this space");
+		int slot = g._hashIdxEx;
+		unplace(slot);
+		slotGeom[slot] = null;
+		if (freeCount == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+		}
+		freeSlots[freeCount++] = slot;
+		g._hashIdxEx = -1;
+		super.remove(g);
+	}
+
+
+	private void growSlots()
+	{
+		int cap = slotGeom.length * 2;
+		slotGeom = Arrays.copyOf(slotGeom, cap);
+		slotLevel = Arrays.copyOf(slotLevel, cap);
+		slotBounds = Arrays.copyOf(slotBounds, 6 * cap);
+		nodeNext = Arrays.copyOf(nodeNext, MAX_CELLS * cap);
+		nodeCell = Arrays.copyOf(nodeCell, 3 * MAX_CELLS * cap);
+	}
+
+
+	private int getTableIndex (int level, int x, int y, int z)
+	{
+		return getVirtualAddress (level,x,y,z) % tableSize;
+	}
+
+
+	/**
+	 * Put all slots into a new table that is large enough for the slot
+	 * capacity.
+	 */
+	private void rebuildTable()
+	{
+		// compute hash table size sz to be a prime > 8*n
+		int i;
+		int n = slotGeom.length;
+		for (i=0; i<NUM_PRIMES; i++) {
+			if (prime[i] >= (8*n)) break;
+		}
+		if (i >= NUM_PRIMES)
+			i = NUM_PRIMES-1;	// probably pointless
+		tableSize = prime[i];
+		if (table.length < tableSize) {
+			table = new int[tableSize];
+		}
+		Arrays.fill(table, 0, tableSize, -1);
+		if (levelCount.length != global_maxlevel - global_minlevel + 1) {
+			levelCount = new int[global_maxlevel - global_minlevel + 1];
+		} else {
+			Arrays.fill(levelCount, 0);
+		}
+		bigCount = 0;
+		for (int slot = 0; slot < slotCount; slot++) {
+			if (slotGeom[slot] != null) {
+				slotLevel[slot] = LEVEL_NONE;
+				place(slot);
+			}
+		}
+		rebuildTable = false;
+	}
+
+
+	/**
+	 * Put a slot into the hash table or the big boxes list, according to the
+	 * AABB of its geom.
+	 */
+	private void place (int slot)
+	{
+		DxGeom geom = slotGeom[slot];
+		// compute level, but prevent cells from getting too small
+		int level = findLevel (geom._aabb);
+		if (level < global_minlevel) level = global_minlevel;
+		if (level <= global_maxlevel) {
+			// cellsize = 2^level
+			double cellsize = ldexp (1.0,level);
+			// discretize AABB position to cell size
+			int b = 6 * slot;
+			boolean same = slotLevel[slot] == level;
+			for (int i=0; i < 3; i++) {
+				int min = (int)Math.floor (geom._aabb.getMin(i)/cellsize);
+				int max = (int)Math.floor (geom._aabb.getMax(i)/cellsize);
+				same &= slotBounds[b+2*i] == min && slotBounds[b+2*i+1] == max;
+				newBounds[2*i] = min;
+				newBounds[2*i+1] = max;
+			}
+			if (same) {
+				// still in the same cells
+				return;
+			}
+			unplace(slot);
+			System.arraycopy(newBounds, 0, slotBounds, b, 6);
+			slotLevel[slot] = level;
+			levelCount[level - global_minlevel]++;
+			// add the AABB to the hash table (may need to add it to up to 8 cells)
+			int node = MAX_CELLS * slot;
+			for (int xi = newBounds[0]; xi <= newBounds[1]; xi++) {
+				for (int yi = newBounds[2]; yi <= newBounds[3]; yi++) {
+					for (int zi = newBounds[4]; zi <= newBounds[5]; zi++) {
+						dIASSERT (node < MAX_CELLS * (slot + 1));
+						int hi = getTableIndex (level,xi,yi,zi);
+						nodeCell[3*node] = xi;
+						nodeCell[3*node+1] = yi;
+						nodeCell[3*node+2] = zi;
+						nodeNext[node] = table[hi];
+						table[hi] = node;
+						node++;
+					}
+				}
+			}
+		}
+		else if (slotLevel[slot] != LEVEL_BIG) {
+			// aabb is too big, put it in the big_boxes list
+			unplace(slot);
+			if (bigCount == bigSlots.length) {
+				bigSlots = Arrays.copyOf(bigSlots, bigCount * 2);
+			}
+			slotBounds[6*slot] = bigCount;
+			bigSlots[bigCount++] = slot;
+			slotLevel[slot] = LEVEL_BIG;
+		}
+	}
+
+
+	/**
+	 * Remove a slot from the hash table or the big boxes list.
+	 */
+	private void unplace (int slot)
+	{
+		int level = slotLevel[slot];
+		if (level == LEVEL_BIG) {
+			int pos = slotBounds[6*slot];
+			int last = bigSlots[--bigCount];
+			bigSlots[pos] = last;
+			slotBounds[6*last] = pos;
+		}
+		else if (level != LEVEL_NONE) {
+			levelCount[level - global_minlevel]--;
+			int b = 6 * slot;
+			int cells = (slotBounds[b+1] - slotBounds[b] + 1) * (slotBounds[b+3] - slotBounds[b+2] + 1) *
+					(slotBounds[b+5] - slotBounds[b+4] + 1);
+			for (int node = MAX_CELLS * slot; node < MAX_CELLS * slot + cells; node++) {
+				int hi = getTableIndex (level,nodeCell[3*node],nodeCell[3*node+1],nodeCell[3*node+2]);
+				// unlink the node from its chain
+				if (table[hi] == node) {
+					table[hi] = nodeNext[node];
+				} else {
+					int prev = table[hi];
+					while (nodeNext[prev] != node) {
+						prev = nodeNext[prev];
+					}
+					nodeNext[prev] = nodeNext[node];
+				}
+			}
+		}
+		slotLevel[slot] = LEVEL_NONE;
+	}
+
+
 	@Override
 	public void cleanGeoms()
 	{
-		// compute the AABBs of all dirty geoms, and clear the dirty flags
+		// compute the AABBs of all dirty geoms, and clear the dirty flags.
+		// dirty geoms are at the front of the list, move their cells.
 		lock_count++;
-		for (DxGeom g : getGeoms()) {
-			//if ((g._gflags & GEOM_DIRTY)==0) break;
-			if (!g.hasFlagDirty()) break;
+		if (tableSize < 8 * slotGeom.length && tableSize < prime[NUM_PRIMES-1]) {
+			// the slots have grown
+			rebuildTable = true;
+		}
+		for (DxGeom g = _first; g != null && g.hasFlagDirty(); g = g.getNext()) {
 			if (g instanceof DxSpace) {
 				((DxSpace)g).cleanGeoms();
 			}
 			g.recomputeAABB();
 			//g._gflags &= (~(GEOM_DIRTY|GEOM_AABB_BAD));
 			g.unsetFlagDirtyAndBad();
+			if (!rebuildTable) {
+				place(g._hashIdxEx);
+			}
+		}
+		if (rebuildTable) {
+			rebuildTable();
 		}
 		lock_count--;
 	}
 
 	@Override
-	public void collide (Object data, DNearCallback callback)
+	void collideImpl (Object data, DNearCallback callback)
+	{
+		collideFromPairs (data, callback);
+	}
+
+	@Override
+	void collidePairsImpl (DGeomPairBuffer pairs)
 	{
-		dAASSERT(callback);
-		//dxGeom geom; //*
 		int i,maxlevel;
 
 		// 0 or 1 geoms can't collide with anything
@@ -209,141 +433,59 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		lock_count++;
 		cleanGeoms();
 
-		// create a list of auxiliary information for all geom axis aligned bounding
-		// boxes. set the level for all AABBs. put AABBs larger than the space's
-		// global_maxlevel in the big_boxes list, check everything else against
-		// that list at the end. for AABBs that are not too big, record the maximum
-		// level that we need.
-
-		ArrayList<dxAABB> hash_boxes = new ArrayList<dxAABB>();	// list of AABBs in hash table
-		ArrayList<dxAABB> big_boxes = new ArrayList<dxAABB>();	// list of AABBs too big for hash table
-		maxlevel = global_minlevel - 1;
-		for (DxGeom geom : getGeoms()) {
-			if (!GEOM_ENABLED(geom)){
-				continue;
-			}
-			dxAABB aabb = new dxAABB(); //(dxAABB) ALLOCA (sizeof(dxAABB));
-			aabb.geom = geom;
-			// compute level, but prevent cells from getting too small
-			int level = findLevel (geom._aabb);
-			if (level < global_minlevel) level = global_minlevel;
-			if (level <= global_maxlevel) {
-				aabb.level = level;
-				if (level > maxlevel) maxlevel = level;
-				// cellsize = 2^level
-				double cellsize = ldexp (1.0,level);
-				// discretize AABB position to cell size
-				for (i=0; i < 3; i++) {
-					aabb.dbounds[2*i] = (int)Math.floor (geom._aabb.getMin(i)/cellsize);
-					aabb.dbounds[2*i+1] = (int)Math.floor (geom._aabb.getMax(i)/cellsize);
-				}
-				// set AABB index
-				aabb.index = hash_boxes.size();
-	            // aabb goes in main list
-	            hash_boxes.add(aabb);
-			}
-			else {
-				// aabb is too big, put it in the big_boxes list. we don't care about
-				// setting level, dbounds, index, or the maxlevel
-				big_boxes.add(aabb);
-			}
-		}
-
-	    int n = hash_boxes.size(); // number of AABBs in main list
+		// the geoms are numbered by their slots
+		int base = pairs.addGeoms(slotGeom, slotCount);
 
-		// for `n' objects, an n*n array of bits is used to record if those objects
-		// have been intersection-tested against each other yet. this array can
-		// grow large with high n, but oh well...
-		int tested_rowsize = (n+7) >> 3;	// number of bytes needed for n bits
-		//std::vector<unsigned char> tested(n * tested_rowsize);
-		int[] tested = new int[n * tested_rowsize];
-
-		// create a hash table to store all AABBs. each AABB may take up to 8 cells.
-		// we use chaining to resolve collisions, but we use a relatively large table
-		// to reduce the chance of collisions.
-
-		// compute hash table size sz to be a prime > 8*n
-		for (i=0; i<NUM_PRIMES; i++) {
-			if (prime[i] >= (8*n)) break;
-		}
-		if (i >= NUM_PRIMES) 
-			i = NUM_PRIMES-1;	// probably pointless
-		int sz = prime[i];
-
-		// allocate and initialize hash table node pointers
-		//std::vector<Node*> table(sz);
-		Node[] table = new Node[sz];
-
-		// add each AABB to the hash table (may need to add it to up to 8 cells)
-		//TODO use proper List here!
-		//for (aabb=first_aabb; aabb != null; aabb=aabb.next) {
-		for (dxAABB aabb: hash_boxes) {
-			int[] dbounds = aabb.dbounds;
-			for (int xi = dbounds[0]; xi <= dbounds[1]; xi++) {
-				for (int yi = dbounds[2]; yi <= dbounds[3]; yi++) {
-					for (int zi = dbounds[4]; zi <= dbounds[5]; zi++) {
-						// get the hash index  TODO TZ: cast to int
-						int hi = getVirtualAddress (aabb.level,xi,yi,zi) % sz;
-						// add a new node to the hash table
-						Node node = new Node();//(Node) ALLOCA (sizeof (Node));
-						node.x = xi;
-						node.y = yi;
-						node.z = zi;
-						node.aabb = aabb;
-						node.next = table[hi];
-						table[hi] = node;
-					}
-				}
-			}
+		// the maximum level that we need
+		for (maxlevel = global_maxlevel; maxlevel >= global_minlevel; maxlevel--) {
+			if (levelCount[maxlevel - global_minlevel] > 0) break;
 		}
 
-		// now that all AABBs are loaded into the hash table, we do the actual
+		// now that all AABBs are in the hash table, we do the actual
 		// collision detection. for all AABBs, check for other AABBs in the
 		// same cells for collisions, and then check for other AABBs in all
 		// intersecting higher level cells.
 
-		int[] db = new int[6];			// discrete bounds at current level
-		for (dxAABB aabb: hash_boxes) {
+		if (getCollideMaxThreadCount() > 1) {
+			collideParallel(pairs, base, maxlevel);
+			lock_count--;
+			return;
+		}
+
+		tested.clear();
+		for (int slot = 0; slot < slotCount; slot++) {
+			int slotLvl = slotLevel[slot];
+			if (slotLvl == LEVEL_NONE || slotLvl == LEVEL_BIG) continue;
+			DxGeom geom = slotGeom[slot];
+			if (!GEOM_ENABLED(geom)) continue;
 			// we are searching for collisions with aabb
-			for (i=0; i<6; i++) db[i] = aabb.dbounds[i];
-			for (int level = aabb.level; level <= maxlevel; level++) {
+			System.arraycopy(slotBounds, 6 * slot, db, 0, 6);
+			for (int level = slotLvl; level <= maxlevel; level++) {
 				for (int xi = db[0]; xi <= db[1]; xi++) {
 					for (int yi = db[2]; yi <= db[3]; yi++) {
 						for (int zi = db[4]; zi <= db[5]; zi++) {
-							// get the hash index
-							//int TZ long 
-							int hi = getVirtualAddress (level,xi,yi,zi) % sz;
 							// search all nodes at this index
-							for (Node node = table[hi]; node != null; node=node.next) {
+							for (int node = table[getTableIndex (level,xi,yi,zi)]; node != -1; node = nodeNext[node]) {
 								// node points to an AABB that may intersect aabb
-								if (node.aabb == aabb) 
+								int other = node / MAX_CELLS;
+								if (other == slot)
 									continue;
-								if (node.aabb.level == level &&
-										node.x == xi && node.y == yi && node.z == zi) {
+								if (slotLevel[other] == level && nodeCell[3*node] == xi &&
+										nodeCell[3*node+1] == yi && nodeCell[3*node+2] == zi) {
 									// see if aabb and node->aabb have already been tested
 									// against each other
-									//TZ unsigned char mask;
-									int mask;
-									if (aabb.index <= node.aabb.index) {
-										i = (aabb.index * tested_rowsize)+(node.aabb.index >> 3);
-										mask = 1 << (node.aabb.index & 7);
-									}
-									else {
-										i = (node.aabb.index * tested_rowsize)+(aabb.index >> 3);
-										mask = 1 << (aabb.index & 7);
-									}
-									dIASSERT (i >= 0 && i < (tested_rowsize*n));
-									if ((tested[i] & mask)==0) {
-										collideAABBs (aabb.geom,node.aabb.geom,data,callback);
+									DxGeom g2 = slotGeom[other];
+									if (GEOM_ENABLED(g2) && tested.add(slot, other) &&
+											testAABBs (geom,g2)) {
+										pairs.addPair (base+slot, base+other);
 									}
-									tested[i] |= mask;
 								}
 							}
 						}
 					}
 				}
 				// get the discrete bounds for the next level up
-				for (i=0; i<6; i++) 
+				for (i=0; i<6; i++)
 					db[i] >>= 1;
 			}
 		}
@@ -351,31 +493,123 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		// every AABB in the normal list must now be intersected against every
 		// AABB in the big_boxes list. so let's hope there are not too many objects
 		// in the big_boxes list.
-		for (dxAABB aabb: hash_boxes) {
-			for (dxAABB aabb2: big_boxes) {
-				collideAABBs (aabb.geom,aabb2.geom,data,callback);
+		if (bigCount > 0) {
+			for (int slot = 0; slot < slotCount; slot++) {
+				int slotLvl = slotLevel[slot];
+				if (slotLvl == LEVEL_NONE || slotLvl == LEVEL_BIG) continue;
+				DxGeom geom = slotGeom[slot];
+				if (!GEOM_ENABLED(geom)) continue;
+				for (int k = 0; k < bigCount; k++) {
+					DxGeom g2 = slotGeom[bigSlots[k]];
+					if (GEOM_ENABLED(g2) && testAABBs (geom,g2)) pairs.addPair (base+slot, base+bigSlots[k]);
+				}
 			}
 		}
 
-		// intersected all AABBs in the big_boxes list together
-		for (dxAABB aabb: big_boxes) {
-			for (dxAABB aabb2: big_boxes) {
-				collideAABBs (aabb.geom,aabb2.geom,data,callback);
+		collideBigBoxes (pairs, base);
+
+		lock_count--;
+	}
+
+	/**
+	 * Split the slots into consecutive ranges and search the pairs of each
+	 * range in a task. Instead of the tested set, a pair is only reported
+	 * by the slot at the lower level, or by the lower slot if both are at the
+	 * same level, and each slot sorts out the duplicates among its own pairs.
+	 */
+	private void collideParallel (DGeomPairBuffer pairs, int base, int maxlevel)
+	{
+		int count = getCollideMaxThreadCount();
+		if (taskBounds.length < count) {
+			taskBounds = new int[count][6];
+			taskCandidates = new int[count][16];
+		}
+		collideMaxLevel = maxlevel;
+		DxCollideTasks tasks = getCollideTasks();
+		tasks.run(pairTask, count);
+		for (int t = 0; t < count; t++) {
+			int[] found = tasks.getPairs(t);
+			for (int i = 0, n = tasks.getPairCount(t); i < n; i++) {
+				int slot = found[2*i];
+				int other = found[2*i+1];
+				if (testAABBs (slotGeom[slot],slotGeom[other])) pairs.addPair (base+slot, base+other);
 			}
 		}
 
-		//(TZ): Not necessary in Java
-//	    // deallocate table
-//	    for (int ii=0; ii<table.length; ++i)
-//	        for (Node node = table[ii]; node != null;) {
-//	            Node next = node.next;
-//	            delete node;
-//	            node = next;
-//	        }
+		collideBigBoxes (pairs, base);
+	}
 
-		lock_count--;
+	/**
+	 * Intersect all AABBs in the big_boxes list together.
+	 */
+	private void collideBigBoxes (DGeomPairBuffer pairs, int base)
+	{
+		for (int k = 0; k < bigCount; k++) {
+			DxGeom geom = slotGeom[bigSlots[k]];
+			if (!GEOM_ENABLED(geom)) continue;
+			for (int k2 = k + 1; k2 < bigCount; k2++) {
+				DxGeom g2 = slotGeom[bigSlots[k2]];
+				if (GEOM_ENABLED(g2) && testAABBs (geom,g2)) pairs.addPair (base+bigSlots[k], base+bigSlots[k2]);
+			}
+		}
 	}
 
+	private final DxCollideTasks.Task pairTask = new DxCollideTasks.Task() {
+		@Override
+		public void run(DxCollideTasks tasks, int index, int count) {
+			int from = (int) ((long) slotCount * index / count);
+			int to = (int) ((long) slotCount * (index + 1) / count);
+			int[] db = taskBounds[index];
+			for (int slot = from; slot < to; slot++) {
+				int slotLvl = slotLevel[slot];
+				if (slotLvl == LEVEL_NONE || slotLvl == LEVEL_BIG) continue;
+				DxGeom geom = slotGeom[slot];
+				if (!GEOM_ENABLED(geom)) continue;
+				int[] candidates = taskCandidates[index];
+				int n = 0;
+				System.arraycopy(slotBounds, 6 * slot, db, 0, 6);
+				for (int level = slotLvl; level <= collideMaxLevel; level++) {
+					for (int xi = db[0]; xi <= db[1]; xi++) {
+						for (int yi = db[2]; yi <= db[3]; yi++) {
+							for (int zi = db[4]; zi <= db[5]; zi++) {
+								for (int node = table[getTableIndex (level,xi,yi,zi)]; node != -1; node = nodeNext[node]) {
+									int other = node / MAX_CELLS;
+									if (other == slot || (level == slotLvl && other < slot))
+										continue;
+									if (slotLevel[other] == level && nodeCell[3*node] == xi &&
+											nodeCell[3*node+1] == yi && nodeCell[3*node+2] == zi) {
+										DxGeom g2 = slotGeom[other];
+										if (GEOM_ENABLED(g2) && !geom._aabb.isDisjoint(g2._aabb)) {
+											if (n == candidates.length) {
+												candidates = taskCandidates[index] = Arrays.copyOf(candidates, n * 2);
+											}
+											candidates[n++] = other;
+										}
+									}
+								}
+							}
+						}
+					}
+					for (int i=0; i<6; i++)
+						db[i] >>= 1;
+				}
+				// the pair is found once for each shared cell
+				Arrays.sort(candidates, 0, n);
+				for (int i = 0; i < n; i++) {
+					if (i == 0 || candidates[i] != candidates[i - 1]) {
+						tasks.addPair(index, slot, candidates[i]);
+					}
+				}
+				for (int k = 0; k < bigCount; k++) {
+					DxGeom g2 = slotGeom[bigSlots[k]];
+					if (GEOM_ENABLED(g2) && !geom._aabb.isDisjoint(g2._aabb)) {
+						tasks.addPair(index, slot, bigSlots[k]);
+					}
+				}
+			}
+		}
+	};
+
 	@Override
 	void collide2 (Object data, DxGeom geom,
 			DNearCallback callback)
@@ -34,6 +34,8 @@ import static org.ode4j.ode.internal.Common.dFabs;
 import static org.ode4j.ode.internal.Common.dFloor;
 import static org.ode4j.ode.internal.Common.dIASSERT;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.ode4j.math.DMatrix3;
 import org.ode4j.math.DVector3;
 import org.ode4j.math.DVector3C;
@@ -173,19 +175,132 @@ public class DxHeightfield extends DxAbstractHeightfield {
 	//		HeightFieldVertex   *tempHeightInstances;
 	//	    size_t              tempHeightBufferSizeX;
 	//	    size_t              tempHeightBufferSizeZ;
-	//private HeightFieldPlane[]    tempPlaneBuffer;
-	private ObjArray<HeightFieldPlane>[]  tempPlaneBuffer;
-	private HeightFieldPlane[]    tempPlaneInstances;
-	private int              tempPlaneBufferSize;
+	/**
+	 * The temporary buffers of a zone collision. A collision takes the buffers
+	 * of the heightfield while it runs, so that several threads can collide
+	 * with the same heightfield at once; a collision that finds them taken
+	 * uses new ones.
+	 */
+	private final class TempBuffers {
+		//private HeightFieldPlane[]    tempPlaneBuffer;
+		ObjArray<HeightFieldPlane>[]  tempPlaneBuffer;
+		HeightFieldPlane[]    tempPlaneInstances;
+		int              tempPlaneBufferSize;
+
+		HeightFieldTriangle[] tempTriangleBuffer;
+		int              tempTriangleBufferSize;
+
+		//private HeightFieldVertex[]  tempHeightBuffer;
+		ObjArray<HeightFieldVertex>[]  tempHeightBuffer;
+		HeightFieldVertex[]   tempHeightInstances;
+		int              tempHeightBufferSizeX;
+		int              tempHeightBufferSizeZ;
 
-	private HeightFieldTriangle[] tempTriangleBuffer;
-	private int              tempTriangleBufferSize;
+		final DContactGeomBuffer planeContacts = new DContactGeomBuffer(HEIGHTFIELDMAXCONTACTPERCELL);
+
+		private void allocateTriangleBuffer(int numTri)
+		{
+			int alignedNumTri = AlignBufferSize(numTri, TEMP_TRIANGLE_BUFFER_ELEMENT_COUNT_ALIGNMENT);
+			tempTriangleBufferSize = alignedNumTri;
+			tempTriangleBuffer = new HeightFieldTriangle[alignedNumTri];
+			for (int i = 0; i < tempTriangleBuffer.length; i++) tempTriangleBuffer[i] = new HeightFieldTriangle();
+		}
+
+		private void resetTriangleBuffer()
+		{
+			//delete[] tempTriangleBuffer;
+			tempTriangleBuffer = null;
+			//TODO set size == 0? TZ
+		}
 
-	//private HeightFieldVertex[]  tempHeightBuffer;
-	private ObjArray<HeightFieldVertex>[]  tempHeightBuffer;
-	private HeightFieldVertex[]   tempHeightInstances;
-	private int              tempHeightBufferSizeX;
-	private int              tempHeightBufferSizeZ;
+		@SuppressWarnings("unchecked")
+	    private void allocatePlaneBuffer(int numTri)
+		{
+			int alignedNumTri = AlignBufferSize(numTri, TEMP_PLANE_BUFFER_ELEMENT_COUNT_ALIGNMENT);
+			tempPlaneBufferSize = alignedNumTri;
+			//tempPlaneBuffer = new HeightFieldPlane [alignedNumTri];
+			tempPlaneBuffer = new ObjArray[alignedNumTri];
+			tempPlaneInstances = new HeightFieldPlane[alignedNumTri];
+			for (int indexTri = 0; indexTri != alignedNumTri; indexTri++)
+				tempPlaneInstances[indexTri] = new HeightFieldPlane();
+
+			//HeightFieldPlane ptrPlaneMatrix = tempPlaneInstances;
+			for (int indexTri = 0; indexTri != alignedNumTri; indexTri++)
+			{
+				//tempPlaneBuffer[indexTri] = tempPlaneInstances[indexTri];//ptrPlaneMatrix;
+				//ptrPlaneMatrix += 1;
+				tempPlaneBuffer[indexTri] = new ObjArray<HeightFieldPlane>(tempPlaneInstances, indexTri);//ptrPlaneMatrix;
+			}
+		}
+
+		private void resetPlaneBuffer()
+		{
+			//		delete[] tempPlaneInstances;
+			//		delete[] tempPlaneBuffer;
+			tempPlaneInstances = null;
+			tempPlaneBuffer = null;
+		}
+
+		@SuppressWarnings("unchecked")
+	    private void allocateHeightBuffer(int numX, int numZ)
+		{
+			int alignedNumX = AlignBufferSize(numX, TEMP_HEIGHT_BUFFER_ELEMENT_COUNT_ALIGNMENT_X);
+			int alignedNumZ = AlignBufferSize(numZ, TEMP_HEIGHT_BUFFER_ELEMENT_COUNT_ALIGNMENT_Z);
+			tempHeightBufferSizeX = alignedNumX;
+			tempHeightBufferSizeZ = alignedNumZ;
+			//tempHeightBuffer = new HeightFieldVertex *[alignedNumX];
+			tempHeightBuffer = new ObjArray[alignedNumX];
+			int numCells = alignedNumX * alignedNumZ;
+			tempHeightInstances = new HeightFieldVertex [numCells];
+			for (int i = 0; i < tempHeightInstances.length; i++) {
+				tempHeightInstances[i] = new HeightFieldVertex();
+			}
+
+			//HeightFieldVertex *ptrHeightMatrix = tempHeightInstances;
+			for (int indexX = 0; indexX != alignedNumX; indexX++)
+			{
+				//			tempHeightBuffer[indexX] = ptrHeightMatrix;
+				//			ptrHeightMatrix += alignedNumZ;
+				//tempHeightBuffer[indexX] = tempHeightInstances[indexX];
+				tempHeightBuffer[indexX] = new ObjArray<HeightFieldVertex>(tempHeightInstances, indexX*alignedNumZ);
+			}
+		}
+
+		void resetHeightBuffer()
+		{
+			//delete[] tempHeightInstances;
+			//delete[] tempHeightBuffer;
+			tempHeightInstances = null;
+			tempHeightBuffer = null;
+		}
+
+		void sortPlanes(final int numPlanes)
+		{
+			boolean has_swapped = true;
+			do
+			{
+				has_swapped = false;//reset flag
+				for (int i = 0; i < numPlanes - 1; i++)
+				{
+					//if they are in the wrong order
+					if (DescendingPlaneSort(tempPlaneBuffer[i].at0(), tempPlaneBuffer[i + 1].at0()))
+					{
+						//exchange them
+						//HeightFieldPlane * tempPlane = tempPlaneBuffer[i];
+						ObjArray<HeightFieldPlane> tempPlane = tempPlaneBuffer[i];
+						tempPlaneBuffer[i] = tempPlaneBuffer[i + 1];
+						tempPlaneBuffer[i + 1] = tempPlane;
+
+						//we have swapped at least once, list may not be sorted yet
+						has_swapped = true;
+					}
+				}
+			}    //if no swaps were made during this pass, the list has been sorted
+			while (has_swapped);
+		}
+	}
+
+	private final AtomicReference<TempBuffers> tempBuffers = new AtomicReference<TempBuffers>();
 
 
 
@@ -202,15 +317,6 @@ public class DxHeightfield extends DxAbstractHeightfield {
 		//	    tempHeightBufferSizeX(0),
 		//	    tempHeightBufferSizeZ(0)
 		super( space, bPlaceable );
-		tempPlaneBuffer = null;
-		tempPlaneInstances = null;
-		tempPlaneBufferSize = 0;
-		tempTriangleBuffer = null;
-		tempTriangleBufferSize = 0;
-		tempHeightBuffer = null;
-		tempHeightInstances = null;
-		tempHeightBufferSizeX = 0;
-		tempHeightBufferSizeZ = 0;
 
 		type = dHeightfieldClass;
 		m_p_data = data;
@@ -361,87 +467,10 @@ public class DxHeightfield extends DxAbstractHeightfield {
 	@Override
 	public void DESTRUCTOR()
 	{
-		resetTriangleBuffer();
-		resetPlaneBuffer();
-		resetHeightBuffer();
+		tempBuffers.set(null);
 		super.DESTRUCTOR();
 	}
 
-	private void allocateTriangleBuffer(int numTri)
-	{
-		int alignedNumTri = AlignBufferSize(numTri, TEMP_TRIANGLE_BUFFER_ELEMENT_COUNT_ALIGNMENT);
-		tempTriangleBufferSize = alignedNumTri;
-		tempTriangleBuffer = new HeightFieldTriangle[alignedNumTri];
-		for (int i = 0; i < tempTriangleBuffer.length; i++) tempTriangleBuffer[i] = new HeightFieldTriangle();
-	}
-
-	private void resetTriangleBuffer()
-	{
-		//delete[] tempTriangleBuffer;
-		tempTriangleBuffer = null;
-		//TODO set size == 0? TZ
-	}
-
-	@SuppressWarnings("unchecked")
-    private void allocatePlaneBuffer(int numTri)
-	{
-		int alignedNumTri = AlignBufferSize(numTri, TEMP_PLANE_BUFFER_ELEMENT_COUNT_ALIGNMENT);
-		tempPlaneBufferSize = alignedNumTri;
-		//tempPlaneBuffer = new HeightFieldPlane [alignedNumTri];
-		tempPlaneBuffer = new ObjArray[alignedNumTri];
-		tempPlaneInstances = new HeightFieldPlane[alignedNumTri];
-		for (int indexTri = 0; indexTri != alignedNumTri; indexTri++)
-			tempPlaneInstances[indexTri] = new HeightFieldPlane();
-
-		//HeightFieldPlane ptrPlaneMatrix = tempPlaneInstances;
-		for (int indexTri = 0; indexTri != alignedNumTri; indexTri++)
-		{
-			//tempPlaneBuffer[indexTri] = tempPlaneInstances[indexTri];//ptrPlaneMatrix;
-			//ptrPlaneMatrix += 1;
-			tempPlaneBuffer[indexTri] = new ObjArray<HeightFieldPlane>(tempPlaneInstances, indexTri);//ptrPlaneMatrix;
-		}
-	}
-
-	private void resetPlaneBuffer()
-	{
-		//		delete[] tempPlaneInstances;
-		//		delete[] tempPlaneBuffer;
-		tempPlaneInstances = null;
-		tempPlaneBuffer = null;
-	}
-
-	@SuppressWarnings("unchecked")
-    private void allocateHeightBuffer(int numX, int numZ)
-	{
-		int alignedNumX = AlignBufferSize(numX, TEMP_HEIGHT_BUFFER_ELEMENT_COUNT_ALIGNMENT_X);
-		int alignedNumZ = AlignBufferSize(numZ, TEMP_HEIGHT_BUFFER_ELEMENT_COUNT_ALIGNMENT_Z);
-		tempHeightBufferSizeX = alignedNumX;
-		tempHeightBufferSizeZ = alignedNumZ;
-		//tempHeightBuffer = new HeightFieldVertex *[alignedNumX];
-		tempHeightBuffer = new ObjArray[alignedNumX];
-		int numCells = alignedNumX * alignedNumZ;
-		tempHeightInstances = new HeightFieldVertex [numCells];
-		for (int i = 0; i < tempHeightInstances.length; i++) {
-			tempHeightInstances[i] = new HeightFieldVertex();
-		}
-
-		//HeightFieldVertex *ptrHeightMatrix = tempHeightInstances;
-		for (int indexX = 0; indexX != alignedNumX; indexX++)
-		{
-			//			tempHeightBuffer[indexX] = ptrHeightMatrix;
-			//			ptrHeightMatrix += alignedNumZ;
-			//tempHeightBuffer[indexX] = tempHeightInstances[indexX];
-			tempHeightBuffer[indexX] = new ObjArray<HeightFieldVertex>(tempHeightInstances, indexX*alignedNumZ);
-		}
-	}
-
-	void resetHeightBuffer()
-	{
-		//delete[] tempHeightInstances;
-		//delete[] tempHeightBuffer;
-		tempHeightInstances = null;
-		tempHeightBuffer = null;
-	}
 
 	//////// Heightfield geom interface ////////////////////////////////////////////////////
 
@@ -613,31 +642,6 @@ public class DxHeightfield extends DxAbstractHeightfield {
 		return ((A.maxAAAB - B.maxAAAB) > dEpsilon);
 	}
 
-	void sortPlanes(final int numPlanes)
-	{
-		boolean has_swapped = true;
-		do
-		{
-			has_swapped = false;//reset flag
-			for (int i = 0; i < numPlanes - 1; i++)
-			{
-				//if they are in the wrong order
-				if (DescendingPlaneSort(tempPlaneBuffer[i].at0(), tempPlaneBuffer[i + 1].at0()))
-				{
-					//exchange them
-					//HeightFieldPlane * tempPlane = tempPlaneBuffer[i];
-					ObjArray<HeightFieldPlane> tempPlane = tempPlaneBuffer[i];
-					tempPlaneBuffer[i] = tempPlaneBuffer[i + 1];
-					tempPlaneBuffer[i + 1] = tempPlane;
-
-					//we have swapped at least once, list may not be sorted yet
-					has_swapped = true;
-				}
-			}
-		}    //if no swaps were made during this pass, the list has been sorted
-		while (has_swapped);
-	}
-
 	//TZ not used
 	//	static inline dReal DistancePointToLine(final dVector3 &_point,
 	//            final dVector3 &_pt0,
@@ -685,6 +689,23 @@ public class DxHeightfield extends DxAbstractHeightfield {
 			DxGeom o2, final int numMaxContactsPossible,
 			int flags, DContactGeomBuffer contacts,
 			int skip )
+	{
+		TempBuffers tb = tempBuffers.getAndSet(null);
+		if (tb == null) {
+			tb = new TempBuffers();
+		}
+		try {
+			return dCollideHeightfieldZone(tb, minX, maxX, minZ, maxZ, o2, numMaxContactsPossible,
+					flags, contacts, skip);
+		} finally {
+			tempBuffers.set(tb);
+		}
+	}
+
+	private int dCollideHeightfieldZone( TempBuffers tb, final int minX, final int maxX, final int minZ, final int maxZ,
+			DxGeom o2, final int numMaxContactsPossible,
+			int flags, DContactGeomBuffer contacts,
+			int skip )
 	{
 		DContactGeom pContact = null;
 		int  x, z;
@@ -704,10 +725,10 @@ public class DxHeightfield extends DxAbstractHeightfield {
 		final double cfSampleWidth = m_p_data.m_fSampleWidth;
 		final double cfSampleDepth = m_p_data.m_fSampleDepth;
 		{
-			if (tempHeightBufferSizeX < numX || tempHeightBufferSizeZ < numZ)
+			if (tb.tempHeightBufferSizeX < numX || tb.tempHeightBufferSizeZ < numZ)
 			{
-				resetHeightBuffer();
-				allocateHeightBuffer(numX, numZ);
+				tb.resetHeightBuffer();
+				tb.allocateHeightBuffer(numX, numZ);
 			}
 
 			double Xpos, Ypos;
@@ -719,7 +740,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 				final double c_Xpos = Xpos;
 				//HeightFieldVertex HeightFieldRow = tempHeightBuffer[x_local];
 				//ObjArray<HeightFieldVertex> HeightFieldRow = new ObjArray<HeightFieldVertex>(tempHeightBuffer, x_local);
-				ObjArray<HeightFieldVertex> HeightFieldRow = tempHeightBuffer[x_local];
+				ObjArray<HeightFieldVertex> HeightFieldRow = tb.tempHeightBuffer[x_local];
 				for ( z = minZ, z_local = 0; z_local < numZ; z++, z_local++)
 				{
 					Ypos = z * cfSampleDepth; // Always calculate pos via multiplication to avoid computational error accumulation during multiple additions
@@ -959,14 +980,14 @@ public class DxHeightfield extends DxAbstractHeightfield {
 
 		int numTerrainContacts = 0;
 		//dContactGeom *PlaneContact = m_p_data.m_contacts;
-		DContactGeomBuffer PlaneContact = m_p_data.m_contacts;
+		DContactGeomBuffer PlaneContact = tb.planeContacts;
 
 		//final unsigned 
 		final int numTriMax = (maxX - minX) * (maxZ - minZ) * 2;
-		if (tempTriangleBufferSize < numTriMax)
+		if (tb.tempTriangleBufferSize < numTriMax)
 		{
-			resetTriangleBuffer();
-			allocateTriangleBuffer(numTriMax);
+			tb.resetTriangleBuffer();
+			tb.allocateTriangleBuffer(numTriMax);
 		}
 
 		// Sorting triangle/plane  resulting from heightfield zone
@@ -1034,8 +1055,8 @@ public class DxHeightfield extends DxAbstractHeightfield {
 			//			HeightFieldVertex HeightFieldNextRow  = tempHeightBuffer[x_local + 1];
 //			int posHeightFieldRow      = x_local;
 //			int posHeightFieldNextRow  = x_local + 1;
-			ObjArray<HeightFieldVertex> HeightFieldRow      = tempHeightBuffer[x_local];
-			ObjArray<HeightFieldVertex> HeightFieldNextRow  = tempHeightBuffer[x_local + 1];
+			ObjArray<HeightFieldVertex> HeightFieldRow      = tb.tempHeightBuffer[x_local];
+			ObjArray<HeightFieldVertex> HeightFieldNextRow  = tb.tempHeightBuffer[x_local + 1];
 
 			// First A
 	        //C = &HeightFieldRow    [0];
@@ -1075,7 +1096,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 
 				if (isACollide || isBCollide || isCCollide)
 				{
-					HeightFieldTriangle CurrTriUp = tempTriangleBuffer[numTri++];// final ?? TZ
+					HeightFieldTriangle CurrTriUp = tb.tempTriangleBuffer[numTri++];// final ?? TZ
 
 					CurrTriUp.state = false;
 
@@ -1091,7 +1112,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 
 				if (isBCollide || isCCollide || isDCollide)
 				{
-					HeightFieldTriangle CurrTriDown = tempTriangleBuffer[numTri++];//final ?? TZ
+					HeightFieldTriangle CurrTriDown = tb.tempTriangleBuffer[numTri++];//final ?? TZ
 
 					CurrTriDown.state = false;
 					// changing point order here implies to change it in isOnHeightField
@@ -1137,7 +1158,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 			//compute all triangles normals.
 			for (int k = 0; k < numTri; k++)
 			{
-				HeightFieldTriangle itTriangle = tempTriangleBuffer[k];  // final? TZ
+				HeightFieldTriangle itTriangle = tb.tempTriangleBuffer[k];  // final? TZ
 
 				// define 2 edges and a point that will define collision plane
 				//dVector3Subtract(itTriangle.vertices[2].vertex, itTriangle.vertices[0].vertex, Edge1);
@@ -1170,22 +1191,22 @@ public class DxHeightfield extends DxAbstractHeightfield {
 			}
 
 			// group by Triangles by Planes sharing shame plane definition
-			if (tempPlaneBufferSize  < numTri)
+			if (tb.tempPlaneBufferSize  < numTri)
 			{
-				resetPlaneBuffer();
-				allocatePlaneBuffer(numTri);
+				tb.resetPlaneBuffer();
+				tb.allocatePlaneBuffer(numTri);
 			}
 			//unsigned 
 			int numPlanes = 0;
 			for (int k = 0; k < numTri; k++)
 			{
-				HeightFieldTriangle tri_base = tempTriangleBuffer[k];  // final ? TZ
+				HeightFieldTriangle tri_base = tb.tempTriangleBuffer[k];  // final ? TZ
 
 				if (tri_base.state == true)
 					continue;// already tested or added to plane list.
 
 				//HeightFieldPlane * const currPlane = tempPlaneBuffer[numPlanes];
-				HeightFieldPlane currPlane = tempPlaneBuffer[numPlanes].at0();// final ? TZ
+				HeightFieldPlane currPlane = tb.tempPlaneBuffer[numPlanes].at0();// final ? TZ
 				currPlane.resetTriangleListSize(numTri - k);
 				currPlane.addTriangle(tri_base);
 				// saves normal for collision check (planes, triangles, vertices and edges.)
@@ -1202,7 +1223,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 				for (int m = k + 1; m < numTri; m++)
 				{
 
-					HeightFieldTriangle tri_test = tempTriangleBuffer[m];  // final? TZ
+					HeightFieldTriangle tri_test = tb.tempTriangleBuffer[m];  // final? TZ
 					if (tri_test.state == true)
 						continue;// already tested or added to plane list.
 
@@ -1228,7 +1249,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 
 			// sort planes
 			if (isContactNumPointsLimited)
-				sortPlanes(numPlanes);
+				tb.sortPlanes(numPlanes);
 
 			int numMaxContactsPerPlane;
 			int planeTestFlags;
@@ -1256,7 +1277,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 			for (int k = 0; k < numPlanes; k++)
 			{
 	            //HeightFieldPlane * const itPlane = tempPlaneBuffer[k];
-				HeightFieldPlane itPlane = tempPlaneBuffer[k].at0();//final TZ
+				HeightFieldPlane itPlane = tb.tempPlaneBuffer[k].at0();//final TZ
 
 				//set Geom
 				dGeomPlaneSetNoNormalize (sliding_plane,  itPlane.planeDefV, itPlane.planeDefD);
@@ -1341,7 +1362,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 			for (int k = 0; k < numTri; k++)
 			{
 				//final HeightFieldTriangle * final itTriangle = &tempTriangleBuffer[k];
-				HeightFieldTriangle itTriangle = tempTriangleBuffer[k];  // final ? TZ
+				HeightFieldTriangle itTriangle = tb.tempTriangleBuffer[k];  // final ? TZ
 				if (itTriangle.state == true)
 					continue;// plane triangle did already collide.
 
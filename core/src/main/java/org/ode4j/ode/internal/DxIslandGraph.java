@@ -0,0 +1,315 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import java.util.ArrayList;
+
+import org.ode4j.ode.internal.cpp4j.java.RefInt;
+import org.ode4j.ode.internal.joints.DxJoint;
+import org.ode4j.ode.internal.joints.DxJointNode;
+
+/**
+ * Persistent island structure of a world.
+ * <p>
+ * Bodies that are connected through enabled joints are kept in the same 
+ * set of a union-find structure. Each set additionally links its bodies into
+ * a circular list, so that an island can be enumerated without searching
+ * through the joint graph.
+ * <p>
+ * Attaching or enabling a joint merges two sets immediately. Detaching or
+ * disabling a joint, or destroying a body, may split a set; such sets are
+ * only marked and are rebuilt from their own bodies and joints at the 
+ * beginning of the next island search. The cost of keeping the islands
+ * up to date is therefore proportional to the size of the islands that
+ * changed, not to the size of the world.
+ * <p>
+ * Islands that have been put to sleep by auto-disabling stay together when
+ * the contacts between their bodies are removed, so that a contact with any
+ * one of their bodies wakes up the whole island.
+ * <p>
+ * The union-find root of a set is only used to tell whether two bodies are
+ * in the same set. It may be a body that has already been destroyed, 
+ * therefore islands are always enumerated starting from a live body.
+ */
+public class DxIslandGraph {
+
+	/** bodies of sets that need to be rebuilt */
+	private final ArrayList<DxBody> dirty = new ArrayList<DxBody>();
+	/** bodies of the set being rebuilt */
+	private DxBody[] members = new DxBody[16];
+	private int stamp = 0;
+	private boolean woken = false; // collectIsland() has woken a sleeping island
+
+	/** Shared by the bodies of an island while it is asleep. */
+	static final class SleepingIsland {
+		/** first body of the island seen while rebuilding a set */
+		private DxBody rep;
+	}
+
+	DxIslandGraph() {
+		// Nothing
+	}
+
+	/** Make a new body a set of its own. */
+	void bodyCreated(DxBody b) {
+		b.islandParent = b;
+		b.islandNext = b;
+		b.islandPrev = b;
+		b.islandSize = 1;
+		b.islandStamp = stamp;
+		b.islandDirty = false;
+	}
+
+	/**
+	 * Remove a destroyed body from its set. The joints of the body must already
+	 * have been detached.
+	 */
+	void bodyDestroyed(DxBody b) {
+		DxBody next = b.islandNext;
+		if (next != b) {
+			next.islandPrev = b.islandPrev;
+			b.islandPrev.islandNext = next;
+			b.islandNext = b;
+			b.islandPrev = b;
+			// the set may already be marked through this body, which is no
+			// longer part of the list, so always add the successor
+			dirty.add(next);
+		}
+	}
+
+	/** A joint has been attached to its bodies or has been enabled. */
+	public void jointConnected(DxJoint j) {
+		DxBody b1 = j.node[0].body, b2 = j.node[1].body;
+		if (b1 != null && b2 != null && j.isEnabled()) {
+			union(b1, b2);
+		}
+	}
+
+	/**
+	 * A joint is about to be detached from its bodies or has been disabled.
+	 */
+	public void jointDisconnected(DxJoint j) {
+		// the joint leaves its island, Step must not take its old tag for an
+		// index into the joints of the island
+		j.tag = -1;
+		DxBody b1 = j.node[0].body, b2 = j.node[1].body;
+		if (b1 != null && b2 != null && j.isEnabled()) {
+			markDirty(b1);
+		}
+	}
+
+	/** Forget all pending work, used when the world is destroyed. */
+	void clear() {
+		dirty.clear();
+		members = new DxBody[16];
+	}
+
+	private static DxBody find(DxBody b) {
+		DxBody p;
+		while ((p = b.islandParent) != b) {
+			// path halving
+			b.islandParent = p.islandParent;
+			b = p.islandParent;
+		}
+		return b;
+	}
+
+	private static void union(DxBody b1, DxBody b2) {
+		DxBody r1 = find(b1), r2 = find(b2);
+		if (r1 == r2) {
+			return;
+		}
+		if (r1.islandSize < r2.islandSize) {
+			DxBody t = r1; r1 = r2; r2 = t;
+		}
+		r2.islandParent = r1;
+		r1.islandSize += r2.islandSize;
+		// splice the two circular lists. Use the bodies, not the roots,
+		// since a root may have been removed from its list.
+		DxBody n1 = b1.islandNext, n2 = b2.islandNext;
+		b1.islandNext = n2;
+		n2.islandPrev = b1;
+		b2.islandNext = n1;
+		n1.islandPrev = b2;
+	}
+
+	private void markDirty(DxBody b) {
+		DxBody r = find(b);
+		if (!r.islandDirty) {
+			r.islandDirty = true;
+			dirty.add(b);
+		}
+	}
+
+	/**
+	 * Rebuild the sets that have been marked since the last call and start a 
+	 * new island search.
+	 */
+	public void beginIslandSearch() {
+		++stamp;
+		for (int i = 0; i < dirty.size(); ++i) {
+			DxBody b = dirty.get(i);
+			if (b.islandStamp != stamp) {
+				split(b);
+			}
+		}
+		dirty.clear();
+		++stamp;
+	}
+
+	private void split(DxBody start) {
+		// collect and reset the bodies of the set
+		int count = 0;
+		DxBody b = start;
+		do {
+			if (count == members.length) {
+				DxBody[] tmp = new DxBody[count * 2];
+				System.arraycopy(members, 0, tmp, 0, count);
+				members = tmp;
+			}
+			members[count++] = b;
+			b = b.islandNext;
+		} while (b != start);
+		for (int i = 0; i < count; ++i) {
+			bodyCreated(members[i]);
+		}
+		// and join them again along the joints that are left, and the bodies
+		// of the same sleeping island
+		for (int i = 0; i < count; ++i) {
+			DxBody m = members[i];
+			SleepingIsland s = m.islandSleeping;
+			if (s != null && m.dBodyIsAsleep()) {
+				if (s.rep == null) {
+					s.rep = m;
+				} else {
+					union(m, s.rep);
+				}
+			}
+			for (DxJointNode n = m.firstjoint.get(); n != null; n = n.next) {
+				if (n.body != null && n.joint.isEnabled()) {
+					union(m, n.body);
+				}
+			}
+		}
+		for (int i = 0; i < count; ++i) {
+			SleepingIsland s = members[i].islandSleeping;
+			if (s != null) {
+				s.rep = null;
+			}
+			members[i] = null;
+		}
+	}
+
+	/**
+	 * The bodies of an island have been disabled by auto-disabling, keep 
+	 * them together until the island wakes up again. The joints of the 
+	 * island are no longer tagged.
+	 */
+	public void islandAsleep(DxBody[] body, int start, int count, 
+			DxJoint[] joint, int jstart, int jcount) {
+		SleepingIsland s = new SleepingIsland();
+		for (int i = start; i < start + count; ++i) {
+			body[i].islandSleeping = s;
+		}
+		for (int i = jstart; i < jstart + jcount; ++i) {
+			joint[i].tag = -1;
+		}
+	}
+
+	/**
+	 * The island has just been woken up and is not stepped this time: its 
+	 * joints are no longer tagged, and forces added to its bodies are 
+	 * cleared as if it had been stepped.
+	 */
+	public void islandDeferred(DxBody[] body, int start, int count, 
+			DxJoint[] joint, int jstart, int jcount) {
+		for (int i = start; i < start + count; ++i) {
+			body[i].tag = -1;
+			body[i].facc.setZero();
+			body[i].tacc.setZero();
+		}
+		for (int i = jstart; i < jstart + jcount; ++i) {
+			joint[i].tag = -1;
+		}
+	}
+
+	/**
+	 * @return whether the body has already been put into an island during 
+	 * the current search
+	 */
+	public boolean isCollected(DxBody b) {
+		return b.islandStamp == stamp;
+	}
+
+	/**
+	 * @return whether the island collected last has been asleep, i.e. 
+	 * whether any of its bodies had been put to sleep by auto-disabling
+	 */
+	public boolean isWoken() {
+		return woken;
+	}
+
+	/**
+	 * Put the island of body <tt>bb</tt> into the body and joint arrays, 
+	 * waking up any of its disabled bodies. Enabled joints are tagged with 1,
+	 * disabled joints with -1.
+	 * @return the new end of the body array
+	 */
+	public int collectIsland(DxBody bb, DxBody[] body, int bodycurr, DxJoint[] joint, RefInt jointcurr) {
+		int jcurr = jointcurr.get();
+		woken = false;
+		DxBody b = bb;
+		do {
+			b.islandStamp = stamp;
+			b.tag = 1;
+			// Make sure all bodies are in the enabled state. This is how auto-enable works.
+			// A sleeping island wakes up as a whole and starts a new idle period.
+			if (!b.dBodyIsEnabled()) {
+				woken |= b.dBodyIsAsleep();
+				b.dBodyEnable();
+			}
+			body[bodycurr++] = b;
+			for (DxJointNode n = b.firstjoint.get(); n != null; n = n.next) {
+				DxJoint j = n.joint;
+				if (!j.isEnabled()) {
+					// from either body, the other one may not be collected
+					j.tag = -1; // Used in Step to prevent search over disabled joints
+				} else if (j.node[0].body == b) {
+					// every joint is listed by each of its bodies, take it from its first body
+					j.tag = 1;
+					joint[jcurr++] = j;
+				}
+			}
+			b = b.islandNext;
+		} while (b != bb);
+		if (woken) {
+			// the set has not been split while it was asleep, do it with the 
+			// next search when the contacts of its bodies have been created
+			markDirty(bb);
+		}
+		jointcurr.set(jcurr);
+		return bodycurr;
+	}
+}
@@ -0,0 +1,165 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash set of unordered pairs of non-negative ints, e.g.
+ * geom indices. Pairs are stored as <tt>long</tt> keys with the smaller
+ * index in the upper half. Removal shifts entries back instead of leaving
+ * tombstones, so the table does not degrade when pairs come and go.
+ * <p>
+ * The set can be iterated with {@link #getCapacity()} and
+ * {@link #getKey(int)}, which returns {@link #EMPTY} for unused slots.
+ * The iteration order only depends on the sequence of operations.
+ */
+final class DxPairSet {
+
+	static final long EMPTY = -1;
+
+	private long[] keys;
+	private int mask;
+	private int size;
+
+	DxPairSet() {
+		keys = new long[16];
+		Arrays.fill(keys, EMPTY);
+		mask = keys.length - 1;
+	}
+
+	static long key(int a, int b) {
+		return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+	}
+
+	static int first(long key) {
+		return (int) (key >>> 32);
+	}
+
+	static int second(long key) {
+		return (int) key;
+	}
+
+	private static int hash(long key) {
+		// finalizer of MurmurHash3
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int getCapacity() {
+		return keys.length;
+	}
+
+	/**
+	 * @return the key at a position of the table, or {@link #EMPTY}
+	 */
+	long getKey(int i) {
+		return keys[i];
+	}
+
+	void clear() {
+		if (size > 0) {
+			Arrays.fill(keys, EMPTY);
+			size = 0;
+		}
+	}
+
+	boolean contains(int a, int b) {
+		long key = key(a, b);
+		for (int i = hash(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return <tt>false</tt> if the pair was already in the set
+	 */
+	boolean add(int a, int b) {
+		long key = key(a, b);
+		int i = hash(key) & mask;
+		for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return false;
+			}
+		}
+		keys[i] = key;
+		if (++size * 2 > keys.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * @return <tt>false</tt> if the pair was not in the set
+	 */
+	boolean remove(int a, int b) {
+		long key = key(a, b);
+		int i = hash(key) & mask;
+		for (; keys[i] != key; i = (i + 1) & mask) {
+			if (keys[i] == EMPTY) {
+				return false;
+			}
+		}
+		// shift following entries of the same cluster back
+		int gap = i;
+		for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+			int home = hash(keys[j]) & mask;
+			// move the entry at j into the gap unless its home lies
+			// cyclically in (gap, j]
+			if (((j - home) & mask) >= ((j - gap) & mask)) {
+				keys[gap] = keys[j];
+				gap = j;
+			}
+		}
+		keys[gap] = EMPTY;
+		size--;
+		return true;
+	}
+
+	private void grow() {
+		long[] old = keys;
+		keys = new long[old.length * 2];
+		Arrays.fill(keys, EMPTY);
+		mask = keys.length - 1;
+		for (long key : old) {
+			if (key != EMPTY) {
+				int i = hash(key) & mask;
+				while (keys[i] != EMPTY) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = key;
+			}
+		}
+	}
+}
@@ -551,7 +551,7 @@ public class DxQuadTreeSpace extends DxSpace implements DQuadTreeSpace {
 
 	//void dxQuadTreeSpace::collide(void* UserData, dNearCallback* Callback){
 	@Override
-	public void collide(Object UserData, DNearCallback Callback){
+	void collideImpl (Object UserData, DNearCallback Callback){
 		dAASSERT(Callback);
 
 		lock_count++;
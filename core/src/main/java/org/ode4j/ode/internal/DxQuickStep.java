@@ -55,9 +55,14 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.ode4j.math.DMatrix3;
 import org.ode4j.math.DVector3;
 import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DTracer;
+import org.ode4j.ode.DWorld.DStepProfile;
+import org.ode4j.ode.OdeConfig;
 import org.ode4j.ode.internal.Objects_H.dxQuickStepParameters;
 import org.ode4j.ode.internal.cpp4j.java.Ref;
+import org.ode4j.ode.internal.joints.DxContactStore;
 import org.ode4j.ode.internal.joints.DxJoint;
+import org.ode4j.ode.internal.joints.DxJointContact;
 import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext;
 import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext.dmaxcallcountestimate_fn_t;
 import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext.dstepper_fn_t;
@@ -76,12 +81,6 @@ import org.ode4j.ode.threading.Threading_H.dThreadedCallFunction;
 public class DxQuickStep extends AbstractStepper implements dstepper_fn_t,
 dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 
-	//TODO evaluate this
-	/**
-	 * Experimental improvement to reduce GC, see issue #36
-	 */
-	public static boolean REUSE_OBJECTS = false;
-	
 	public static final int THREADS = 4;
 	static final ThreadPoolExecutor POOL = new ThreadPoolExecutor(
 			THREADS, THREADS, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
@@ -114,6 +113,15 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	 */
 	//not defined because 'ifdef 0' around 'multiply_invM_JT' causes comp error.
 	//private static boolean WARM_STARTING = false;
+	// Warm starting is enabled per world, see dxQuickStepParameters.warm_starting.
+	// Impulses of persistent joints are kept in DxJoint.lambda, the ones of 
+	// contact joints in the world's DxContactImpulseCache.
+
+	/** for warm starting:
+	 * scaling the impulses of the last step seems to be necessary to prevent
+	 * jerkiness in motor-driven joints. i have no idea why this works.
+	 */
+	private static final double WARM_STARTING_SCALE = 0.9;
 
 	/** for the SOR method:
 	 * uncomment the following line to determine a new constraint-solving
@@ -131,6 +139,15 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	 */
 	private static final boolean RANDOMLY_REORDER_CONSTRAINTS = true;
 
+	/** for the parallel SOR method:
+	 * minimal number of rows of a color batch per thread. Smaller batches
+	 * are solved by a single thread as the synchronization would cost more
+	 * than is gained.
+	 */
+	private static final int dxQUICKSTEPISLAND_SOR_MIN_ROWS_PER_THREAD = 16;
+	/** Jacobi mode: minimal number of rows per thread (rows and bodies are shared in chunks) */
+	private static final int dxQUICKSTEPISLAND_JACOBI_MIN_ROWS_PER_THREAD = 64;
+
 	//****************************************************************************
 	// special matrix multipliers
 
@@ -231,15 +248,18 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	private static class dxQuickStepperStage1CallContext implements CallContext
 	{
 		void Initialize(DxStepperProcessingCallContext stepperCallContext, 
-				BlockPointer stageMemArenaState, double[] invI, DJointWithInfo1[] jointinfos)
+				BlockPointer stageMemArenaState, double[] invI, DJointWithInfo1[] jointinfos,
+				DxQuickStep stepper)
 		{
 			m_stepperCallContext = stepperCallContext;
 			m_stageMemArenaState = stageMemArenaState; 
 			m_invI = invI;
 			m_jointinfos = jointinfos;
+			m_stepper = stepper;
 		}
 
 		DxStepperProcessingCallContext m_stepperCallContext;
+		DxQuickStep                        m_stepper;
 		BlockPointer                       m_stageMemArenaState;
 		double[]                           m_invI;
 		DJointWithInfo1[]                 m_jointinfos;
@@ -249,17 +269,19 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	private static class dxQuickStepperStage0BodiesCallContext implements CallContext
 	{
 		void Initialize(final DxStepperProcessingCallContext stepperCallContext, 
-				double[] invI)
+				double[] invI, dxQuickStepperThreadTemps[] threadTemps)
 		{
 			m_stepperCallContext = stepperCallContext;
 			m_invI = invI;
-			//m_tagsTaken = 0;
-			//m_gravityTaken = 0;
-			//m_inertiaBodyIndex = 0;
+			m_threadTemps = threadTemps;
+			m_tagsTaken.set(0);
+			m_gravityTaken.set(0);
+			m_inertiaBodyIndex.set(0);
 		}
 
 		DxStepperProcessingCallContext m_stepperCallContext;
 		double[]                           m_invI;
+		dxQuickStepperThreadTemps[]        m_threadTemps;
 		final AtomicInteger                     m_tagsTaken = new AtomicInteger();
 		final AtomicInteger                     m_gravityTaken = new AtomicInteger();
 		//unsigned int                    volatile m_inertiaBodyIndex;
@@ -297,8 +319,14 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 //				dReal *J, dReal *cfm, dReal *lo, dReal *hi, int *jb, dReal *rhs, dReal *Jcopy)
 		void Initialize(double[] invI, DJointWithInfo1[] jointinfos, int nj, 
 				int m, int mfb, final int[] mindex, int[] findex, 
-				double[] J, double[] cfm, double[] lo, double[] hi, int[] jb, double[] rhs, double[] Jcopy)
+				double[] J, double[] cfm, double[] lo, double[] hi, int[] jb, double[] rhs, double[] Jcopy,
+				DxContactStore contacts, DxQuickStep stepper)
 		{
+			m_stepper = stepper;
+			m_contacts = contacts;
+			m_splitVel = null;
+			m_impulses = null;
+			m_stage3Start = 0;
 			m_invI = invI;
 			m_jointinfos = jointinfos;
 			m_nj = nj;
@@ -329,6 +357,11 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 		int[]                            m_jb;
 		double[]                         m_rhs;
 		double[]                         m_Jcopy;
+		DxContactStore                   m_contacts; // contact rows, see Stage2a
+		double[]                         m_splitVel; // pseudo velocities, see Stage3
+		DxContactImpulseCache.Batch      m_impulses; // contact impulses for warm starting, see LoadLambda
+		long                             m_stage3Start; // for DStepProfile, 0 if not profiling
+		DxQuickStep                      m_stepper; // solves the LCP in Stage3
 	};
 
 	private static class dxQuickStepperStage3CallContext implements CallContext
@@ -351,30 +384,92 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	{
 		void Initialize(DxStepperProcessingCallContext callContext, 
 				dxQuickStepperLocalContext localContext, 
-				double[] rhs_tmp)
+				double[] rhs_tmp, dxQuickStepperThreadTemps[] threadTemps)
 		{
 			m_stepperCallContext = callContext;
 			m_localContext = localContext;
 			m_rhs_tmp = rhs_tmp;
-			//m_ji_J = 0;
-			//m_ji_jb = 0;
-			//m_bi = 0;
-			//m_Jrhsi = 0;
+			m_threadTemps = threadTemps;
+			m_ji_J.set(0);
+			m_ci_J.set(0);
+			m_ji_jb.set(0);
+			m_bi.set(0);
+			m_Jrhsi.set(0);
 		}
 
 		DxStepperProcessingCallContext m_stepperCallContext;
 		dxQuickStepperLocalContext   m_localContext;
 		double[]                           m_rhs_tmp;
+		dxQuickStepperThreadTemps[]        m_threadTemps;
 //		volatile unsigned int           m_ji_J;
 //		volatile unsigned int           m_ji_jb;
 //		volatile unsigned int           m_bi;
 //		volatile unsigned int           m_Jrhsi;
 		final AtomicInteger           m_ji_J = new AtomicInteger();
+		final AtomicInteger           m_ci_J = new AtomicInteger(); // contact blocks
 		final AtomicInteger           m_ji_jb = new AtomicInteger();
 		final AtomicInteger           m_bi = new AtomicInteger();
 		final AtomicInteger           m_Jrhsi = new AtomicInteger();
 	};
 
+	private static class dxQuickStepperLCPCallContext implements CallContext
+	{
+		void Initialize(DxStepperProcessingCallContext callContext, 
+				dxQuickStepperLocalContext localContext, 
+				double[] lambda, double[] cforce)
+		{
+			m_stepperCallContext = callContext;
+			m_localContext = localContext;
+			m_lambda = lambda;
+			m_cforce = cforce;
+			// the context is reused by the following steps, the remaining
+			// fields are set up by the Prepare functions
+			m_iMJ = null;
+			m_Ad = null;
+			m_colorRows = null;
+			m_colorStart = null;
+			m_colorCount = 0;
+			m_iteration = 0;
+			m_color = 0;
+			m_batchBegin = 0;
+			m_batchEnd = 0;
+			m_batchThreads = 0;
+			m_sweepMaxDelta = 0;
+			m_batchMaxDelta = null;
+			m_stage4Releasee = null;
+			m_jacobi = false;
+			m_delta = null;
+			m_bodyRowStart = null;
+			m_bodyRows = null;
+		}
+
+		DxStepperProcessingCallContext m_stepperCallContext;
+		dxQuickStepperLocalContext   m_localContext;
+		double[]                     m_lambda;
+		double[]                     m_cforce;
+		double[]                     m_iMJ;
+		double[]                     m_Ad;
+		int[]                        m_colorRows;
+		int[]                        m_colorStart;
+		int                          m_colorCount;
+		// progress, only modified by the single call that schedules the next batch
+		int                          m_iteration;
+		int                          m_color;
+		int                          m_batchBegin;
+		int                          m_batchEnd;
+		int                          m_batchThreads;
+		// largest change of lambda during the current sweep
+		double                       m_sweepMaxDelta;
+		// largest change of lambda per thread of the current batch
+		double[]                     m_batchMaxDelta;
+		DCallReleasee                m_stage4Releasee;
+		// Jacobi mode only
+		boolean                      m_jacobi;
+		double[]                     m_delta;
+		int[]                        m_bodyRowStart;
+		int[]                        m_bodyRows;
+	};
+
 	//static int dxQuickStepIsland_Stage2a_Callback(void *callContext, dcallindex_t callInstanceIndex, dCallReleaseeID callThisReleasee);
 	//static int dxQuickStepIsland_Stage2aSync_Callback(void *callContext, dcallindex_t callInstanceIndex, dCallReleaseeID callThisReleasee);
 	//static int dxQuickStepIsland_Stage2b_Callback(void *callContext, dcallindex_t callInstanceIndex, dCallReleaseeID callThisReleasee);
@@ -399,7 +494,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 
 	//static void compute_invM_JT (int m, dRealMutablePtr J, dRealMutablePtr iMJ, int *jb,
 	//	dxBody * const *body, dRealPtr invI)
-	private static void compute_invM_JT (final int m, final double[] J, final double[] iMJ, 
+	static void compute_invM_JT (final int m, final double[] J, final double[] iMJ, 
 	        final int[]jb,
 			final DxBody[]bodyP, final int bodyOfs, final double[] invI)
 	{
@@ -428,27 +523,27 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	//#if WARM_STARTING
 	//static void multiply_invM_JT (int m, int nb, dRealMutablePtr iMJ, int[] *jb,
 	//		dRealMutablePtr in, dRealMutablePtr out)
-//	private static void multiply_invM_JT (int m, int nb, double[] iMJ, int[] jb,
-//			double[] in, double[] out)
-//	{
-//		dSetZero (out,6*nb);
-//		int iMJ_ofs = 0;//final double[] iMJ_ptr = iMJ;
-//		for (int i=0; i<m; i++) {
-//			int b1 = jb[i*2];
-//			int b2 = jb[i*2+1];
-//			final double in_i = in[i];
-//			int out_ofs = b1*6;//double[] out_ptr = out + b1*6;
-//			//for (j=0; j<6; j++) out_ptr[j] += iMJ_ptr[j] * in[i];
-//			for (int j=0; j<6; j++) out[j + out_ofs] += iMJ[j + iMJ_ofs] * in_i;
-//			iMJ_ofs +=6;//iMJ_ptr += 6;
-//			if (b2 != -1) {
-//				out_ofs = b2*6;//out_ptr = out + b2*6;
-//				//for (j=0; j<6; j++) out_ptr[j] += iMJ_ptr[j] * in[i];
-//				for (int j=0; j<6; j++) out[j + out_ofs] += iMJ[j + iMJ_ofs] * in_i;
-//			}
-//			iMJ_ofs +=6;//iMJ_ptr += 6;
-//		}
-//	}
+	static void multiply_invM_JT (int m, int nb, double[] iMJ, int[] jb,
+			double[] in, double[] out)
+	{
+		dSetZero (out,6*nb);
+		int iMJ_ofs = 0;//final double[] iMJ_ptr = iMJ;
+		for (int i=0; i<m; i++) {
+			int b1 = jb[i*2];
+			int b2 = jb[i*2+1];
+			final double in_i = in[i];
+			int out_ofs = b1*6;//double[] out_ptr = out + b1*6;
+			//for (j=0; j<6; j++) out_ptr[j] += iMJ_ptr[j] * in[i];
+			for (int j=0; j<6; j++) out[j + out_ofs] += iMJ[j + iMJ_ofs] * in_i;
+			iMJ_ofs +=6;//iMJ_ptr += 6;
+			if (b2 != -1) {
+				out_ofs = b2*6;//out_ptr = out + b2*6;
+				//for (j=0; j<6; j++) out_ptr[j] += iMJ_ptr[j] * in[i];
+				for (int j=0; j<6; j++) out[j + out_ofs] += iMJ[j + iMJ_ofs] * in_i;
+			}
+			iMJ_ofs +=6;//iMJ_ptr += 6;
+		}
+	}
 	//#endif
 
 	/** 
@@ -690,53 +785,39 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	//#endif
 
 	
-	//static void SOR_LCP (int m, int nb, dRealMutablePtr J, int *jb, dxBody * const *body,
-	//		dRealPtr invI, dRealMutablePtr lambda, dRealMutablePtr fc, dRealMutablePtr b,
-	//		dRealMutablePtr lo, dRealMutablePtr hi, dRealPtr cfm, int *findex,
-	//		dxQuickStepParameters *qs)
-	private static void SOR_LCP (DxWorldProcessMemArena memarena,
-	        final int m, final int nb, double[] J, int[] jb, final DxBody []bodyP,
-	        final int bodyOfs,
-			final double[] invI, double[] lambda, double[] fc, double[] b,
-			final double[] lo, final double[] hi, final double[] cfm, final int []findex,
-			dxQuickStepParameters qs)
+	/**
+	 * Precompute Ad = sor_w / (diag(A) + cfm), scale J and b by Ad and
+	 * finally scale Ad by cfm. Shared by the serial and the parallel SOR.
+	 * <p>
+	 * If <tt>bodyRowStart</tt> is not <tt>null</tt>, the mass of each body 
+	 * is split evenly among the rows acting on it (Jacobi mode), i.e. 
+	 * the inverse mass of body b is scaled by 
+	 * bodyRowStart[b+1]-bodyRowStart[b].
+	 */
+	static void SOR_LCP_ScaleRows (final int m, double[] J, final double[] iMJ, 
+			final int[] jb, double[] b, final double[] cfm, double[] Ad, 
+			final double sor_w,      // SOR over-relaxation parameter
+			final int[] bodyRowStart)
 	{
-		//TZ not defined
-//		if (WARM_STARTING) {//#ifdef WARM_STARTING
-//			// for warm starting, this seems to be necessary to prevent
-//			// jerkiness in motor-driven joints. i have no idea why this works.
-//			for (int i=0; i<m; i++) lambda[i] *= 0.9;
-//		} else { //#else
-			dSetZero (lambda,m);
-//		}//#endif
-
-		// precompute iMJ = inv(M)*J'
-		//double[] iMJ = new double[m*12];//dRealAllocaArray (iMJ,m*12);
-		double[] iMJ = memarena.AllocateArrayDReal (m*12);
-		compute_invM_JT (m,J,iMJ,jb,bodyP,bodyOfs,invI);
-
-		// compute fc=(inv(M)*J')*lambda. we will incrementally maintain fc
-		// as we change lambda.
-		//not defined:
-//		if (WARM_STARTING) {//TZ #ifdef WARM_STARTING
-//			throw new UnsupportedOperationException();
-//			//multiply_invM_JT (m,nb,iMJ,jb,lambda,fc);
-//		} else {//#else
-		//TODO (TZ) should not be necessary (is created just before given to this method)
-			dSetZero (fc,nb*6);
-//		}//#endif
-
-        double[] Ad = memarena.AllocateArrayDReal (m);
         {
-            final double sor_w = qs.w;      // SOR over-relaxation parameter
             // precompute 1 / diagonals of A
             int iMJ_ofs = 0;//final double[] iMJ_ptr = iMJ;
             int J_ofs = 0;//double[] J_ptr = J;
             for (int i=0; i<m; iMJ_ofs +=12, J_ofs +=12, i++ ) {
                 double sum = 0;
                 for (int j=0; j<6; j++) sum += iMJ[j+iMJ_ofs] * J[j+J_ofs];//iMJ_ptr[j] * J_ptr[j];
-                if (jb[i*2+1] != -1) {
-                    for (int j=6; j<12; j++) sum += iMJ[j+iMJ_ofs] * J[j+J_ofs];//iMJ_ptr[j] * J_ptr[j];
+                if (bodyRowStart != null) {
+                    int b1 = jb[i*2];
+                    sum *= bodyRowStart[b1+1] - bodyRowStart[b1];
+                }
+                final int b2 = jb[i*2+1];
+                if (b2 != -1) {
+                    double sum2 = 0;
+                    for (int j=6; j<12; j++) sum2 += iMJ[j+iMJ_ofs] * J[j+J_ofs];//iMJ_ptr[j] * J_ptr[j];
+                    if (bodyRowStart != null) {
+                        sum2 *= bodyRowStart[b2+1] - bodyRowStart[b2];
+                    }
+                    sum += sum2;
                 }
                 Ad[i] = sor_w / (sum + cfm[i]);
             }
@@ -759,11 +840,49 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
                 Ad[i] = Ad_i * cfm[i];
             }
         }
+	}
+
+	
+	//static void SOR_LCP (int m, int nb, dRealMutablePtr J, int *jb, dxBody * const *body,
+	//		dRealPtr invI, dRealMutablePtr lambda, dRealMutablePtr fc, dRealMutablePtr b,
+	//		dRealMutablePtr lo, dRealMutablePtr hi, dRealPtr cfm, int *findex,
+	//		dxQuickStepParameters *qs)
+	/**
+	 * @return the number of iterations performed
+	 */
+	private static int SOR_LCP (DxWorldProcessMemArena memarena,
+	        final int m, final int nb, double[] J, int[] jb, final DxBody []bodyP,
+	        final int bodyOfs,
+			final double[] invI, double[] lambda, double[] fc, double[] b,
+			final double[] lo, final double[] hi, final double[] cfm, final int []findex,
+			dxQuickStepParameters qs)
+	{
+		if (!qs.warm_starting) {
+			dSetZero (lambda,m);
+		}
+		// else: lambda has been loaded (and scaled) by dxQuickStepIsland_LoadLambda()
+
+		// precompute iMJ = inv(M)*J'
+		//double[] iMJ = new double[m*12];//dRealAllocaArray (iMJ,m*12);
+		double[] iMJ = memarena.AllocateArrayDReal (m*12);
+		compute_invM_JT (m,J,iMJ,jb,bodyP,bodyOfs,invI);
+
+		// compute fc=(inv(M)*J')*lambda. we will incrementally maintain fc
+		// as we change lambda.
+		if (qs.warm_starting) {
+			multiply_invM_JT (m,nb,iMJ,jb,lambda,fc);
+		} else {
+		//TODO (TZ) should not be necessary (is created just before given to this method)
+			dSetZero (fc,nb*6);
+		}
+
+        double[] Ad = memarena.AllocateArrayDReal (m);
+        SOR_LCP_ScaleRows (m,J,iMJ,jb,b,cfm,Ad,qs.w,null);
         
 		// order to solve constraint rows in
 		//IndexError *order = (IndexError*) ALLOCA (m*sizeof(IndexError));
-		IndexError[] order = new IndexError[m];
-		for (int iii=0; iii<m; iii++) order[iii] = new IndexError();
+		// only the row index of IndexError is used, keep it in an int array
+		int[] order = memarena.AllocateArrayInt (m);
 		int head_size = 0;
 
 		if (!REORDER_CONSTRAINTS) {//TZ #ifndef REORDER_CONSTRAINTS
@@ -774,10 +893,10 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 		    // Fill the array from both ends
 		    for (int i=0; i<m; i++) {
 		        if (findex[i] == -1) {
-		            order[orderhead].index = i; // Place them at the front
+		            order[orderhead] = i; // Place them at the front
 		            ++orderhead;
 		        } else {
-		            order[ordertail].index = i; // Place them at the end
+		            order[ordertail] = i; // Place them at the end
 		            --ordertail;
 		        }
 		    }
@@ -793,7 +912,11 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 		
 		
 		final int num_iterations = qs.num_iterations;
-		for (int iteration=0; iteration < num_iterations; iteration++) {
+		final double tolerance = qs.tolerance;
+		int iteration;
+		for (iteration=0; iteration < num_iterations; iteration++) {
+			// largest change of lambda during this sweep
+			double maxDelta = 0;
 
 			//TODO commented out for now because it's 'false'
 			if (REORDER_CONSTRAINTS) {//#ifdef REORDER_CONSTRAINTS
@@ -843,14 +966,14 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 				if ((iteration & 7) == 0) {
 					for (int i=1; i<head_size; i++) {
 					    int swapi = dRandInt(i+1);
-                        IndexError tmp = order[i];
+                        int tmp = order[i];
 						order[i] = order[swapi];
 						order[swapi] = tmp;
 					}
 		            int tail_size = m - head_size;
 		            for (int j=1; j<tail_size; j++) {
 		                int swapj = dRandInt(j+1);
-		                IndexError tmp = order[head_size + j];
+		                int tmp = order[head_size + j];
 		                order[head_size + j] = order[head_size + swapj];
 		                order[head_size + swapj] = tmp;
 		            }
@@ -862,7 +985,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 				//     linearizing access to those arrays. hmmm, this does not seem
 				//     like a win, but we should think carefully about our memory
 				//     access pattern.
-				int index = order[i].index;
+				int index = order[i];
 
 				int fc_ofs1;//dReal *fc_ptr1;
 				int fc_ofs2;//dReal *fc_ptr2;
@@ -936,6 +1059,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 				        lambda[index] = new_lambda;
 				    }
 				}
+				if (dFabs(delta) > maxDelta) maxDelta = dFabs(delta);
 
 				//@@@ a trick that may or may not help
 				//dReal ramp = (1-((dReal)(iteration+1)/(dReal)num_iterations));
@@ -963,40 +1087,727 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
     				}
 				}
 			}
+
+			if (maxDelta <= tolerance && tolerance > 0) {
+				// converged, further sweeps would hardly change lambda
+				return iteration + 1;
+			}
 		}
+		return iteration;
 	}
 
 	
-	private double[] buf_invI = new double[100];
-	private double[] ensureSize_invI(int size) {
-		if (buf_invI.length < size || !REUSE_OBJECTS) {
-			buf_invI = new double[size];
+	/**
+	 * Partition the constraint rows into color batches such that no two rows
+	 * of a batch act on the same body. Rows of a batch may then be solved in
+	 * any order (and in parallel) without changing the result.
+	 * <p>
+	 * Rows with findex &lt; 0 are colored first so that the normal rows of
+	 * contacts tend to be solved before their friction rows.
+	 * Static bodies (b2 == -1) do not create conflicts.
+	 * 
+	 * @return number of colors, colorStart is filled with colorCount+1 entries
+	 */
+	static int SOR_LCP_ColorRows (DxWorldProcessMemArena memarena,
+			final int m, final int nb, final int[] jb, 
+			final int[] findex, int[] colorRows, int[] colorStart)
+	{
+		int[] bodyColor = memarena.AllocateArrayInt (nb);
+		Arrays.fill(bodyColor, -1);
+
+		// remaining rows, findex < 0 first
+		int[] pending = memarena.AllocateArrayInt (m);
+		int pendingCount = 0;
+		for (int i=0; i<m; i++) {
+			if (findex[i] == -1) pending[pendingCount++] = i;
+		}
+		for (int i=0; i<m; i++) {
+			if (findex[i] != -1) pending[pendingCount++] = i;
+		}
+
+		int colorCount = 0;
+		int filled = 0;
+		colorStart[0] = 0;
+		while (pendingCount != 0) {
+			int keep = 0;
+			for (int k=0; k<pendingCount; k++) {
+				int index = pending[k];
+				int b1 = jb[index*2];
+				int b2 = jb[index*2+1];
+				if (bodyColor[b1] != colorCount && (b2 == -1 || bodyColor[b2] != colorCount)) {
+					bodyColor[b1] = colorCount;
+					if (b2 != -1) bodyColor[b2] = colorCount;
+					colorRows[filled++] = index;
+				} else {
+					pending[keep++] = index;
+				}
+			}
+			pendingCount = keep;
+			colorStart[++colorCount] = filled;
+		}
+		dIASSERT(filled == m);
+		return colorCount;
+	}
+
+	/**
+	 * Prepare the parallel SOR. This does the same precomputation as SOR_LCP()
+	 * and additionally builds the color batches.
+	 */
+	private static void SOR_LCP_Parallel_Prepare (DxWorldProcessMemArena memarena,
+			dxQuickStepperLCPCallContext lcpContext)
+	{
+		final DxStepperProcessingCallContext callContext = lcpContext.m_stepperCallContext;
+		final dxQuickStepperLocalContext localContext = lcpContext.m_localContext;
+		final int m = localContext.m_m;
+		final int nb = callContext.m_islandBodiesCount();
+		double[] J = localContext.m_J;
+		int[] jb = localContext.m_jb;
+
+		final boolean warm_starting = callContext.m_world().qs.warm_starting;
+		if (!warm_starting) {
+			dSetZero (lcpContext.m_lambda,m);
+		}
+
+		// precompute iMJ = inv(M)*J'
+		double[] iMJ = memarena.AllocateArrayDReal (m*12);
+		compute_invM_JT (m,J,iMJ,jb,callContext.m_islandBodiesStartA(),
+				callContext.m_islandBodiesStartOfs(),localContext.m_invI);
+
+		if (warm_starting) {
+			multiply_invM_JT (m,nb,iMJ,jb,lcpContext.m_lambda,lcpContext.m_cforce);
 		} else {
-			Arrays.fill(buf_invI, 0);
+			dSetZero (lcpContext.m_cforce,nb*6);
 		}
-		return buf_invI;
+
+		double[] Ad = memarena.AllocateArrayDReal (m);
+		SOR_LCP_ScaleRows (m,J,iMJ,jb,localContext.m_rhs,localContext.m_cfm,Ad,
+				callContext.m_world().qs.w,null);
+
+		int[] colorRows = memarena.AllocateArrayInt (m);
+		int[] colorStart = memarena.AllocateArrayInt (m+1);
+		int colorCount = SOR_LCP_ColorRows (memarena,m,nb,jb,localContext.m_findex,colorRows,colorStart);
+
+		lcpContext.m_iMJ = iMJ;
+		lcpContext.m_Ad = Ad;
+		lcpContext.m_colorRows = colorRows;
+		lcpContext.m_colorStart = colorStart;
+		lcpContext.m_colorCount = colorCount;
+		lcpContext.m_iteration = 0;
+		lcpContext.m_color = 0;
+		lcpContext.m_sweepMaxDelta = 0;
+		lcpContext.m_batchMaxDelta = memarena.AllocateArrayDReal (callContext.m_stepperAllowedThreads());
 	}
-	private DJointWithInfo1[] buf_jointinfos = new DJointWithInfo1[0];
-	private DJointWithInfo1[] ensureSize_jointinfos(int size) {
-		if (buf_jointinfos.length < size || !REUSE_OBJECTS) {
-			//TODO we could partially copy the old array...
-			buf_jointinfos = new DJointWithInfo1[size];
-			for (int i = 0; i < size; i++) {
-				buf_jointinfos[i] = new DJointWithInfo1();
+
+	/**
+	 * Solve the rows colorRows[rowBegin..rowEnd). All rows must belong to 
+	 * the same color.
+	 * @return the largest change of lambda
+	 */
+	private static double SOR_LCP_Parallel_Rows (dxQuickStepperLCPCallContext lcpContext,
+			int rowBegin, int rowEnd)
+	{
+		final dxQuickStepperLocalContext localContext = lcpContext.m_localContext;
+		final double[] J = localContext.m_J;
+		final int[] jb = localContext.m_jb;
+		final double[] b = localContext.m_rhs;
+		final double[] lo = localContext.m_lo;
+		final double[] hi = localContext.m_hi;
+		final int[] findex = localContext.m_findex;
+		final double[] iMJ = lcpContext.m_iMJ;
+		final double[] Ad = lcpContext.m_Ad;
+		final int[] colorRows = lcpContext.m_colorRows;
+		double[] lambda = lcpContext.m_lambda;
+		double[] fc = lcpContext.m_cforce;
+		double maxDelta = 0;
+
+		for (int i=rowBegin; i<rowEnd; i++) {
+			final int index = colorRows[i];
+			final int J_ofs = index*12;
+			final int fc_ofs1 = 6*jb[index*2];
+			final int b2 = jb[index*2+1];
+			final int fc_ofs2 = 6*b2;
+
+			double old_lambda = lambda[index];
+			double delta = b[index] - old_lambda*Ad[index];
+			delta -=fc[fc_ofs1] * J[J_ofs] + fc[fc_ofs1+1] * J[J_ofs+1] +
+					fc[fc_ofs1+2] * J[J_ofs+2] + fc[fc_ofs1+3] * J[J_ofs+3] +
+					fc[fc_ofs1+4] * J[J_ofs+4] + fc[fc_ofs1+5] * J[J_ofs+5];
+			if (b2 != -1) {
+				delta -=fc[fc_ofs2] * J[J_ofs+6] + fc[fc_ofs2+1] * J[J_ofs+7] +
+						fc[fc_ofs2+2] * J[J_ofs+8] + fc[fc_ofs2+3] * J[J_ofs+9] +
+						fc[fc_ofs2+4] * J[J_ofs+10] + fc[fc_ofs2+5] * J[J_ofs+11];
+			}
+
+			// The findex row acts on the same bodies and therefore never
+			// belongs to the same color, i.e. it is not modified concurrently.
+			double hi_act, lo_act;
+			if (findex[index] != -1) {
+				hi_act = dFabs (hi[index] * lambda[findex[index]]);
+				lo_act = -hi_act;
+			} else {
+				hi_act = hi[index];
+				lo_act = lo[index];
+			}
+
+			double new_lambda = old_lambda + delta;
+			if (new_lambda < lo_act) {
+				delta = lo_act-old_lambda;
+				lambda[index] = lo_act;
+			}
+			else if (new_lambda > hi_act) {
+				delta = hi_act-old_lambda;
+				lambda[index] = hi_act;
+			}
+			else {
+				lambda[index] = new_lambda;
+			}
+			if (dFabs(delta) > maxDelta) maxDelta = dFabs(delta);
+
+			final int iMJ_ofs = index*12;
+			fc[fc_ofs1 + 0] += delta * iMJ[iMJ_ofs + 0];
+			fc[fc_ofs1 + 1] += delta * iMJ[iMJ_ofs + 1];
+			fc[fc_ofs1 + 2] += delta * iMJ[iMJ_ofs + 2];
+			fc[fc_ofs1 + 3] += delta * iMJ[iMJ_ofs + 3];
+			fc[fc_ofs1 + 4] += delta * iMJ[iMJ_ofs + 4];
+			fc[fc_ofs1 + 5] += delta * iMJ[iMJ_ofs + 5];
+			if (b2 != -1) {
+				fc[fc_ofs2 + 0] += delta * iMJ[iMJ_ofs + 6];
+				fc[fc_ofs2 + 1] += delta * iMJ[iMJ_ofs + 7];
+				fc[fc_ofs2 + 2] += delta * iMJ[iMJ_ofs + 8];
+				fc[fc_ofs2 + 3] += delta * iMJ[iMJ_ofs + 9];
+				fc[fc_ofs2 + 4] += delta * iMJ[iMJ_ofs + 10];
+				fc[fc_ofs2 + 5] += delta * iMJ[iMJ_ofs + 11];
+			}
+		}
+		return maxDelta;
+	}
+
+	/**
+	 * Run the parallel SOR from the current color/iteration onwards. Batches 
+	 * that are too small to be worth sharing are solved by the calling thread.
+	 * Otherwise the batch is posted as a group of threaded calls followed by
+	 * a sync call that continues with the next batch.
+	 * <p>
+	 * If <tt>dependentReleasee</tt> is <tt>null</tt>, all batches are solved 
+	 * by the calling thread.
+	 * <p>
+	 * The convergence tolerance is checked whenever a sweep over all colors 
+	 * is complete. When done, m_iteration holds the number of iterations 
+	 * performed.
+	 */
+	private static void SOR_LCP_Parallel_Continue (dxQuickStepperLCPCallContext lcpContext,
+			DCallReleasee dependentReleasee)
+	{
+		final DxStepperProcessingCallContext callContext = lcpContext.m_stepperCallContext;
+		final int allowedThreads = dependentReleasee != null ? callContext.m_stepperAllowedThreads() : 1;
+		final int num_iterations = callContext.m_world().qs.num_iterations;
+		final double tolerance = callContext.m_world().qs.tolerance;
+		final int colorCount = lcpContext.m_colorCount;
+		final int[] colorStart = lcpContext.m_colorStart;
+
+		while (true) {
+			if (lcpContext.m_color == 0) {
+				// a sweep is complete (or none has started yet)
+				if (lcpContext.m_iteration == num_iterations) {
+					break;
+				}
+				if (lcpContext.m_iteration != 0 && lcpContext.m_sweepMaxDelta <= tolerance && tolerance > 0) {
+					break;
+				}
+				lcpContext.m_sweepMaxDelta = 0;
+			}
+
+			final int color = lcpContext.m_color;
+			final int rowBegin = colorStart[color];
+			final int rowEnd = colorStart[color + 1];
+
+			if (++lcpContext.m_color == colorCount) {
+				lcpContext.m_color = 0;
+				++lcpContext.m_iteration;
+			}
+
+			int threads = (rowEnd - rowBegin) / dxQUICKSTEPISLAND_SOR_MIN_ROWS_PER_THREAD;
+			if (threads > allowedThreads) {
+				threads = allowedThreads;
 			}
+
+			if (threads <= 1) {
+				double maxDelta = SOR_LCP_Parallel_Rows(lcpContext, rowBegin, rowEnd);
+				if (maxDelta > lcpContext.m_sweepMaxDelta) lcpContext.m_sweepMaxDelta = maxDelta;
+				continue;
+			}
+
+			lcpContext.m_batchBegin = rowBegin;
+			lcpContext.m_batchEnd = rowEnd;
+			lcpContext.m_batchThreads = threads;
+
+			DxWorld world = callContext.m_world();
+			final Ref<DCallReleasee> syncReleasee = new Ref<DCallReleasee>();
+			world.threading().PostThreadedCallForUnawareReleasee(null, syncReleasee, threads, dependentReleasee, 
+					null, dxQuickStepIsland_Stage3LCPSync_Callback, lcpContext, 0, "QuickStepIsland Stage3 LCP Sync");
+
+			world.threading().PostThreadedCallsGroup(null, threads, syncReleasee.get(), 
+					dxQuickStepIsland_Stage3LCP_Callback, lcpContext, "QuickStepIsland Stage3 LCP");
+			break;
+		}
+	}
+
+	private static 
+	dThreadedCallFunction dxQuickStepIsland_Stage3LCP_Callback = new dThreadedCallFunction() {
+		@Override
+		public boolean run(CallContext _lcpContext, int callInstanceIndex,
+				DCallReleasee callThisReleasee) {
+			//(void)callThisReleasee; // unused
+			dxQuickStepperLCPCallContext lcpContext = (dxQuickStepperLCPCallContext)_lcpContext;
+			// Static partitioning of the batch: rows of a color are independent,
+			// so the result does not depend on the number of threads.
+			final int batchBegin = lcpContext.m_batchBegin;
+			final int batchSize = lcpContext.m_batchEnd - batchBegin;
+			final int threads = lcpContext.m_batchThreads;
+			int rowBegin = batchBegin + (int)((long)batchSize * callInstanceIndex / threads);
+			int rowEnd = batchBegin + (int)((long)batchSize * (callInstanceIndex + 1) / threads);
+			lcpContext.m_batchMaxDelta[callInstanceIndex] = SOR_LCP_Parallel_Rows(lcpContext, rowBegin, rowEnd);
+			return true;
+		}
+	};
+
+	private static 
+	dThreadedCallFunction dxQuickStepIsland_Stage3LCPSync_Callback = new dThreadedCallFunction() {
+		@Override
+		public boolean run(CallContext _lcpContext, int callInstanceIndex,
+				DCallReleasee callThisReleasee) {
+			//(void)callInstanceIndex; // unused
+			//(void)callThisReleasee; // unused
+			dxQuickStepperLCPCallContext lcpContext = (dxQuickStepperLCPCallContext)_lcpContext;
+			for (int i=0; i<lcpContext.m_batchThreads; i++) {
+				if (lcpContext.m_batchMaxDelta[i] > lcpContext.m_sweepMaxDelta) {
+					lcpContext.m_sweepMaxDelta = lcpContext.m_batchMaxDelta[i];
+				}
+			}
+			SOR_LCP_Parallel_Continue(lcpContext, lcpContext.m_stage4Releasee);
+			return true;
+		}
+	};
+
+	private static 
+	dThreadedCallFunction dxQuickStepIsland_Stage4_Callback = new dThreadedCallFunction() {
+		@Override
+		public boolean run(CallContext _lcpContext, int callInstanceIndex,
+				DCallReleasee callThisReleasee) {
+			//(void)callInstanceIndex; // unused
+			//(void)callThisReleasee; // unused
+			dxQuickStepperLCPCallContext lcpContext = (dxQuickStepperLCPCallContext)_lcpContext;
+			dxQuickStepIsland_Stage4(lcpContext.m_stepperCallContext, lcpContext.m_localContext, 
+					lcpContext.m_lambda, lcpContext.m_cforce, lcpContext.m_iteration);
+			return true;
+		}
+	};
+
+
+	//***************************************************************************
+	// Jacobi-LCP method with mass splitting
+
+	// All rows are updated against the same fc (body velocities) and the
+	// changes of lambda are applied after each sweep. To keep this stable,
+	// the mass of each body is split evenly among the rows acting on it
+	// (see SOR_LCP_ScaleRows()). Averaging the velocities of the sub-bodies
+	// is equivalent to applying all changes with the unsplit masses, so fc
+	// keeps its usual meaning.
+	// Each sweep consists of two phases that are shared among the threads
+	// in chunks: computing delta for the rows and applying delta to lambda
+	// and fc (per body, using the body->rows adjacency). The result does
+	// not depend on the number of threads.
+
+	/**
+	 * Prepare the Jacobi solver. This does the same precomputation as 
+	 * SOR_LCP() and additionally builds the body->rows adjacency.
+	 */
+	private static void Jacobi_LCP_Prepare (DxWorldProcessMemArena memarena,
+			dxQuickStepperLCPCallContext lcpContext)
+	{
+		final DxStepperProcessingCallContext callContext = lcpContext.m_stepperCallContext;
+		final dxQuickStepperLocalContext localContext = lcpContext.m_localContext;
+		final int m = localContext.m_m;
+		final int nb = callContext.m_islandBodiesCount();
+		double[] J = localContext.m_J;
+		int[] jb = localContext.m_jb;
+
+		final boolean warm_starting = callContext.m_world().qs.warm_starting;
+		if (!warm_starting) {
+			dSetZero (lcpContext.m_lambda,m);
+		}
+
+		// precompute iMJ = inv(M)*J'
+		double[] iMJ = memarena.AllocateArrayDReal (m*12);
+		compute_invM_JT (m,J,iMJ,jb,callContext.m_islandBodiesStartA(),
+				callContext.m_islandBodiesStartOfs(),localContext.m_invI);
+
+		if (warm_starting) {
+			multiply_invM_JT (m,nb,iMJ,jb,lcpContext.m_lambda,lcpContext.m_cforce);
 		} else {
+			dSetZero (lcpContext.m_cforce,nb*6);
+		}
+
+		// rows per body, bodyRows holds (row*2 + side)
+		int[] bodyRowStart = memarena.AllocateArrayInt (nb+1);
+		int[] bodyRows = memarena.AllocateArrayInt (m*2);
+		{
+			Arrays.fill(bodyRowStart, 0);
+			for (int i=0; i<m; i++) {
+				bodyRowStart[jb[i*2]+1]++;
+				int b2 = jb[i*2+1];
+				if (b2 != -1) bodyRowStart[b2+1]++;
+			}
+			for (int b=0; b<nb; b++) {
+				bodyRowStart[b+1] += bodyRowStart[b];
+			}
+			int[] fill = memarena.AllocateArrayInt (nb);
+			System.arraycopy(bodyRowStart, 0, fill, 0, nb);
+			for (int i=0; i<m; i++) {
+				bodyRows[fill[jb[i*2]]++] = i*2;
+				int b2 = jb[i*2+1];
+				if (b2 != -1) bodyRows[fill[b2]++] = i*2 + 1;
+			}
+		}
+
+		// Over-relaxation makes Jacobi iterations diverge
+		double w = callContext.m_world().qs.w;
+		if (w > 1) w = 1;
+		double[] Ad = memarena.AllocateArrayDReal (m);
+		SOR_LCP_ScaleRows (m,J,iMJ,jb,localContext.m_rhs,localContext.m_cfm,Ad,w,bodyRowStart);
+
+		lcpContext.m_jacobi = true;
+		lcpContext.m_iMJ = iMJ;
+		lcpContext.m_Ad = Ad;
+		lcpContext.m_bodyRowStart = bodyRowStart;
+		lcpContext.m_bodyRows = bodyRows;
+		lcpContext.m_delta = memarena.AllocateArrayDReal (m);
+		lcpContext.m_iteration = 0;
+		lcpContext.m_sweepMaxDelta = 0;
+		lcpContext.m_batchMaxDelta = memarena.AllocateArrayDReal (callContext.m_stepperAllowedThreads());
+	}
+
+	/**
+	 * Compute delta for the rows [rowBegin..rowEnd) against the current 
+	 * lambda and fc, both are not modified.
+	 * @return the largest change of lambda
+	 */
+	private static double Jacobi_LCP_Rows (dxQuickStepperLCPCallContext lcpContext,
+			int rowBegin, int rowEnd)
+	{
+		final dxQuickStepperLocalContext localContext = lcpContext.m_localContext;
+		final double[] J = localContext.m_J;
+		final int[] jb = localContext.m_jb;
+		final double[] b = localContext.m_rhs;
+		final double[] lo = localContext.m_lo;
+		final double[] hi = localContext.m_hi;
+		final int[] findex = localContext.m_findex;
+		final double[] Ad = lcpContext.m_Ad;
+		final double[] lambda = lcpContext.m_lambda;
+		final double[] fc = lcpContext.m_cforce;
+		double[] deltaA = lcpContext.m_delta;
+		double maxDelta = 0;
+
+		for (int index=rowBegin; index<rowEnd; index++) {
+			final int J_ofs = index*12;
+			final int fc_ofs1 = 6*jb[index*2];
+			final int b2 = jb[index*2+1];
+			final int fc_ofs2 = 6*b2;
+
+			double old_lambda = lambda[index];
+			double delta = b[index] - old_lambda*Ad[index];
+			delta -=fc[fc_ofs1] * J[J_ofs] + fc[fc_ofs1+1] * J[J_ofs+1] +
+					fc[fc_ofs1+2] * J[J_ofs+2] + fc[fc_ofs1+3] * J[J_ofs+3] +
+					fc[fc_ofs1+4] * J[J_ofs+4] + fc[fc_ofs1+5] * J[J_ofs+5];
+			if (b2 != -1) {
+				delta -=fc[fc_ofs2] * J[J_ofs+6] + fc[fc_ofs2+1] * J[J_ofs+7] +
+						fc[fc_ofs2+2] * J[J_ofs+8] + fc[fc_ofs2+3] * J[J_ofs+9] +
+						fc[fc_ofs2+4] * J[J_ofs+10] + fc[fc_ofs2+5] * J[J_ofs+11];
+			}
+
+			// friction bounds use the normal force of the previous sweep
+			double hi_act, lo_act;
+			if (findex[index] != -1) {
+				hi_act = dFabs (hi[index] * lambda[findex[index]]);
+				lo_act = -hi_act;
+			} else {
+				hi_act = hi[index];
+				lo_act = lo[index];
+			}
+
+			double new_lambda = old_lambda + delta;
+			if (new_lambda < lo_act) {
+				delta = lo_act-old_lambda;
+			}
+			else if (new_lambda > hi_act) {
+				delta = hi_act-old_lambda;
+			}
+			deltaA[index] = delta;
+			if (dFabs(delta) > maxDelta) maxDelta = dFabs(delta);
+		}
+		return maxDelta;
+	}
+
+	/**
+	 * Apply delta: lambda for the rows of chunk <tt>part</tt> and fc for 
+	 * the bodies of chunk <tt>part</tt>.
+	 */
+	private static void Jacobi_LCP_Apply (dxQuickStepperLCPCallContext lcpContext,
+			int part, int parts)
+	{
+		final int m = lcpContext.m_localContext.m_m;
+		final int nb = lcpContext.m_stepperCallContext.m_islandBodiesCount();
+		final double[] delta = lcpContext.m_delta;
+		final double[] iMJ = lcpContext.m_iMJ;
+		final int[] bodyRowStart = lcpContext.m_bodyRowStart;
+		final int[] bodyRows = lcpContext.m_bodyRows;
+		double[] lambda = lcpContext.m_lambda;
+		double[] fc = lcpContext.m_cforce;
+
+		int rowBegin = (int)((long)m * part / parts);
+		int rowEnd = (int)((long)m * (part + 1) / parts);
+		for (int i=rowBegin; i<rowEnd; i++) {
+			lambda[i] += delta[i];
+		}
+
+		int bodyBegin = (int)((long)nb * part / parts);
+		int bodyEnd = (int)((long)nb * (part + 1) / parts);
+		for (int bi=bodyBegin; bi<bodyEnd; bi++) {
+			final int fc_ofs = bi*6;
+			for (int k=bodyRowStart[bi]; k<bodyRowStart[bi+1]; k++) {
+				final int entry = bodyRows[k];
+				final int row = entry >> 1;
+				final double delta_row = delta[row];
+				if (delta_row != 0) {
+					final int iMJ_ofs = row*12 + (entry & 1)*6;
+					fc[fc_ofs + 0] += delta_row * iMJ[iMJ_ofs + 0];
+					fc[fc_ofs + 1] += delta_row * iMJ[iMJ_ofs + 1];
+					fc[fc_ofs + 2] += delta_row * iMJ[iMJ_ofs + 2];
+					fc[fc_ofs + 3] += delta_row * iMJ[iMJ_ofs + 3];
+					fc[fc_ofs + 4] += delta_row * iMJ[iMJ_ofs + 4];
+					fc[fc_ofs + 5] += delta_row * iMJ[iMJ_ofs + 5];
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return whether the Jacobi iterations are finished, i.e. the maximal
+	 * number of iterations has been performed or the tolerance is reached.
+	 */
+	private static boolean Jacobi_LCP_IsDone (dxQuickStepperLCPCallContext lcpContext)
+	{
+		final dxQuickStepParameters qs = lcpContext.m_stepperCallContext.m_world().qs;
+		if (lcpContext.m_iteration == qs.num_iterations) {
+			return true;
+		}
+		return lcpContext.m_iteration != 0 && lcpContext.m_sweepMaxDelta <= qs.tolerance && qs.tolerance > 0;
+	}
+
+	/**
+	 * Run the Jacobi iterations from the current iteration onwards. Small
+	 * islands are solved by the calling thread, otherwise each phase is 
+	 * posted as a group of threaded calls followed by a sync call.
+	 * <p>
+	 * If <tt>dependentReleasee</tt> is <tt>null</tt>, everything is solved 
+	 * by the calling thread.
+	 */
+	private static void Jacobi_LCP_Continue (dxQuickStepperLCPCallContext lcpContext,
+			DCallReleasee dependentReleasee)
+	{
+		final DxStepperProcessingCallContext callContext = lcpContext.m_stepperCallContext;
+		final int m = lcpContext.m_localContext.m_m;
+		final int allowedThreads = dependentReleasee != null ? callContext.m_stepperAllowedThreads() : 1;
+
+		int threads = m / dxQUICKSTEPISLAND_JACOBI_MIN_ROWS_PER_THREAD;
+		if (threads > allowedThreads) {
+			threads = allowedThreads;
+		}
+
+		if (threads <= 1) {
+			while (!Jacobi_LCP_IsDone(lcpContext)) {
+				lcpContext.m_sweepMaxDelta = Jacobi_LCP_Rows(lcpContext, 0, m);
+				Jacobi_LCP_Apply(lcpContext, 0, 1);
+				++lcpContext.m_iteration;
+			}
+			return;
+		}
+
+		if (Jacobi_LCP_IsDone(lcpContext)) {
+			return;
+		}
+		lcpContext.m_batchThreads = threads;
+
+		DxWorld world = callContext.m_world();
+		final Ref<DCallReleasee> syncReleasee = new Ref<DCallReleasee>();
+		world.threading().PostThreadedCallForUnawareReleasee(null, syncReleasee, threads, dependentReleasee, 
+				null, dxQuickStepIsland_Stage3JacobiRowsSync_Callback, lcpContext, 0, "QuickStepIsland Stage3 Jacobi Rows Sync");
+
+		world.threading().PostThreadedCallsGroup(null, threads, syncReleasee.get(), 
+				dxQuickStepIsland_Stage3JacobiRows_Callback, lcpContext, "QuickStepIsland Stage3 Jacobi Rows");
+	}
+
+	private static 
+	dThreadedCallFunction dxQuickStepIsland_Stage3JacobiRows_Callback = new dThreadedCallFunction() {
+		@Override
+		public boolean run(CallContext _lcpContext, int callInstanceIndex,
+				DCallReleasee callThisReleasee) {
+			//(void)callThisReleasee; // unused
+			dxQuickStepperLCPCallContext lcpContext = (dxQuickStepperLCPCallContext)_lcpContext;
+			final int m = lcpContext.m_localContext.m_m;
+			final int threads = lcpContext.m_batchThreads;
+			int rowBegin = (int)((long)m * callInstanceIndex / threads);
+			int rowEnd = (int)((long)m * (callInstanceIndex + 1) / threads);
+			lcpContext.m_batchMaxDelta[callInstanceIndex] = Jacobi_LCP_Rows(lcpContext, rowBegin, rowEnd);
+			return true;
+		}
+	};
+
+	private static 
+	dThreadedCallFunction dxQuickStepIsland_Stage3JacobiRowsSync_Callback = new dThreadedCallFunction() {
+		@Override
+		public boolean run(CallContext _lcpContext, int callInstanceIndex,
+				DCallReleasee callThisReleasee) {
+			//(void)callInstanceIndex; // unused
+			//(void)callThisReleasee; // unused
+			dxQuickStepperLCPCallContext lcpContext = (dxQuickStepperLCPCallContext)_lcpContext;
+			final int threads = lcpContext.m_batchThreads;
+			lcpContext.m_sweepMaxDelta = 0;
+			for (int i=0; i<threads; i++) {
+				if (lcpContext.m_batchMaxDelta[i] > lcpContext.m_sweepMaxDelta) {
+					lcpContext.m_sweepMaxDelta = lcpContext.m_batchMaxDelta[i];
+				}
+			}
+
+			DxWorld world = lcpContext.m_stepperCallContext.m_world();
+			final Ref<DCallReleasee> syncReleasee = new Ref<DCallReleasee>();
+			world.threading().PostThreadedCallForUnawareReleasee(null, syncReleasee, threads, lcpContext.m_stage4Releasee, 
+					null, dxQuickStepIsland_Stage3JacobiApplySync_Callback, lcpContext, 0, "QuickStepIsland Stage3 Jacobi Apply Sync");
+
+			world.threading().PostThreadedCallsGroup(null, threads, syncReleasee.get(), 
+					dxQuickStepIsland_Stage3JacobiApply_Callback, lcpContext, "QuickStepIsland Stage3 Jacobi Apply");
+			return true;
+		}
+	};
+
+	private static 
+	dThreadedCallFunction dxQuickStepIsland_Stage3JacobiApply_Callback = new dThreadedCallFunction() {
+		@Override
+		public boolean run(CallContext _lcpContext, int callInstanceIndex,
+				DCallReleasee callThisReleasee) {
+			//(void)callThisReleasee; // unused
+			dxQuickStepperLCPCallContext lcpContext = (dxQuickStepperLCPCallContext)_lcpContext;
+			Jacobi_LCP_Apply(lcpContext, callInstanceIndex, lcpContext.m_batchThreads);
+			return true;
+		}
+	};
+
+	private static 
+	dThreadedCallFunction dxQuickStepIsland_Stage3JacobiApplySync_Callback = new dThreadedCallFunction() {
+		@Override
+		public boolean run(CallContext _lcpContext, int callInstanceIndex,
+				DCallReleasee callThisReleasee) {
+			//(void)callInstanceIndex; // unused
+			//(void)callThisReleasee; // unused
+			dxQuickStepperLCPCallContext lcpContext = (dxQuickStepperLCPCallContext)_lcpContext;
+			++lcpContext.m_iteration;
+			Jacobi_LCP_Continue(lcpContext, lcpContext.m_stage4Releasee);
+			return true;
+		}
+	};
+
+	
+	/**
+	 * Temporaries of the stages that are called as a group, one set per
+	 * call instance.
+	 */
+	private static final class dxQuickStepperThreadTemps
+	{
+		// Stage0 bodies
+		final DMatrix3 tmp = new DMatrix3();
+		final DMatrix3 I = new DMatrix3();
+		final DMatrix3 Itild = new DMatrix3();
+		final DMatrix3 itInv = new DMatrix3();
+		final DVector3 L = new DVector3();
+		final DVector3 tau0 = new DVector3();
+		// Stage2a
+		final DxJoint.Info2Descr Jinfo = new DxJoint.Info2Descr();
+	}
+
+	/**
+	 * Buffers of dxQuickStepIsland() that are kept with the stepper arena
+	 * between steps (see issue #36). A stepper arena is used by one island 
+	 * at a time, so islands and worlds can be stepped concurrently.
+	 * <p>
+	 * The call contexts are kept here as well, so that stepping an unchanged
+	 * scene does not allocate any objects.
+	 */
+	private static final class dxQuickStepperScratch
+	{
+		double[] invI = new double[0];
+		DJointWithInfo1[] jointinfos = new DJointWithInfo1[0];
+		dxQuickStepperThreadTemps[] threadTemps = new dxQuickStepperThreadTemps[0];
+		final dxQuickStepperStage1CallContext stage1CallContext = new dxQuickStepperStage1CallContext();
+		final dxQuickStepperStage0BodiesCallContext stage0BodiesCallContext = new dxQuickStepperStage0BodiesCallContext();
+		final dxQuickStepperStage0JointsCallContext stage0JointsCallContext = new dxQuickStepperStage0JointsCallContext();
+		final dxQuickStepperLocalContext localContext = new dxQuickStepperLocalContext();
+		final dxQuickStepperStage2CallContext stage2CallContext = new dxQuickStepperStage2CallContext();
+		final dxQuickStepperStage3CallContext stage3CallContext = new dxQuickStepperStage3CallContext();
+		final dxQuickStepperLCPCallContext lcpContext = new dxQuickStepperLCPCallContext();
+		final DxContactStore contacts = new DxContactStore();
+		DTracer tracer; // island being traced, see Stage4
+		Object traceToken;
+
+		static dxQuickStepperScratch obtain(DxWorldProcessMemArena memarena) {
+			Object scratch = memarena.GetStepperScratch();
+			if (scratch instanceof dxQuickStepperScratch) {
+				return (dxQuickStepperScratch) scratch;
+			}
+			dxQuickStepperScratch newScratch = new dxQuickStepperScratch();
+			memarena.SetStepperScratch(newScratch);
+			return newScratch;
+		}
+
+		double[] ensureSize_invI(int size) {
+			if (invI.length < size) {
+				invI = new double[size];
+			} else {
+				Arrays.fill(invI, 0, size, 0);
+			}
+			return invI;
+		}
+
+		dxQuickStepperThreadTemps[] ensureSize_threadTemps(int size) {
+			if (threadTemps.length < size) {
+				dxQuickStepperThreadTemps[] tmp = new dxQuickStepperThreadTemps[size];
+				System.arraycopy(threadTemps, 0, tmp, 0, threadTemps.length);
+				for (int i = threadTemps.length; i < size; i++) {
+					tmp[i] = new dxQuickStepperThreadTemps();
+				}
+				threadTemps = tmp;
+			}
+			return threadTemps;
+		}
+
+		DJointWithInfo1[] ensureSize_jointinfos(int size) {
+			if (jointinfos.length < size) {
+				DJointWithInfo1[] tmp = new DJointWithInfo1[size];
+				System.arraycopy(jointinfos, 0, tmp, 0, jointinfos.length);
+				for (int i = jointinfos.length; i < size; i++) {
+					tmp[i] = new DJointWithInfo1();
+				}
+				jointinfos = tmp;
+			}
 			//Obviously this doesn't reset all objects, only the
 			//ones that are likely to be needed.
 			for (int i = 0; i < size; i++) {
-				DJointWithInfo1 j = buf_jointinfos[i];
-				if (j != null) {
-					j.joint = null;
-					j.info.m = 0;
-					j.info.nub = 0;
-				}
+				DJointWithInfo1 j = jointinfos[i];
+				j.joint = null;
+				j.info.m = 0;
+				j.info.nub = 0;
 			}
+			return jointinfos;
 		}
-		return buf_jointinfos;
 	}
 	
 	/*extern */
@@ -1009,13 +1820,18 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	    int nb = callContext.m_islandBodiesCount();
 	    int _nj = callContext.m_islandJointsCount();
 
+	    dxQuickStepperScratch scratch = dxQuickStepperScratch.obtain(memarena);
+	    DTracer tracer = OdeConfig.getTracer();
+	    scratch.traceToken = tracer != null ? tracer.beginIslandStep(world) : null;
+	    scratch.tracer = tracer;
 	    //double[] invI = memarena.AllocateArrayDReal(nb*3*4);//new double[3*4*nb];//dRealAllocaArray (invI,3*4*nb);
-	    double[] invI = ensureSize_invI(nb*3*4);
+	    double[] invI = scratch.ensureSize_invI(nb*3*4);
 	    
 	    //dJointWithInfo1[] const jointinfos = memarena.AllocateArray<dJointWithInfo1>(_nj);
 	    memarena.dummy();
 	    //DJointWithInfo1[] jointinfos = new DJointWithInfo1[_nj];
-	    DJointWithInfo1[] jointinfos = ensureSize_jointinfos(_nj);	    
+	    DJointWithInfo1[] jointinfos = scratch.ensureSize_jointinfos(_nj);
+	    dxQuickStepperThreadTemps[] threadTemps = scratch.ensureSize_threadTemps(callContext.m_stepperAllowedThreads());
 	    //TODO this is done in dxQuickStepIsland_Stage0_Joints()
 //	    for (int i = 0; i < jointinfos.length; i++) {
 //	    	jointinfos[i] = new DJointWithInfo1();
@@ -1027,70 +1843,50 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	    BlockPointer stagesMemArenaState = memarena.SaveState();
 
 	    memarena.dummy();
-	    final dxQuickStepperStage1CallContext stage1CallContext = new dxQuickStepperStage1CallContext(); 
+	    final dxQuickStepperStage1CallContext stage1CallContext = scratch.stage1CallContext;
 	    		//(dxQuickStepperStage1CallContext )memarena.AllocateBlock(sizeof(dxQuickStepperStage1CallContext));
-	    stage1CallContext.Initialize(callContext, stagesMemArenaState, invI, jointinfos);
+	    stage1CallContext.Initialize(callContext, stagesMemArenaState, invI, jointinfos, this);
 
 	    memarena.dummy();
-	    final dxQuickStepperStage0BodiesCallContext stage0BodiesCallContext = new dxQuickStepperStage0BodiesCallContext(); 
+	    final dxQuickStepperStage0BodiesCallContext stage0BodiesCallContext = scratch.stage0BodiesCallContext;
 	    		//(dxQuickStepperStage0BodiesCallContext)memarena.AllocateBlock(sizeof(dxQuickStepperStage0BodiesCallContext));
-	    stage0BodiesCallContext.Initialize(callContext, invI);
+	    stage0BodiesCallContext.Initialize(callContext, invI, threadTemps);
 
 	    memarena.dummy();
-	    final dxQuickStepperStage0JointsCallContext stage0JointsCallContext = new dxQuickStepperStage0JointsCallContext(); 
+	    final dxQuickStepperStage0JointsCallContext stage0JointsCallContext = scratch.stage0JointsCallContext;
 	    		//(dxQuickStepperStage0JointsCallContext)memarena.AllocateBlock(sizeof(dxQuickStepperStage0JointsCallContext));
 	    stage0JointsCallContext.Initialize(callContext, jointinfos, stage1CallContext.m_stage0Outputs);
 
-//	    if (allowedThreads == 1)
-//	    {
-	        dxQuickStepIsland_Stage0_Bodies(stage0BodiesCallContext);
+	    if (allowedThreads == 1)
+	    {
+	        dxQuickStepIsland_Stage0_Bodies(stage0BodiesCallContext, 0);
 	        dxQuickStepIsland_Stage0_Joints(stage0JointsCallContext);
 	        dxQuickStepIsland_Stage1(stage1CallContext);
-//	    }
-//	    else
-//	    {
-//			//TODO
-////			try {
-////				ArrayList<Callable<Boolean>> tasks = new ArrayList<>(); 
-////				for (int i = 0; i < THREADS; i++) {
-////					tasks.add(new Callable<Boolean>() {
-////						@Override
-////						public Boolean call() {
-////							dxQuickStepIsland_Stage0_Bodies(stage0BodiesCallContext);
-////							return Boolean.TRUE;
-////						}
-////					});
-////				}
-////				for (Future<Boolean> f: POOL.invokeAll(tasks, 1, TimeUnit.HOURS)) {
-////					f.get();
-////				}
-////
-////				dxQuickStepIsland_Stage0_Joints(stage0JointsCallContext);
-////				dxQuickStepIsland_Stage1(stage1CallContext);
-////			} catch (InterruptedException e) {
-////				throw new RuntimeException(e);
-////			} catch (ExecutionException e) {
-////				throw new RuntimeException(e);
-////			}
-//
-//			int bodyThreads = allowedThreads;
-//	        int jointThreads = 1;
-//
-//	        Ref<DCallReleasee> stage1CallReleasee = new Ref<DCallReleasee>();
-//	        world.threading().PostThreadedCallForUnawareReleasee(null, stage1CallReleasee, 
-//	        		bodyThreads + jointThreads, callContext.m_finalReleasee(), 
-//	        		null, dxQuickStepIsland_Stage1_Callback, stage1CallContext, 0, 
-//	        		"QuickStepIsland Stage1");
-//
-//	        world.threading().PostThreadedCallsGroup(null, bodyThreads, stage1CallReleasee.get(), 
-//	        		dxQuickStepIsland_Stage0_Bodies_Callback, stage0BodiesCallContext, 
-//	        		"QuickStepIsland Stage0-Bodies");
-//
-//	        world.threading().PostThreadedCall(null, null, 0, stage1CallReleasee.get(), null, 
-//	        		dxQuickStepIsland_Stage0_Joints_Callback, stage0JointsCallContext, 0, 
-//	        		"QuickStepIsland Stage0-Joints");
-//	        dIASSERT(jointThreads == 1);
-//	    }
+	    }
+	    else
+	    {
+	        // Bodies are shared among all threads with an atomic index, while the
+	        // joint list compaction needs to keep joint order and runs as a single call.
+	        // Both only write per-body/per-joint data, so the results are the same
+	        // as with the serial code above.
+	        int bodyThreads = allowedThreads;
+	        int jointThreads = 1;
+
+	        Ref<DCallReleasee> stage1CallReleasee = new Ref<DCallReleasee>();
+	        world.threading().PostThreadedCallForUnawareReleasee(null, stage1CallReleasee, 
+	        		bodyThreads + jointThreads, callContext.m_finalReleasee(), 
+	        		null, dxQuickStepIsland_Stage1_Callback, stage1CallContext, 0, 
+	        		"QuickStepIsland Stage1");
+
+	        world.threading().PostThreadedCallsGroup(null, bodyThreads, stage1CallReleasee.get(), 
+	        		dxQuickStepIsland_Stage0_Bodies_Callback, stage0BodiesCallContext, 
+	        		"QuickStepIsland Stage0-Bodies");
+
+	        world.threading().PostThreadedCall(null, null, 0, stage1CallReleasee.get(), null, 
+	        		dxQuickStepIsland_Stage0_Joints_Callback, stage0JointsCallContext, 0, 
+	        		"QuickStepIsland Stage0-Joints");
+	        dIASSERT(jointThreads == 1);
+	    }
 	}    
 
 	private static dThreadedCallFunction dxQuickStepIsland_Stage0_Bodies_Callback = new dThreadedCallFunction() {
@@ -1101,14 +1897,16 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 			//(void)callInstanceIndex; // unused
 			//(void)callThisReleasee; // unused
 			dxQuickStepperStage0BodiesCallContext callContext = (dxQuickStepperStage0BodiesCallContext)_callContext;
-			dxQuickStepIsland_Stage0_Bodies(callContext);
+			dxQuickStepIsland_Stage0_Bodies(callContext, callInstanceIndex);
 			return true;
 		}
 	};
 
 	private static 
-	void dxQuickStepIsland_Stage0_Bodies(dxQuickStepperStage0BodiesCallContext callContext)
+	void dxQuickStepIsland_Stage0_Bodies(dxQuickStepperStage0BodiesCallContext callContext, 
+			int callInstanceIndex)
 	{
+	    final long profileStart = dxProfileStart(callContext.m_stepperCallContext);
 	    DxBody[] bodyP = callContext.m_stepperCallContext.m_islandBodiesStartA();
 	    int bodyOfs = callContext.m_stepperCallContext.m_islandBodiesStartOfs();
 	    int nb = callContext.m_stepperCallContext.m_islandBodiesCount();
@@ -1162,10 +1960,11 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	        double[] invIrowA = callContext.m_invI;
 	        int invIrowP = 0;
 	        int bodyIndex = ThreadingUtils.ThrsafeIncrementIntUpToLimit(callContext.m_inertiaBodyIndex, nb);
+	        dxQuickStepperThreadTemps temps = callContext.m_threadTemps[callInstanceIndex];
 
 	        for (int i = 0; i != nb; invIrowP += 12, ++i) {
 	            if (i == bodyIndex) {
-	                DMatrix3 tmp = new DMatrix3();
+	                DMatrix3 tmp = temps.tmp;
 	                DxBody b = bodyP[bodyOfs+i];
 
 	                // compute inverse inertia tensor in global frame
@@ -1175,7 +1974,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	                // Don't apply gyroscopic torques to bodies
 	                // if not flagged or the body is kinematic
 	                if (b.isFlagsGyroscopic() && (b.invMass>0)) {
-	                    DMatrix3 I = new DMatrix3();
+	                    DMatrix3 I = temps.I;
 	                    // compute inertia tensor in global frame
 	                    dMultiply2_333 (tmp,b.mass._I,b.posr().R());
 	                    dMultiply0_333 (I,b.posr().R(),tmp);
@@ -1189,7 +1988,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	                    //"Stabilizing Gyroscopic Forces in Rigid Multibody Simulations"
 	                    // (LacoursiÃ¨re 2006)
 	                    double h = callContext.m_stepperCallContext.m_stepSize(); // Step size
-	                    DVector3 L = new DVector3(); // Compute angular momentum
+	                    DVector3 L = temps.L; // Compute angular momentum
 	                    dMultiply0_331(L,I,b.avel);
 	                    
 	                    // Compute a new effective 'inertia tensor'
@@ -1199,7 +1998,8 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	                    // Itild may not be symmetric pos-definite, 
 	                    // but we can still use it to compute implicit
 	                    // gyroscopic torques.
-	                    DMatrix3 Itild= new DMatrix3();//{0};  
+	                    DMatrix3 Itild= temps.Itild;//{0};  
+	                    Itild.setZero();
 	                    dSetCrossMatrixMinus(Itild,L);//,4);
 //	                    for (int ii=0;ii<12;++ii) {
 //	                      Itild[ii]=Itild[ii]*h+I[ii];
@@ -1211,7 +2011,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	                    // a sort of "torque"
 	                    L.scale(dRecip(h));//dScaleVector3(L,dRecip(h)); 
 	                    // Invert the pseudo-tensor
-	                    DMatrix3 itInv = new DMatrix3();
+	                    DMatrix3 itInv = temps.itInv;
 	                    // This is a closed-form inversion.
 	                    // It's probably not numerically stable
 	                    // when dealing with small masses with
@@ -1233,7 +2033,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	                        // to the old inertia matrix as explicit
 	                        // torques with a semi-implicit update
 	                        // step.
-	                        DVector3 tau0 = new DVector3();
+	                        DVector3 tau0 = temps.tau0;
 	                        dMultiply0_331(tau0,Itild,L);
 	                        
 	                        // Add the gyro torques to the torque 
@@ -1250,6 +2050,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	            }
 	        }
 	    }
+	    dxProfileStage(callContext.m_stepperCallContext, DStepProfile.STAGE0_BODIES, profileStart, 0);
 	}
 
 	private static dThreadedCallFunction dxQuickStepIsland_Stage0_Joints_Callback = new dThreadedCallFunction() {
@@ -1268,6 +2069,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	private static 
 	void dxQuickStepIsland_Stage0_Joints(dxQuickStepperStage0JointsCallContext callContext)
 	{
+	    final long profileStart = dxProfileStart(callContext.m_stepperCallContext);
 	    DxJoint[] _jointP = callContext.m_stepperCallContext.m_islandJointsStartA();
 	    int _jointOfs = callContext.m_stepperCallContext.m_islandJointsStartOfs();
 	    int _nj = callContext.m_stepperCallContext.m_islandJointsCount();
@@ -1302,6 +2104,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	    	callContext.m_stage0Outputs.m = mcurr;
 	    	callContext.m_stage0Outputs.mfb = mfbcurr;
 	    }
+	    dxProfileStage(callContext.m_stepperCallContext, DStepProfile.STAGE0_JOINTS, profileStart, 0);
 	}
 
 	private static dThreadedCallFunction dxQuickStepIsland_Stage1_Callback = new dThreadedCallFunction() {
@@ -1321,11 +2124,13 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	void dxQuickStepIsland_Stage1(dxQuickStepperStage1CallContext stage1CallContext)
 	{
 		final DxStepperProcessingCallContext callContext = stage1CallContext.m_stepperCallContext;
+		final long profileStart = dxProfileStart(callContext);
 		double[] invI = stage1CallContext.m_invI;
 		DJointWithInfo1[] jointinfos = stage1CallContext.m_jointinfos;
 		int nj = stage1CallContext.m_stage0Outputs.nj;
 		int m = stage1CallContext.m_stage0Outputs.m;
 		int mfb = stage1CallContext.m_stage0Outputs.mfb;
+		DxQuickStep stepper = stage1CallContext.m_stepper;
 
 		DxWorldProcessMemArena memarena = callContext.m_stepperArena();
 		memarena.RestoreState(stage1CallContext.m_stageMemArenaState);
@@ -1345,11 +2150,15 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 		double[] J = null, cfm = null, lo = null, hi = null, rhs = null, Jcopy = null;
 		int[] jb = null, findex = null;
 
+		dxQuickStepperScratch scratch = dxQuickStepperScratch.obtain(memarena);
+		DxContactStore contacts = scratch.contacts;
+		contacts.reset();
+
 		// if there are constraints, compute the constraint force
 		if (m > 0) {
 			//mindex = memarena.AllocateArray<unsigned int>(2 * (size_t)(nj + 1));
 			memarena.dummy();
-			mindex = new int[2 * (nj + 1)];
+			mindex = memarena.AllocateArrayInt(2 * (nj + 1));
 			{
 				int mcurrO = 0;//mindex;
 				int moffs = 0, mfboffs = 0;
@@ -1372,6 +2181,17 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 				}
 			}
 
+			// copy the contacts into the store, their rows are written
+			// in one loop in Stage2a instead of calling getInfo2() for each.
+			for (int i = 0; i < nj; i++) {
+				DxJoint joint = jointinfos[i].joint;
+				if (DxContactStore.accepts(joint)) {
+					contacts.add(joint, i, mindex[i * 2], jointinfos[i].info.m);
+				} else {
+					contacts.addOther(i);
+				}
+			}
+
 			memarena.dummy();
 			memarena.dummy();
 			memarena.dummy();
@@ -1380,49 +2200,52 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 			memarena.dummy();
 			memarena.dummy();
 			memarena.dummy();
-			findex = new int[m];//memarena.AllocateArray<int>(m);
-			J = new double[m*12];//memarena.AllocateArray<dReal>((size_t)m*12);
-			cfm = new double[m];//memarena.AllocateArray<dReal>(m);
-			lo = new double[m];//memarena.AllocateArray<dReal>(m);
-			hi = new double[m];//memarena.AllocateArray<dReal>(m);
-			jb = new int[m*2];//memarena.AllocateArray<int>((size_t)m*2);
-			rhs = new double[m];//memarena.AllocateArray<dReal>(m);
-			Jcopy = new double[mfb*12];//memarena.AllocateArray<dReal>((size_t)mfb*12);
+			findex = memarena.AllocateArrayInt(m);
+			J = memarena.AllocateArrayDReal(m*12);
+			cfm = memarena.AllocateArrayDReal(m);
+			lo = memarena.AllocateArrayDReal(m);
+			hi = memarena.AllocateArrayDReal(m);
+			jb = memarena.AllocateArrayInt(m*2);
+			rhs = memarena.AllocateArrayDReal(m);
+			Jcopy = memarena.AllocateArrayDReal(mfb*12);
 		}
 
 		memarena.dummy();
-		dxQuickStepperLocalContext localContext = new dxQuickStepperLocalContext(); 
+		dxQuickStepperLocalContext localContext = scratch.localContext;
 		//(dxQuickStepperLocalContext *)memarena.AllocateBlock(sizeof(dxQuickStepperLocalContext));
-		localContext.Initialize(invI, jointinfos, nj, m, mfb, mindex, findex, J, cfm, lo, hi, jb, rhs, Jcopy);
+		localContext.Initialize(invI, jointinfos, nj, m, mfb, mindex, findex, J, cfm, lo, hi, jb, rhs, Jcopy, contacts, stepper);
 
 		BlockPointer stage1MemarenaState = memarena.SaveState();
 		memarena.dummy();
-		dxQuickStepperStage3CallContext stage3CallContext = new dxQuickStepperStage3CallContext();
+		dxQuickStepperStage3CallContext stage3CallContext = scratch.stage3CallContext;
 		//(dxQuickStepperStage3CallContext*)memarena.AllocateBlock(sizeof(dxQuickStepperStage3CallContext));
 		stage3CallContext.Initialize(callContext, localContext, stage1MemarenaState);
 
+		// the following stages may be called directly
+		dxProfileStage(callContext, DStepProfile.STAGE1, profileStart, 0);
+
 		if (m > 0) {
 			// create a constraint equation right hand side vector `rhs', a constraint
 			// force mixing vector `cfm', and LCP low and high bound vectors, and an
 			// 'findex' vector.
 			//dReal *rhs_tmp = memarena.AllocateArray<dReal>((size_t)nb*6);
 			memarena.dummy();
-			double[] rhs_tmp = new double[nb*6];
+			double[] rhs_tmp = memarena.AllocateArrayDReal(nb*6);
 
 			memarena.dummy();
-			dxQuickStepperStage2CallContext stage2CallContext = new dxQuickStepperStage2CallContext(); 
+			dxQuickStepperStage2CallContext stage2CallContext = scratch.stage2CallContext;
 			//(dxQuickStepperStage2CallContext*)memarena.AllocateBlock(sizeof(dxQuickStepperStage2CallContext));
-			stage2CallContext.Initialize(callContext, localContext, rhs_tmp);
+			stage2CallContext.Initialize(callContext, localContext, rhs_tmp, scratch.threadTemps);
 
 			final int allowedThreads = callContext.m_stepperAllowedThreads();
 			dIASSERT(allowedThreads != 0);
 
 			if (allowedThreads == 1)
 			{
-				dxQuickStepIsland_Stage2a(stage2CallContext);
+				dxQuickStepIsland_Stage2a(stage2CallContext, 0);
 				dxQuickStepIsland_Stage2b(stage2CallContext);
 				dxQuickStepIsland_Stage2c(stage2CallContext);
-				dxQuickStepIsland_Stage3(stage3CallContext);
+				dxQuickStepIsland_Stage3(stage3CallContext, null);
 			}
 			else
 			{
@@ -1445,7 +2268,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 			}
 		}
 		else {
-			dxQuickStepIsland_Stage3(stage3CallContext);
+			dxQuickStepIsland_Stage3(stage3CallContext, null);
 		}
 	}
 
@@ -1458,18 +2281,25 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 			//(void)callInstanceIndex; // unused
 			//(void)callThisReleasee; // unused
 			dxQuickStepperStage2CallContext stage2CallContext = (dxQuickStepperStage2CallContext)_stage2CallContext;
-			dxQuickStepIsland_Stage2a(stage2CallContext);
+			dxQuickStepIsland_Stage2a(stage2CallContext, callInstanceIndex);
 			return true;
 		}
 	};
 
+	/** Number of contacts claimed at once by a thread in Stage2a. */
+	private static final int CONTACT_ROWS_BLOCK = 16;
+
 	private static 
-	void dxQuickStepIsland_Stage2a(dxQuickStepperStage2CallContext stage2CallContext)
+	void dxQuickStepIsland_Stage2a(dxQuickStepperStage2CallContext stage2CallContext, 
+			int callInstanceIndex)
 	{
 	    final DxStepperProcessingCallContext callContext = stage2CallContext.m_stepperCallContext;
+	    final long profileStart = dxProfileStart(callContext);
 	    final dxQuickStepperLocalContext localContext = stage2CallContext.m_localContext;
 	    DJointWithInfo1[] jointinfos = localContext.m_jointinfos;
-	    int nj = localContext.m_nj;
+	    final DxContactStore contacts = localContext.m_contacts;
+	    // contacts in the store are handled separately, see below
+	    final int nOther = contacts.otherCount();
 	    final int[] mindex = localContext.m_mindex;
 
 	    DxWorld world = callContext.m_world();
@@ -1499,12 +2329,13 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	        //
 	        final double worldERP = world.getERP();
 
-	        DxJoint.Info2Descr Jinfo = new DxJoint.Info2Descr();
+	        DxJoint.Info2Descr Jinfo = stage2CallContext.m_threadTemps[callInstanceIndex].Jinfo;
 	        Jinfo.setRowskip(12);
 	        Jinfo.setArrays(J, rhs, cfm, lo, hi, findex);
 		            
-	        int ji;
-	        while ((ji = ThreadingUtils.ThrsafeIncrementIntUpToLimit(stage2CallContext.m_ji_J, nj)) != nj) {
+	        int oi;
+	        while ((oi = ThreadingUtils.ThrsafeIncrementIntUpToLimit(stage2CallContext.m_ji_J, nOther)) != nOther) {
+	            final int ji = contacts.otherJoint(oi);
 	            final int ofsi = mindex[ji * 2 + 0];
 	            final int infom = mindex[ji * 2 + 2] - ofsi;
 
@@ -1561,7 +2392,31 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	            if (mfbcurr != mfbnext) {
 	            	//dReal *Jcopyrow = Jcopy + mfbcurr * 12;
 	            	//memcpy(Jcopyrow, Jrow, (mfbnext - mfbcurr) * 12 * sizeof(dReal));
-	            	System.arraycopy(Jcopy, mfbcurr * 12, J, JrowP, (mfbnext - mfbcurr) * 12);
+	            	System.arraycopy(J, JrowP, Jcopy, mfbcurr * 12, (mfbnext - mfbcurr) * 12);
+	            }
+	        }
+
+	        // rows of the contacts, including their jb entries. The contacts
+	        // are claimed in blocks to keep the loop in writeRows() tight.
+	        final int nc = contacts.count();
+	        final int nBlocks = (nc + CONTACT_ROWS_BLOCK - 1) / CONTACT_ROWS_BLOCK;
+	        final int[] jb = localContext.m_jb;
+	        final double minDepth = world.contactp.min_depth;
+	        final double maxVel = world.contactp.max_vel;
+	        final boolean splitImpulse = world.contactp.split_impulse;
+	        final double splitThreshold = world.contactp.split_impulse_threshold;
+	        int bi;
+	        while ((bi = ThreadingUtils.ThrsafeIncrementIntUpToLimit(stage2CallContext.m_ci_J, nBlocks)) != nBlocks) {
+	            final int from = bi * CONTACT_ROWS_BLOCK;
+	            final int to = Math.min(from + CONTACT_ROWS_BLOCK, nc);
+	            contacts.writeRows(from, to, stepsizeRecip, worldERP, world.global_cfm, minDepth, maxVel, splitImpulse, splitThreshold, 
+	                    J, rhs, cfm, lo, hi, findex, jb);
+	            for (int k = from; k < to; k++) {
+	                final int ji = contacts.jointIndex(k);
+	                int mfbcurr = mindex[ji * 2 + 1], mfbnext = mindex[ji * 2 + 3];
+	                if (mfbcurr != mfbnext) {
+	                    System.arraycopy(J, mindex[ji * 2] * 12, Jcopy, mfbcurr * 12, (mfbnext - mfbcurr) * 12);
+	                }
 	            }
 	        }
 	    }
@@ -1570,8 +2425,9 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	        int[] jb = localContext.m_jb;
 
 	        // create an array of body numbers for each joint row
-	        int ji;
-	        while ((ji = ThreadingUtils.ThrsafeIncrementIntUpToLimit(stage2CallContext.m_ji_jb, nj)) != nj) {
+	        int oi;
+	        while ((oi = ThreadingUtils.ThrsafeIncrementIntUpToLimit(stage2CallContext.m_ji_jb, nOther)) != nOther) {
+	        	final int ji = contacts.otherJoint(oi);
 	        	DxJoint joint = jointinfos[ji].joint;
 		                
 	        	int b1 = (joint.node[0].body!=null) ? (joint.node[0].body.tag) : -1;
@@ -1585,6 +2441,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	        	}
 	        }
 	    }
+	    dxProfileStage(callContext, DStepProfile.STAGE2A, profileStart, 0);
 	}
 
 	private static 
@@ -1623,6 +2480,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	void dxQuickStepIsland_Stage2b(dxQuickStepperStage2CallContext stage2CallContext)
 	{
 	    final DxStepperProcessingCallContext callContext = stage2CallContext.m_stepperCallContext;
+	    final long profileStart = dxProfileStart(callContext);
 	    final dxQuickStepperLocalContext localContext = stage2CallContext.m_localContext;
 
 	    final double stepsizeRecip = dRecip(callContext.m_stepSize());
@@ -1656,6 +2514,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	            	rhs_tmp[tmp1currOfs+3+k] = -(b.avel.get(k) * stepsizeRecip) - rhs_tmp[tmp1currOfs+3+k];
 	        }
 	    }
+	    dxProfileStage(callContext, DStepProfile.STAGE2B, profileStart, 0);
 	}
 
 	private static 
@@ -1694,6 +2553,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	void dxQuickStepIsland_Stage2c(dxQuickStepperStage2CallContext stage2CallContext)
 	{
 	    //const dxStepperProcessingCallContext *callContext = stage2CallContext->m_stepperCallContext;
+		final long profileStart = dxProfileStart(stage2CallContext.m_stepperCallContext);
 		final dxQuickStepperLocalContext localContext = stage2CallContext.m_localContext;
 
 	    //const dReal stepsizeRecip = dRecip(callContext->m_stepSize);
@@ -1712,6 +2572,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	        // add J*rhs_tmp to rhs
 	        multiplyAdd_J(stage2CallContext.m_Jrhsi, m, J, jb, rhs_tmp, rhs);
 	    }
+	    dxProfileStage(stage2CallContext.m_stepperCallContext, DStepProfile.STAGE2C, profileStart, 0);
 	}
 
 
@@ -1721,18 +2582,25 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 		public boolean run(CallContext _stage3CallContext, int callInstanceIndex,
 				DCallReleasee callThisReleasee) {
 			//(void)callInstanceIndex; // unused
-			//(void)callThisReleasee; // unused
 			dxQuickStepperStage3CallContext stage3CallContext = (dxQuickStepperStage3CallContext)_stage3CallContext;
-			dxQuickStepIsland_Stage3(stage3CallContext);
+			dxQuickStepIsland_Stage3(stage3CallContext, callThisReleasee);
 			return true;
 		}
 	};
 
+	/**
+	 * @param callThisReleasee releasee of the current threaded call or 
+	 * <tt>null</tt> if called directly. Only threaded calls may hand 
+	 * the LCP over to other threads.
+	 */
 	private static 
-	void dxQuickStepIsland_Stage3(dxQuickStepperStage3CallContext stage3CallContext)
+	void dxQuickStepIsland_Stage3(dxQuickStepperStage3CallContext stage3CallContext, 
+			DCallReleasee callThisReleasee)
 	{
 	    final DxStepperProcessingCallContext callContext = stage3CallContext.m_stepperCallContext;
 	    final dxQuickStepperLocalContext localContext = stage3CallContext.m_localContext;
+	    // the LCP may be solved by other threads, Stage4 takes the time
+	    localContext.m_stage3Start = dxProfileStart(callContext);
 
 	    DxWorldProcessMemArena memarena = callContext.m_stepperArena();
 	    memarena.RestoreState(stage3CallContext.m_stage1MemArenaState);
@@ -1764,26 +2632,249 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 			// load lambda from the value saved on the previous iteration
 			double[] lambda = memarena.AllocateArrayDReal(m);//new double[m];//dRealAllocaArray (lambda,m);
 			
-			//TZ not defined
-//			if (WARM_STARTING) {//#ifdef WARM_STARTING
-//	           dReal *lambdscurr = lambda;
-//	            const dJointWithInfo1 *jicurr = jointinfos;
-//	            const dJointWithInfo1 *const jiend = jicurr + nj;
-//	            for (; jicurr != jiend; jicurr++) {
-//	                unsigned int infom = jicurr->info.m;
-//	                memcpy (lambdscurr, jicurr->joint->lambda, infom * sizeof(dReal));
-//	                lambdscurr += infom;
-//	            }
-//			}//#endif
+			if (world.qs.warm_starting) {//#ifdef WARM_STARTING
+				dxQuickStepIsland_LoadLambda(world, localContext, lambda);
+			}//#endif
 
 			double[] cforce = memarena.AllocateArrayDReal(nb*6);
-			BlockPointer lcpstate = memarena.BEGIN_STATE_SAVE(); 
-			{
-	            if (TIMING) dTimerNow ("solving LCP problem");
-	            // solve the LCP problem and get lambda and invM*constraint_force
-	            SOR_LCP (memarena,m,nb,J,jb,bodyA,bodyOfs,invI,lambda,cforce,rhs,lo,hi,cfm,findex,world.qs);
+			int iterations;
+
+			if (world.contactp.split_impulse && localContext.m_contacts.count() != 0) {
+				// this needs the unscaled J, so it must run before the LCP.
+				// The pseudo velocities are kept until Stage4.
+				double[] splitVel = memarena.AllocateArrayDReal(nb*6);
+				BlockPointer splitstate = memarena.BEGIN_STATE_SAVE(); 
+				{
+					dxQuickStepIsland_SplitImpulse(memarena, localContext.m_contacts, bodyA, bodyOfs, 
+							invI, J, splitVel, world.qs.num_iterations);
+				}
+				memarena.END_STATE_SAVE(splitstate);
+				localContext.m_splitVel = splitVel;
+			}
+
+			final DxQuickStep stepper = localContext.m_stepper;
+			if ((world.qs.parallel_sor || world.qs.jacobi) && stepper.dxIsParallelLCPSupported()) {
+				if (TIMING) dTimerNow ("solving LCP problem");
+				memarena.dummy();
+				dxQuickStepperLCPCallContext lcpContext = dxQuickStepperScratch.obtain(memarena).lcpContext;
+				lcpContext.Initialize(callContext, localContext, lambda, cforce);
+				if (world.qs.jacobi) {
+					Jacobi_LCP_Prepare(memarena, lcpContext);
+				} else {
+					SOR_LCP_Parallel_Prepare(memarena, lcpContext);
+				}
+
+				if (callThisReleasee != null) {
+					// Stage4 waits for the last batch; the extra dependency is 
+					// removed once the first batch has been scheduled.
+					final Ref<DCallReleasee> stage4Releasee = new Ref<DCallReleasee>();
+					world.threading().PostThreadedCallForUnawareReleasee(null, stage4Releasee, 1, callContext.m_finalReleasee(), 
+							null, dxQuickStepIsland_Stage4_Callback, lcpContext, 0, "QuickStepIsland Stage4");
+					lcpContext.m_stage4Releasee = stage4Releasee.get();
+
+					if (lcpContext.m_jacobi) {
+						Jacobi_LCP_Continue(lcpContext, lcpContext.m_stage4Releasee);
+					} else {
+						SOR_LCP_Parallel_Continue(lcpContext, lcpContext.m_stage4Releasee);
+					}
+					world.threading().AlterThreadedCallDependenciesCount(lcpContext.m_stage4Releasee, -1);
+					return;
+				}
+
+				if (lcpContext.m_jacobi) {
+					Jacobi_LCP_Continue(lcpContext, null);
+				} else {
+					SOR_LCP_Parallel_Continue(lcpContext, null);
+				}
+				iterations = lcpContext.m_iteration;
+			}
+			else {
+				BlockPointer lcpstate = memarena.BEGIN_STATE_SAVE(); 
+				{
+					if (TIMING) dTimerNow ("solving LCP problem");
+					// solve the LCP problem and get lambda and invM*constraint_force
+					iterations = stepper.dxSolveLCP (memarena,m,nb,J,jb,bodyA,bodyOfs,invI,lambda,cforce,rhs,lo,hi,cfm,findex,world.qs);
+				}
+				memarena.END_STATE_SAVE(lcpstate);
+			}
+
+			dxQuickStepIsland_Stage4(callContext, localContext, lambda, cforce, iterations);
+		}
+		else {
+			dxQuickStepIsland_Stage4(callContext, localContext, null, null, 0);
+		}
+	}
+
+	/**
+	 * Split impulse position correction: solve the normal rows of the 
+	 * contacts in the store for pseudo velocities that remove the 
+	 * penetration, with projected Gauss-Seidel iterations and lambda &gt;= 0.
+	 * The pseudo velocities start from zero in each step and are only used
+	 * to move the bodies in Stage4, they are not added to the velocities.
+	 */
+	private static 
+	void dxQuickStepIsland_SplitImpulse(DxWorldProcessMemArena memarena, DxContactStore contacts, 
+			DxBody[] bodyA, int bodyOfs, double[] invI, double[] J, double[] pvel, int iterations)
+	{
+		final int nc = contacts.count();
+		double[] iMJ = memarena.AllocateArrayDReal(nc*12);
+		double[] Ad = memarena.AllocateArrayDReal(nc);
+		double[] lambda = memarena.AllocateArrayDReal(nc);
+
+		// iMJ = inv(M)*J' of the normal rows and the inverse of their diagonal
+		for (int k = 0; k < nc; k++) {
+			final int Jp = contacts.row(k) * 12, iMJp = k * 12;
+			double sum = 0;
+			for (int side = 0; side < 2; side++) {
+				final int b = side == 0 ? contacts.body1(k) : contacts.body2(k);
+				if (b == -1) {
+					continue;
+				}
+				final int ofs = side * 6;
+				final double invMass = bodyA[b+bodyOfs].invMass;
+				final int invIrow = b * 12;
+				for (int j = 0; j < 3; j++) {
+					iMJ[iMJp+ofs+j] = invMass * J[Jp+ofs+j];
+					iMJ[iMJp+ofs+3+j] = invI[invIrow+j*4] * J[Jp+ofs+3] 
+							+ invI[invIrow+j*4+1] * J[Jp+ofs+4] + invI[invIrow+j*4+2] * J[Jp+ofs+5];
+				}
+				for (int j = 0; j < 6; j++) {
+					sum += J[Jp+ofs+j] * iMJ[iMJp+ofs+j];
+				}
+			}
+			Ad[k] = sum > 0 ? 1 / sum : 0;
+		}
+
+		for (int iteration = 0; iteration < iterations; iteration++) {
+			for (int k = 0; k < nc; k++) {
+				final int Jp = contacts.row(k) * 12, iMJp = k * 12;
+				final int b1 = contacts.body1(k) * 6, b2 = contacts.body2(k) * 6;
+				double delta = contacts.splitRhs(k);
+				for (int j = 0; j < 6; j++) {
+					delta -= J[Jp+j] * pvel[b1+j];
+				}
+				if (b2 >= 0) {
+					for (int j = 0; j < 6; j++) {
+						delta -= J[Jp+6+j] * pvel[b2+j];
+					}
+				}
+				double newLambda = lambda[k] + delta * Ad[k];
+				if (newLambda < 0) {
+					newLambda = 0;
+				}
+				delta = newLambda - lambda[k];
+				lambda[k] = newLambda;
+				for (int j = 0; j < 6; j++) {
+					pvel[b1+j] += iMJ[iMJp+j] * delta;
+				}
+				if (b2 >= 0) {
+					for (int j = 0; j < 6; j++) {
+						pvel[b2+j] += iMJ[iMJp+6+j] * delta;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Load lambda from the values saved in the previous step. Persistent
+	 * joints keep their rows in DxJoint.lambda, contact joints are looked 
+	 * up in the world's contact impulse cache. Rows without a saved value 
+	 * start from zero. Islands with contacts get a batch of the cache for
+	 * the impulses of this step.
+	 */
+	private static 
+	void dxQuickStepIsland_LoadLambda(DxWorld world, dxQuickStepperLocalContext localContext, 
+			double[] lambda)
+	{
+		DxContactImpulseCache cache = world.contactImpulseCache();
+		DJointWithInfo1[] jointinfos = localContext.m_jointinfos;
+		int nj = localContext.m_nj;
+		DxContactImpulseCache.Batch batch = null;
+		int lambdacurrP = 0;
+		for (int i=0; i<nj; i++) {
+			DxJoint joint = jointinfos[i].joint;
+			int infom = jointinfos[i].info.m;
+			boolean found = false;
+			if (joint instanceof DxJointContact) {
+				DxJointContact contact = (DxJointContact) joint;
+				if (infom <= DxContactImpulseCache.MAX_ROWS) {
+					if (batch == null) {
+						batch = cache.acquireBatch();
+					}
+					found = cache.load(joint.node[0].body, joint.node[1].body, contact.contact.geom, 
+							lambda, lambdacurrP, infom, WARM_STARTING_SCALE, batch);
+				}
+			} else {
+				for (int j=0; j<infom; j++) {
+					lambda[lambdacurrP+j] = joint.lambda[j] * WARM_STARTING_SCALE;
+				}
+				found = true;
+			}
+			if (!found) {
+				dSetZero(lambda, lambdacurrP, infom);
 			}
-			memarena.END_STATE_SAVE(lcpstate);
+			lambdacurrP += infom;
+		}
+		localContext.m_impulses = batch;
+	}
+
+	/**
+	 * Save lambda for the next step. The impulses of the contacts are 
+	 * submitted to the cache in one batch.
+	 * @see #dxQuickStepIsland_LoadLambda(DxWorld, dxQuickStepperLocalContext, double[])
+	 */
+	private static 
+	void dxQuickStepIsland_StoreLambda(DxWorld world, dxQuickStepperLocalContext localContext, 
+			double[] lambda)
+	{
+		DJointWithInfo1[] jointinfos = localContext.m_jointinfos;
+		int nj = localContext.m_nj;
+		DxContactImpulseCache.Batch batch = localContext.m_impulses;
+		int lambdacurrP = 0;
+		for (int i=0; i<nj; i++) {
+			DxJoint joint = jointinfos[i].joint;
+			int infom = jointinfos[i].info.m;
+			if (joint instanceof DxJointContact) {
+				DxJointContact contact = (DxJointContact) joint;
+				if (infom <= DxContactImpulseCache.MAX_ROWS) {
+					batch.store(joint.node[0].body, joint.node[1].body, contact.contact.geom, 
+							lambda, lambdacurrP, infom);
+				}
+			} else {
+				System.arraycopy(lambda, lambdacurrP, joint.lambda, 0, infom);
+			}
+			lambdacurrP += infom;
+		}
+		if (batch != null) {
+			world.contactImpulseCache().submit(batch);
+			localContext.m_impulses = null;
+		}
+	}
+
+	private static 
+	void dxQuickStepIsland_Stage4(final DxStepperProcessingCallContext callContext, 
+			final dxQuickStepperLocalContext localContext, double[] lambda, double[] cforce, 
+			int iterations)
+	{
+	    final long profileStart = dxProfileStart(callContext);
+	    if (localContext.m_stage3Start != 0) {
+	    	dxProfileStage(callContext, DStepProfile.STAGE3, localContext.m_stage3Start, 0);
+	    }
+	    callContext.m_world().dWorldReportQuickStepIterations(iterations);
+
+	    double[] invI = localContext.m_invI;
+	    DJointWithInfo1[] jointinfos = localContext.m_jointinfos;
+	    int nj = localContext.m_nj;
+	    int m = localContext.m_m;
+	    int mfb = localContext.m_mfb;
+	    double[] Jcopy = localContext.m_Jcopy;
+
+	    DxBody[] bodyA = callContext.m_islandBodiesStartA();
+	    int bodyOfs = callContext.m_islandBodiesStartOfs();
+	    int nb = callContext.m_islandBodiesCount();
+
+	    if (m > 0) {
 			    
 //			System.err.println("SOR_LCP m=" + m + " nb=" + nb + " ");
 //			System.err.println("SOR_LCP J=" + Arrays.toString(J));
@@ -1798,22 +2889,13 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 //			System.err.println("SOR_LCP findex=" + Arrays.toString(findex));
 //			System.err.println("SOR_LCP qs=" + world.qs.num_iterations + " w=" + world.qs.w);
 			
-			//TZ not defined
-//			if (WARM_STARTING) {//#ifdef WARM_STARTING
-//		    {
-//            // save lambda for the next iteration
-//            //@@@ note that this doesn't work for contact joints yet, as they are
-//            // recreated every iteration
-//            const dReal *lambdacurr = lambda;
-//            const dJointWithInfo1 *jicurr = jointinfos;
-//            const dJointWithInfo1 *const jiend = jicurr + nj;
-//            for (; jicurr != jiend; jicurr++) {
-//                unsigned int infom = jicurr->info.m;
-//                memcpy (jicurr->joint->lambda, lambdacurr, infom * sizeof(dReal));
-//                lambdacurr += infom;
-//            }
-//		      }
-//				//#endif
+			DxWorld world = callContext.m_world();
+			if (world.qs.warm_starting) {//#ifdef WARM_STARTING
+				// save lambda for the next iteration
+				// (before the bodies are moved, the contact cache relies on the
+				// body positions the contacts were generated for)
+				dxQuickStepIsland_StoreLambda(world, localContext, lambda);
+			}//#endif
 
 			// note that the SOR method overwrites rhs and J at this point, so
 			// they should not be used again.
@@ -1917,8 +2999,10 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
     		// update the position and orientation from the new linear/angular velocity
     		// (over the given timestep)
 		    if (TIMING) dTimerNow ("update position");
+		    // in split impulse mode the pseudo velocities are added
+		    double[] splitVel = localContext.m_splitVel;
 		    for (int i=0; i<nb; i++) {
-		        bodyA[i+bodyOfs].dxStepBody (stepsize);
+		        bodyA[i+bodyOfs].dxStepBody (stepsize, splitVel, i*6);
 		    }
 		}
 		
@@ -1933,10 +3017,39 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
     		}
 		}
 
+		dxProfileStage(callContext, DStepProfile.STAGE4, profileStart, m);
+		dxQuickStepperScratch scratch = dxQuickStepperScratch.obtain(callContext.m_stepperArena());
+		if (scratch.traceToken != null) {
+			scratch.tracer.endIslandStep(scratch.traceToken, nb, callContext.m_islandJointsCount(), m, iterations);
+			scratch.traceToken = null;
+		}
+
 		if (TIMING) dTimerEnd();
 		if (TIMING) if (m > 0) dTimerReport (stdout,1);
 	}
 
+	/**
+	 * @return the current time if the world is profiled, otherwise 0
+	 * @see DStepProfile
+	 */
+	private static long dxProfileStart(DxStepperProcessingCallContext callContext)
+	{
+		return callContext.m_world().dWorldIsProfiling() ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Add the time since <tt>profileStart</tt> to a stage of the profile.
+	 * Does nothing if <tt>profileStart</tt> is 0, i.e. if profiling was 
+	 * disabled when the stage started.
+	 */
+	private static void dxProfileStage(DxStepperProcessingCallContext callContext, 
+			int stage, long profileStart, int rows)
+	{
+		if (profileStart != 0) {
+			callContext.m_world().dWorldProfileStage(stage, System.nanoTime() - profileStart, rows);
+		}
+	}
+
 //	static size_t EstimateGR_LCPMemoryRequirements(unsigned int m)
 //	{
 //	    //TZ not defined
@@ -2057,13 +3170,47 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	    return -1;
 	}
 
+	/**
+	 * Solve the LCP of an island (serial path of Stage3). 
+	 * Steppers that reuse the QuickStep pipeline with a different LCP 
+	 * solver override this.
+	 * <p>
+	 * The arguments are the same as for SOR_LCP(). Unless warm starting
+	 * is enabled, lambda has to be initialized by the solver.
+	 * @return the number of iterations performed
+	 */
+	int dxSolveLCP (DxWorldProcessMemArena memarena,
+	        final int m, final int nb, double[] J, int[] jb, final DxBody []bodyP,
+	        final int bodyOfs,
+			final double[] invI, double[] lambda, double[] fc, double[] b,
+			final double[] lo, final double[] hi, final double[] cfm, final int []findex,
+			dxQuickStepParameters qs)
+	{
+		return SOR_LCP (memarena,m,nb,J,jb,bodyP,bodyOfs,invI,lambda,fc,b,lo,hi,cfm,findex,qs);
+	}
+
+	/**
+	 * @return whether Stage3 may use the parallel SOR or the Jacobi solver
+	 * instead of dxSolveLCP() when enabled in the world.
+	 */
+	boolean dxIsParallelLCPSupported()
+	{
+		return true;
+	}
+
 	/*extern */
 	private int dxEstimateQuickStepMaxCallCount(int activeThreadCount, int allowedThreadCount)
 	{
 		//(void)activeThreadCount; // unused
 	    int result = 1 // dxQuickStepIsland itself
-	        + (2 * allowedThreadCount + 2) // (dxQuickStepIsland_Stage2a + dxQuickStepIsland_Stage2b) * allowedThreadCount + 2 * dxStepIsland_Stage2?_Sync
-	        + 1; // dxStepIsland_Stage3
+	        + (allowedThreadCount + 2) // dxQuickStepIsland_Stage0_Bodies * allowedThreadCount + dxQuickStepIsland_Stage0_Joints + dxQuickStepIsland_Stage1
+	        + (3 * allowedThreadCount + 2) // (dxQuickStepIsland_Stage2a + dxQuickStepIsland_Stage2b + dxQuickStepIsland_Stage2c) * allowedThreadCount + 2 * dxQuickStepIsland_Stage2?Sync
+	        + 1 // dxStepIsland_Stage3
+	        + 1 // dxQuickStepIsland_Stage4
+	        // The parallel SOR posts a group per color batch and the Jacobi solver two groups per
+	        // iteration (rows and apply). Each group is posted by the sync call of the previous one,
+	        // so only one of them is pending, together with its sync and the sync that posted it.
+	        + (allowedThreadCount + 2); // (dxQuickStepIsland_Stage3LCP | dxQuickStepIsland_Stage3Jacobi{Rows|Apply}) * allowedThreadCount + 2 * Sync
 	    return result;
 	}
 
@@ -2077,4 +3224,4 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	public void run(DxStepperProcessingCallContext callContext) {
 		dxQuickStepIsland(callContext);
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
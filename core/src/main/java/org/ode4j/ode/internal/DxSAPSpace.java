@@ -27,11 +27,11 @@ package org.ode4j.ode.internal;
 import static org.ode4j.ode.internal.Common.*;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
 
 import org.ode4j.ode.DAABB;
+import org.ode4j.ode.DGeomPairBuffer;
 import org.ode4j.ode.DSapSpace;
 
 
@@ -43,14 +43,19 @@ import org.ode4j.ode.DSapSpace;
  *		Copyright (C) 2001 Pierre Terdiman
  *		Homepage: http://www.codercorner.com/Opcode.htm
  *
- *	This version does complete radix sort, not "classical" SAP. So, we
- *	have no temporal coherence, but are able to handle any movement
- *	velocities equally well.
- *
  *  2009-Apr-29
  *  Implementation has been modified for Java port. It now used merge-sort
  *  provided by Java. See doc of <tt>BoxPruning</tt>.
  *  Tilmann Zaeschke 
+ *
+ *  The space is now temporally coherent: the AABB endpoints on all three
+ *  axes are kept sorted in primitive arrays between calls to collide().
+ *  Endpoints of geoms that moved are re-sorted with an insertion sort, and
+ *  every swap of a minimum and a maximum endpoint updates the set of
+ *  overlapping pairs. After large changes (many geoms moved far, geoms
+ *  removed) the endpoints are sorted from scratch with a radix sort over
+ *  float keys, and the pair set is rebuilt with a sweep along the primary
+ *  axis.
  */
 public class DxSAPSpace extends DxSpace implements DSapSpace {
 
@@ -66,18 +71,16 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 	// Implementation Data
 	//--------------------------------------------------------------------------
 
-	// We have two lists (arrays of pointers) to dirty and clean
-	// geoms. Each geom knows it's index into the corresponding list
-	// (see macros above).
+	// We have two lists (arrays of pointers) to dirty and all geoms. Each geom
+	// knows it's index into the corresponding list (see GEOM_..._IDX below).
+	// The index into GeomList is also used to identify the geom's endpoints.
 	private List<DxGeom> DirtyList = new ArrayList<DxGeom>(); // dirty geoms
-	private List<DxGeom> GeomList = new ArrayList<DxGeom>();	// clean geoms
+	private List<DxGeom> GeomList = new ArrayList<DxGeom>();	// all geoms
 
 	// For SAP, we ultimately separate "normal" geoms and the ones that have
 	// infinite AABBs. No point doing SAP on infinite ones (and it doesn't handle
 	// infinite geoms anyway).
-	//private dArray<dxGeom> TmpGeomList;	// temporary for normal geoms
-	private ArrayList<DxGeom> TmpGeomList = new ArrayList<DxGeom>();	// temporary for normal geoms
-	private List<DxGeom> TmpInfGeomList = new ArrayList<DxGeom>();	// temporary for geoms with infinite AABBs
+	private List<DxGeom> InfGeomList = new ArrayList<DxGeom>();	// geoms with infinite AABBs
 
 	// Our sorting axes. (X,Z,Y is often best). Stored *2 for minor speedup
 	// Axis indices into geom's aabb are: min=idx, max=idx+1
@@ -88,13 +91,35 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 	private int ax1id;
 	private int ax2id;
 
-	// pruning position array scratch pad
-	// NOTE: this is float not dReal because of the OPCODE radix sorter
-	//private dArray< Float > poslist;
-	//TZ: TODO remove, not required in this implementation, see BoxPruning(..).
-//	private float[] poslist;
-//	private RaixSortContext sortContext = new RaixSortContext();
-	//};
+	// Endpoints on each axis (in the order given by the axis ids above),
+	// sorted by key. Endpoint ids are (geom index << 1) for the minimum and
+	// (geom index << 1) + 1 for the maximum.
+	private float[][] epKey = new float[3][16];
+	private int[][] epId = new int[3][16];
+	private int epCount;
+	// position of each endpoint id in the arrays above, or one of the
+	// EP_... values
+	private int[][] epPos = new int[3][16];
+	private static final int EP_NEW = -1;
+	private static final int EP_INFINITE = -2;
+	// keys of each geom: minimum on axis 0..2, maximum on axis 0..2.
+	// The keys are the AABB rounded outwards to float.
+	private float[] geomKey = new float[48];
+
+	// pairs of geom indices whose keys overlap on all axes
+	private final DxPairSet pairs = new DxPairSet();
+	// sort from scratch in the next collide()
+	private boolean rebuild = true;
+	// overlap tests done by the sweep of the last rebuild, the insertion
+	// sort may do as many swaps before a rebuild is cheaper
+	private long sweepWork;
+	// overlap tests of each task of sweepParallel()
+	private long[] taskWork = new long[0];
+
+	// scratch pads for the rebuild
+	private RadixSortContext sortContext = new RadixSortContext();
+	private int[] active = new int[16];
+	private int[] activePos = new int[16];
 
 	/**
 	 * Creation.
@@ -132,18 +157,21 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 	 *  if AABBs intersect (because SAP returns pairs with overlapping AABBs).
 	 */
 	//static void collideGeomsNoAABBs( dxGeom *g1, dxGeom *g2, void *data, dNearCallback *callback )
-	static void collideGeomsNoAABBs( DxGeom g1, DxGeom g2, Object data, DNearCallback callback )
+	static boolean testGeomsNoAABBs( DxGeom g1, DxGeom g2 )
 	{
 		dIASSERT( !g1.hasFlagAabbBad() );//(g1._gflags & GEOM_AABB_BAD)==0 );
 		dIASSERT( !g2.hasFlagAabbBad() );//(g2._gflags & GEOM_AABB_BAD)==0 );
 
 		// no contacts if both geoms on the same body, and the body is not 0
-		if (g1.body == g2.body && g1.body!=null) return;
+		if (g1.body == g2.body && g1.body!=null) return false;
+
+		// no contacts between sleeping or static geoms, see collideAABBs()
+		if (isAsleepPair(g1, g2)) return false;
 
 		// test if the category and collide bitfields match
 		if ( ((g1.category_bits & g2.collide_bits)!=0 ||
 				(g2.category_bits & g1.collide_bits)!=0) == false) {
-			return;
+			return false;
 		}
 
 		DAABB bounds1 = g1._aabb;
@@ -151,11 +179,11 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 
 		// check if either object is able to prove that it doesn't intersect the
 		// AABB of the other
-		if (g1.AABBTest (g2,bounds2) == false) return;
-		if (g2.AABBTest (g1,bounds1) == false) return;
+		if (g1.AABBTest (g2,bounds2) == false) return false;
+		if (g2.AABBTest (g1,bounds1) == false) return false;
 
-		// the objects might actually intersect - call the space callback function
-		callback.call (data,g1,g2);
+		// the objects might actually intersect
+		return true;
 	}
 
 
@@ -191,15 +219,10 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 		CHECK_NOT_LOCKED(this);
 		if ( cleanup ) {
 			// note that destroying each geom will call remove()
-			//		for ( ; DirtyList.size()!=0; dGeomDestroy( DirtyList.get( 0 ) ) ) {}
-			//		for ( ; GeomList.size()!=0; dGeomDestroy( GeomList.get( 0 ) ) ) {}
-			while ( DirtyList.size()!=0 ) DirtyList.get( 0 ).dGeomDestroy( ); 
 			while ( GeomList.size()!=0) GeomList.get( 0 ).dGeomDestroy( );
-
 		}
 		else {
 			// just unhook them
-			for ( ; DirtyList.size()!=0; remove( DirtyList.get( 0 ) ) ) {}
 			for ( ; GeomList.size()!=0; remove( GeomList.get( 0 ) ) ) {}
 		}
 		super.DESTRUCTOR();
@@ -213,10 +236,20 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 		//dAASSERT(g);
 		dUASSERT(g.parent_space == null, "geom is already in a space");
 
-		// add to dirty list
+		// add to dirty list and geom list
+		int geomIdx = GeomList.size();
 		GEOM_SET_DIRTY_IDX( g, DirtyList.size() );
-		GEOM_SET_GEOM_IDX( g, GEOM_INVALID_IDX );
+		GEOM_SET_GEOM_IDX( g, geomIdx );
 		DirtyList.add( g );
+		GeomList.add( g );
+
+		if ( geomKey.length < 6 * (geomIdx + 1) ) {
+			for ( int a = 0; a < 3; ++a ) {
+				epPos[a] = Arrays.copyOf( epPos[a], 4 * (geomIdx + 1) );
+			}
+			geomKey = Arrays.copyOf( geomKey, 12 * (geomIdx + 1) );
+		}
+		epPos[0][2 * geomIdx] = EP_NEW;
 
 		super.add(g);
 	}
@@ -232,10 +265,9 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 		// remove
 		int dirtyIdx = GEOM_GET_DIRTY_IDX(g);
 		int geomIdx = GEOM_GET_GEOM_IDX(g);
-		// must be in one list, not in both
 		dUASSERT(
-				(dirtyIdx==GEOM_INVALID_IDX && geomIdx>=0 && geomIdx<GeomList.size()) ||
-				(geomIdx==GEOM_INVALID_IDX && dirtyIdx>=0 && dirtyIdx<DirtyList.size()),
+				geomIdx>=0 && geomIdx<GeomList.size() &&
+				(dirtyIdx==GEOM_INVALID_IDX || (dirtyIdx>=0 && dirtyIdx<DirtyList.size())),
 		"geom indices messed up" );
 		if( dirtyIdx != GEOM_INVALID_IDX ) {
 			// we're in dirty list, remove
@@ -245,16 +277,17 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 			GEOM_SET_DIRTY_IDX(lastG,dirtyIdx);
 			GEOM_SET_DIRTY_IDX(g,GEOM_INVALID_IDX);
 			DirtyList.remove( dirtySize-1 );
-		} else {
-			// we're in geom list, remove
-			int geomSize = GeomList.size();
-			DxGeom lastG = GeomList.get(geomSize-1);
-			GeomList.set(geomIdx, lastG);
-			GEOM_SET_GEOM_IDX(lastG,geomIdx);
-			GEOM_SET_GEOM_IDX(g,GEOM_INVALID_IDX);
-			GeomList.remove( geomSize-1 );
 		}
-		
+		// remove from geom list, this changes the index of the last geom,
+		// so the endpoints have to be rebuilt
+		int geomSize = GeomList.size();
+		DxGeom lastG = GeomList.get(geomSize-1);
+		GeomList.set(geomIdx, lastG);
+		GEOM_SET_GEOM_IDX(lastG,geomIdx);
+		GEOM_SET_GEOM_IDX(g,GEOM_INVALID_IDX);
+		GeomList.remove( geomSize-1 );
+		rebuild = true;
+
 		super.remove(g);
 	}
 
@@ -270,19 +303,7 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 		if( dirtyIdx != GEOM_INVALID_IDX )
 			return;
 
-		int geomIdx = GEOM_GET_GEOM_IDX(g);
-		dUASSERT( geomIdx>=0 && geomIdx<GeomList.size(), "geom indices messed up" );
-
-		// remove from geom list, place last in place of this
-		int geomSize = GeomList.size();
-		DxGeom lastG = GeomList.get(geomSize-1);
-		GeomList.set(geomIdx, lastG);
-		GEOM_SET_GEOM_IDX(lastG,geomIdx);
-		//GeomList.setSize( geomSize-1 );
-		GeomList.remove(geomSize-1);
-
-		// add to dirty list
-		GEOM_SET_GEOM_IDX( g, GEOM_INVALID_IDX );
+		// add to dirty list, the geom stays in the geom list
 		GEOM_SET_DIRTY_IDX( g, DirtyList.size() );
 		DirtyList.add( g );
 	}
@@ -296,11 +317,10 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 			return;
 
 		// compute the AABBs of all dirty geoms, clear the dirty flags,
-		// remove from dirty list, place into geom list
+		// update the endpoints and clear the dirty list
 		lock_count++;
 
-		int geomSize = GeomList.size();
-
+		int added = 0;
 		for( int i = 0; i < dirtySize; ++i ) {
 			DxGeom g = DirtyList.get(i);
 			if( g instanceof DxSpace ) {//IS_SPACE(g) ) {
@@ -309,84 +329,426 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 			g.recomputeAABB();
 			//g._gflags &= (~(GEOM_DIRTY|GEOM_AABB_BAD));
 			g.unsetFlagDirtyAndBad();
-			// remove from dirty list, add to geom list
 			GEOM_SET_DIRTY_IDX( g, GEOM_INVALID_IDX );
-			GEOM_SET_GEOM_IDX( g, geomSize + i );
-			GeomList.add(g);
+			if ( !rebuild ) {
+				added += updateEndpoints( GEOM_GET_GEOM_IDX(g) );
+			}
 		}
 		// clear dirty list
 		DirtyList.clear();
+		// inserting many new geoms one by one is slower than a rebuild
+		if ( added > 64 && added > epCount / 4 ) {
+			rebuild = true;
+		}
 
 		lock_count--;
 	}
 
+	private boolean isInfinite( DxGeom g )
+	{
+		// HACK? probably not...
+		return g._aabb.getMax(ax0id) == dInfinity || g._aabb.getMin(ax0id) == -dInfinity;
+	}
+
+	// the keys are rounded outwards, -0 is mapped to +0 because the radix
+	// sort would put it first
+
+	private static float minKey( double d )
+	{
+		float f = (float) d;
+		return f > d ? Math.nextAfter(f, Double.NEGATIVE_INFINITY) : f + 0.0f;
+	}
+
+	private static float maxKey( double d )
+	{
+		float f = (float) d;
+		return f < d ? Math.nextUp(f) : f + 0.0f;
+	}
+
+	private void setKeys( int geomIdx )
+	{
+		DAABB aabb = GeomList.get(geomIdx)._aabb;
+		int k = 6 * geomIdx;
+		geomKey[k] = minKey( aabb.getMin(ax0id) );
+		geomKey[k + 1] = minKey( aabb.getMin(ax1id) );
+		geomKey[k + 2] = minKey( aabb.getMin(ax2id) );
+		geomKey[k + 3] = maxKey( aabb.getMax(ax0id) );
+		geomKey[k + 4] = maxKey( aabb.getMax(ax1id) );
+		geomKey[k + 5] = maxKey( aabb.getMax(ax2id) );
+	}
+
+	/** @return whether the keys of two geoms overlap on an axis */
+	private boolean overlaps( int geomIdx1, int geomIdx2, int axis )
+	{
+		int k1 = 6 * geomIdx1 + axis;
+		int k2 = 6 * geomIdx2 + axis;
+		return geomKey[k1] <= geomKey[k2 + 3] && geomKey[k2] <= geomKey[k1 + 3];
+	}
+
+	/**
+	 * Update the endpoint keys of a geom with a fresh AABB.
+	 * @return the number of added endpoints
+	 */
+	private int updateEndpoints( int geomIdx )
+	{
+		DxGeom g = GeomList.get(geomIdx);
+		int minPos = epPos[0][2 * geomIdx];
+		if ( isInfinite(g) ) {
+			// (new) infinite geom or finite geom that became infinite
+			if ( minPos != EP_INFINITE ) {
+				rebuild = true;
+			}
+			return 0;
+		}
+		if ( minPos == EP_INFINITE ) {
+			rebuild = true;
+			return 0;
+		}
+		setKeys( geomIdx );
+		int k = 6 * geomIdx;
+		if ( minPos == EP_NEW ) {
+			// append the endpoints, the insertion sort moves them into place
+			if ( epKey[0].length < epCount + 2 ) {
+				for ( int a = 0; a < 3; ++a ) {
+					epKey[a] = Arrays.copyOf( epKey[a], 2 * (epCount + 2) );
+					epId[a] = Arrays.copyOf( epId[a], 2 * (epCount + 2) );
+				}
+			}
+			for ( int a = 0; a < 3; ++a ) {
+				epKey[a][epCount] = geomKey[k + a];
+				epId[a][epCount] = 2 * geomIdx;
+				epPos[a][2 * geomIdx] = epCount;
+				epKey[a][epCount + 1] = geomKey[k + 3 + a];
+				epId[a][epCount + 1] = 2 * geomIdx + 1;
+				epPos[a][2 * geomIdx + 1] = epCount + 1;
+			}
+			epCount += 2;
+			return 2;
+		}
+		for ( int a = 0; a < 3; ++a ) {
+			epKey[a][epPos[a][2 * geomIdx]] = geomKey[k + a];
+			epKey[a][epPos[a][2 * geomIdx + 1]] = geomKey[k + 3 + a];
+		}
+		return 0;
+	}
+
+	/**
+	 * Sort the endpoints from scratch and rebuild the pair set.
+	 */
+	private void rebuildEndpoints()
+	{
+		int geom_count = GeomList.size();
+		InfGeomList.clear();
+		if ( epKey[0].length < 2 * geom_count ) {
+			for ( int a = 0; a < 3; ++a ) {
+				epKey[a] = new float[2 * geom_count];
+				epId[a] = new int[2 * geom_count];
+			}
+		}
+		if ( active.length < geom_count ) {
+			active = new int[geom_count];
+			activePos = new int[geom_count];
+		}
+		// collect the finite geoms in 'active'
+		int n = 0;
+		for ( int i = 0; i < geom_count; ++i ) {
+			DxGeom g = GeomList.get(i);
+			if ( isInfinite(g) ) {
+				InfGeomList.add( g );
+				epPos[0][2 * i] = EP_INFINITE;
+			} else {
+				setKeys( i );
+				active[n++] = i;
+			}
+		}
+		epCount = 2 * n;
+
+		for ( int a = 0; a < 3; ++a ) {
+			float[] keys = epKey[a];
+			int[] ids = epId[a];
+			// all minimums first, so that the stable sort puts minimums
+			// before maximums with the same key
+			for ( int i = 0; i < n; ++i ) {
+				int geomIdx = active[i];
+				keys[i] = geomKey[6 * geomIdx + a];
+				ids[i] = 2 * geomIdx;
+				keys[n + i] = geomKey[6 * geomIdx + 3 + a];
+				ids[n + i] = 2 * geomIdx + 1;
+			}
+			sortContext.sort( keys, ids, epCount );
+			int[] pos = epPos[a];
+			for ( int i = 0; i < epCount; ++i ) {
+				pos[ids[i]] = i;
+			}
+		}
+
+		pairs.clear();
+		if ( getCollideMaxThreadCount() > 1 ) {
+			sweepParallel();
+		} else {
+			// sweep the sorted endpoints of the primary axis, every minimum
+			// overlaps all geoms that are currently open on this axis
+			int[] ids = epId[0];
+			int activeCount = 0;
+			sweepWork = 0;
+			for ( int i = 0; i < epCount; ++i ) {
+				int id = ids[i];
+				int geomIdx = id >> 1;
+				if ( (id & 1) == 0 ) {
+					sweepWork += activeCount;
+					for ( int k = 0; k < activeCount; ++k ) {
+						int other = active[k];
+						if ( overlaps( geomIdx, other, 1 ) && overlaps( geomIdx, other, 2 ) ) {
+							pairs.add( other, geomIdx );
+						}
+					}
+					active[activeCount] = geomIdx;
+					activePos[geomIdx] = activeCount++;
+				} else {
+					int last = active[--activeCount];
+					int pos = activePos[geomIdx];
+					active[pos] = last;
+					activePos[last] = pos;
+				}
+			}
+		}
+		rebuild = false;
+	}
+
+	/**
+	 * Parallel version of the sweep in rebuildEndpoints(). Every minimum
+	 * scans forward to its maximum, the pairs with the minimums in between
+	 * are the same as those found with the open list. The primary axis is
+	 * split into ranges of endpoints, and the pairs are added to the pair set
+	 * in the order of the endpoints.
+	 */
+	private void sweepParallel()
+	{
+		int count = getCollideMaxThreadCount();
+		if ( taskWork.length < count ) {
+			taskWork = new long[count];
+		}
+		DxCollideTasks tasks = getCollideTasks();
+		tasks.run( sweepTask, count );
+		sweepWork = 0;
+		for ( int t = 0; t < count; ++t ) {
+			int[] found = tasks.getPairs( t );
+			for ( int i = 0, n = tasks.getPairCount( t ); i < n; ++i ) {
+				pairs.add( found[2 * i], found[2 * i + 1] );
+			}
+			sweepWork += taskWork[t];
+		}
+	}
+
+	private final DxCollideTasks.Task sweepTask = new DxCollideTasks.Task() {
+		@Override
+		public void run( DxCollideTasks tasks, int index, int count )
+		{
+			int[] ids = epId[0];
+			int from = (int) ((long) epCount * index / count);
+			int to = (int) ((long) epCount * (index + 1) / count);
+			long work = 0;
+			for ( int i = from; i < to; ++i ) {
+				int id = ids[i];
+				if ( (id & 1) != 0 )
+					continue;
+				int geomIdx = id >> 1;
+				for ( int j = i + 1; ids[j] != id + 1; ++j ) {
+					int other = ids[j];
+					if ( (other & 1) == 0 ) {
+						++work;
+						other >>= 1;
+						if ( overlaps( geomIdx, other, 1 ) && overlaps( geomIdx, other, 2 ) ) {
+							tasks.addPair( index, geomIdx, other );
+						}
+					}
+				}
+			}
+			taskWork[index] = work;
+		}
+	};
+
+	/**
+	 * Insertion sort of the endpoints of an axis. Whenever a minimum and a
+	 * maximum endpoint swap places the pair set is updated.
+	 * @return the remaining budget of swaps, negative if the sort was given
+	 * up because too many endpoints moved. The endpoints and pairs need to be
+	 * rebuilt then.
+	 */
+	private long sortEndpoints( int axis, long budget )
+	{
+		float[] keys = epKey[axis];
+		int[] ids = epId[axis];
+		int[] pos = epPos[axis];
+		int axis1 = axis == 0 ? 1 : 0;
+		int axis2 = axis == 2 ? 1 : 2;
+		for ( int i = 1; i < epCount; ++i ) {
+			float key = keys[i];
+			int id = ids[i];
+			int j = i - 1;
+			// minimums come before maximums with the same key
+			while ( j >= 0 && (keys[j] > key || (keys[j] == key && (ids[j] & 1) > (id & 1))) ) {
+				int other = ids[j];
+				if ( (id & 1) == 0 ) {
+					if ( (other & 1) != 0 ) {
+						// our minimum passes the other maximum: overlap starts
+						// on this axis, check the others
+						if ( overlaps( id >> 1, other >> 1, axis1 ) && overlaps( id >> 1, other >> 1, axis2 ) )
+							pairs.add( id >> 1, other >> 1 );
+					}
+				} else if ( (other & 1) == 0 ) {
+					// our maximum passes the other minimum: overlap ends
+					pairs.remove( id >> 1, other >> 1 );
+				}
+				keys[j + 1] = keys[j];
+				ids[j + 1] = other;
+				pos[other] = j + 1;
+				--j;
+				if ( --budget < 0 ) {
+					return budget;
+				}
+			}
+			keys[j + 1] = key;
+			ids[j + 1] = id;
+			pos[id] = j + 1;
+		}
+		return budget;
+	}
+
 	//void dxSAPSpace::collide( void *data, dNearCallback *callback )
 	@Override
-	public void collide( Object data, DNearCallback callback )
+	void collideImpl (Object data, DNearCallback callback)
 	{
-		dAASSERT (callback);
+		collideFromPairs( data, callback );
+	}
 
+	@Override
+	void collidePairsImpl (DGeomPairBuffer pairBuffer)
+	{
 		lock_count++;
 
 		cleanGeoms();
 
-		// by now all geoms are in GeomList, and DirtyList must be empty
+		// by now all geoms have valid AABBs, and DirtyList must be empty
 		int geom_count = GeomList.size();
 		dUASSERT( geom_count == getNumGeoms(), "geom counts messed up" );
 
-		// separate all ENABLED geoms into infinite AABBs and normal AABBs
-		TmpGeomList.clear();//setSize(0);
-		TmpInfGeomList.clear();
-		int axis0max = ax0id;// + 1;
-		for( int i = 0; i < geom_count; ++i ) {
-			DxGeom g = GeomList.get(i);
-			if( !GEOM_ENABLED(g) ) // skip disabled ones
-				continue;
-			final double amax = g._aabb.getMax(axis0max);
-			if( amax == dInfinity ) // HACK? probably not...
-				TmpInfGeomList.add( g );
-			else
-				TmpGeomList.add( g );//push( g );
+		if ( !rebuild ) {
+			long budget = 4L * epCount + 256 + sweepWork;
+			for ( int a = 0; a < 3 && budget >= 0; ++a ) {
+				budget = sortEndpoints( a, budget );
+			}
+			rebuild = budget < 0;
+		}
+		if ( rebuild ) {
+			rebuildEndpoints();
 		}
 
-		// do SAP on normal AABBs
-		int normSize = TmpGeomList.size();
-		if ( normSize > 0 )
-		{
-			// Size the poslist (+1 for infinity end cap)
-			//poslist.setSize( tmp_geom_count + 1 );
-			//TODO TZ not used at the moment
-			//poslist = new float[ tmp_geom_count + 1 ];
-			//poslist = new float[ tmp_geom_count ];
-
-			// Generate a list of overlapping boxes
-			//BoxPruning( tmp_geom_count, (final dxGeom**)TmpGeomList.data(), overlapBoxes );
-			BoxPruning( TmpGeomList, data, callback );
+		// the geoms are numbered by their GeomList index, followed by the
+		// infinite ones (which are only known after the rebuild)
+		int base = pairBuffer.getGeomCount();
+		for ( int i = 0; i < geom_count; ++i ) {
+			pairBuffer.addGeom( GeomList.get( i ) );
+		}
+		int infSize = InfGeomList.size();
+		int infBase = pairBuffer.getGeomCount();
+		for ( int i = 0; i < infSize; ++i ) {
+			pairBuffer.addGeom( InfGeomList.get( i ) );
+		}
+
+		// report the pairs, the pair set uses float keys, check the exact bounds
+		if ( getCollideMaxThreadCount() > 1 ) {
+			DxCollideTasks tasks = getCollideTasks();
+			tasks.run( reportTask, getCollideMaxThreadCount() );
+			for ( int t = 0; t < getCollideMaxThreadCount(); ++t ) {
+				int[] found = tasks.getPairs( t );
+				for ( int i = 0, n = tasks.getPairCount( t ); i < n; ++i ) {
+					int i0 = found[2 * i];
+					int i1 = found[2 * i + 1];
+					if ( testGeomsNoAABBs( GeomList.get( i0 ), GeomList.get( i1 ) ) )
+						pairBuffer.addPair( base + i0, base + i1 );
+				}
+			}
+		} else {
+			int capacity = pairs.getCapacity();
+			for ( int i = 0; i < capacity; ++i ) {
+				long key = pairs.getKey( i );
+				if ( key == DxPairSet.EMPTY )
+					continue;
+				int i0 = DxPairSet.first(key);
+				int i1 = DxPairSet.second(key);
+				DxGeom g0 = GeomList.get( i0 );
+				DxGeom g1 = GeomList.get( i1 );
+				if ( overlapsExactly( g0, g1 ) && testGeomsNoAABBs( g0, g1 ) )
+					pairBuffer.addPair( base + i0, base + i1 );
+			}
 		}
 
-		int infSize = TmpInfGeomList.size();
 		int m, n;
 
 		for ( m = 0; m < infSize; ++m )
 		{
-			DxGeom g1 = TmpInfGeomList.get( m );
+			DxGeom g1 = InfGeomList.get( m );
+			if ( !GEOM_ENABLED(g1) )
+				continue;
 
 			// collide infinite ones
 			for( n = m+1; n < infSize; ++n ) {
-				DxGeom g2 = TmpInfGeomList.get(n);
-				collideGeomsNoAABBs( g1, g2, data, callback );
+				DxGeom g2 = InfGeomList.get(n);
+				if ( GEOM_ENABLED(g2) && testGeomsNoAABBs( g1, g2 ) )
+					pairBuffer.addPair( infBase + m, infBase + n );
 			}
 
 			// collide infinite ones with normal ones
-			for( n = 0; n < normSize; ++n ) {
-				DxGeom g2 = TmpGeomList.get(n);
-				collideGeomsNoAABBs( g1, g2, data, callback );
+			for( n = 0; n < epCount; ++n ) {
+				int id = epId[0][n];
+				if ( (id & 1) == 0 ) {
+					DxGeom g2 = GeomList.get(id >> 1);
+					if ( GEOM_ENABLED(g2) && testGeomsNoAABBs( g1, g2 ) )
+						pairBuffer.addPair( infBase + m, base + (id >> 1) );
+				}
 			}
 		}
 
 		lock_count--;
 	}
 
+	private final DxCollideTasks.Task reportTask = new DxCollideTasks.Task() {
+		@Override
+		public void run( DxCollideTasks tasks, int index, int count )
+		{
+			int capacity = pairs.getCapacity();
+			int from = (int) ((long) capacity * index / count);
+			int to = (int) ((long) capacity * (index + 1) / count);
+			for ( int i = from; i < to; ++i ) {
+				long key = pairs.getKey( i );
+				if ( key == DxPairSet.EMPTY )
+					continue;
+				int i0 = DxPairSet.first(key);
+				int i1 = DxPairSet.second(key);
+				if ( overlapsExactly( GeomList.get( i0 ), GeomList.get( i1 ) ) )
+					tasks.addPair( index, i0, i1 );
+			}
+		}
+	};
+
+	/**
+	 * @return whether both geoms are enabled and their AABBs overlap
+	 */
+	private boolean overlapsExactly( DxGeom g0, DxGeom g1 )
+	{
+		if ( !GEOM_ENABLED(g0) || !GEOM_ENABLED(g1) )
+			return false;
+		DAABB aabb0 = g0._aabb;
+		DAABB aabb1 = g1._aabb;
+		return aabb0.getMax(ax1id) >= aabb1.getMin(ax1id) &&
+				aabb1.getMax(ax1id) >= aabb0.getMin(ax1id) &&
+				aabb0.getMax(ax2id) >= aabb1.getMin(ax2id) &&
+				aabb1.getMax(ax2id) >= aabb0.getMin(ax2id) &&
+				aabb0.getMax(ax0id) >= aabb1.getMin(ax0id) &&
+				aabb1.getMax(ax0id) >= aabb0.getMin(ax0id);
+	}
+
 	//void dxSAPSpace::collide2( void *data, dxGeom *geom, dNearCallback *callback )
 	@Override
 	void collide2( Object data, DxGeom geom, DNearCallback callback )
@@ -411,170 +773,6 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 		lock_count--;
 	}
 
-	
-	private class GeomComparator implements Comparator<DxGeom> {
-		@Override
-		public int compare(DxGeom arg0, DxGeom arg1) {
-			double a0 = arg0._aabb.getMin(ax0id);
-			double a1 = arg1._aabb.getMin(ax0id);
-			return a1 > a0 ? -1 : (a1 < a0 ? 1 : 0);
-		}
-	}
-	
-	/**
-	 *	Complete box pruning.
-	 *  Returns a list of overlapping pairs of boxes, each box of the pair
-	 *  belongs to the same set.
-	 *  
-	 *  TZ: This is a new implementation for Java. It uses the Java internal 
-	 *  merge-sort instead of a custom radix-sort. The first is between 
-	 *  O(N) and O(N*log(N)), the second is always O(N*log(N)), so not much lost.
-	 *  This greatly simplifies the code.
-	 *
-	 *	@param	geoms	[in] geoms of boxes.
-	 *	@param	pairs	[out] array of overlapping pairs.
-	 */
-	//void dxSAPSpace::BoxPruning( int count, const dxGeom** geoms, dArray< Pair >& pairs )
-	void BoxPruning(final List<DxGeom> geoms, Object data, DNearCallback callback)
-	{
-		// 1) Build main list using the primary axis
-		//  NOTE: uses floats instead of dReals because that's what radix sort wants
-		//TZ: not required in this implementation
-
-		// 2) Sort the list
-		List<DxGeom> buffer = geoms;
-		Collections.sort(buffer, new GeomComparator());
-		int size = buffer.size();
-		// 3) Prune the list
-		for (int i = 0; i < size; i++) {
-			DxGeom g0 = buffer.get(i);
-			DAABB aabb0 = g0._aabb;
-			final double idx0ax0max = aabb0.getMax(ax0id);//(ax0idx+1);
-			for (int j = i+1; j < size; j++) {
-				DxGeom g1 = buffer.get(j);
-				if (g1._aabb.getMin(ax0id) > idx0ax0max) {
-					//This and following elements can not intersect with g1.
-					break;
-				}
-//				if ( aabb0.get(ax1idx+1) >= g1._aabb.get(ax1idx)) 
-//					if (g1._aabb.get(ax1idx+1) >= aabb0.get(ax1idx) )
-//						if ( aabb0.get(ax2idx+1) >= g1._aabb.get(ax2idx))
-//							if (g1._aabb.get(ax2idx+1) >= aabb0.get(ax2idx) )
-				if ( aabb0.getMax(ax1id) >= g1._aabb.getMin(ax1id)) 
-					if (g1._aabb.getMax(ax1id) >= aabb0.getMin(ax1id) )
-						if ( aabb0.getMax(ax2id) >= g1._aabb.getMin(ax2id))
-							if (g1._aabb.getMax(ax2id) >= aabb0.getMin(ax2id) )
-								collideGeomsNoAABBs(g0, g1, data, callback);
-			}
-		}
-	}
-
-	//Commented out, see above (TZ)
-//	/**
-//	 *	Complete box pruning.
-//	 *  Returns a list of overlapping pairs of boxes, each box of the pair
-//	 *  belongs to the same set.
-//	 *
-//	 *	@param	count	[in] number of boxes.
-//	 *	@param	geoms	[in] geoms of boxes.
-//	 *	@param	pairs	[out] array of overlapping pairs.
-//	 */
-//	//void dxSAPSpace::BoxPruning( int count, const dxGeom** geoms, dArray< Pair >& pairs )
-//	void BoxPruning( int count, final ArrayList<dxGeom> geoms, ArrayList< Pair > pairs )
-//	{
-//		// 1) Build main list using the primary axis
-//		//  NOTE: uses floats instead of dReals because that's what radix sort wants
-//		for( int i = 0; i < count; ++i )
-//			poslist[i] = (float)TmpGeomList.get(i)._aabb.get( ax0idx );
-//		//TODO TZ poslist[count++] = Float.MAX_VALUE;//FLT_MAX;
-//
-//		// 2) Sort the list
-//		//final uint32* Sorted = sortContext.RadixSort( poslist.data(), count );
-//		//final IntArray Sorted = new IntArray( sortContext.RadixSort( poslist, count ) );
-//		//TODO
-//		//TODO
-//		//TODO
-//		ArrayList<dxGeom> buffer = new ArrayList<dxGeom>(geoms);
-//		Collections.sort(buffer, new GeomComparator());
-//		//final IntArray Sorted = new IntArray( Arrays.sort(poslist) );
-//		final IntArray Sorted = new IntArray(poslist.length);
-//		for (int i = 0; i < geoms.size(); i++) { //Sorted.setAt(i, i); // TODO optimize
-//			dxGeom g1 = geoms.get(i);
-//	//		poslist[i] = (float) g1._aabb.get(ax0idx); //TODO really?
-//			boolean found = false;
-//			for (int j = 0; j < buffer.size(); j++) {
-//				if (g1 == buffer.get(j)) {
-//					Sorted.setAt(buffer.size()-i-1, j);
-//					//Sorted.setAt(i, j);
-//					found = true;
-//					break;
-//				}
-//			}
-//			if (!found) throw new RuntimeException("i="+i);
-//		}
-//		//RESULT SO FAR
-//		//- Sorting is +- correct, geoms are ordered after aabb[0] from - to +
-//		//- poslist does not get modified
-//		//- poslist[Sorted] gives elements in correct order
-//
-//		// 3) Prune the list
-//		//	final uint32* const LastSorted = Sorted + count;
-//		//	final uint32* RunningAddress = Sorted;
-////		final IntArray LastSorted = new IntArray(Sorted, count);
-//		final IntArray RunningAddress = new IntArray(Sorted);
-//		//while ( RunningAddress < LastSorted && Sorted < LastSorted )
-//		//while ( RunningAddress.getAt0() < LastSorted.getAt0() && Sorted.getAt0() < LastSorted.getAt0() )
-//		while (RunningAddress.size() > 0 && Sorted.size() > 0)
-//		{
-//			Pair IndexPair = new Pair();  //TODO push does memcpy !?!?!?!!!!
-//			//IndexPair.id0 = *Sorted++;
-//			IndexPair.id0 = Sorted.getAt0();
-//			Sorted.inc();
-//
-//			// empty, this loop just advances RunningAddress
-//			//while ( poslist[*RunningAddress++] < poslist[IndexPair.id0] ) {}
-//			while ( poslist[RunningAddress.getAt0()] < poslist[IndexPair.id0] ) {
-//				RunningAddress.inc();
-//			}
-//			//TZ additional inc to point to failed position
-//			RunningAddress.inc();
-//
-//			//End of list not reached?
-//			//if ( RunningAddress.getAt0() < LastSorted.getAt0() )
-//			if (RunningAddress.size() > 0)
-//			{
-//				//final uint32* RunningAddress2 = RunningAddress;
-//				final IntArray RunningAddress2 = new IntArray(RunningAddress);
-//
-//				final double idx0ax0max = geoms.get(IndexPair.id0)._aabb.get(ax0idx+1);
-//				final double idx0ax1max = geoms.get(IndexPair.id0)._aabb.get(ax1idx+1);
-//				final double idx0ax2max = geoms.get(IndexPair.id0)._aabb.get(ax2idx+1);
-//
-//				//while ( poslist[ IndexPair.id1 = *RunningAddress2++ ] <= idx0ax0max )
-//				while ( true )
-//				{
-//					IndexPair.id1 = RunningAddress2.getAt0();
-//					RunningAddress2.inc();
-//					if (! (poslist[IndexPair.id1] <= idx0ax0max) || RunningAddress2.size()<0) {
-//						break;
-//					}
-//					
-//					final dVector6 aabb0 = geoms.get( IndexPair.id0 )._aabb;
-//					final dVector6 aabb1 = geoms.get( IndexPair.id1 )._aabb;
-//
-//					// Intersection?
-//					if ( idx0ax1max >= aabb1.get(ax1idx) && aabb1.get(ax1idx+1) >= aabb0.get(ax1idx) )
-//						if ( idx0ax2max >= aabb1.get(ax2idx) && aabb1.get(ax2idx+1) >= aabb0.get(ax2idx) )
-//						{
-//							System.out.println("P: " + IndexPair.id0 + " / " + IndexPair.id1 );
-//							pairs.add( IndexPair );
-//						}
-//				}
-//			}
-//
-//		}; // while ( RunningAddress < LastSorted && Sorted < LastSorted )
-//	}
-
 
 	//==============================================================================
 
@@ -586,5 +784,64 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 	//  Radix Sort Context
 	// --------------------------------------------------------------------------
 
-	//TZ removed. May be added in future again.
-}
\ No newline at end of file
+	/**
+	 * Stable LSD radix sort of float keys with attached ids, one pass per
+	 * byte. Passes where all keys have the same byte are skipped. 
+	 */
+	static final class RadixSortContext {
+		private int[] bits = new int[16];
+		private int[] bits2 = new int[16];
+		private int[] ids2 = new int[16];
+		private final int[] counts = new int[256];
+
+		/**
+		 * Sort the first <tt>n</tt> keys and ids by key.
+		 */
+		void sort( float[] keys, int[] ids, int n )
+		{
+			if ( bits.length < n ) {
+				bits = new int[n];
+				bits2 = new int[n];
+				ids2 = new int[n];
+			}
+			// map the floats to ints that sort like unsigned ints
+			for ( int i = 0; i < n; ++i ) {
+				int b = Float.floatToRawIntBits( keys[i] );
+				bits[i] = b ^ ((b >> 31) | 0x80000000);
+			}
+			int[] srcBits = bits, dstBits = bits2;
+			int[] srcIds = ids, dstIds = ids2;
+			for ( int shift = 0; shift < 32; shift += 8 ) {
+				Arrays.fill( counts, 0 );
+				for ( int i = 0; i < n; ++i ) {
+					counts[(srcBits[i] >>> shift) & 0xff]++;
+				}
+				if ( n == 0 || counts[(srcBits[0] >>> shift) & 0xff] == n ) {
+					continue;
+				}
+				int sum = 0;
+				for ( int i = 0; i < 256; ++i ) {
+					int c = counts[i];
+					counts[i] = sum;
+					sum += c;
+				}
+				for ( int i = 0; i < n; ++i ) {
+					int b = srcBits[i];
+					int pos = counts[(b >>> shift) & 0xff]++;
+					dstBits[pos] = b;
+					dstIds[pos] = srcIds[i];
+				}
+				int[] t = srcBits; srcBits = dstBits; dstBits = t;
+				t = srcIds; srcIds = dstIds; dstIds = t;
+			}
+			if ( srcIds != ids ) {
+				System.arraycopy( srcIds, 0, ids, 0, n );
+			}
+			// restore the keys from the sorted bits
+			for ( int i = 0; i < n; ++i ) {
+				int b = srcBits[i];
+				keys[i] = Float.intBitsToFloat( b ^ ((~b >> 31) | 0x80000000) );
+			}
+		}
+	}
+}
@@ -98,6 +98,10 @@ public class DxSAPSpace2 extends DxSpace implements DSapSpace {
 		if (g1.body == g2.body && g1.body != null)
 			return;
 
+		// no contacts between sleeping or static geoms, see collideAABBs()
+		if (isAsleepPair(g1, g2))
+			return;
+
 		// test if the category and collide bitfields match
 		if (((g1.category_bits & g2.collide_bits) != 0 || (g2.category_bits & g1.collide_bits) != 0) == false) {
 			return;
@@ -190,7 +194,7 @@ public class DxSAPSpace2 extends DxSpace implements DSapSpace {
 	}
 
 	@Override
-	public void collide(Object data, DNearCallback callback) {
+	void collideImpl (Object data, DNearCallback callback) {
 		dAASSERT(callback);
 
 		lock_count++;
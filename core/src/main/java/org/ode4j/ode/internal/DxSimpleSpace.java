@@ -24,6 +24,7 @@
  *************************************************************************/
 package org.ode4j.ode.internal;
 
+import org.ode4j.ode.DGeomPairBuffer;
 import org.ode4j.ode.DSimpleSpace;
 
 import static org.ode4j.ode.internal.Common.*;
@@ -73,19 +74,32 @@ public class DxSimpleSpace extends DxSpace implements DSimpleSpace {
 	}
 
 	@Override
-	public void collide (Object data, DNearCallback callback)
+	void collideImpl (Object data, DNearCallback callback)
 	{
-		dAASSERT (callback);
+		collideFromPairs (data, callback);
+	}
 
+
+	@Override
+	void collidePairsImpl (DGeomPairBuffer pairs)
+	{
 		lock_count++;
 		cleanGeoms();
 
+		// the geoms are numbered in list order
+		int first = pairs.getGeomCount();
+		for (DxGeom g = _first; g != null; g = g.getNext()) {
+			pairs.addGeom (g);
+		}
+
 		// intersect all bounding boxes
-		for (DxGeom g1 : getGeoms()) {
+		int i1 = first;
+		for (DxGeom g1 = _first; g1 != null; g1 = g1.getNext(), i1++) {
 			if (GEOM_ENABLED(g1)){
-				for (DxGeom g2=g1.getNext(); g2!=null; g2=g2.getNext()) {
-					if (GEOM_ENABLED(g2)){
-						collideAABBs (g1,g2,data,callback);
+				int i2 = i1 + 1;
+				for (DxGeom g2=g1.getNext(); g2!=null; g2=g2.getNext(), i2++) {
+					if (GEOM_ENABLED(g2) && testAABBs (g1,g2)){
+						pairs.addPair (i1, i2);
 					}
 				}
 			}
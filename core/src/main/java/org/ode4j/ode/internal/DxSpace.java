@@ -28,7 +28,13 @@ import java.util.Iterator;
 
 import org.ode4j.ode.DAABB;
 import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeomPairBuffer;
 import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DTracer;
+import org.ode4j.ode.OdeConfig;
+import org.ode4j.ode.threading.DThreadingImplementation;
+import org.ode4j.ode.threading.Threading_H.DThreadingFunctionsInfo;
+import org.ode4j.ode.threading.Threading_H.DxThreadingFunctionsInfo;
 
 import static org.ode4j.ode.internal.Common.*;
 
@@ -86,6 +92,11 @@ public abstract class DxSpace extends DxGeom implements DSpace {
 	// is locked.
 	int lock_count;
 
+	// parallel pair search, see setCollideMaxThreadCount()
+	private int collideMaxThreadCount = 1;
+	private DxCollideTasks collideTasks;	// created on demand
+	private DGeomPairBuffer callbackPairs;	// see collideFromPairs()
+
 	/**
 	 * Turn all dirty geoms into clean geoms by computing their AABBs and any
 	 * other space data structures that are required. this should clear the
@@ -96,9 +107,111 @@ public abstract class DxSpace extends DxGeom implements DSpace {
 
 	/** This is equivalent to OdeHelper.spaceCollide(...) */
 	@Override
-	public abstract void collide (Object data, DNearCallback callback);
+	public final void collide (Object data, DNearCallback callback)
+	{
+		DTracer tracer = OdeConfig.getTracer();
+		Object token = tracer != null ? tracer.beginSpaceCollide(this) : null;
+		if (token == null) {
+			collideImpl (data, callback);
+			return;
+		}
+		CountingNearCallback counter = new CountingNearCallback(callback);
+		collideImpl (data, counter);
+		tracer.endSpaceCollide(token, counter.pairs);
+	}
+	/** Implements {@link #collide(Object, DNearCallback)}. */
+	abstract void collideImpl (Object data, DNearCallback callback);
 	abstract void collide2 (Object data, DxGeom geom, DNearCallback callback);
 
+	@Override
+	public final void collidePairs (DGeomPairBuffer pairs)
+	{
+		DTracer tracer = OdeConfig.getTracer();
+		Object token = tracer != null ? tracer.beginSpaceCollide(this) : null;
+		pairs.clear();
+		collidePairsImpl (pairs);
+		if (token != null) {
+			tracer.endSpaceCollide(token, pairs.getPairCount());
+		}
+	}
+
+	/**
+	 * Implements {@link #collidePairs(DGeomPairBuffer)}. By default the pairs
+	 * are gathered from collideImpl(). Spaces that write their pairs directly
+	 * override this and implement collideImpl() with collideFromPairs().
+	 */
+	void collidePairsImpl (final DGeomPairBuffer pairs)
+	{
+		collideImpl (null, new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				pairs.addPair(pairs.addGeom(o1), pairs.addGeom(o2));
+			}
+		});
+	}
+
+	/**
+	 * Implements collideImpl() with collidePairsImpl(): the pairs are written
+	 * into a buffer of the space first, then the callback is called for each 
+	 * of them. The space stays locked until the last callback has returned.
+	 * <p>
+	 * A callback may disable a geom, or change its body or its category and
+	 * collide bits, so these tests are repeated before each callback, as if
+	 * the pair had just been found.
+	 */
+	final void collideFromPairs (Object data, DNearCallback callback)
+	{
+		dAASSERT (callback);
+		// a callback may collide this space again
+		DGeomPairBuffer pairs = callbackPairs;
+		callbackPairs = null;
+		if (pairs == null) {
+			pairs = new DGeomPairBuffer();
+		}
+		lock_count++;
+		collidePairsImpl (pairs);
+		for (int i = 0, n = pairs.getPairCount(); i < n; i++) {
+			DxGeom g1 = (DxGeom) pairs.getGeom1(i);
+			DxGeom g2 = (DxGeom) pairs.getGeom2(i);
+			if (isStillPair (g1, g2)) {
+				callback.call (data, g1, g2);
+			}
+		}
+		lock_count--;
+		pairs.clear();
+		callbackPairs = pairs;
+	}
+
+	/**
+	 * @return whether a buffered pair still passes the tests of testAABBs()
+	 * that a near callback can change
+	 */
+	private boolean isStillPair (DxGeom g1, DxGeom g2)
+	{
+		if (!GEOM_ENABLED(g1) || !GEOM_ENABLED(g2)) return false;
+		if (g1.body == g2.body && g1.body != null) return false;
+		if (isAsleepPair(g1, g2)) return false;
+		return (g1.category_bits & g2.collide_bits) != 0 ||
+				(g2.category_bits & g1.collide_bits) != 0;
+	}
+
+	/**
+	 * Counts the pairs reported to a near callback while a collision 
+	 * pass is traced.
+	 */
+	private static final class CountingNearCallback implements DNearCallback {
+		private final DNearCallback callback;
+		int pairs;
+		CountingNearCallback(DNearCallback callback) {
+			this.callback = callback;
+		}
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			pairs++;
+			callback.call(data, o1, o2);
+		}
+	}
+
 
 	public void dSpaceDestroy ()
 	{
@@ -213,6 +326,20 @@ public abstract class DxSpace extends DxGeom implements DSpace {
 			DNearCallback callback)
 	{
 		dAASSERT (callback);
+		DTracer tracer = OdeConfig.getTracer();
+		Object token = tracer != null ? tracer.beginSpaceCollide2(g1, g2) : null;
+		if (token == null) {
+			dSpaceCollide2Impl (g1, g2, data, callback);
+			return;
+		}
+		CountingNearCallback counter = new CountingNearCallback(callback);
+		dSpaceCollide2Impl (g1, g2, data, counter);
+		tracer.endSpaceCollide(token, counter.pairs);
+	}
+
+	private static void dSpaceCollide2Impl (DxGeom g1, DxGeom g2, Object data,
+			DNearCallback callback)
+	{
 		DxSpace s1,s2;
 
 		// see if either geom is a space
@@ -388,6 +515,42 @@ public abstract class DxSpace extends DxGeom implements DSpace {
 	}
 
 	
+	@Override
+	public void setThreadingImplementation(DThreadingFunctionsInfo functions_info,
+			DThreadingImplementation threading_impl)
+	{
+		getCollideTasks().setThreadingImplementation(
+				(DxThreadingFunctionsInfo) functions_info, threading_impl);
+	}
+
+
+	@Override
+	public void setCollideMaxThreadCount(int count)
+	{
+		dUASSERT (count >= 1, "thread count must be at least 1");
+		collideMaxThreadCount = count;
+	}
+
+
+	@Override
+	public int getCollideMaxThreadCount()
+	{
+		return collideMaxThreadCount;
+	}
+
+
+	/**
+	 * @return the tasks for a parallel pair search in collide()
+	 */
+	DxCollideTasks getCollideTasks()
+	{
+		if (collideTasks == null) {
+			collideTasks = new DxCollideTasks();
+		}
+		return collideTasks;
+	}
+
+
 	@Override
 	public void setManualCleanup(int value) { 
 		tls_kind = (value != 0 ? dSPACE_TLS_KIND_MANUAL_VALUE : dSPACE_TLS_KIND_INIT_VALUE); 
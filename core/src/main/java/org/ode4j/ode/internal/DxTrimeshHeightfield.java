@@ -33,6 +33,8 @@ import static org.ode4j.ode.internal.Common.dEpsilon;
 import static org.ode4j.ode.internal.Common.dFloor;
 import static org.ode4j.ode.internal.Common.dIASSERT;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.ode4j.math.DMatrix3;
 import org.ode4j.math.DVector3;
 import org.ode4j.ode.DAABB;
@@ -121,14 +123,71 @@ public class DxTrimeshHeightfield extends DxAbstractHeightfield {
     }
 
 
-    private HeightFieldTriangle[] tempTriangleBuffer;
-    private int              tempTriangleBufferSize;
+    /**
+     * The temporary buffers of a zone collision, taken from the heightfield
+     * while the collision runs.
+     * @see DxHeightfield
+     */
+    private final class TempBuffers {
+        HeightFieldTriangle[] tempTriangleBuffer;
+        int              tempTriangleBufferSize;
+
+        //private HeightFieldVertex[]  tempHeightBuffer;
+        ObjArray<HeightFieldVertex>[]  tempHeightBuffer;
+        HeightFieldVertex[]   tempHeightInstances;
+        int              tempHeightBufferSizeX;
+        int              tempHeightBufferSizeZ;
+
+        private void allocateTriangleBuffer(int numTri)
+        {
+            int alignedNumTri = AlignBufferSize(numTri, TEMP_TRIANGLE_BUFFER_ELEMENT_COUNT_ALIGNMENT);
+            tempTriangleBufferSize = alignedNumTri;
+            tempTriangleBuffer = new HeightFieldTriangle[alignedNumTri];
+            for (int i = 0; i < tempTriangleBuffer.length; i++) tempTriangleBuffer[i] = new HeightFieldTriangle();
+        }
+
+        private void resetTriangleBuffer()
+        {
+            //delete[] tempTriangleBuffer;
+            tempTriangleBuffer = null;
+            //TODO set size == 0? TZ
+        }
 
-    //private HeightFieldVertex[]  tempHeightBuffer;
-    private ObjArray<HeightFieldVertex>[]  tempHeightBuffer;
-    private HeightFieldVertex[]   tempHeightInstances;
-    private int              tempHeightBufferSizeX;
-    private int              tempHeightBufferSizeZ;
+        @SuppressWarnings("unchecked")
+        private void allocateHeightBuffer(int numX, int numZ)
+        {
+            int alignedNumX = AlignBufferSize(numX, TEMP_HEIGHT_BUFFER_ELEMENT_COUNT_ALIGNMENT_X);
+            int alignedNumZ = AlignBufferSize(numZ, TEMP_HEIGHT_BUFFER_ELEMENT_COUNT_ALIGNMENT_Z);
+            tempHeightBufferSizeX = alignedNumX;
+            tempHeightBufferSizeZ = alignedNumZ;
+            //tempHeightBuffer = new HeightFieldVertex *[alignedNumX];
+            tempHeightBuffer = new ObjArray[alignedNumX];
+            int numCells = alignedNumX * alignedNumZ;
+            tempHeightInstances = new HeightFieldVertex [numCells];
+            for (int i = 0; i < tempHeightInstances.length; i++) {
+                tempHeightInstances[i] = new HeightFieldVertex();
+            }
+
+            //HeightFieldVertex *ptrHeightMatrix = tempHeightInstances;
+            for (int indexX = 0; indexX != alignedNumX; indexX++)
+            {
+                //          tempHeightBuffer[indexX] = ptrHeightMatrix;
+                //          ptrHeightMatrix += alignedNumZ;
+                //tempHeightBuffer[indexX] = tempHeightInstances[indexX];
+                tempHeightBuffer[indexX] = new ObjArray<HeightFieldVertex>(tempHeightInstances, indexX*alignedNumZ);
+            }
+        }
+
+        void resetHeightBuffer()
+        {
+            //delete[] tempHeightInstances;
+            //delete[] tempHeightBuffer;
+            tempHeightInstances = null;
+            tempHeightBuffer = null;
+        }
+    }
+
+    private final AtomicReference<TempBuffers> tempBuffers = new AtomicReference<TempBuffers>();
 
     private boolean	layered;
 
@@ -148,12 +207,6 @@ public class DxTrimeshHeightfield extends DxAbstractHeightfield {
         //      tempHeightBufferSizeX(0),
         //      tempHeightBufferSizeZ(0)
         super( (DxSpace) space, bPlaceable );
-        tempTriangleBuffer = null;
-        tempTriangleBufferSize = 0;
-        tempHeightBuffer = null;
-        tempHeightInstances = null;
-        tempHeightBufferSizeX = 0;
-        tempHeightBufferSizeZ = 0;
 
         type = dHeightfieldClass;
         m_p_data = (DxHeightfieldData) data;
@@ -305,59 +358,10 @@ public class DxTrimeshHeightfield extends DxAbstractHeightfield {
     @Override
     public void DESTRUCTOR()
     {
-        resetTriangleBuffer();
-        resetHeightBuffer();
+        tempBuffers.set(null);
         super.DESTRUCTOR();
     }
 
-    private void allocateTriangleBuffer(int numTri)
-    {
-        int alignedNumTri = AlignBufferSize(numTri, TEMP_TRIANGLE_BUFFER_ELEMENT_COUNT_ALIGNMENT);
-        tempTriangleBufferSize = alignedNumTri;
-        tempTriangleBuffer = new HeightFieldTriangle[alignedNumTri];
-        for (int i = 0; i < tempTriangleBuffer.length; i++) tempTriangleBuffer[i] = new HeightFieldTriangle();
-    }
-
-    private void resetTriangleBuffer()
-    {
-        //delete[] tempTriangleBuffer;
-        tempTriangleBuffer = null;
-        //TODO set size == 0? TZ
-    }
-
-    @SuppressWarnings("unchecked")
-    private void allocateHeightBuffer(int numX, int numZ)
-    {
-        int alignedNumX = AlignBufferSize(numX, TEMP_HEIGHT_BUFFER_ELEMENT_COUNT_ALIGNMENT_X);
-        int alignedNumZ = AlignBufferSize(numZ, TEMP_HEIGHT_BUFFER_ELEMENT_COUNT_ALIGNMENT_Z);
-        tempHeightBufferSizeX = alignedNumX;
-        tempHeightBufferSizeZ = alignedNumZ;
-        //tempHeightBuffer = new HeightFieldVertex *[alignedNumX];
-        tempHeightBuffer = new ObjArray[alignedNumX];
-        int numCells = alignedNumX * alignedNumZ;
-        tempHeightInstances = new HeightFieldVertex [numCells];
-        for (int i = 0; i < tempHeightInstances.length; i++) {
-            tempHeightInstances[i] = new HeightFieldVertex();
-        }
-
-        //HeightFieldVertex *ptrHeightMatrix = tempHeightInstances;
-        for (int indexX = 0; indexX != alignedNumX; indexX++)
-        {
-            //          tempHeightBuffer[indexX] = ptrHeightMatrix;
-            //          ptrHeightMatrix += alignedNumZ;
-            //tempHeightBuffer[indexX] = tempHeightInstances[indexX];
-            tempHeightBuffer[indexX] = new ObjArray<HeightFieldVertex>(tempHeightInstances, indexX*alignedNumZ);
-        }
-    }
-
-    void resetHeightBuffer()
-    {
-        //delete[] tempHeightInstances;
-        //delete[] tempHeightBuffer;
-        tempHeightInstances = null;
-        tempHeightBuffer = null;
-    }
-
     //////// Heightfield geom interface ////////////////////////////////////////////////////
 
     /**
@@ -439,6 +443,23 @@ public class DxTrimeshHeightfield extends DxAbstractHeightfield {
             DxGeom o2, final int numMaxContactsPossible,
             int flags, DContactGeomBuffer contacts,
             int skip )
+    {
+        TempBuffers tb = tempBuffers.getAndSet(null);
+        if (tb == null) {
+            tb = new TempBuffers();
+        }
+        try {
+            return dCollideHeightfieldZone(tb, minX, maxX, minZ, maxZ, o2, numMaxContactsPossible,
+                    flags, contacts, skip);
+        } finally {
+            tempBuffers.set(tb);
+        }
+    }
+
+    private int dCollideHeightfieldZone( TempBuffers tb, final int minX, final int maxX, final int minZ, final int maxZ,
+            DxGeom o2, final int numMaxContactsPossible,
+            int flags, DContactGeomBuffer contacts,
+            int skip )
     {
         DContactGeom pContact = null;
         int  x, z;
@@ -458,10 +479,10 @@ public class DxTrimeshHeightfield extends DxAbstractHeightfield {
         final double cfSampleWidth = m_p_data.m_fSampleWidth;
         final double cfSampleDepth = m_p_data.m_fSampleDepth;
         {
-            if (tempHeightBufferSizeX < numX || tempHeightBufferSizeZ < numZ)
+            if (tb.tempHeightBufferSizeX < numX || tb.tempHeightBufferSizeZ < numZ)
             {
-                resetHeightBuffer();
-                allocateHeightBuffer(numX, numZ);
+                tb.resetHeightBuffer();
+                tb.allocateHeightBuffer(numX, numZ);
             }
 
             double Xpos, Ypos;
@@ -473,7 +494,7 @@ public class DxTrimeshHeightfield extends DxAbstractHeightfield {
                 final double c_Xpos = Xpos;
                 //HeightFieldVertex HeightFieldRow = tempHeightBuffer[x_local];
                 //ObjArray<HeightFieldVertex> HeightFieldRow = new ObjArray<HeightFieldVertex>(tempHeightBuffer, x_local);
-                ObjArray<HeightFieldVertex> HeightFieldRow = tempHeightBuffer[x_local];
+                ObjArray<HeightFieldVertex> HeightFieldRow = tb.tempHeightBuffer[x_local];
                 for ( z = minZ, z_local = 0; z_local < numZ; z++, z_local++)
                 {
                     Ypos = z * cfSampleDepth; // Always calculate pos via multiplication to avoid computational error accumulation during multiple additions
@@ -519,10 +540,10 @@ public class DxTrimeshHeightfield extends DxAbstractHeightfield {
 
         //final unsigned 
         final int numTriMax = (maxX - minX) * (maxZ - minZ) * 2;
-        if (tempTriangleBufferSize < numTriMax)
+        if (tb.tempTriangleBufferSize < numTriMax)
         {
-            resetTriangleBuffer();
-            allocateTriangleBuffer(numTriMax);
+            tb.resetTriangleBuffer();
+            tb.allocateTriangleBuffer(numTriMax);
         }
 
         // Sorting triangle/plane  resulting from heightfield zone
@@ -541,8 +562,8 @@ public class DxTrimeshHeightfield extends DxAbstractHeightfield {
 
         for ( x_local = 0; x_local < maxX_local; x_local++)
         {
-            ObjArray<HeightFieldVertex> HeightFieldRow      = tempHeightBuffer[x_local];
-            ObjArray<HeightFieldVertex> HeightFieldNextRow  = tempHeightBuffer[x_local + 1];
+            ObjArray<HeightFieldVertex> HeightFieldRow      = tb.tempHeightBuffer[x_local];
+            ObjArray<HeightFieldVertex> HeightFieldNextRow  = tb.tempHeightBuffer[x_local + 1];
 
             C = HeightFieldRow.at(0);
             D = HeightFieldNextRow.at(0);
@@ -569,14 +590,14 @@ public class DxTrimeshHeightfield extends DxAbstractHeightfield {
 
                 if (isACollide || isBCollide || isCCollide)
                 {
-                    HeightFieldTriangle CurrTriUp = tempTriangleBuffer[numTri++];// final ?? TZ
+                    HeightFieldTriangle CurrTriUp = tb.tempTriangleBuffer[numTri++];// final ?? TZ
                     CurrTriUp.vertices[0] = A;
                     CurrTriUp.vertices[1] = C;
                     CurrTriUp.vertices[2] = B;
                 }
                 if (isBCollide || isCCollide || isDCollide)
                 {
-                    HeightFieldTriangle CurrTriDown = tempTriangleBuffer[numTri++];//final ?? TZ
+                    HeightFieldTriangle CurrTriDown = tb.tempTriangleBuffer[numTri++];//final ?? TZ
                     CurrTriDown.vertices[0] = D;
                     CurrTriDown.vertices[1] = B;
                     CurrTriDown.vertices[2] = C;
@@ -589,7 +610,7 @@ public class DxTrimeshHeightfield extends DxAbstractHeightfield {
         float[] vertices = new float[numTri * 9];
         int[] faces = new int[numTri * 3];
         for (int k = 0; k < numTri; k++) {
-            HeightFieldTriangle itTriangle = tempTriangleBuffer[k];
+            HeightFieldTriangle itTriangle = tb.tempTriangleBuffer[k];
             for (int j = 0; j < 3; j ++) {
                 for (int i = 0; i < 3; i ++) {
                     vertices[k * 9 + j * 3 + i] = (float) itTriangle.vertices[j].vertex.get(i);
@@ -35,9 +35,16 @@ import static org.ode4j.ode.internal.ErrorHandler.dMessage;
 import static org.ode4j.ode.internal.Objects_H.g_world_default_threading_functions;
 import static org.ode4j.ode.internal.Objects_H.g_world_default_threading_impl;
 
+import java.util.Arrays;
+
 import org.ode4j.math.DVector3;
 import org.ode4j.math.DVector3C;
 import org.ode4j.ode.DWorld;
+import org.ode4j.ode.DWorld.DQuickStepStats;
+import org.ode4j.ode.DWorld.DStepProfile;
+import org.ode4j.ode.DWorld.DStepProfileListener;
+import org.ode4j.ode.DTracer;
+import org.ode4j.ode.OdeConfig;
 import org.ode4j.ode.internal.Objects_H.dxAutoDisable;
 import org.ode4j.ode.internal.Objects_H.dxContactParameters;
 import org.ode4j.ode.internal.Objects_H.dxDampingParameters;
@@ -73,6 +80,9 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 
 	//TZ these are super-classes, but I made them delegates.
 	private DxThreadingBase dxThreadingBase;
+	// the self-threaded implementation keeps its job list in the instance,
+	// so each world has its own to be stepped independently of other worlds
+	private DThreadingImplementation defaultThreadingImpl;
 	//private DxIThreadingDefaultImplProvider dxIThreadingDefaultImplProvider;
 	
 	//TODO
@@ -89,10 +99,25 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 	double global_cfm;		// global constraint force mixing parameter
 	dxAutoDisable adis;		// auto-disable parameters
 	int body_flags;               // flags for new bodies
+	boolean adis_skip_pairs;      // spaces skip pairs of sleeping and static geoms
     private int islands_max_threads; // maximum threads to allocate for island processing
 	public DxStepWorkingMemory wmem; // Working memory object for dWorldStep/dWorldQuickStep
 
 	dxQuickStepParameters qs;
+	private DxContactImpulseCache contactImpulseCache; // contact impulses for warm starting
+	private final DxIslandGraph islandGraph = new DxIslandGraph(); // persistent islands
+	private DQuickStepStats qsStats; // filled by dWorldQuickStep, may be null
+	private DStepProfile stepProfile; // filled by all steppers, may be null
+	private DStepProfileListener stepProfileListener; // may be null
+	// island processing state, reused by every step
+	private final DxWorldProcessIslandsInfo islandsInfo = new DxWorldProcessIslandsInfo();
+	private DxIslandsProcessingCallContext islandsCallContext;
+	private final RefInt islandsSummaryFault = new RefInt();
+	private final RefInt islandsActiveThreadCount = new RefInt();
+	private final Ref<DCallReleasee> islandsGroupReleasee = new Ref<DCallReleasee>();
+	// average velocities of auto-disabling, sampled while the islands are built
+	private final DVector3 adisAverageLvel = new DVector3();
+	private final DVector3 adisAverageAvel = new DVector3();
 	public dxContactParameters contactp;
 	dxDampingParameters dampingp; // damping parameters
 	double max_angular_speed;      // limit the angular velocity to this magnitude
@@ -140,6 +165,7 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 		
 		adis = new dxAutoDisable();
 		qs = new dxQuickStepParameters();
+		contactImpulseCache = new DxContactImpulseCache(Objects_H.dWORLD_DEFAULT_CONTACT_IMPULSE_CACHE_SIZE);
 		contactp = new dxContactParameters();
 		dampingp = new dxDampingParameters();
 	}
@@ -183,6 +209,8 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 			}
 			j = nextj;
 		}
+		contactImpulseCache.clear();
+		islandGraph.clear();
 
 //		delete w;
 		DESTRUCTOR();
@@ -444,7 +472,11 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 
 	    boolean result = false;
 
-	    DxWorldProcessIslandsInfo islandsinfo = new DxWorldProcessIslandsInfo();
+	    long profileStart = dxBeginStepProfile();
+	    DTracer tracer = OdeConfig.getTracer();
+	    Object traceToken = tracer != null ? tracer.beginWorldStep(this, "step", stepsize) : null;
+
+	    DxWorldProcessIslandsInfo islandsinfo = islandsInfo;
         if (DxWorldProcessContext.dxReallocateWorldProcessContext (this, islandsinfo, stepsize, 
         		Step.INSTANCE))//dxEstimateQuickStepMemoryRequirements))
         {
@@ -455,29 +487,142 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
             }
 	    }
 
+	    dxEndStepProfile(profileStart);
+	    if (traceToken != null) {
+	    	dxEndWorldStepTrace(tracer, traceToken);
+	    }
+
 	    return result;
 	}
 
 	boolean dWorldQuickStep (double stepsize)
+	{
+		return dxWorldQuickStep (stepsize, DxQuickStep.INSTANCE);
+	}
+
+	boolean dWorldNNCGStep (double stepsize)
+	{
+		return dxWorldQuickStep (stepsize, DxNNCGStep.INSTANCE);
+	}
+
+	/**
+	 * Step the world with the QuickStep pipeline, <tt>stepper</tt> selects
+	 * the LCP solver.
+	 */
+	private boolean dxWorldQuickStep (double stepsize, DxQuickStep stepper)
 	{
 	    dUASSERT (stepsize > 0,"stepsize must be > 0");
 
 	    boolean result = false;
 
-	    DxWorldProcessIslandsInfo islandsinfo = new DxWorldProcessIslandsInfo();
+	    if (qsStats != null) {
+	    	qsStats.islandCount = 0;
+	    	qsStats.totalIterations = 0;
+	    	qsStats.maxIterations = 0;
+	    }
+	    long profileStart = dxBeginStepProfile();
+	    DTracer tracer = OdeConfig.getTracer();
+	    Object traceToken = tracer != null ? tracer.beginWorldStep(this, 
+	    		stepper == DxNNCGStep.INSTANCE ? "nncgStep" : "quickStep", stepsize) : null;
+
+	    DxWorldProcessIslandsInfo islandsinfo = islandsInfo;
 	    if (DxWorldProcessContext.dxReallocateWorldProcessContext (this, islandsinfo, stepsize, 
-	            DxQuickStep.INSTANCE))//dxEstimateQuickStepMemoryRequirements))
+	            stepper))//dxEstimateQuickStepMemoryRequirements))
 	    {
 	    	//if (dxProcessIslands (w, islandsinfo, stepsize, &dxQuickStepIsland, &dxEstimateQuickStepMaxCallCount))
-	        if (dxProcessIslands (islandsinfo, stepsize, DxQuickStep.INSTANCE, Step.INSTANCE))
+	        if (dxProcessIslands (islandsinfo, stepsize, stepper, stepper))
 	        {
 	        	result = true;
 	        }
 	    }
+	    if (qs.warm_starting) {
+	    	contactImpulseCache.endStep();
+	    }
+
+	    dxEndStepProfile(profileStart);
+	    if (traceToken != null) {
+	    	dxEndWorldStepTrace(tracer, traceToken);
+	    }
 
 	    return result;
 	}
 
+	private void dxEndWorldStepTrace (DTracer tracer, Object traceToken)
+	{
+		DxWorldProcessIslandsInfo islandsinfo = islandsInfo;
+		tracer.endWorldStep(traceToken, islandsinfo.GetIslandsCount(), 
+				islandsinfo.GetBodiesCount(), islandsinfo.GetJointsCount());
+	}
+
+	/**
+	 * @return the start time of the step, or 0 if profiling is disabled
+	 */
+	private long dxBeginStepProfile ()
+	{
+		DStepProfile profile = stepProfile;
+		if (profile == null) {
+			return 0;
+		}
+		profile.reset();
+		return System.nanoTime();
+	}
+
+	private void dxEndStepProfile (long profileStart)
+	{
+		DStepProfile profile = stepProfile;
+		if (profile == null) {
+			return;
+		}
+		profile.totalNanos = System.nanoTime() - profileStart;
+		DStepProfileListener listener = stepProfileListener;
+		if (listener != null) {
+			listener.stepProfiled(this, profile);
+		}
+	}
+
+	/**
+	 * @return whether the steps of this world are profiled
+	 */
+	public boolean dWorldIsProfiling ()
+	{
+		return stepProfile != null;
+	}
+
+	/**
+	 * Called once per step after the islands have been found.
+	 */
+	public void dWorldProfileIslands (long islandsNanos, long autoDisableNanos, 
+			int islandCount, int bodyCount, int jointCount)
+	{
+		DStepProfile profile = stepProfile;
+		if (profile == null) {
+			return;
+		}
+		profile.islandsNanos += islandsNanos;
+		profile.autoDisableNanos += autoDisableNanos;
+		profile.islandCount += islandCount;
+		profile.bodyCount += bodyCount;
+		profile.jointCount += jointCount;
+	}
+
+	/**
+	 * Called by the stepper for each stage of an island. Islands and 
+	 * stages may be processed concurrently.
+	 * @param stage one of the <code>DStepProfile.STAGE*</code> indices
+	 * @param rows constraint rows to add to the row count
+	 */
+	void dWorldProfileStage (int stage, long nanos, int rows)
+	{
+		DStepProfile profile = stepProfile;
+		if (profile == null) {
+			return;
+		}
+		synchronized (profile) {
+			profile.stageNanos[stage] += nanos;
+			profile.rowCount += rows;
+		}
+	}
+
 	
 	private void dWorldImpulseToForce (double stepsize,
 			double ix, double iy, double iz,
@@ -575,6 +720,18 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 	}
 
 
+	private boolean dWorldGetAutoDisableSkipSleepingPairs ()
+	{
+		return adis_skip_pairs;
+	}
+
+
+	private void dWorldSetAutoDisableSkipSleepingPairs (boolean skip)
+	{
+		adis_skip_pairs = skip;
+	}
+
+
 	// world damping functions
 
 	private double dWorldGetLinearDampingThreshold()
@@ -679,6 +836,106 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 	}
 
 
+	private void dWorldSetQuickStepParallelSOR (boolean enabled)
+	{
+		qs.parallel_sor = enabled;
+	}
+
+
+	private boolean dWorldGetQuickStepParallelSOR ()
+	{
+		return qs.parallel_sor;
+	}
+
+
+	private void dWorldSetQuickStepJacobi (boolean enabled)
+	{
+		qs.jacobi = enabled;
+	}
+
+
+	private boolean dWorldGetQuickStepJacobi ()
+	{
+		return qs.jacobi;
+	}
+
+
+	private void dWorldSetQuickStepWarmStarting (boolean enabled)
+	{
+		qs.warm_starting = enabled;
+		if (!enabled) {
+			contactImpulseCache.clear();
+		}
+	}
+
+
+	private boolean dWorldGetQuickStepWarmStarting ()
+	{
+		return qs.warm_starting;
+	}
+
+
+	private void dWorldSetQuickStepWarmStartingCacheSize (int maxContacts)
+	{
+		dUASSERT (maxContacts >= 0, "the cache size must not be negative");
+		contactImpulseCache.setMaxSize(maxContacts);
+	}
+
+
+	private int dWorldGetQuickStepWarmStartingCacheSize ()
+	{
+		return contactImpulseCache.getMaxSize();
+	}
+
+
+	DxContactImpulseCache contactImpulseCache()
+	{
+		return contactImpulseCache;
+	}
+
+
+	public DxIslandGraph islandGraph()
+	{
+		return islandGraph;
+	}
+
+
+	private void dWorldSetQuickStepTolerance (double tolerance)
+	{
+		dUASSERT (tolerance >= 0, "the tolerance must not be negative");
+		qs.tolerance = tolerance;
+	}
+
+
+	private double dWorldGetQuickStepTolerance ()
+	{
+		return qs.tolerance;
+	}
+
+
+	/**
+	 * Called by the QuickStep stepper once per island. Islands may be 
+	 * solved concurrently.
+	 */
+	void dWorldReportQuickStepIterations (int iterations)
+	{
+		DQuickStepStats stats = qsStats;
+		if (stats == null) {
+			return;
+		}
+		synchronized (stats) {
+			if (stats.islandCount == stats.iterations.length) {
+				stats.iterations = Arrays.copyOf(stats.iterations, Math.max(16, stats.islandCount * 2));
+			}
+			stats.iterations[stats.islandCount++] = iterations;
+			stats.totalIterations += iterations;
+			if (iterations > stats.maxIterations) {
+				stats.maxIterations = iterations;
+			}
+		}
+	}
+
+
 //	void dWorldSetContactMaxCorrectingVel (dxWorld w, double vel)
 	public void dWorldSetContactMaxCorrectingVel (double vel)
 	{
@@ -706,6 +963,31 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 		return contactp.min_depth;
 	}
 
+
+	private void dWorldSetContactSplitImpulse (boolean enabled)
+	{
+		contactp.split_impulse = enabled;
+	}
+
+
+	private boolean dWorldGetContactSplitImpulse ()
+	{
+		return contactp.split_impulse;
+	}
+
+
+	private void dWorldSetContactSplitImpulseThreshold (double depth)
+	{
+		dUASSERT (depth >= 0, "the threshold must not be negative");
+		contactp.split_impulse_threshold = depth;
+	}
+
+
+	private double dWorldGetContactSplitImpulseThreshold ()
+	{
+		return contactp.split_impulse_threshold;
+	}
+
 	//**** FROM util.cpp TZ
 
 //	dxWorldProcessMemArena *dxAllocateTemporaryWorldProcessMemArena(
@@ -796,8 +1078,13 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 	{
 		boolean result = false;
 
-		DxIslandsProcessingCallContext callContext = new DxIslandsProcessingCallContext(this, 
-				islandsInfo, stepSize, stepper);
+		DxIslandsProcessingCallContext callContext = islandsCallContext;
+		if (callContext != null) {
+			callContext.Initialize(this, islandsInfo, stepSize, stepper);
+		} else {
+			callContext = new DxIslandsProcessingCallContext(this, islandsInfo, stepSize, stepper);
+			islandsCallContext = callContext;
+		}
 
 		do {
 			//DxStepWorkingMemory wmem = world.wmem;
@@ -806,9 +1093,10 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 			dIASSERT(context != null);
 			DCallWait pcwGroupCallWait = context.GetIslandsSteppingWait();
 
-			RefInt summaryFault = new RefInt();
+			RefInt summaryFault = islandsSummaryFault;
+			summaryFault.set(0);
 
-			RefInt activeThreadCount = new RefInt();
+			RefInt activeThreadCount = islandsActiveThreadCount;
 			final int islandsAllowedThreadCount = GetThreadingIslandsMaxThreadsCount(activeThreadCount);
 			dIASSERT(islandsAllowedThreadCount != 0);
 			dIASSERT(activeThreadCount.get() >= islandsAllowedThreadCount);
@@ -823,7 +1111,7 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 				break;
 			}
 
-			Ref<DCallReleasee> groupReleasee = new Ref<DCallReleasee>();
+			Ref<DCallReleasee> groupReleasee = islandsGroupReleasee;
 			// First post a group call with dependency count set to number of expected threads
 			threading().PostThreadedCall(summaryFault, groupReleasee, islandsAllowedThreadCount, null, 
 					pcwGroupCallWait, 
@@ -858,94 +1146,128 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 	//****************************************************************************
 	// Auto disabling
 
-	public void dInternalHandleAutoDisabling (double stepsize)
+	/**
+	 * Sample the velocities of the bodies of an island and put the whole
+	 * island to sleep once each of its bodies has been idle for long enough.
+	 * <p>
+	 * Bodies are not disabled one by one: a disabled body would be enabled 
+	 * again by the rest of its island in the next step, so a pile would 
+	 * never come to rest while any one of its bodies still moves.
+	 * 
+	 * @return <tt>true</tt> if the island has been put to sleep; its bodies 
+	 * are disabled and it must not be stepped.
+	 */
+	public boolean dInternalHandleAutoDisabling (DxBody[] body, int start, int count, double stepsize)
 	{
-		DxBody bb;
-		for ( bb=firstbody.get(); bb!=null; bb=(DxBody)bb.getNext() )
-		{
-			// don't freeze objects mid-air (patch 1586738)
-			if ( bb.firstjoint.get() == null ) continue;
+		boolean sleep = true;
+		for (int i = start; i < start + count; ++i) {
+			// keep sampling all bodies, even if the island is known to stay awake
+			sleep &= dInternalSampleAutoDisabling (body[i], stepsize);
+		}
+		if (!sleep) {
+			return false;
+		}
+		for (int i = start; i < start + count; ++i) {
+			DxBody bb = body[i];
+			bb.flags |= DxBody.dxBodyDisabled; // set the disable flag
+			bb.tag = -1;
+
+			// disabling bodies should also include resetting the velocity
+			// should prevent jittering in big "islands"
+			bb.lvel.setZero();
+			bb.avel.setZero();
+		}
+		return true;
+	}
 
-			// nothing to do unless this body is currently enabled and has
-			// the auto-disable flag set
-			if ( (bb.flags & (DxBody.dxBodyAutoDisable|DxBody.dxBodyDisabled)) != 
-				DxBody.dxBodyAutoDisable ) continue;
+	/**
+	 * @return whether the body has been idle for long enough to be disabled
+	 */
+	private boolean dInternalSampleAutoDisabling (DxBody bb, double stepsize)
+	{
+		// don't freeze objects mid-air (patch 1586738)
+		if ( bb.firstjoint.get() == null ) return false;
 
-			// if sampling / threshold testing is disabled, we can never sleep.
-			if ( bb.adis.average_samples == 0 ) continue;
+		// nothing to do unless this body is currently enabled and has
+		// the auto-disable flag set
+		if ( (bb.flags & (DxBody.dxBodyAutoDisable|DxBody.dxBodyDisabled)) != 
+			DxBody.dxBodyAutoDisable ) return false;
 
-			//
-			// see if the body is idle
-			//
+		// if sampling / threshold testing is disabled, we can never sleep.
+		if ( bb.adis.average_samples == 0 ) return false;
 
-			if (!dNODEBUG) {//#ifndef dNODEBUG
-				// sanity check
-				if ( bb.average_counter >= bb.adis.average_samples )
-				{
-					dUASSERT( bb.average_counter < bb.adis.average_samples, "buffer overflow" );
+		//
+		// see if the body is idle
+		//
 
-					// something is going wrong, reset the average-calculations
-					bb.average_ready = 0; // not ready for average calculation
-					bb.average_counter = 0; // reset the buffer index
-				}
-			}//#endif // dNODEBUG
+		if (!dNODEBUG) {//#ifndef dNODEBUG
+			// sanity check
+			if ( bb.average_counter >= bb.adis.average_samples )
+			{
+				dUASSERT( bb.average_counter < bb.adis.average_samples, "buffer overflow" );
 
-			// sample the linear and angular velocity
+				// something is going wrong, reset the average-calculations
+				bb.average_ready = 0; // not ready for average calculation
+				bb.average_counter = 0; // reset the buffer index
+			}
+		}//#endif // dNODEBUG
+
+		// sample the linear and angular velocity
 //			bb.average_lvel_buffer[bb.average_counter].v[0] = bb.lvel.v[0];
 //			bb.average_lvel_buffer[bb.average_counter].v[1] = bb.lvel.v[1];
 //			bb.average_lvel_buffer[bb.average_counter].v[2] = bb.lvel.v[2];
-			bb.average_lvel_buffer[bb.average_counter].set(bb.lvel);
+		bb.average_lvel_buffer[bb.average_counter].set(bb.lvel);
 //			bb.average_avel_buffer[bb.average_counter].v[0] = bb.avel.v[0];
 //			bb.average_avel_buffer[bb.average_counter].v[1] = bb.avel.v[1];
 //			bb.average_avel_buffer[bb.average_counter].v[2] = bb.avel.v[2];
-			bb.average_avel_buffer[bb.average_counter].set(bb.avel);
-			bb.average_counter++;
+		bb.average_avel_buffer[bb.average_counter].set(bb.avel);
+		bb.average_counter++;
 
-			// buffer ready test
-			if ( bb.average_counter >= bb.adis.average_samples )
-			{
-				bb.average_counter = 0; // fill the buffer from the beginning
-				bb.average_ready = 1; // this body is ready now for average calculation
-			}
+		// buffer ready test
+		if ( bb.average_counter >= bb.adis.average_samples )
+		{
+			bb.average_counter = 0; // fill the buffer from the beginning
+			bb.average_ready = 1; // this body is ready now for average calculation
+		}
 
-			boolean idle = false; // Assume it's in motion unless we have samples to disprove it.
+		boolean idle = false; // Assume it's in motion unless we have samples to disprove it.
 
-			// enough samples?
-			if ( bb.average_ready != 0)
-			{
-				idle = true; // Initial assumption: IDLE
+		// enough samples?
+		if ( bb.average_ready != 0)
+		{
+			idle = true; // Initial assumption: IDLE
 
-				// the sample buffers are filled and ready for calculation
-				DVector3 average_lvel = new DVector3(), average_avel = new DVector3();
+			// the sample buffers are filled and ready for calculation
+			DVector3 average_lvel = adisAverageLvel, average_avel = adisAverageAvel;
 
-				// Store first velocity samples
+			// Store first velocity samples
 //				average_lvel.v[0] = bb.average_lvel_buffer[0].v[0];
 //				average_avel.v[0] = bb.average_avel_buffer[0].v[0];
 //				average_lvel.v[1] = bb.average_lvel_buffer[0].v[1];
 //				average_avel.v[1] = bb.average_avel_buffer[0].v[1];
 //				average_lvel.v[2] = bb.average_lvel_buffer[0].v[2];
 //				average_avel.v[2] = bb.average_avel_buffer[0].v[2];
-				average_lvel.set( bb.average_lvel_buffer[0] );
-				average_avel.set( bb.average_avel_buffer[0] );
+			average_lvel.set( bb.average_lvel_buffer[0] );
+			average_avel.set( bb.average_avel_buffer[0] );
 
-				// If we're not in "instantaneous mode"
-				if ( bb.adis.average_samples > 1 )
+			// If we're not in "instantaneous mode"
+			if ( bb.adis.average_samples > 1 )
+			{
+				// add remaining velocities together
+				for ( int i = 1; i < bb.adis.average_samples; ++i )
 				{
-					// add remaining velocities together
-					for ( int i = 1; i < bb.adis.average_samples; ++i )
-					{
 //						average_lvel.v[0] += bb.average_lvel_buffer[i].v[0];
 //						average_avel.v[0] += bb.average_avel_buffer[i].v[0];
 //						average_lvel.v[1] += bb.average_lvel_buffer[i].v[1];
 //						average_avel.v[1] += bb.average_avel_buffer[i].v[1];
 //						average_lvel.v[2] += bb.average_lvel_buffer[i].v[2];
 //						average_avel.v[2] += bb.average_avel_buffer[i].v[2];
-						average_lvel.add( bb.average_lvel_buffer[i] );
-						average_avel.add( bb.average_avel_buffer[i] );
-					}
+					average_lvel.add( bb.average_lvel_buffer[i] );
+					average_avel.add( bb.average_avel_buffer[i] );
+				}
 
-					// make average
-					double r1 = 1.0  / bb.adis.average_samples ;
+				// make average
+				double r1 = 1.0  / bb.adis.average_samples ;
 
 //					average_lvel.v[0] *= r1;
 //					average_avel.v[0] *= r1;
@@ -953,56 +1275,42 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 //					average_avel.v[1] *= r1;
 //					average_lvel.v[2] *= r1;
 //					average_avel.v[2] *= r1;
-					average_lvel.scale( r1 );
-					average_avel.scale( r1 );
-				}
-
-				// threshold test
-				double av_lspeed, av_aspeed;
-				av_lspeed = dCalcVectorDot3( average_lvel, average_lvel );
-				if ( av_lspeed > bb.adis.linear_average_threshold )
-				{
-					idle = false; // average linear velocity is too high for idle
-				}
-				else
-				{
-					av_aspeed = dCalcVectorDot3( average_avel, average_avel );
-					if ( av_aspeed > bb.adis.angular_average_threshold )
-					{
-						idle = false; // average angular velocity is too high for idle
-					}
-				}
+				average_lvel.scale( r1 );
+				average_avel.scale( r1 );
 			}
 
-			// if it's idle, accumulate steps and time.
-			// these counters won't overflow because this code doesn't run for disabled bodies.
-			if (idle) {
-				bb.adis_stepsleft--;
-				bb.adis_timeleft -= stepsize;
-			}
-			else {
-				// Reset countdowns
-				bb.adis_stepsleft = bb.adis.idle_steps;
-				bb.adis_timeleft = bb.adis.idle_time;
+			// threshold test
+			double av_lspeed, av_aspeed;
+			av_lspeed = dCalcVectorDot3( average_lvel, average_lvel );
+			if ( av_lspeed > bb.adis.linear_average_threshold )
+			{
+				idle = false; // average linear velocity is too high for idle
 			}
-
-			// disable the body if it's idle for a long enough time
-			if ( bb.adis_stepsleft <= 0 && bb.adis_timeleft <= 0 )
+			else
 			{
-				bb.flags |= DxBody.dxBodyDisabled; // set the disable flag
-
-				// disabling bodies should also include resetting the velocity
-				// should prevent jittering in big "islands"
-//				bb.lvel.v[0] = 0;
-//				bb.lvel.v[1] = 0;
-//				bb.lvel.v[2] = 0;
-				bb.lvel.setZero();
-//				bb.avel.v[0] = 0;
-//				bb.avel.v[1] = 0;
-//				bb.avel.v[2] = 0;
-				bb.avel.setZero();
+				av_aspeed = dCalcVectorDot3( average_avel, average_avel );
+				if ( av_aspeed > bb.adis.angular_average_threshold )
+				{
+					idle = false; // average angular velocity is too high for idle
+				}
 			}
 		}
+
+		// if it's idle, accumulate steps and time.
+		// the counters stop at zero, the body may stay enabled for a long
+		// time while the rest of its island is still moving.
+		if (idle) {
+			if ( bb.adis_stepsleft > 0 ) bb.adis_stepsleft--;
+			if ( bb.adis_timeleft > 0 ) bb.adis_timeleft -= stepsize;
+		}
+		else {
+			// Reset countdowns
+			bb.adis_stepsleft = bb.adis.idle_steps;
+			bb.adis_timeleft = bb.adis.idle_time;
+		}
+
+		// the body may be disabled if it's idle for a long enough time
+		return ( bb.adis_stepsleft <= 0 && bb.adis_timeleft <= 0 );
 	}
 
 	// ************************************************************
@@ -1020,6 +1328,11 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 			wmem.Release();
 			wmem = null;
 		}
+		if (defaultThreadingImpl != null)
+		{
+			defaultThreadingImpl.free();
+			defaultThreadingImpl = null;
+		}
 		super.DESTRUCTOR(); 
 	}
 
@@ -1090,7 +1403,11 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 	@Override
 	public DxThreadingFunctionsInfo RetrieveThreadingDefaultImpl(Ref<DThreadingImplementation> out_default_impl)
 	{
-	    out_default_impl.set( g_world_default_threading_impl );
+	    if (defaultThreadingImpl == null)
+	    {
+	        defaultThreadingImpl = DxThreadingImplementation.dThreadingAllocateSelfThreadedImplementation();
+	    }
+	    out_default_impl.set( defaultThreadingImpl );
 	    return (DxThreadingFunctionsInfo) g_world_default_threading_functions;
 	}
 
@@ -1130,6 +1447,9 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 	public boolean quickStep(double stepsize)
 	{ return dWorldQuickStep (stepsize); }
 	@Override
+	public boolean nncgStep(double stepsize)
+	{ return dWorldNNCGStep (stepsize); }
+	@Override
 	public void setQuickStepNumIterations(int num)
 	{ dWorldSetQuickStepNumIterations (num); }
 	@Override
@@ -1141,6 +1461,54 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 	@Override
 	public double getQuickStepW() 
 	{ return dWorldGetQuickStepW (); }
+	@Override
+	public void setQuickStepParallelSOR(boolean enabled)
+	{ dWorldSetQuickStepParallelSOR (enabled); }
+	@Override
+	public boolean getQuickStepParallelSOR() 
+	{ return dWorldGetQuickStepParallelSOR (); }
+	@Override
+	public void setQuickStepJacobi(boolean enabled)
+	{ dWorldSetQuickStepJacobi (enabled); }
+	@Override
+	public boolean getQuickStepJacobi() 
+	{ return dWorldGetQuickStepJacobi (); }
+	@Override
+	public void setQuickStepTolerance(double tolerance)
+	{ dWorldSetQuickStepTolerance (tolerance); }
+	@Override
+	public double getQuickStepTolerance() 
+	{ return dWorldGetQuickStepTolerance (); }
+	@Override
+	public void setQuickStepStats(DQuickStepStats stats)
+	{ qsStats = stats; }
+	@Override
+	public DQuickStepStats getQuickStepStats() 
+	{ return qsStats; }
+	@Override
+	public void setStepProfile(DStepProfile profile)
+	{ stepProfile = profile; }
+	@Override
+	public DStepProfile getStepProfile() 
+	{ return stepProfile; }
+	@Override
+	public void setStepProfileListener(DStepProfileListener listener)
+	{ stepProfileListener = listener; }
+	@Override
+	public DStepProfileListener getStepProfileListener() 
+	{ return stepProfileListener; }
+	@Override
+	public void setQuickStepWarmStarting(boolean enabled)
+	{ dWorldSetQuickStepWarmStarting (enabled); }
+	@Override
+	public boolean getQuickStepWarmStarting() 
+	{ return dWorldGetQuickStepWarmStarting (); }
+	@Override
+	public void setQuickStepWarmStartingCacheSize(int maxContacts)
+	{ dWorldSetQuickStepWarmStartingCacheSize (maxContacts); }
+	@Override
+	public int getQuickStepWarmStartingCacheSize() 
+	{ return dWorldGetQuickStepWarmStartingCacheSize (); }
 
 	@Override
 	public void  setAutoDisableLinearThreshold (double threshold) 
@@ -1172,6 +1540,12 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 	@Override
 	public boolean getAutoDisableFlag() 
 	{ return dWorldGetAutoDisableFlag (); }
+	@Override
+	public void setAutoDisableSkipSleepingPairs (boolean skip)
+	{ dWorldSetAutoDisableSkipSleepingPairs (skip); }
+	@Override
+	public boolean getAutoDisableSkipSleepingPairs() 
+	{ return dWorldGetAutoDisableSkipSleepingPairs (); }
 
 	@Override
 	public double getLinearDampingThreshold() 
@@ -1214,6 +1588,18 @@ public class DxWorld extends DBase implements DWorld, DxIThreadingDefaultImplPro
 	@Override
 	public double getContactSurfaceLayer() 
 	{ return dWorldGetContactSurfaceLayer (); }
+	@Override
+	public void setContactSplitImpulse(boolean enabled)
+	{ dWorldSetContactSplitImpulse (enabled); }
+	@Override
+	public boolean getContactSplitImpulse() 
+	{ return dWorldGetContactSplitImpulse (); }
+	@Override
+	public void setContactSplitImpulseThreshold(double depth)
+	{ dWorldSetContactSplitImpulseThreshold (depth); }
+	@Override
+	public double getContactSplitImpulseThreshold() 
+	{ return dWorldGetContactSplitImpulseThreshold (); }
 
 	@Override
 	public void impulseToForce (double stepsize, double ix, double iy, double iz,
@@ -49,6 +49,9 @@ public class Objects_H {
 //	#error dSINGLE or dDOUBLE must be defined
 //	#endif
 
+	/** Default maximal number of contacts kept for warm starting. */
+	static final int dWORLD_DEFAULT_CONTACT_IMPULSE_CACHE_SIZE = 8192;
+
 	static DThreadingImplementation g_world_default_threading_impl = null;
 	static DThreadingFunctionsInfo g_world_default_threading_functions = null;
 
@@ -109,6 +112,10 @@ public class Objects_H {
 	public static class dxQuickStepParameters extends CloneableParameter {
 		public int num_iterations;		// number of SOR iterations to perform
 		public double w;			// the SOR over-relaxation parameter
+		public boolean parallel_sor;	// solve rows in independent color batches
+		public boolean jacobi;			// solve all rows in parallel with mass splitting
+		public boolean warm_starting;	// start from the impulses of the previous step
+		public double tolerance;		// stop iterating when no lambda changes more than this, 0 = off
 		@Override
 		protected dxQuickStepParameters clone() {
 			return cloneThis();
@@ -118,6 +125,10 @@ public class Objects_H {
 	    dxQuickStepParameters() {
 	    	num_iterations = 20;
 	    	w = 1.3;
+	    	parallel_sor = false;
+	    	jacobi = false;
+	    	warm_starting = false;
+	    	tolerance = 0;
 	    }
 	}
 
@@ -126,6 +137,8 @@ public class Objects_H {
 	public static class dxContactParameters extends CloneableParameter {
 		public double max_vel;		// maximum correcting velocity
 		public double min_depth;		// thickness of 'surface layer'
+		public boolean split_impulse;	// correct penetration with pseudo velocities
+		public double split_impulse_threshold;	// penetration corrected by ERP in split impulse mode
 		@Override
 		protected dxContactParameters clone() {
 			return cloneThis();
@@ -135,6 +148,8 @@ public class Objects_H {
 	    dxContactParameters() {
 	        max_vel = Common.dInfinity;
 	        min_depth = 0.0;
+	        split_impulse = false;
+	        split_impulse_threshold = 0.005;
 	    }
 	}
 
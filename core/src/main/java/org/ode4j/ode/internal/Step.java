@@ -106,6 +106,11 @@ dmaxcallcountestimate_fn_t {
 	}
 
 	public static final boolean DIRECT_CHOLESKY = true;
+	/** 
+	 * Islands with at least this many constraint rows are solved with {@link DLCPSparse}. 
+	 * Not final, so that tests can run the same island through both solvers.
+	 */
+	static int dxSTEPISLAND_SPARSE_MIN_ROWS = 128;
 	public static final boolean REPORT_ERROR = false;
 
 	private static class dJointWithInfo1
@@ -195,7 +200,7 @@ dmaxcallcountestimate_fn_t {
 				int jointinfosOfs,
 				int nj, 
 				int m, int nub, final int[] mindex, int[] findex, 
-				double[] lo, double[] hi, double[] J, double[] A, double[] rhs)
+				double[] lo, double[] hi, double[] J, double[] A, double[] Adiag, double[] rhs)
 		{
 			m_invI = invI;
 			m_jointinfosA = jointinfosA;
@@ -209,6 +214,7 @@ dmaxcallcountestimate_fn_t {
 			m_hi = hi;
 			m_J = J;
 			m_A = A;
+			m_Adiag = Adiag;
 			m_rhs = rhs;
 		}
 
@@ -224,6 +230,9 @@ dmaxcallcountestimate_fn_t {
 		double[]                           m_hi;
 		double[]                           m_J;
 		double[]                           m_A;
+		// sparse path only: the diagonal of A and J*invM, A itself is null
+		double[]                           m_Adiag;
+		double[]                           m_JinvM;
 		double[]                           m_rhs;
 	}
 
@@ -448,7 +457,7 @@ dmaxcallcountestimate_fn_t {
 		int _nj = callContext.m_islandJointsCount();
 
 		memarena.dummy();
-		double[] invI = new double[3*4*nb];//memarena.AllocateArray<dReal> (3*4*(size_t)nb);
+		double[] invI = memarena.AllocateArrayDReal(3*4*nb);//memarena.AllocateArray<dReal> (3*4*(size_t)nb);
 		// Reserve twice as much memory and start from the middle so that regardless of 
 		// what direction the array grows to there would be sufficient room available.
 		final int ji_reserve_count = 2 * _nj;
@@ -963,14 +972,14 @@ dmaxcallcountestimate_fn_t {
 		//dIASSERT((size_t)(ji_end - ji_start) <= (size_t)UINT_MAX);
 
 		int[] mindex = null;
-		double[] lo = null, hi = null, J = null, A = null, rhs = null;
+		double[] lo = null, hi = null, J = null, A = null, Adiag = null, rhs = null;
 		int[] findex = null;
 
 		// if there are constraints, compute cforce
 		if (m > 0) {
 			//mindex = memarena->AllocateArray<unsigned int>((size_t)(nj + 1));
 			memarena.dummy();
-			mindex = new int[nj + 1];
+			mindex = memarena.AllocateArrayInt(nj + 1);
 			{
 				//unsigned int *mcurr = mindex;
 				int[] mcurrA = mindex;
@@ -1008,18 +1017,28 @@ dmaxcallcountestimate_fn_t {
 			memarena.dummy();
 			memarena.dummy();
 			memarena.dummy();
-			findex = new int[m];
-			lo = new double[m];
-			hi = new double[m];
-			J = new double[2 * 8 * m];
-			A = new double[m * dPAD(m)];
-			rhs = new double[m];
+			findex = memarena.AllocateArrayInt(m);
+			lo = memarena.AllocateArrayDReal(m);
+			hi = memarena.AllocateArrayDReal(m);
+			J = memarena.AllocateArrayDReal(2 * 8 * m);
+			// large islands keep A in block sparse form, see DLCPSparse
+			if (m < dxSTEPISLAND_SPARSE_MIN_ROWS) {
+				A = memarena.AllocateArrayDReal(m * dPAD(m));
+			} else {
+				Adiag = memarena.AllocateArrayDReal(m);
+			}
+			rhs = memarena.AllocateArrayDReal(m);
 		}
 
+		//double[] JinvM = memarena->AllocateArray<dReal>(2 * 8 * (size_t)m);
+		// The sparse LCP still needs JinvM in Stage3, so it must be allocated 
+		// before the state that Stage3 restores.
+		double[] JinvM = m > 0 ? memarena.AllocateArrayDReal(2 * 8 * m) : null;
+
 		//dxStepperLocalContext *localContext = (dxStepperLocalContext *)memarena->AllocateBlock(sizeof(dxStepperLocalContext));
 		memarena.dummy();
 		dxStepperLocalContext localContext = new dxStepperLocalContext();
-		localContext.Initialize(invI, jointinfosA, jiP, nj, m, nub, mindex, findex, lo, hi, J, A, rhs);
+		localContext.Initialize(invI, jointinfosA, jiP, nj, m, nub, mindex, findex, lo, hi, J, A, Adiag, rhs);
 
 		BlockPointer stage1MemarenaState = memarena.SaveState();
 		//dxStepperStage3CallContext *stage3CallContext = (dxStepperStage3CallContext*)memarena->AllocateBlock(sizeof(dxStepperStage3CallContext));
@@ -1031,14 +1050,12 @@ dmaxcallcountestimate_fn_t {
 			// create a constraint equation right hand side vector `c', a constraint
 			// force mixing vector `cfm', and LCP low and high bound vectors, and an
 			// 'findex' vector.
-			//double[] JinvM = memarena->AllocateArray<dReal>(2 * 8 * (size_t)m);
-			memarena.dummy();
-			double[] JinvM = new double[2 * 8 * m];
+			localContext.m_JinvM = JinvM;
 			final int nb = callContext.m_islandBodiesCount();
 			int cfm_elem = m, rhs_tmp_elem = nb*8;
 			//dReal *cfm = memarena->AllocateArray<dReal>(dMAX(cfm_elem, rhs_tmp_elem));
 			memarena.dummy();
-			double[] cfm = new double[dMAX(cfm_elem, rhs_tmp_elem)];
+			double[] cfm = memarena.AllocateArrayDReal(dMAX(cfm_elem, rhs_tmp_elem));
 			// dReal *rhs_tmp = cfm; // Reuse the same memory since rhs calculations start after cfm is not needed anymore
 
 			//dxStepperStage2CallContext *stage2CallContext = (dxStepperStage2CallContext *)memarena->AllocateBlock(sizeof(dxStepperStage2CallContext));
@@ -1261,6 +1278,14 @@ dmaxcallcountestimate_fn_t {
 				final int ofsi = mindex[ji];
 				final int infom = mindex[ji + 1] - ofsi;
 
+				if (A == null) {
+					double[] Adiag = localContext.m_Adiag;
+					for (int i = 0; i != infom; ++i) {
+						Adiag[ofsi + i] = cfm[ofsi + i] * stepsizeRecip;
+					}
+					continue;
+				}
+
 				double[] ArowA = A;
 				int ArowP = mskip*ofsi;
 				dSetZero(ArowA, ArowP, mskip*infom);
@@ -1424,7 +1449,7 @@ dmaxcallcountestimate_fn_t {
 			final int mskip = dPAD(m);
 
 			int ji;
-			while ((ji = ThrsafeIncrementIntUpToLimit(stage2CallContext.m_ji_Aaddjb, nj)) != nj) {
+			while (A != null && (ji = ThrsafeIncrementIntUpToLimit(stage2CallContext.m_ji_Aaddjb, nj)) != nj) {
 				final int ofsi = mindex[ji];
 				final int infom = mindex[ji + 1] - ofsi;
 
@@ -1569,7 +1594,7 @@ dmaxcallcountestimate_fn_t {
 		if (m > 0) {
 			//lambda = memarena->AllocateArray<dReal>(m);
 			memarena.dummy();
-			lambda = new double[m];
+			lambda = memarena.AllocateArrayDReal(m);
 
 
 			BlockPointer lcpstate = memarena.BEGIN_STATE_SAVE();
@@ -1578,7 +1603,22 @@ dmaxcallcountestimate_fn_t {
 
 				// solve the LCP problem and get lambda.
 				// this will destroy A but that's OK
-				DLCP.dSolveLCP (memarena, m, A, lambda, rhs, null, nub, lo, hi, findex);
+				if (A != null) {
+					DLCP.dSolveLCP (memarena, m, A, lambda, rhs, null, nub, lo, hi, findex);
+				}
+				else {
+					//unsigned int *jointbodies = memarena->AllocateArray<unsigned int>(2 * (size_t)nj);
+					memarena.dummy();
+					int[] jointbodies = memarena.AllocateArrayInt(2 * nj);
+					for (int ji = 0; ji != nj; ++ji) {
+						DxJoint joint = jointinfosA[jointinfosP+ji].joint;
+						jointbodies[2*ji] = joint.node[0].body.tag;
+						DxBody jb1 = joint.node[1].body;
+						jointbodies[2*ji + 1] = jb1 != null ? jb1.tag : -1;
+					}
+					DLCPSparse.dSolveLCP (memarena, nj, nb, localContext.m_mindex, jointbodies,
+							J, localContext.m_JinvM, localContext.m_Adiag, lambda, rhs, nub, lo, hi, findex);
+				}
 
 			} 
 			memarena.END_STATE_SAVE(lcpstate);
@@ -1587,7 +1627,7 @@ dmaxcallcountestimate_fn_t {
 		// this will be set to the force due to the constraints
 		//dReal *cforce = memarena->AllocateArray<dReal>((size_t)nb * 8);
 		memarena.dummy();
-		double[] cforce = new double[nb * 8];
+		double[] cforce = memarena.AllocateArrayDReal(nb * 8);
 		//dSetZero (cforce,(size_t)nb*8);
 
 		if (m > 0) {
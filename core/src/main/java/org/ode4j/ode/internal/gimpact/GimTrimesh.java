@@ -866,36 +866,40 @@ public class GimTrimesh implements GimConstants {
 	    VEC_COPY(tri_data.m_vertices[2],transformed_vertices.at( triangle_indices.at(2) ));
 
 	    //Get the planes
-	    ObjArray<GIM_TRIPLANES_CACHE> planes = m_planes_cache_buffer.GIM_DYNARRAY_POINTER_V();
-	    planes.inc(triangle_index);
-	    if (planes.at0()==null) planes.setAt0(new GIM_TRIPLANES_CACHE());
-    	GIM_TRIPLANES_CACHE plane = planes.at0();
-
-	    //verify planes cache
-	    boolean bit_eval;
-	    bit_eval = m_planes_cache_bitset.GIM_BITSET_GET(triangle_index);
-	    if(bit_eval == false)// Needs to calc the planes
-	    {
-	        //Calc the face plane
-	        TRIANGLE_PLANE(tri_data.m_vertices[0], tri_data.m_vertices[1], tri_data.m_vertices[2], plane.m_planes[0]);
-	        //Calc the edge 1
-	        EDGE_PLANE(tri_data.m_vertices[0], tri_data.m_vertices[1], plane.m_planes[0], plane.m_planes[1] );
-
-	        //Calc the edge 2
-	        EDGE_PLANE(tri_data.m_vertices[1], tri_data.m_vertices[2], plane.m_planes[0], plane.m_planes[2] );
-
-	        //Calc the edge 3
-	        EDGE_PLANE(tri_data.m_vertices[2], tri_data.m_vertices[0], plane.m_planes[0], plane.m_planes[3] );
-
-	        //mark
-	        m_planes_cache_bitset.GIM_BITSET_SET(triangle_index);
+	    // The cache is shared by all collisions with this trimesh, which may run
+	    // in parallel (see DxCollidePipeline), so it is filled and read under a lock.
+	    synchronized (m_planes_cache_bitset) {
+		    ObjArray<GIM_TRIPLANES_CACHE> planes = m_planes_cache_buffer.GIM_DYNARRAY_POINTER_V();
+		    planes.inc(triangle_index);
+		    if (planes.at0()==null) planes.setAt0(new GIM_TRIPLANES_CACHE());
+	    	GIM_TRIPLANES_CACHE plane = planes.at0();
+
+		    //verify planes cache
+		    boolean bit_eval;
+		    bit_eval = m_planes_cache_bitset.GIM_BITSET_GET(triangle_index);
+		    if(bit_eval == false)// Needs to calc the planes
+		    {
+		        //Calc the face plane
+		        TRIANGLE_PLANE(tri_data.m_vertices[0], tri_data.m_vertices[1], tri_data.m_vertices[2], plane.m_planes[0]);
+		        //Calc the edge 1
+		        EDGE_PLANE(tri_data.m_vertices[0], tri_data.m_vertices[1], plane.m_planes[0], plane.m_planes[1] );
+
+		        //Calc the edge 2
+		        EDGE_PLANE(tri_data.m_vertices[1], tri_data.m_vertices[2], plane.m_planes[0], plane.m_planes[2] );
+
+		        //Calc the edge 3
+		        EDGE_PLANE(tri_data.m_vertices[2], tri_data.m_vertices[0], plane.m_planes[0], plane.m_planes[3] );
+
+		        //mark
+		        m_planes_cache_bitset.GIM_BITSET_SET(triangle_index);
+		    }
+
+
+		    VEC_COPY_4( tri_data.m_planes.m_planes[0], plane.m_planes[0] );//face plane
+		    VEC_COPY_4( tri_data.m_planes.m_planes[1], plane.m_planes[1] );//edge1
+		    VEC_COPY_4( tri_data.m_planes.m_planes[2], plane.m_planes[2] );//edge2
+		    VEC_COPY_4( tri_data.m_planes.m_planes[3], plane.m_planes[3] );//edge3
 	    }
-
-
-	    VEC_COPY_4( tri_data.m_planes.m_planes[0], plane.m_planes[0] );//face plane
-	    VEC_COPY_4( tri_data.m_planes.m_planes[1], plane.m_planes[1] );//edge1
-	    VEC_COPY_4( tri_data.m_planes.m_planes[2], plane.m_planes[2] );//edge2
-	    VEC_COPY_4( tri_data.m_planes.m_planes[3], plane.m_planes[3] );//edge3
 	}
 
 	//! Fetch triangle vertices
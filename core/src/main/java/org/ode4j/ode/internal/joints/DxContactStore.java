@@ -0,0 +1,503 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal.joints;
+
+import static org.ode4j.ode.OdeConstants.dContactApprox1_1;
+import static org.ode4j.ode.OdeConstants.dContactApprox1_2;
+import static org.ode4j.ode.OdeConstants.dContactBounce;
+import static org.ode4j.ode.OdeConstants.dContactFDir1;
+import static org.ode4j.ode.OdeConstants.dContactMotion1;
+import static org.ode4j.ode.OdeConstants.dContactMotion2;
+import static org.ode4j.ode.OdeConstants.dContactMotionN;
+import static org.ode4j.ode.OdeConstants.dContactMu2;
+import static org.ode4j.ode.OdeConstants.dContactRolling;
+import static org.ode4j.ode.OdeConstants.dContactSlip1;
+import static org.ode4j.ode.OdeConstants.dContactSlip2;
+import static org.ode4j.ode.OdeConstants.dContactSoftCFM;
+import static org.ode4j.ode.OdeConstants.dContactSoftERP;
+import static org.ode4j.ode.OdeConstants.dInfinity;
+
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.internal.Common;
+import org.ode4j.ode.internal.DxBody;
+
+
+/**
+ * Structure-of-arrays copy of the contact joints of an island.
+ * <p>
+ * Contact joints usually produce most of the constraint rows. Instead of 
+ * calling {@link DxJointContact#getInfo2(double, double, DxJoint.Info2Descr)}
+ * on each joint, the stepper copies the contacts into this store once per 
+ * step and then writes their rows with {@link #writeRows}, a loop over 
+ * primitive arrays without virtual calls or temporary objects. The rows are 
+ * the same as the ones created by <tt>getInfo2()</tt>.
+ * <p>
+ * Only plain {@link DxJointContact} instances without rolling friction are 
+ * accepted, see {@link #accepts(DxJoint)}. The indices of the other joints
+ * are kept as well, so that the stepper can iterate over them without 
+ * checking each joint again. The store is reused, its arrays only grow.
+ */
+public final class DxContactStore {
+
+	/**
+	 * Penetration that is never removed with pseudo velocities. A body that
+	 * is pushed out completely loses its contacts in the next step and falls 
+	 * back, so it has to be kept slightly in contact.
+	 */
+	private static final double SPLIT_IMPULSE_SLOP = 0.001;
+
+	private int m_count;
+	private int m_otherCount;
+	// indices of the joints of the island that are not in the store
+	private int[] m_other = new int[0];
+	// per contact
+	private int[] m_joint = new int[0];
+	private int[] m_row = new int[0];
+	private int[] m_rows = new int[0];
+	private int[] m_mode = new int[0];
+	private int[] m_body1 = new int[0];
+	private int[] m_body2 = new int[0];
+	private double[] m_depth = new double[0];
+	private double[] m_mu = new double[0];
+	private double[] m_mu2 = new double[0];
+	private double[] m_softErp = new double[0];
+	private double[] m_softCfm = new double[0];
+	private double[] m_bounce = new double[0];
+	private double[] m_bounceVel = new double[0];
+	private double[] m_motion1 = new double[0];
+	private double[] m_motion2 = new double[0];
+	private double[] m_motionN = new double[0];
+	private double[] m_slip1 = new double[0];
+	private double[] m_slip2 = new double[0];
+	// 3 per contact
+	private double[] m_normal = new double[0];
+	private double[] m_c1 = new double[0];
+	private double[] m_c2 = new double[0];
+	private double[] m_fdir1 = new double[0];
+	// 12 per contact: lvel1, avel1, lvel2, avel2, only set for bouncing contacts
+	private double[] m_vel = new double[0];
+	// per contact, written by writeRows() in split impulse mode
+	private double[] m_splitRhs = new double[0];
+
+	/**
+	 * @param j joint
+	 * @return whether the rows of the joint can be written by this store
+	 */
+	public static boolean accepts(DxJoint j) {
+		return j.getClass() == DxJointContact.class
+				&& (((DxJointContact)j).contact.surface.mode & dContactRolling) == 0;
+	}
+
+	/**
+	 * Clear the store before the joints of an island are added.
+	 */
+	public void reset() {
+		m_count = 0;
+		m_otherCount = 0;
+	}
+
+	/** @return number of contacts in the store */
+	public int count() {
+		return m_count;
+	}
+
+	/** @return number of joints that are not in the store */
+	public int otherCount() {
+		return m_otherCount;
+	}
+
+	/**
+	 * @param i index in the list of other joints
+	 * @return index of the joint in the island
+	 */
+	public int otherJoint(int i) {
+		return m_other[i];
+	}
+
+	/**
+	 * Record a joint whose rows are created with <tt>getInfo2()</tt>.
+	 * @param ji index of the joint in the island
+	 */
+	public void addOther(int ji) {
+		if (m_otherCount == m_other.length) {
+			m_other = grow(m_other, m_otherCount == 0 ? 16 : m_otherCount * 2);
+		}
+		m_other[m_otherCount++] = ji;
+	}
+
+	/**
+	 * @param k contact index
+	 * @return index of the joint of the contact in the island
+	 */
+	public int jointIndex(int k) {
+		return m_joint[k];
+	}
+
+	/**
+	 * @param k contact index
+	 * @return index of the normal row of the contact
+	 */
+	public int row(int k) {
+		return m_row[k];
+	}
+
+	/**
+	 * @param k contact index
+	 * @return island index of the first body
+	 */
+	public int body1(int k) {
+		return m_body1[k];
+	}
+
+	/**
+	 * @param k contact index
+	 * @return island index of the second body or -1
+	 */
+	public int body2(int k) {
+		return m_body2[k];
+	}
+
+	/**
+	 * @param k contact index
+	 * @return separating pseudo velocity that corrects the penetration of 
+	 * the contact, only valid after {@link #writeRows} in split impulse mode
+	 */
+	public double splitRhs(int k) {
+		return m_splitRhs[k];
+	}
+
+	/**
+	 * Copy a contact joint into the store. The joint must be accepted by
+	 * {@link #accepts(DxJoint)} and <tt>getInfo1()</tt> must have been called.
+	 * The body tags must be set to the body indices of the island.
+	 * @param joint the contact joint
+	 * @param ji index of the joint in the island
+	 * @param ofsi index of the first row of the joint
+	 * @param m number of rows of the joint
+	 */
+	public void add(DxJoint joint, int ji, int ofsi, int m) {
+		DxJointContact j = (DxJointContact) joint;
+		final int k = m_count;
+		if (k == m_joint.length) {
+			grow(k == 0 ? 16 : k * 2);
+		}
+		m_joint[k] = ji;
+		m_row[k] = ofsi;
+		m_rows[k] = m;
+
+		final DContact contact = j.contact;
+		final DContact.DSurfaceParameters surface = contact.surface;
+		final int mode = surface.mode;
+		m_mode[k] = mode;
+		m_depth[k] = contact.geom.depth;
+		m_mu[k] = surface.mu;
+		m_mu2[k] = (mode & dContactMu2) != 0 ? surface.mu2 : surface.mu;
+		m_softErp[k] = surface.soft_erp;
+		m_softCfm[k] = surface.soft_cfm;
+		m_bounce[k] = surface.bounce;
+		m_bounceVel[k] = surface.bounce_vel;
+		m_motion1[k] = surface.motion1;
+		m_motion2[k] = surface.motion2;
+		m_motionN[k] = surface.motionN;
+		m_slip1[k] = surface.slip1;
+		m_slip2[k] = surface.slip2;
+
+		// normal with sign adjusted for body1/body2 polarity
+		final int k3 = k * 3;
+		DVector3C n = contact.geom.normal;
+		if (j.isFlagsReverse()) {
+			m_normal[k3] = -n.get0();
+			m_normal[k3+1] = -n.get1();
+			m_normal[k3+2] = -n.get2();
+		} else {
+			m_normal[k3] = n.get0();
+			m_normal[k3+1] = n.get1();
+			m_normal[k3+2] = n.get2();
+		}
+		if ((mode & dContactFDir1) != 0) {
+			DVector3C f = contact.fdir1;
+			m_fdir1[k3] = f.get0();
+			m_fdir1[k3+1] = f.get1();
+			m_fdir1[k3+2] = f.get2();
+		}
+
+		// c1,c2 = contact points with respect to body PORs
+		DVector3C pos = contact.geom.pos;
+		DxBody b1 = j.node[0].body;
+		DxBody b2 = j.node[1].body;
+		DVector3C p1 = b1.posr().pos();
+		m_c1[k3] = pos.get0() - p1.get0();
+		m_c1[k3+1] = pos.get1() - p1.get1();
+		m_c1[k3+2] = pos.get2() - p1.get2();
+		m_body1[k] = b1.tag;
+		if (b2 != null) {
+			DVector3C p2 = b2.posr().pos();
+			m_c2[k3] = pos.get0() - p2.get0();
+			m_c2[k3+1] = pos.get1() - p2.get1();
+			m_c2[k3+2] = pos.get2() - p2.get2();
+			m_body2[k] = b2.tag;
+		} else {
+			m_body2[k] = -1;
+		}
+		if ((mode & dContactBounce) != 0) {
+			final int k12 = k * 12;
+			copy(b1.lvel, m_vel, k12);
+			copy(b1.avel, m_vel, k12 + 3);
+			if (b2 != null) {
+				copy(b2.lvel, m_vel, k12 + 6);
+				copy(b2.avel, m_vel, k12 + 9);
+			}
+		}
+		m_count = k + 1;
+	}
+
+	/**
+	 * Write the constraint rows of the contacts <tt>from</tt> to 
+	 * <tt>to-1</tt>. This replaces the initialization of the rows, the call 
+	 * to <tt>getInfo2()</tt>, the scaling of rhs and cfm by 
+	 * <tt>stepsizeRecip</tt> and the adjustment of findex done for other
+	 * joints. The jb entries of the rows are written as well.
+	 * <p>
+	 * In split impulse mode only the first <tt>splitThreshold</tt> of the 
+	 * penetration is corrected by the normal row, the correcting velocity of
+	 * the rest is kept for {@link #splitRhs(int)} instead. The pseudo 
+	 * velocities leave at least {@link #SPLIT_IMPULSE_SLOP} of the 
+	 * penetration.
+	 */
+	public void writeRows(int from, int to, double stepsizeRecip, double worldERP, 
+			double globalCfm, double minDepth, double maxVel, boolean splitImpulse, double splitThreshold,
+			double[] J, double[] rhs, double[] cfm, double[] lo, double[] hi, 
+			int[] findex, int[] jb) {
+		for (int k = from; k < to; k++) {
+			final int ofsi = m_row[k];
+			final int infom = m_rows[k];
+			final int mode = m_mode[k];
+			final int b1 = m_body1[k];
+			final int b2 = m_body2[k];
+			final boolean twoBodies = b2 != -1;
+			final int k3 = k * 3;
+
+			for (int i = ofsi * 12, iEnd = (ofsi + infom) * 12; i < iEnd; i++) {
+				J[i] = 0;
+			}
+			for (int r = ofsi, rEnd = ofsi + infom; r < rEnd; r++) {
+				rhs[r] = 0;
+				cfm[r] = globalCfm * stepsizeRecip;
+				lo[r] = -dInfinity;
+				hi[r] = dInfinity;
+				findex[r] = -1;
+				jb[r * 2] = b1;
+				jb[r * 2 + 1] = b2;
+			}
+
+			final double n0 = m_normal[k3], n1 = m_normal[k3+1], n2 = m_normal[k3+2];
+			final double c10 = m_c1[k3], c11 = m_c1[k3+1], c12 = m_c1[k3+2];
+			final double c20 = m_c2[k3], c21 = m_c2[k3+1], c22 = m_c2[k3+2];
+
+			// set jacobian for normal
+			int Jp = ofsi * 12;
+			final double a10 = c11*n2 - c12*n1, a11 = c12*n0 - c10*n2, a12 = c10*n1 - c11*n0;
+			J[Jp] = n0; J[Jp+1] = n1; J[Jp+2] = n2;
+			J[Jp+3] = a10; J[Jp+4] = a11; J[Jp+5] = a12;
+			final double a20 = -(c21*n2 - c22*n1), a21 = -(c22*n0 - c20*n2), a22 = -(c20*n1 - c21*n0);
+			if (twoBodies) {
+				J[Jp+6] = -n0; J[Jp+7] = -n1; J[Jp+8] = -n2;
+				J[Jp+9] = a20; J[Jp+10] = a21; J[Jp+11] = a22;
+			}
+
+			// set right hand side and cfm value for normal
+			double erp = worldERP;
+			if ((mode & dContactSoftERP) != 0)
+				erp = m_softErp[k];
+			double kErp = stepsizeRecip * erp;
+			double depth = m_depth[k] - minDepth;
+			if (depth < 0) depth = 0;
+
+			if ((mode & dContactSoftCFM) != 0)
+				cfm[ofsi] = m_softCfm[k] * stepsizeRecip;
+
+			double motionN = 0;
+			if ((mode & dContactMotionN) != 0)
+				motionN = m_motionN[k];
+
+			double c;
+			if (splitImpulse) {
+				double shallow = depth < splitThreshold ? depth : splitThreshold;
+				double deep = depth - (splitThreshold > SPLIT_IMPULSE_SLOP ? 
+						splitThreshold : SPLIT_IMPULSE_SLOP);
+				double pushout = deep > 0 ? kErp * deep : 0;
+				m_splitRhs[k] = pushout > maxVel ? maxVel : pushout;
+				c = kErp * shallow + motionN;
+			} else {
+				c = kErp * depth + motionN;
+			}
+			// note: this cap should not limit bounce velocity
+			if (c > maxVel)
+				c = maxVel;
+
+			// deal with bounce
+			if ((mode & dContactBounce) != 0) {
+				// calculate outgoing velocity (-ve for incoming contact)
+				final int v = k * 12;
+				final double[] vel = m_vel;
+				double outgoing = (n0*vel[v] + n1*vel[v+1] + n2*vel[v+2])
+						+ (a10*vel[v+3] + a11*vel[v+4] + a12*vel[v+5]);
+				if (twoBodies) {
+					outgoing += (-n0*vel[v+6] + -n1*vel[v+7] + -n2*vel[v+8])
+							+ (a20*vel[v+9] + a21*vel[v+10] + a22*vel[v+11]);
+				}
+				outgoing -= motionN;
+				// only apply bounce if the outgoing velocity is greater than the
+				// threshold, and if the resulting c[0] exceeds what we already have.
+				if (m_bounceVel[k] >= 0 && (-outgoing) > m_bounceVel[k]) {
+					double newc = - m_bounce[k] * outgoing + motionN;
+					if (newc > c) c = newc;
+				}
+			}
+			rhs[ofsi] = c * stepsizeRecip;
+
+			// set LCP limits for normal
+			lo[ofsi] = 0;
+			hi[ofsi] = dInfinity;
+
+			if (infom == 1) // no friction, there is nothing else to do
+				continue;
+
+			// now do jacobian for tangential forces
+			double t10, t11, t12, t20, t21, t22;
+			if ((mode & dContactFDir1) != 0) {
+				t10 = m_fdir1[k3]; t11 = m_fdir1[k3+1]; t12 = m_fdir1[k3+2];
+				t20 = n1*t12 - n2*t11;
+				t21 = n2*t10 - n0*t12;
+				t22 = n0*t11 - n1*t10;
+			} else if (Math.abs(n2) > Common.M_SQRT1_2) {
+				// dPlaneSpace(): choose t1 in y-z plane
+				double a = n1*n1 + n2*n2;
+				double kk = Common.dRecipSqrt(a);
+				t10 = 0; t11 = -n2*kk; t12 = n1*kk;
+				t20 = a*kk; t21 = -n0*t12; t22 = n0*t11;
+			} else {
+				// dPlaneSpace(): choose t1 in x-y plane
+				double a = n0*n0 + n1*n1;
+				double kk = Common.dRecipSqrt(a);
+				t10 = -n1*kk; t11 = n0*kk; t12 = 0;
+				t20 = -n2*t11; t21 = n2*t10; t22 = a*kk;
+			}
+
+			// first friction direction
+			int rowFriction2 = 2;
+			final double mu = m_mu[k];
+			if (mu > 0) {
+				final int r = ofsi + 1;
+				Jp = r * 12;
+				J[Jp] = t10; J[Jp+1] = t11; J[Jp+2] = t12;
+				J[Jp+3] = c11*t12 - c12*t11; J[Jp+4] = c12*t10 - c10*t12; J[Jp+5] = c10*t11 - c11*t10;
+				if (twoBodies) {
+					J[Jp+6] = -t10; J[Jp+7] = -t11; J[Jp+8] = -t12;
+					J[Jp+9] = -(c21*t12 - c22*t11); J[Jp+10] = -(c22*t10 - c20*t12); J[Jp+11] = -(c20*t11 - c21*t10);
+				}
+				if ((mode & dContactMotion1) != 0)
+					rhs[r] = m_motion1[k] * stepsizeRecip;
+				lo[r] = -mu;
+				hi[r] = mu;
+				if ((mode & dContactApprox1_1) != 0)
+					findex[r] = ofsi;
+				if ((mode & dContactSlip1) != 0)
+					cfm[r] = m_slip1[k] * stepsizeRecip;
+			} else {
+				// there was no friction for direction 1, so the second friction constraint
+				// has to be on this line instead
+				rowFriction2 = 1;
+			}
+
+			// second friction direction
+			final double mu2 = m_mu2[k];
+			if (mu2 > 0) {
+				final int r = ofsi + rowFriction2;
+				Jp = r * 12;
+				J[Jp] = t20; J[Jp+1] = t21; J[Jp+2] = t22;
+				J[Jp+3] = c11*t22 - c12*t21; J[Jp+4] = c12*t20 - c10*t22; J[Jp+5] = c10*t21 - c11*t20;
+				if (twoBodies) {
+					J[Jp+6] = -t20; J[Jp+7] = -t21; J[Jp+8] = -t22;
+					J[Jp+9] = -(c21*t22 - c22*t21); J[Jp+10] = -(c22*t20 - c20*t22); J[Jp+11] = -(c20*t21 - c21*t20);
+				}
+				if ((mode & dContactMotion2) != 0)
+					rhs[r] = m_motion2[k] * stepsizeRecip;
+				lo[r] = -mu2;
+				hi[r] = mu2;
+				if ((mode & dContactApprox1_2) != 0)
+					findex[r] = ofsi;
+				if ((mode & dContactSlip2) != 0)
+					cfm[r] = m_slip2[k] * stepsizeRecip;
+			}
+		}
+	}
+
+	private static void copy(DVector3C v, double[] a, int ofs) {
+		a[ofs] = v.get0();
+		a[ofs+1] = v.get1();
+		a[ofs+2] = v.get2();
+	}
+
+	private void grow(int size) {
+		m_joint = grow(m_joint, size);
+		m_row = grow(m_row, size);
+		m_rows = grow(m_rows, size);
+		m_mode = grow(m_mode, size);
+		m_body1 = grow(m_body1, size);
+		m_body2 = grow(m_body2, size);
+		m_depth = grow(m_depth, size);
+		m_mu = grow(m_mu, size);
+		m_mu2 = grow(m_mu2, size);
+		m_softErp = grow(m_softErp, size);
+		m_softCfm = grow(m_softCfm, size);
+		m_bounce = grow(m_bounce, size);
+		m_bounceVel = grow(m_bounceVel, size);
+		m_motion1 = grow(m_motion1, size);
+		m_motion2 = grow(m_motion2, size);
+		m_motionN = grow(m_motionN, size);
+		m_slip1 = grow(m_slip1, size);
+		m_slip2 = grow(m_slip2, size);
+		m_normal = grow(m_normal, size * 3);
+		m_c1 = grow(m_c1, size * 3);
+		m_c2 = grow(m_c2, size * 3);
+		m_fdir1 = grow(m_fdir1, size * 3);
+		m_vel = grow(m_vel, size * 12);
+		m_splitRhs = grow(m_splitRhs, size);
+	}
+
+	private static int[] grow(int[] a, int size) {
+		int[] b = new int[size];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	private static double[] grow(double[] a, int size) {
+		double[] b = new double[size];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+}
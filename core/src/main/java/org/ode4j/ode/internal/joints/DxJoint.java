@@ -199,6 +199,10 @@ public abstract class DxJoint extends DObject implements DJoint, Cloneable {
 		//public int[] _findex = new int[3];  //TZ: [3] ?
 		private int _findexP;
 		private int[] _findexA;
+
+		// temporaries of setBall(). A descriptor is used by one thread at a
+		// time, so they need not be allocated for every joint and step.
+		final DVector3 tmpA1 = new DVector3(), tmpA2 = new DVector3();
 		public void setFindex(int i, int val) {
 			_findexA[_findexP+i] = val;
 		}
@@ -464,7 +468,7 @@ public abstract class DxJoint extends DObject implements DJoint, Cloneable {
 			DVector3 anchor1, DVector3 anchor2 )
 	{
 		// anchor points in global coordinates with respect to body PORs.
-		DVector3 a1 = new DVector3(), a2 = new DVector3();
+		DVector3 a1 = info.tmpA1, a2 = info.tmpA2;
 
 		// set jacobian
 		info.setJ1l(0, 0, 1);
@@ -989,6 +993,7 @@ public abstract class DxJoint extends DObject implements DJoint, Cloneable {
 		else {
 			node[0].next = null;
 		}
+		if (world != null) world.islandGraph().jointConnected(this);
 
 		// Since the bodies are now set.
 		// Calculate the values depending on the bodies.
@@ -1009,12 +1014,14 @@ public abstract class DxJoint extends DObject implements DJoint, Cloneable {
 	public void enable()
 	{
 		flags &= ~dJOINT_DISABLED;
+		if (world != null) world.islandGraph().jointConnected(this);
 	}
 
 	//void dJointDisable ()
 	@Override
 	public void disable()
 	{
+		if (world != null) world.islandGraph().jointDisconnected(this);
 		flags |= dJOINT_DISABLED;
 	}
 
@@ -1036,6 +1043,7 @@ public abstract class DxJoint extends DObject implements DJoint, Cloneable {
 //	public static void removeJointReferencesFromAttachedBodies (dxJoint j)
 	public void removeJointReferencesFromAttachedBodies ()
 	{
+		if (world != null) world.islandGraph().jointDisconnected(this);
 		for (int i=0; i<2; i++) {
 			DxBody body = node[i].body;
 			if (body != null) {
@@ -1111,6 +1119,21 @@ public abstract class DxJoint extends DObject implements DJoint, Cloneable {
 	}
 	
 	void FinalizeAndDestroyJointInstance(boolean delete_it)
+	{
+	    DetachJointInstance();
+	    if (delete_it) { 
+	        //delete j;
+	    } else {
+	        DESTRUCTOR();//j->~dxJoint();
+	    }
+	}
+	
+	/**
+	 * Detach the joint from its bodies and its world without 
+	 * destructing it, so that it can be reused with 
+	 * <tt>ReinitializeJointInstance()</tt>.
+	 */
+	void DetachJointInstance()
 	{
 	    // if any group joints have their world pointer set to 0, their world was
 	    // previously destroyed. no special handling is required for these joints.
@@ -1119,11 +1142,32 @@ public abstract class DxJoint extends DObject implements DJoint, Cloneable {
 	        removeObjectFromList ();
 	        world.nj--;
 	    }
-	    if (delete_it) { 
-	        //delete j;
-	    } else {
-	        DESTRUCTOR();//j->~dxJoint();
-	    }
+	}
+	
+	/**
+	 * Re-run the constructor on a joint that was detached with 
+	 * <tt>DetachJointInstance()</tt>, this is the Java 
+	 * equivalent of the placement new on reused obstack memory.
+	 * Subclasses that pool instances must reset their own fields.
+	 * @param w world the joint is created in
+	 */
+	void ReinitializeJointInstance(DxWorld w)
+	{
+		dIASSERT( w!= null );
+		world = w;
+		tag = 0;
+		userdata = null;
+		flags = 0;
+		node[0].body = null;
+		node[0].next = null;
+		node[1].body = null;
+		node[1].next = null;
+		for (int i = 0; i < lambda.length; i++) {
+			lambda[i] = 0;
+		}
+		addObjectToList( this, w.firstjoint );
+		w.nj++;
+		feedback = null;
 	}
 	
 	// *************************************
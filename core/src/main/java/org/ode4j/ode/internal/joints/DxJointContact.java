@@ -65,6 +65,14 @@ public class DxJointContact extends DxJoint implements DContactJoint
 		super (w);
 	}
 
+	@Override
+	void ReinitializeJointInstance(DxWorld w)
+	{
+		super.ReinitializeJointInstance(w);
+		the_m = 0;
+		contact = null;
+	}
+
 	@Override
 	void getSureMaxInfo( SureMaxInfo info )
 	{
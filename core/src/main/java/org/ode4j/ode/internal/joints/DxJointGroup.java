@@ -28,6 +28,7 @@ import java.util.ArrayList;
 
 import org.ode4j.ode.DJointGroup;
 import org.ode4j.ode.internal.DBase;
+import org.ode4j.ode.internal.DxWorld;
 
 /** 
  * joint group. NOTE: any joints in the group that have their world destroyed
@@ -41,6 +42,10 @@ public class DxJointGroup extends DBase implements DJointGroup
     
 	//TODO use LinkedList?
 	private final ArrayList<DxJoint> _stack = new ArrayList<DxJoint>(); 
+	// Contact joints are created and emptied every step. Like the obstack
+	//in ODE keeps its memory after freeAll(), emptied contact joints are
+	//kept here and reinitialized by the next dJointCreateContact().
+	private final ArrayList<DxJointContact> _contactPool = new ArrayList<DxJointContact>(); 
 
 	
 //    template<class T>
@@ -106,6 +111,10 @@ public class DxJointGroup extends DBase implements DJointGroup
         dJointGroupEmpty ();
 //TZ        delete group;
 //        stack = null;
+        for (int i = 0; i < _contactPool.size(); i++) {
+        	_contactPool.get(i).DESTRUCTOR();
+        }
+        _contactPool.clear();
         DESTRUCTOR();
     }
 
@@ -152,12 +161,36 @@ public class DxJointGroup extends DBase implements DJointGroup
 //        }
         for (int i = _stack.size()-1; i >= 0; i--) {
         	DxJoint j = _stack.get(i);
-        	j.FinalizeAndDestroyJointInstance(false);
+        	if (j.getClass() == DxJointContact.class) {
+        		// the instance is reused by allocContact()
+        		j.DetachJointInstance();
+        		_contactPool.add((DxJointContact) j);
+        	} else {
+        		j.FinalizeAndDestroyJointInstance(false);
+        	}
         }
         _stack.clear();
     }
 
 
+    /**
+     * Reuse a contact joint that was emptied from this group.
+     * @param w world of the new joint
+     * @return a reinitialized joint that is already in the group, or 
+     * <tt>null</tt> if the pool is empty
+     */
+    DxJointContact allocContact(DxWorld w) {
+    	int n = _contactPool.size();
+    	if (n == 0) {
+    		return null;
+    	}
+    	DxJointContact j = _contactPool.remove(n - 1);
+    	j.ReinitializeJointInstance(w);
+    	addJoint(j);
+    	return j;
+    }
+
+
     void addJoint(DxJoint j) {
 //		stack.add(j);
 //		num++;
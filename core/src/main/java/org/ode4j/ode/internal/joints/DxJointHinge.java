@@ -54,6 +54,9 @@ public class DxJointHinge extends DxJoint implements DHingeJoint
 	private DVector3 _axis2;     // axis w.r.t second body
 	private DQuaternion qrel;   // initial relative rotation body1 -> body2
 	private DxJointLimitMotor limot; // limit and motor information
+	// temporaries of getInfo2(), a joint is processed by one thread at a time
+	private final DVector3 tmpAx1 = new DVector3(), tmpAx2 = new DVector3();
+	private final DVector3 tmpP = new DVector3(), tmpQ = new DVector3(), tmpB = new DVector3();
 
 
 	DxJointHinge( DxWorld w ) 
@@ -123,8 +126,8 @@ public class DxJointHinge extends DxJoint implements DHingeJoint
 		// where p and q are unit vectors normal to the hinge axis, and w1 and w2
 		// are the angular velocity vectors of the two bodies.
 
-		DVector3 ax1 = new DVector3();  // length 1 joint axis in global coordinates, from 1st body
-		DVector3 p = new DVector3(), q = new DVector3(); // plane space vectors for ax1
+		DVector3 ax1 = tmpAx1;  // length 1 joint axis in global coordinates, from 1st body
+		DVector3 p = tmpP, q = tmpQ; // plane space vectors for ax1
 		dMultiply0_331( ax1, node[0].body.posr().R(), _axis1 );
 		dPlaneSpace( ax1, p, q );
 
@@ -153,7 +156,7 @@ public class DxJointHinge extends DxJoint implements DHingeJoint
 		// ax1 x ax2 is in the plane space of ax1, so we project the angular
 		// velocity to p and q to find the right hand side.
 
-		DVector3 ax2 = new DVector3(), b = new DVector3();
+		DVector3 ax2 = tmpAx2, b = tmpB;
 		if ( node[1].body != null)
 		{
 			dMultiply0_331( ax2, node[1].body.posr().R(), _axis2 );
@@ -98,7 +98,13 @@ public class OdeJointsFactoryImpl extends OdeHelper {
 			final DContact c)
 	{
 		dAASSERT (w, c);
-		DxJointContact j = createJoint(new DxJointContact((DxWorld) w), group);
+		DxJointContact j = null;
+		if (group != null) {
+			j = ((DxJointGroup)group).allocContact((DxWorld) w);
+		}
+		if (j == null) {
+			j = createJoint(new DxJointContact((DxWorld) w), group);
+		}
 		j.contact = c;
 		return j;
 	}
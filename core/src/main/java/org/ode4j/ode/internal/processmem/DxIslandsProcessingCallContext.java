@@ -42,12 +42,20 @@ public class DxIslandsProcessingCallContext implements CallContext {
 
 	public DxIslandsProcessingCallContext(DxWorld world, DxWorldProcessIslandsInfo islandsInfo, 
 			double stepSize, dstepper_fn_t stepper) {
+		Initialize(world, islandsInfo, stepSize, stepper);
+	}
+
+	/**
+	 * The world keeps one context and reinitializes it for every step.
+	 */
+	public void Initialize(DxWorld world, DxWorldProcessIslandsInfo islandsInfo, 
+			double stepSize, dstepper_fn_t stepper) {
 		m_world = world;
 		m_islandsInfo = islandsInfo;
 		m_stepSize = stepSize;
 		m_stepper = stepper;
 		m_groupReleasee = null;
-		//m_islandToProcessStorage = 0;
+		m_islandToProcessStorage.set(0);
 		m_stepperAllowedThreads = 0;
 	}
 
@@ -72,10 +80,10 @@ public class DxIslandsProcessingCallContext implements CallContext {
 //
 //    int ObtainNextIslandToBeProcessed(int islandsCount);
 
-    final DxWorld                   m_world;
-    final DxWorldProcessIslandsInfo m_islandsInfo;
-    final double                    m_stepSize;
-    final dstepper_fn_t             m_stepper;
+    DxWorld                   m_world;
+    DxWorldProcessIslandsInfo m_islandsInfo;
+    double                    m_stepSize;
+    dstepper_fn_t             m_stepper;
     DCallReleasee                 m_groupReleasee;
     //volatile int                  m_islandToProcessStorage;
     final AtomicInteger             m_islandToProcessStorage = new AtomicInteger();
@@ -127,9 +135,16 @@ public class DxIslandsProcessingCallContext implements CallContext {
         BlockPointer arenaState = stepperArena.SaveState();
         //new(stepperCallContext) DxSingleIslandCallContext(this, stepperArena, arenaState, islandBodiesStart, islandJointsStart);
         //stepperCallContext = new DxSingleIslandCallContext(this, stepperArena, arenaState, islandBodiesStart, islandJointsStart);
-        stepperCallContext = new DxSingleIslandCallContext(this, stepperArena, arenaState, 
-        		islandBodiesStart, 
-    			islandJointsStart);
+        stepperCallContext = stepperArena.GetIslandCallContext();
+        if (stepperCallContext != null) {
+            stepperCallContext.Initialize(this, stepperArena, arenaState, 
+                    islandBodiesStart, islandJointsStart);
+        } else {
+            stepperCallContext = new DxSingleIslandCallContext(this, stepperArena, arenaState, 
+                    islandBodiesStart, 
+                    islandJointsStart);
+            stepperArena.SetIslandCallContext(stepperCallContext);
+        }
         
         // Summary fault flag may be omitted as any failures will automatically propagate to dependent releasee (i.e. to m_groupReleasee)
         m_world.threading().PostThreadedCallForUnawareReleasee(null, null, 0, m_groupReleasee, null, 
@@ -161,47 +176,33 @@ public class DxIslandsProcessingCallContext implements CallContext {
         int islandToProcess = ObtainNextIslandToBeProcessed(islandsCount);
 
         if (islandToProcess != islandsCount) {
-            // First time, the counts are zeros and on next passes, adding counts will skip island that has just been processed by stepper
-            DxBody[] islandBodiesStartA = stepperCallContext.GetSelectedIslandBodiesA();
-            int islandBodiesStartP = stepperCallContext.GetSelectedIslandBodiesEndP();
-            DxJoint[] islandJointsStartA = stepperCallContext.GetSelectedIslandJointsA();
-            int islandJointsStartP = stepperCallContext.GetSelectedIslandJointsEndP();
-            int islandIndex = stepperCallContext.m_islandIndex;
-
-            for (; ; ++islandIndex) {
-                int bcount = islandSizes[islandIndex * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_BODIES_COUNT];
-                int jcount = islandSizes[islandIndex * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_JOINTS_COUNT];
-
-                if (islandIndex == islandToProcess) {
-                    // Store selected island details
-                    stepperCallContext.AssignIslandSelection(
-                    		islandBodiesStartA, islandBodiesStartP, 
-                    		islandJointsStartA, islandJointsStartP, bcount, jcount);
-
-                    // Store next island index to continue search from
-                    ++islandIndex;
-                    stepperCallContext.AssignIslandSearchProgress(islandIndex);
-
-                    // Restore saved stepper memory arena position
-                    stepperCallContext.RestoreSavedMemArenaStateForStepper();
+            // Islands are handed out most expensive first. Each thread that runs out 
+            // of work takes the next remaining island from the shared queue.
+            int islandIndex = islandsInfo.GetIslandOrder()[islandToProcess];
+            int islandSizesP = islandIndex * DxWorldProcessIslandsInfo.dxISE__MAX;
+            int bcount = islandSizes[islandSizesP + DxWorldProcessIslandsInfo.dxISE_BODIES_COUNT];
+            int jcount = islandSizes[islandSizesP + DxWorldProcessIslandsInfo.dxISE_JOINTS_COUNT];
+            int islandBodiesStartP = islandsInfo.GetBodiesArrayP() + islandSizes[islandSizesP + DxWorldProcessIslandsInfo.dxISE_BODIES_START];
+            int islandJointsStartP = islandsInfo.GetJointsArrayP() + islandSizes[islandSizesP + DxWorldProcessIslandsInfo.dxISE_JOINTS_START];
 
-                    Ref<DCallReleasee> nextSearchReleasee = new Ref<DCallReleasee>();
+            // Store selected island details
+            stepperCallContext.AssignIslandSelection(
+                    islandsInfo.GetBodiesArray(), islandBodiesStartP, 
+                    islandsInfo.GetJointsArray(), islandJointsStartP, bcount, jcount);
 
-                    // Summary fault flag may be omitted as any failures will automatically propagate to dependent releasee (i.e. to m_groupReleasee)
-                    m_world.threading().PostThreadedCallForUnawareReleasee(null, nextSearchReleasee, 1, m_groupReleasee, null, 
-                        DxIslandsProcessingCallContext.ThreadedProcessIslandSearch_Callback, stepperCallContext, 0, "World Islands Stepping Selection");
+            // Restore saved stepper memory arena position
+            stepperCallContext.RestoreSavedMemArenaStateForStepper();
 
-                    stepperCallContext.AssignStepperCallFinalReleasee(nextSearchReleasee.get());
+            Ref<DCallReleasee> nextSearchReleasee = stepperCallContext.m_nextSearchReleasee;
 
-                    m_world.threading().PostThreadedCall(null, null, 0, nextSearchReleasee.get(), null, 
-                        DxIslandsProcessingCallContext.ThreadedProcessIslandStepper_Callback, stepperCallContext, 0, "Island Stepping Job Start");
+            // Summary fault flag may be omitted as any failures will automatically propagate to dependent releasee (i.e. to m_groupReleasee)
+            m_world.threading().PostThreadedCallForUnawareReleasee(null, nextSearchReleasee, 1, m_groupReleasee, null, 
+                DxIslandsProcessingCallContext.ThreadedProcessIslandSearch_Callback, stepperCallContext, 0, "World Islands Stepping Selection");
 
-                    break;
-                }
+            stepperCallContext.AssignStepperCallFinalReleasee(nextSearchReleasee.get());
 
-                islandBodiesStartP += bcount;
-                islandJointsStartP += jcount;
-            }
+            m_world.threading().PostThreadedCall(null, null, 0, nextSearchReleasee.get(), null, 
+                DxIslandsProcessingCallContext.ThreadedProcessIslandStepper_Callback, stepperCallContext, 0, "Island Stepping Job Start");
         }
         else {
             finalizeJob = true;
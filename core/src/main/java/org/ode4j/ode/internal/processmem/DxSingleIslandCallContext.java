@@ -25,6 +25,7 @@
 package org.ode4j.ode.internal.processmem;
 
 import org.ode4j.ode.internal.DxBody;
+import org.ode4j.ode.internal.cpp4j.java.Ref;
 import org.ode4j.ode.internal.joints.DxJoint;
 import org.ode4j.ode.threading.Threading_H.CallContext;
 import org.ode4j.ode.threading.Threading_H.DCallReleasee;
@@ -34,11 +35,27 @@ public class DxSingleIslandCallContext implements CallContext {
 			DxWorldProcessMemArena stepperArena, DxUtil.BlockPointer arenaInitialState, 
 			DxBody[] islandBodiesStart, 
 			DxJoint[] islandJointsStart) {
+		m_stepperCallContext = new DxStepperProcessingCallContext(islandsProcessingContext.m_world, 
+				islandsProcessingContext.m_stepSize, 
+				islandsProcessingContext.m_stepperAllowedThreads, 
+				stepperArena, 
+				islandBodiesStart, islandJointsStart);
+		Initialize(islandsProcessingContext, stepperArena, arenaInitialState, 
+				islandBodiesStart, islandJointsStart);
+	}
+
+	/**
+	 * The context is kept with its stepper arena and reinitialized for 
+	 * every step instead of being allocated again.
+	 */
+	void Initialize(DxIslandsProcessingCallContext islandsProcessingContext, 
+			DxWorldProcessMemArena stepperArena, DxUtil.BlockPointer arenaInitialState, 
+			DxBody[] islandBodiesStart, 
+			DxJoint[] islandJointsStart) {
 		m_islandsProcessingContext = islandsProcessingContext;
-		m_islandIndex = 0; 
 		m_stepperArena = stepperArena;
 		m_arenaInitialState = arenaInitialState; 
-		m_stepperCallContext = new DxStepperProcessingCallContext(islandsProcessingContext.m_world, 
+		m_stepperCallContext.Initialize(islandsProcessingContext.m_world, 
 				islandsProcessingContext.m_stepSize, 
 				islandsProcessingContext.m_stepperAllowedThreads, 
 				stepperArena, 
@@ -50,11 +67,6 @@ public class DxSingleIslandCallContext implements CallContext {
 		//nothing
 	}
 	
-	void AssignIslandSearchProgress(int islandIndex)
-	{
-		m_islandIndex = islandIndex; 
-	}
-
 	void AssignIslandSelection(DxBody[] islandBodiesStartA, int islandBodiesStartP, 
 			DxJoint[] islandJointsStartA, int islandJointsStartP, 
 			int islandBodiesCount, int islandJointsCount)
@@ -88,10 +100,10 @@ public class DxSingleIslandCallContext implements CallContext {
 	}
 
 	DxIslandsProcessingCallContext  m_islandsProcessingContext;
-	int                          	m_islandIndex;
 	DxWorldProcessMemArena          m_stepperArena;
 	DxUtil.BlockPointer            	m_arenaInitialState;
-	DxStepperProcessingCallContext  m_stepperCallContext;
+	final DxStepperProcessingCallContext  m_stepperCallContext;
+	final Ref<DCallReleasee>        m_nextSearchReleasee = new Ref<DCallReleasee>();
 
 
 }
@@ -46,6 +46,14 @@ public final class DxStepperProcessingCallContext {
 			DxWorldProcessMemArena stepperArena, 
 			DxBody[] islandBodiesStart,
 			DxJoint[] islandJointsStart) {
+		Initialize(world, stepSize, stepperAllowedThreads, stepperArena, 
+				islandBodiesStart, islandJointsStart);
+	}
+
+	void Initialize(DxWorld world, double stepSize, int stepperAllowedThreads, 
+			DxWorldProcessMemArena stepperArena, 
+			DxBody[] islandBodiesStart,
+			DxJoint[] islandJointsStart) {
 		m_world = world;
 		m_stepSize = stepSize;
 		m_stepperArena = stepperArena;
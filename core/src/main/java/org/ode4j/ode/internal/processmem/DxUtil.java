@@ -37,7 +37,7 @@ public class DxUtil {
 	//#define dMIN(A,B)  ((A)>(B) ? (B) : (A))
 	//#define dMAX(A,B)  ((B)>(A) ? (B) : (A))
 	public static final int dMIN(int A, int B) { return A > B ? B : A; }
-	public static final int dMAX(int B, int A) { return A > B ? B : A; }
+	public static final int dMAX(int A, int B) { return B > A ? B : A; }
 	
 	
     //****************************************************************************
@@ -144,6 +144,10 @@ public class DxUtil {
             }
             return (DxWorldProcessMemArena) o;
         }
+        /** @return the arena, or <tt>null</tt> at the end of an arena list */
+        DxWorldProcessMemArena peekDxWorldProcessMemArena() {
+            return (DxWorldProcessMemArena) o;
+        }
         void setTo(DxWorldProcessMemArena x) {
         	o = x;
         }
@@ -24,20 +24,26 @@
  *************************************************************************/
 package org.ode4j.ode.internal.processmem;
 
+import java.util.Arrays;
+
 import org.ode4j.ode.internal.Common;
 import org.ode4j.ode.internal.DxBody;
+import org.ode4j.ode.internal.DxIslandGraph;
 import org.ode4j.ode.internal.DxWorld;
 import org.ode4j.ode.internal.joints.DxJoint;
-import org.ode4j.ode.internal.joints.DxJointNode;
-import org.ode4j.ode.internal.processmem.DxUtil.BlockPointer;
+import org.ode4j.ode.internal.cpp4j.java.RefInt;
 import static org.ode4j.ode.internal.ErrorHandler.*;
 
 public class DxWorldProcessIslandsInfo {
 
-    void AssignInfo(int islandcount, int[] islandsizes, DxBody[] bodies, DxJoint[] joints)
+    void AssignInfo(int islandcount, int[] islandsizes, int[] islandorder, DxBody[] bodies, DxJoint[] joints,
+            int bodycount, int jointcount)
     {
         m_IslandCount = islandcount;
+        m_BodiesCount = bodycount;
+        m_JointsCount = jointcount;
         m_pIslandSizes = islandsizes;
+        m_pIslandOrder = islandorder;
         m_pBodies = bodies;
         m_pBodiesP = 0;
         m_pJoints = joints;
@@ -45,7 +51,13 @@ public class DxWorldProcessIslandsInfo {
     }
 
     public int GetIslandsCount() { return m_IslandCount; }
+    /** @return number of bodies in all islands */
+    public int GetBodiesCount() { return m_BodiesCount; }
+    /** @return number of joints in all islands */
+    public int GetJointsCount() { return m_JointsCount; }
     public int[] GetIslandSizes() { return m_pIslandSizes; }
+    /** @return island indexes, most expensive island first */
+    public int[] GetIslandOrder() { return m_pIslandOrder; }
     public DxBody[] GetBodiesArray() { return m_pBodies; }
     public int GetBodiesArrayP() { return m_pBodiesP; }
     public DxJoint[] GetJointsArray() { return m_pJoints; }
@@ -53,11 +65,17 @@ public class DxWorldProcessIslandsInfo {
 
     //private:
     private int m_IslandCount;
+    private int m_BodiesCount;
+    private int m_JointsCount;
     private int[] m_pIslandSizes;
+    private int[] m_pIslandOrder;
     private DxBody[] m_pBodies;
     private int m_pBodiesP;
     private DxJoint[] m_pJoints;
     private int m_pJointsP;
+    // kept between steps, the world reuses its islands info
+    private final RefInt m_jointCurr = new RefInt();
+    private long[] m_sortKeys = new long[0];
 
     // *******************************
     // from util.cpp (TZ)
@@ -75,8 +93,43 @@ public class DxWorldProcessIslandsInfo {
 	//{
 	static final int dxISE_BODIES_COUNT = 0;
 	static final int dxISE_JOINTS_COUNT = 1;
-	static final int dxISE__MAX = 2;
+	static final int dxISE_BODIES_START = 2;
+	static final int dxISE_JOINTS_START = 3;
+	static final int dxISE__MAX = 4;
 	//};
+
+	// Estimated constraint rows per joint for island cost estimation. The exact
+	// count is only known after getInfo1() which the stepper calls anyway.
+	private static final int dxISLAND_COST_ROWS_PER_JOINT = 3;
+
+	/**
+	 * Sort the islands by estimated work (bodies plus constraint rows), largest
+	 * first, so that a large island does not start last and leave the other
+	 * threads idle at the end of the step. Islands of equal cost keep the order
+	 * in which they were found.
+	 */
+	private int[] SortIslandsByCost(DxWorldProcessMemArena memarena, int islandcount, int[] islandsizes)
+	{
+	    int[] islandorder = memarena.AllocateArrayInt(islandcount);
+	    if (islandcount > 1) {
+	        if (m_sortKeys.length < islandcount) {
+	            m_sortKeys = new long[islandcount];
+	        }
+	        long[] keys = m_sortKeys;
+	        for (int i = 0; i != islandcount; ++i) {
+	            long cost = islandsizes[i * dxISE__MAX + dxISE_BODIES_COUNT] 
+	                    + (long) dxISLAND_COST_ROWS_PER_JOINT * islandsizes[i * dxISE__MAX + dxISE_JOINTS_COUNT];
+	            keys[i] = (cost << 32) | (Integer.MAX_VALUE - i);
+	        }
+	        Arrays.sort(keys, 0, islandcount);
+	        for (int i = 0; i != islandcount; ++i) {
+	            islandorder[i] = Integer.MAX_VALUE - (int) keys[islandcount - 1 - i];
+	        }
+	    } else if (islandcount == 1) {
+	        islandorder[0] = 0;
+	    }
+	    return islandorder;
+	}
 	
     static int BuildIslandsAndEstimateStepperMemoryRequirements(
             DxWorldProcessIslandsInfo islandsinfo, DxWorldProcessMemArena memarena, 
@@ -84,110 +137,75 @@ public class DxWorldProcessIslandsInfo {
     {
         int maxreq = 0;
 
-        // handle auto-disabling of bodies
-        world.dInternalHandleAutoDisabling (stepsize);
+        final boolean profiling = world.dWorldIsProfiling();
+        long islandsStart = profiling ? System.nanoTime() : 0;
+        long autoDisableNanos = 0;
 
         int nb = world.nb, nj = world.nj;
         // Make array for island body/joint counts
-        int[] islandsizes = memarena.AllocateArrayInt(2 * nb);
+        int[] islandsizes = memarena.AllocateArrayInt(dxISE__MAX * nb);
         int sizescurrP;
 
         // make arrays for body and joint lists (for a single island) to go into
         DxBody[] body = memarena.AllocateArrayDxBody(nb);
         DxJoint[] joint = memarena.AllocateArrayDxJoint(nj);
 
-        BlockPointer stackstate = memarena.BEGIN_STATE_SAVE();
-        {
-            // allocate a stack of unvisited bodies in the island. the maximum size of
-            // the stack can be the lesser of the number of bodies or joints, because
-            // new bodies are only ever added to the stack by going through untagged
-            // joints. all the bodies in the stack must be tagged!
-            int stackalloc = (nj < nb) ? nj : nb;
-            DxBody[] stack = memarena.AllocateArrayDxBody(stackalloc);
+        // islands are kept up to date by the world as joints are attached and
+        // detached, only the changed ones have to be rebuilt here.
+        DxIslandGraph islandgraph = world.islandGraph();
+        islandgraph.beginIslandSearch();
+
+        sizescurrP = 0;//islandsizes;
+        int bodystart = 0;//body;
+        int jointstart = 0;//joint;
+        RefInt jointcurr = islandsinfo.m_jointCurr;
+        for (DxBody bb=world.firstbody.get(); bb!=null; bb=(DxBody) bb.getNext()) {
+            // get bb = the next enabled body that is not in an island yet
+            if (islandgraph.isCollected(bb)) {
+                continue;
+            }
+            if (!bb.dBodyIsEnabled()) {
+                bb.tag = -1; // Not used so far (assigned to retain consistency with joints)
+                continue;
+            }
 
-            {
-                // set all body/joint tags to 0
-                for (DxBody b=world.firstbody.get(); b!=null; b=(DxBody)b.getNext()) b.tag = 0;
-                for (DxJoint j=world.firstjoint.get(); j!=null; j=(DxJoint)j.getNext()) j.tag = 0;
+            jointcurr.set(jointstart);
+            int bodycurr = islandgraph.collectIsland(bb, body, bodystart, joint, jointcurr);
+
+            int bcount = bodycurr - bodystart;
+            int jcount = jointcurr.get() - jointstart;
+
+            // the spaces have not reported the contacts inside an island that
+            // was asleep, step it once they have been created again
+            if (islandgraph.isWoken() && world.getAutoDisableSkipSleepingPairs()) {
+                islandgraph.islandDeferred(body, bodystart, bcount, joint, jointstart, jcount);
+                continue;
             }
 
-            sizescurrP = 0;//islandsizes;
-            int bodystart = 0;//body;
-            int jointstart = 0;//joint;
-            for (DxBody bb=world.firstbody.get(); bb!=null; bb=(DxBody) bb.getNext()) {
-                // get bb = the next enabled, untagged body, and tag it
-                if (bb.tag==0) {
-                    if (bb.dBodyIsEnabled()) {
-                        bb.tag = 1;
-
-                        int bodycurr = bodystart;
-                        int jointcurr = jointstart;
-
-                        // tag all bodies and joints starting from bb.
-                        //*bodycurr++ = bb;
-                        body[bodycurr++] = bb;
-
-                        int stacksize = 0;
-                        DxBody b = bb;
-
-                        while (true) {
-                            // traverse and tag all body's joints, add untagged connected bodies
-                            // to stack
-                            for (DxJointNode n=b.firstjoint.get(); n!=null; n=n.next) {
-                                DxJoint njoint = n.joint;
-                                if (njoint.tag==0) {
-                                    if (njoint.isEnabled()) {
-                                        njoint.tag = 1;
-                                        //*jointcurr++ = njoint;
-                                        joint[jointcurr++] = njoint;
-
-                                        DxBody nbody = n.body;
-                                        // Body disabled flag is not checked here. This is how auto-enable works.
-                                        if (nbody!=null && nbody.tag <= 0) {
-                                            nbody.tag = 1;
-                                            // Make sure all bodies are in the enabled state.
-                                            nbody.dBodyEnable_noAdis();
-                                            //nbody.flags &= ~DxBody.dxBodyDisabled;
-                                            stack[stacksize++] = nbody;
-                                        }
-                                    } else {
-                                        njoint.tag = -1; // Used in Step to prevent search over disabled joints (not needed for QuickStep so far)
-                                    }
-                                }
-                            }
-                            Common.dIASSERT(stacksize <= world.nb);
-                            Common.dIASSERT(stacksize <= world.nj);
-
-                            if (stacksize == 0) {
-                                break;
-                            }
-
-                            b = stack[--stacksize]; // pop body off stack
-                            body[bodycurr++] = b;//*bodycurr++ = b;    // put body on body list
-                        }
-
-                        int bcount = bodycurr - bodystart;
-                        int jcount = jointcurr - jointstart;
-                        Common.dIASSERT((bodycurr - bodystart) <= Integer.MAX_VALUE);//UINT_MAX);
-                        Common.dIASSERT((jointcurr - jointstart) <= Integer.MAX_VALUE);//UINT_MAX);
-
-                        islandsizes[sizescurrP+dxISE_BODIES_COUNT] = bcount;
-                        islandsizes[sizescurrP+dxISE_JOINTS_COUNT] = jcount;
-                        sizescurrP += dxISE__MAX;
-
-                        int islandreq = stepperestimate.dxEstimateMemoryRequirements(
-                                body, bodystart, bcount, joint, jointstart, jcount);
-                        maxreq = (maxreq > islandreq) ? maxreq : islandreq;
-
-                        bodystart = bodycurr;
-                        jointstart = jointcurr;
-                    } else {
-                        bb.tag = -1; // Not used so far (assigned to retain consistency with joints)
-                    }
-                }
+            // handle auto-disabling, islands are put to sleep as a whole
+            long autoDisableStart = profiling ? System.nanoTime() : 0;
+            boolean asleep = world.dInternalHandleAutoDisabling (body, bodystart, bcount, stepsize);
+            if (profiling) {
+                autoDisableNanos += System.nanoTime() - autoDisableStart;
+            }
+            if (asleep) {
+                islandgraph.islandAsleep(body, bodystart, bcount, joint, jointstart, jcount);
+                continue;
             }
-        } //END_STATE_SAVE(memarena, stackstate);
-        memarena.END_STATE_SAVE(stackstate);
+
+            islandsizes[sizescurrP+dxISE_BODIES_COUNT] = bcount;
+            islandsizes[sizescurrP+dxISE_JOINTS_COUNT] = jcount;
+            islandsizes[sizescurrP+dxISE_BODIES_START] = bodystart;
+            islandsizes[sizescurrP+dxISE_JOINTS_START] = jointstart;
+            sizescurrP += dxISE__MAX;
+
+            int islandreq = stepperestimate.dxEstimateMemoryRequirements(
+                    body, bodystart, bcount, joint, jointstart, jcount);
+            maxreq = (maxreq > islandreq) ? maxreq : islandreq;
+
+            bodystart = bodycurr;
+            jointstart = jointcurr.get();
+        }
 
         if (!Common.dNODEBUG) { //# ifndef dNODEBUG
             // if debugging, check that all objects (except for disabled bodies,
@@ -218,7 +236,15 @@ public class DxWorldProcessIslandsInfo {
 
         //int islandcount = ((size_t)(sizescurr - islandsizes) / sizeelements);
         int islandcount = sizescurrP / dxISE__MAX;
-        islandsinfo.AssignInfo(islandcount, islandsizes, body, joint);
+        int[] islandorder = islandsinfo.SortIslandsByCost(memarena, islandcount, islandsizes);
+        // islands that went to sleep have been skipped, so only the bodies 
+        // and joints of the stepped islands have been collected
+        islandsinfo.AssignInfo(islandcount, islandsizes, islandorder, body, joint, bodystart, jointstart);
+
+        if (profiling) {
+            long islandsNanos = System.nanoTime() - islandsStart - autoDisableNanos;
+            world.dWorldProfileIslands(islandsNanos, autoDisableNanos, islandcount, bodystart, jointstart);
+        }
 
         return maxreq;
     }
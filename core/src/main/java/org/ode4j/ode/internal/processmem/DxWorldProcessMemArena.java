@@ -24,6 +24,8 @@
  *************************************************************************/
 package org.ode4j.ode.internal.processmem;
 
+import java.util.Arrays;
+
 import org.ode4j.ode.internal.Common;
 import org.ode4j.ode.internal.DxBody;
 import org.ode4j.ode.internal.joints.DxJoint;
@@ -66,22 +68,40 @@ public final class DxWorldProcessMemArena {
 
     int GetMemorySize() //const
     {
-        return m_pAllocEnd.toInt() - m_pAllocBegin.toInt();
+        // block pointers do not move in Java, so the size is kept separately
+        //return m_pAllocEnd.toInt() - m_pAllocBegin.toInt();
+        return m_nMemorySize;
     }
 
+    /**
+     * @return the current allocation state. Arrays allocated after this call
+     * are released by {@link #RestoreState(BlockPointer)} with the returned state.
+     */
     public BlockPointer SaveState() //const
     {
-        return m_pAllocCurrentOrNextArena;
+        //return m_pAllocCurrentOrNextArena;
+        int count = m_nArraysAllocated;
+        if (count >= m_aStates.length) {
+            m_aStates = Arrays.copyOf(m_aStates, Math.max(count + 1, m_aStates.length * 2));
+        }
+        BlockPointer state = m_aStates[count];
+        if (state == null) {
+            state = new BlockPointer(this, count);
+            m_aStates[count] = state;
+        }
+        return state;
     }
 
     public void RestoreState(BlockPointer state)
     {
-    	m_pAllocCurrentOrNextArena = state;
+    	//m_pAllocCurrentOrNextArena = state;
+    	ReleaseArrays(state.toInt());
     }
 
     void ResetState()
     {
     	m_pAllocCurrentOrNextArena = m_pAllocBegin;
+    	ReleaseArrays(0);
     }
 
     public BlockPointer PeekBufferRemainder() //const
@@ -122,7 +142,7 @@ public final class DxWorldProcessMemArena {
     //    }
 
     //dxWorldProcessMemArena *GetNextMemArena() const { return (dxWorldProcessMemArena *)m_pAllocCurrentOrNextArena; }
-    DxWorldProcessMemArena GetNextMemArena() { return m_pAllocCurrentOrNextArena.asDxWorldProcessMemArena(); }
+    DxWorldProcessMemArena GetNextMemArena() { return m_pAllocCurrentOrNextArena.peekDxWorldProcessMemArena(); }
     //void SetNextMemArena(dxWorldProcessMemArena *pArenaInstance) { m_pAllocCurrentOrNextArena = pArenaInstance; }
     void SetNextMemArena(DxWorldProcessMemArena pArenaInstance) { m_pAllocCurrentOrNextArena.setTo( pArenaInstance ); }
 
@@ -131,9 +151,13 @@ public final class DxWorldProcessMemArena {
     private BlockPointer m_pAllocBegin = new BlockPointer(this, 0);
     private BlockPointer m_pAllocEnd = new BlockPointer(this, 0);
     private BlockPointer m_pArenaBegin;
+    private int m_nMemorySize;
 
     DxWorldProcessMemoryManager m_pArenaMemMgr;
 
+    private Object m_stepperScratch;
+    private DxSingleIslandCallContext m_islandCallContext;
+
 
     //****************************************************************************
     // World processing context management
@@ -185,6 +209,7 @@ public final class DxWorldProcessMemArena {
 
                 arena.m_pAllocBegin = blockbegin;
                 arena.m_pAllocEnd = blockend;
+                arena.m_nMemorySize = memreq_with_reserve;
                 arena.m_pArenaBegin = pNewArenaBuffer;
                 arena.m_pAllocCurrentOrNextArena.setTo(null);
                 arena.m_pArenaMemMgr = memmgr;
@@ -251,12 +276,128 @@ public final class DxWorldProcessMemArena {
     // Java methods to simulate the C++ manager (TZ)
     // ***********************************************
 
+    // Arrays can not be placed into a memory block in Java. Instead, the arena 
+    // keeps the arrays that it has handed out and takes them back when its
+    // state is restored. Arrays are allocated with a capacity of the next 
+    // power of two and released arrays are handed out again for requests of 
+    // the same type that fit, so that stepping an unchanged or slowly changing 
+    // scene does not allocate. Callers must not rely on the length of an array, 
+    // only the requested size is cleared as if it was new.
+
+    private static final int dxARRAY_DREAL = 0;
+    private static final int dxARRAY_INT = 1;
+    private static final int dxARRAY_BOOL = 2;
+    private static final int dxARRAY_DREALDREAL = 3;
+    private static final int dxARRAY_BODY = 4;
+    private static final int dxARRAY_JOINT = 5;
+    private static final int dxARRAY__MAX = 6;
+    private static final int dxARRAY__KIND_BITS = 3;
+
+    /** Bytes per element of each kind, references are counted as 8 bytes. */
+    private static final int[] dxARRAY_ELEMENT_SIZE = { 8, 4, 1, 8, 8, 8 };
+
+    private static final int dxARRAY_MIN_CAPACITY_BITS = 4;
+    private static final int dxARRAY_CAPACITY_CLASSES = 32;
+
+    /** Released arrays are dropped rather than kept beyond this many bytes. */
+    private static final long dxARENA_MAX_FREE_BYTES = 32L << 20;
+
+    // arrays handed out since the last reset, in allocation order
+    private Object[] m_aArraysAllocated = new Object[16];
+    private int[] m_aArrayKeysAllocated = new int[16];
+    private int m_nArraysAllocated;
+    private BlockPointer[] m_aStates = new BlockPointer[16];
+
+    // released arrays, a stack for each kind and capacity class
+    private final Object[][][] m_aFreeArrays = new Object[dxARRAY__MAX][dxARRAY_CAPACITY_CLASSES][];
+    private final int[][] m_aFreeCounts = new int[dxARRAY__MAX][dxARRAY_CAPACITY_CLASSES];
+    private long m_nFreeBytes;
+
+    /** @return the capacity class of arrays that hold <tt>size</tt> elements */
+    private static int CapacityClass(int size) {
+        if (size <= (1 << dxARRAY_MIN_CAPACITY_BITS)) {
+            return dxARRAY_MIN_CAPACITY_BITS;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /** @return a released array of the kind and capacity class, or <tt>null</tt> */
+    private Object TakeFreeArray(int kind, int capacityClass) {
+        int count = m_aFreeCounts[kind][capacityClass];
+        if (count == 0) {
+            return null;
+        }
+        Object[] stack = m_aFreeArrays[kind][capacityClass];
+        Object array = stack[--count];
+        stack[count] = null;
+        m_aFreeCounts[kind][capacityClass] = count;
+        m_nFreeBytes -= (long) dxARRAY_ELEMENT_SIZE[kind] << capacityClass;
+        return array;
+    }
+
+    private void PutFreeArray(Object array, int key) {
+        int kind = key & ((1 << dxARRAY__KIND_BITS) - 1);
+        int capacityClass = key >>> dxARRAY__KIND_BITS;
+        long bytes = (long) dxARRAY_ELEMENT_SIZE[kind] << capacityClass;
+        if (m_nFreeBytes + bytes > dxARENA_MAX_FREE_BYTES) {
+            // leave it to the garbage collector
+            return;
+        }
+        Object[] stack = m_aFreeArrays[kind][capacityClass];
+        int count = m_aFreeCounts[kind][capacityClass];
+        if (stack == null) {
+            stack = new Object[4];
+        } else if (count == stack.length) {
+            stack = Arrays.copyOf(stack, count * 2);
+        }
+        m_aFreeArrays[kind][capacityClass] = stack;
+        stack[count] = array;
+        m_aFreeCounts[kind][capacityClass] = count + 1;
+        m_nFreeBytes += bytes;
+    }
+
+    private void AddAllocatedArray(Object array, int kind, int capacityClass) {
+        int i = m_nArraysAllocated++;
+        if (i == m_aArraysAllocated.length) {
+            m_aArraysAllocated = Arrays.copyOf(m_aArraysAllocated, i * 2);
+            m_aArrayKeysAllocated = Arrays.copyOf(m_aArrayKeysAllocated, i * 2);
+        }
+        m_aArraysAllocated[i] = array;
+        m_aArrayKeysAllocated[i] = (capacityClass << dxARRAY__KIND_BITS) | kind;
+    }
+
+    /** Take back the arrays allocated after the first <tt>count</tt> ones. */
+    private void ReleaseArrays(int count) {
+        Common.dIASSERT(count <= m_nArraysAllocated);
+        for (int i = m_nArraysAllocated - 1; i >= count; --i) {
+            PutFreeArray(m_aArraysAllocated[i], m_aArrayKeysAllocated[i]);
+            m_aArraysAllocated[i] = null;
+        }
+        m_nArraysAllocated = count;
+    }
+
     public final double[] AllocateArrayDReal(int size) {
-        return new double[size];
+        int capacityClass = CapacityClass(size);
+        double[] array = (double[]) TakeFreeArray(dxARRAY_DREAL, capacityClass);
+        if (array == null) {
+            array = new double[1 << capacityClass];
+        } else {
+            Arrays.fill(array, 0, size, 0);
+        }
+        AddAllocatedArray(array, dxARRAY_DREAL, capacityClass);
+        return array;
     }
 
     public final int[] AllocateArrayInt(int size) {
-        return new int[size];
+        int capacityClass = CapacityClass(size);
+        int[] array = (int[]) TakeFreeArray(dxARRAY_INT, capacityClass);
+        if (array == null) {
+            array = new int[1 << capacityClass];
+        } else {
+            Arrays.fill(array, 0, size, 0);
+        }
+        AddAllocatedArray(array, dxARRAY_INT, capacityClass);
+        return array;
     }
 
     /**
@@ -281,11 +422,27 @@ public final class DxWorldProcessMemArena {
     }
 
     public final double[][] AllocateArrayDRealDReal(int n) {
-        return new double[n][];
+        int capacityClass = CapacityClass(n);
+        double[][] array = (double[][]) TakeFreeArray(dxARRAY_DREALDREAL, capacityClass);
+        if (array == null) {
+            array = new double[1 << capacityClass][];
+        } else {
+            Arrays.fill(array, 0, n, null);
+        }
+        AddAllocatedArray(array, dxARRAY_DREALDREAL, capacityClass);
+        return array;
     }
 
     public final boolean[] AllocateArrayBool(int n) {
-        return new boolean[n];
+        int capacityClass = CapacityClass(n);
+        boolean[] array = (boolean[]) TakeFreeArray(dxARRAY_BOOL, capacityClass);
+        if (array == null) {
+            array = new boolean[1 << capacityClass];
+        } else {
+            Arrays.fill(array, 0, n, false);
+        }
+        AddAllocatedArray(array, dxARRAY_BOOL, capacityClass);
+        return array;
     }
 
     public BlockPointer BEGIN_STATE_SAVE() {
@@ -306,12 +463,53 @@ public final class DxWorldProcessMemArena {
 
     }
 
+    /**
+     * @return buffers that the stepper has kept with this arena, or 
+     * <tt>null</tt>. Stepper arenas are used by one island at a time, so 
+     * they can be reused without synchronization.
+     */
+    public Object GetStepperScratch() {
+        return m_stepperScratch;
+    }
+
+    public void SetStepperScratch(Object scratch) {
+        m_stepperScratch = scratch;
+    }
+
+    /**
+     * @return the island call context that has been used with this arena, 
+     * or <tt>null</tt>
+     */
+    DxSingleIslandCallContext GetIslandCallContext() {
+        return m_islandCallContext;
+    }
+
+    void SetIslandCallContext(DxSingleIslandCallContext callContext) {
+        m_islandCallContext = callContext;
+    }
+
     public DxBody[] AllocateArrayDxBody(int nb) {
-        return new DxBody[nb];
+        int capacityClass = CapacityClass(nb);
+        DxBody[] array = (DxBody[]) TakeFreeArray(dxARRAY_BODY, capacityClass);
+        if (array == null) {
+            array = new DxBody[1 << capacityClass];
+        } else {
+            Arrays.fill(array, 0, nb, null);
+        }
+        AddAllocatedArray(array, dxARRAY_BODY, capacityClass);
+        return array;
     }
 
     public DxJoint[] AllocateArrayDxJoint(int nj) {
-        return new DxJoint[nj];
+        int capacityClass = CapacityClass(nj);
+        DxJoint[] array = (DxJoint[]) TakeFreeArray(dxARRAY_JOINT, capacityClass);
+        if (array == null) {
+            array = new DxJoint[1 << capacityClass];
+        } else {
+            Arrays.fill(array, 0, nj, null);
+        }
+        AddAllocatedArray(array, dxARRAY_JOINT, capacityClass);
+        return array;
     }
 
 }
@@ -95,8 +95,8 @@ class ThreadingTemplates {
 				int max_simultaneous_calls_estimate);
 		dxThreadedJobInfo AllocateJobInfoFromPool();
 		void QueueJobForProcessing(dxThreadedJobInfo new_job);
-		void AlterJobProcessingDependencies(dxThreadedJobInfo job_instance,
-				int dependencies_count_change, RefBoolean job_has_become_ready);
+		boolean AlterJobProcessingDependencies(dxThreadedJobInfo job_instance,
+				int dependencies_count_change);
 		dxThreadedJobInfo ReleaseAJobAndPickNextPendingOne(
 				dxThreadedJobInfo current_job, boolean job_result,
 				dWaitSignallingFunction abstractSignalTheWait,
@@ -390,7 +390,11 @@ class ThreadingTemplates {
 		}
 
 		dxThreadedJobInfo       m_next_job;
-		Ref<dxThreadedJobInfo>   m_prev_job_next_ptr;
+		// C++ points to the next pointer of the previous job, or to the list head.
+		// Java links the previous job instead, the first job has none. 
+		//Ref<dxThreadedJobInfo>   m_prev_job_next_ptr;
+		dxThreadedJobInfo       m_prev_job;
+		boolean                 m_job_queued;
 
 		int/*ddependencycount_t*/ m_dependencies_count;
 		dxThreadedJobInfo       m_dependent_job;
@@ -551,10 +555,13 @@ class ThreadingTemplates {
 			}
 
 			//dxMutexLockHelper list_access(m_list_access_lock);
-			dxtemplateThreadingLockHelper list_access = new dxtemplateThreadingLockHelper(m_list_access_lock);
-
-			dxThreadedJobInfo picked_job = PickNextPendingJob(out_last_job_flag);
-			return picked_job;
+			m_list_access_lock.LockMutex();
+			try {
+				dxThreadedJobInfo picked_job = PickNextPendingJob(out_last_job_flag);
+				return picked_job;
+			} finally {
+				m_list_access_lock.UnlockMutex();
+			}
 		}
 
 		//template<class tThreadLull, class tThreadMutex, class tAtomicsProvider>
@@ -600,7 +607,7 @@ class ThreadingTemplates {
 			}
 
 			boolean job_dequeued = true;
-			dIASSERT(current_job.m_prev_job_next_ptr == null);
+			dIASSERT(!current_job.m_job_queued);
 
 			while (true)
 			{
@@ -642,7 +649,7 @@ class ThreadingTemplates {
 				}
 
 				current_job = dependent_job;
-				job_dequeued = dependent_job.m_prev_job_next_ptr == null;
+				job_dequeued = !dependent_job.m_job_queued;
 			}
 		}
 
@@ -662,18 +669,20 @@ class ThreadingTemplates {
 		public void QueueJobForProcessing(dxThreadedJobInfo job_instance)
 		{
 			//dxMutexLockHelper list_access(m_list_access_lock);
-			dxtemplateThreadingLockHelper list_access = new dxtemplateThreadingLockHelper(m_list_access_lock);
-
-			InsertJobInfoIntoListHead(job_instance);
+			m_list_access_lock.LockMutex();
+			try {
+				InsertJobInfoIntoListHead(job_instance);
+			} finally {
+				m_list_access_lock.UnlockMutex();
+			}
 		}
 
 
 		@Override
 		//template<class tThreadLull, class tThreadMutex, class tAtomicsProvider>
 		//void dxtemplateJobListContainer<tThreadLull, tThreadMutex, tAtomicsProvider>::
-		public void AlterJobProcessingDependencies(dxThreadedJobInfo job_instance, 
-				int /*ddependencychange_t*/ dependencies_count_change, 
-				RefBoolean out_job_has_become_ready)
+		public boolean AlterJobProcessingDependencies(dxThreadedJobInfo job_instance, 
+				int /*ddependencychange_t*/ dependencies_count_change)
 		{
 			// Dependencies should not be changed when job has already become ready for execution
 			dIASSERT(job_instance.m_dependencies_count != 0);
@@ -684,7 +693,7 @@ class ThreadingTemplates {
 			//dIASSERT(dependencies_count_change < 0 ? (job_instance.m_dependencies_count >= (-dependencies_count_change)) : ((-job_instance.m_dependencies_count) > (int)dependencies_count_change));
 
 			int /*ddependencycount_t*/ new_dependencies_count = SmartAddJobDependenciesCount(job_instance, dependencies_count_change);
-			out_job_has_become_ready.set( new_dependencies_count == 0 );
+			return new_dependencies_count == 0;
 		}
 
 
@@ -719,11 +728,11 @@ class ThreadingTemplates {
 
 			if (job_list_head != null)
 			{
-				job_list_head.m_prev_job_next_ptr = 
-						new Ref<dxThreadedJobInfo>(job_instance.m_next_job);
+				job_list_head.m_prev_job = job_instance;
 			}
 
-			job_instance.m_prev_job_next_ptr = m_job_list;
+			job_instance.m_prev_job = null;
+			job_instance.m_job_queued = true;
 			m_job_list.set( job_instance );
 		}
 
@@ -734,13 +743,20 @@ class ThreadingTemplates {
 		{
 			if (job_instance.m_next_job != null)
 			{ 
-				job_instance.m_next_job.m_prev_job_next_ptr = job_instance.m_prev_job_next_ptr;
+				job_instance.m_next_job.m_prev_job = job_instance.m_prev_job;
 			}
 
-			job_instance.m_prev_job_next_ptr.set(job_instance.m_next_job);
-			// Assign NULL to m_prev_job_next_ptr as an indicator that instance has been dequeued
-			//TZ this makes sense if the pointer equals the m_job_list REF.
-			job_instance.m_prev_job_next_ptr = null;
+			if (job_instance.m_prev_job != null)
+			{
+				job_instance.m_prev_job.m_next_job = job_instance.m_next_job;
+			}
+			else
+			{
+				m_job_list.set(job_instance.m_next_job);
+			}
+			// Reset the queued flag as an indicator that instance has been dequeued
+			job_instance.m_prev_job = null;
+			job_instance.m_job_queued = false;
 		}
 
 		//template<class tThreadLull, class tThreadMutex, class tAtomicsProvider>
@@ -772,19 +788,22 @@ class ThreadingTemplates {
 				// Extraction must be locked so that other thread does not "steal" head info,
 				// use it and then reinsert back with a different "next"
 				//dxMutexLockHelper pool_access(m_pool_access_lock);
-				dxtemplateThreadingLockHelper pool_access = new dxtemplateThreadingLockHelper(m_pool_access_lock);
-
-				dxThreadedJobInfo head_info = m_info_pool.get(); // Head info must be re-read after mutex had been locked
+				m_pool_access_lock.LockMutex();
+				try {
+					dxThreadedJobInfo head_info = m_info_pool.get(); // Head info must be re-read after mutex had been locked
 
-				if (head_info != null)
-				{
-					dxThreadedJobInfo next_info = head_info.m_next_job;
-					//if (tAtomicsProvider::CompareExchangeTargetPtr(&m_info_pool, (atomicptr_t)head_info, (atomicptr_t)next_info))
-					if (CompareExchangeTargetPtr(m_info_pool, head_info, next_info))
+					if (head_info != null)
 					{
-						result_info = head_info;
-						break;
+						dxThreadedJobInfo next_info = head_info.m_next_job;
+						//if (tAtomicsProvider::CompareExchangeTargetPtr(&m_info_pool, (atomicptr_t)head_info, (atomicptr_t)next_info))
+						if (CompareExchangeTargetPtr(m_info_pool, head_info, next_info))
+						{
+							result_info = head_info;
+							break;
+						}
 					}
+				} finally {
+					m_pool_access_lock.UnlockMutex();
 				}
 			}
 
@@ -1035,6 +1054,8 @@ class ThreadingTemplates {
 
 		//private:
 		private tJobListContainer       m_job_list_ptr;
+		// Self-handling is performed by a single thread, the flag can be shared
+		private final RefBoolean        m_dummy_last_job_flag = new RefBoolean(false);
 
 		/************************************************************************/
 		/* Implementation of dxtemplateJobListSelfHandler                       */
@@ -1093,9 +1114,8 @@ class ThreadingTemplates {
 
 			while (true)
 			{
-				RefBoolean dummy_last_job_flag = new RefBoolean(false);
 				current_job = m_job_list_ptr.ReleaseAJobAndPickNextPendingOne(
-						current_job, job_result, dxCallWait.AbstractSignalTheWait, dummy_last_job_flag);
+						current_job, job_result, dxCallWait.AbstractSignalTheWait, m_dummy_last_job_flag);
 
 				if (current_job == null)
 				{
@@ -1382,10 +1402,10 @@ class ThreadingTemplates {
 
 			dxThreadedJobInfo job_instance = dMAKE_RELEASEE_JOBINSTANCE(target_releasee);
 
-			RefBoolean job_has_become_ready = new RefBoolean(false);
-			m_list_container.AlterJobProcessingDependencies(job_instance, dependencies_count_change, job_has_become_ready);
+			boolean job_has_become_ready = 
+					m_list_container.AlterJobProcessingDependencies(job_instance, dependencies_count_change);
 
-			if (job_has_become_ready.get())
+			if (job_has_become_ready)
 			{
 				m_list_handler.ProcessActiveJobAddition();
 			}
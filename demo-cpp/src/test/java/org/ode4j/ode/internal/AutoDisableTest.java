@@ -0,0 +1,197 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DBox;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSphere;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Islands are put to sleep as a whole, the spaces skip the pairs of
+ * sleeping geoms only if the world asks for it, and an island that is woken
+ * up does not sink before its contacts have been created again.
+ */
+public class AutoDisableTest {
+
+	private static final double STEP_SIZE = 0.01;
+	private static final int MAX_CONTACTS = 4;
+	private static final int BOXES = 6;
+
+	private DWorld world;
+	private DSpace space;
+	private DJointGroup contactGroup;
+	private final DBody[] pile = new DBody[BOXES];
+	private int pairs;
+
+	private final DNearCallback nearCallback = new DNearCallback() {
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			pairs++;
+			// the contact joints keep the contacts, they cannot be reused
+			DContactBuffer contacts = new DContactBuffer(MAX_CONTACTS);
+			int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, contacts.getGeomBuffer());
+			for (int i = 0; i < n; i++) {
+				DContact contact = contacts.get(i);
+				contact.surface.mu = 0.5;
+				DJoint c = OdeHelper.createContactJoint(world, contactGroup, contact);
+				c.attach(o1.getBody(), o2.getBody());
+			}
+		}
+	};
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		createScene();
+	}
+
+	@After
+	public void tearDown() {
+		destroyScene();
+		OdeHelper.closeODE();
+	}
+
+	private void createScene() {
+		// the constraints are reordered randomly, every scene sees the same order
+		Misc.dRandSetSeed(0);
+		world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		world.setAutoDisableFlag(true);
+		world.setAutoDisableLinearThreshold(0.05);
+		world.setAutoDisableAngularThreshold(0.05);
+		world.setQuickStepNumIterations(50);
+		space = OdeHelper.createSimpleSpace();
+		contactGroup = OdeHelper.createJointGroup();
+		OdeHelper.createPlane(space, 0, 0, 1, 0);
+		for (int i = 0; i < BOXES; i++) {
+			pile[i] = box(0, 0.5 + i);
+		}
+	}
+
+	private void destroyScene() {
+		contactGroup.destroy();
+		space.destroy();
+		world.destroy();
+	}
+
+	private DBody box(double x, double z) {
+		DBody b = OdeHelper.createBody(world);
+		DMass m = OdeHelper.createMass();
+		m.setBox(1, 1, 1, 1);
+		b.setMass(m);
+		b.setPosition(x, 0, z);
+		DBox g = OdeHelper.createBox(space, 1, 1, 1);
+		g.setBody(b);
+		return b;
+	}
+
+	/** @return the number of pairs reported by the space */
+	private int step() {
+		pairs = 0;
+		contactGroup.empty();
+		space.collide(null, nearCallback);
+		world.quickStep(STEP_SIZE);
+		return pairs;
+	}
+
+	private void sleep() {
+		for (int s = 0; s < 1000 && pile[BOXES - 1].isEnabled(); s++) {
+			step();
+		}
+		for (DBody b : pile) {
+			assertFalse(b.isEnabled());
+		}
+	}
+
+	@Test
+	public void testSleepingPairsReported() {
+		assertFalse(world.getAutoDisableSkipSleepingPairs());
+		sleep();
+		assertEquals(BOXES, step());
+		for (DBody b : pile) {
+			assertFalse(b.isEnabled());
+		}
+	}
+
+	@Test
+	public void testSkipSleepingPairs() {
+		world.setAutoDisableSkipSleepingPairs(true);
+		assertTrue(world.getAutoDisableSkipSleepingPairs());
+		sleep();
+		assertEquals(0, step());
+		// a body disabled by the user is not asleep
+		DBody b = box(5, 0.5);
+		b.disable();
+		assertEquals(1, step());
+		assertFalse(b.isEnabled());
+		for (DBody p : pile) {
+			assertFalse(p.isEnabled());
+		}
+	}
+
+	private double[] heights() {
+		double[] z = new double[BOXES];
+		for (int i = 0; i < BOXES; i++) {
+			z[i] = pile[i].getPosition().get2();
+		}
+		return z;
+	}
+
+	/** Drop a ball onto the sleeping pile and step until the pile is awake. */
+	private void wake() {
+		DBody ball = OdeHelper.createBody(world);
+		DMass m = OdeHelper.createMass();
+		m.setSphere(1, 0.5);
+		ball.setMass(m);
+		ball.setPosition(0, 0, BOXES + 0.505);
+		ball.setLinearVel(0, 0, -0.5);
+		DSphere g = OdeHelper.createSphere(space, 0.5);
+		g.setBody(ball);
+		for (int s = 0; s < 100 && !pile[0].isEnabled(); s++) {
+			step();
+		}
+		for (DBody b : pile) {
+			assertTrue(b.isEnabled());
+		}
+	}
+
+	@Test
+	public void testWakeStep() {
+		// the pile is stepped with all of its contacts as soon as it wakes up
+		sleep();
+		wake();
+		double[] reference = heights();
+
+		// the same pile with the pairs of sleeping geoms skipped
+		destroyScene();
+		createScene();
+		world.setAutoDisableSkipSleepingPairs(true);
+		sleep();
+		double[] asleep = heights();
+		wake();
+		// only the contact with the ball has woken up the pile, it has not 
+		// been stepped without its other contacts
+		assertArrayEquals(asleep, heights(), 0);
+		for (DBody b : pile) {
+			assertEquals(0, b.getLinearVel().length(), 0);
+		}
+		// now its pairs are reported again, and it takes the same step as 
+		// above up to the order of its constraints. Without its contacts it
+		// would fall by g * STEP_SIZE^2, about 1e-3.
+		assertEquals(BOXES + 1, step());
+		assertArrayEquals(reference, heights(), 2e-4);
+	}
+}
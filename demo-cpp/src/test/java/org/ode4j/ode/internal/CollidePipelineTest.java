@@ -0,0 +1,338 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.math.DQuaternion;
+import org.ode4j.ode.DCollidePipeline;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DHeightfield;
+import org.ode4j.ode.DHeightfieldData;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DTriMesh;
+import org.ode4j.ode.DTriMeshData;
+import org.ode4j.ode.OdeConstants;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.threading.DThreadingImplementation;
+import org.ode4j.ode.threading.DxThreadingImplementation;
+
+/**
+ * The collide pipeline must find the same contacts in the same order as a
+ * near callback that calls the colliders, for any number of tasks, and
+ * colliders with scratch state must work when called from several threads.
+ * Pairs found in the pair cache must keep their contacts.
+ */
+public class CollidePipelineTest {
+
+	private static final int GEOMS = 240;
+	private static final int MAX_CONTACTS = 8;
+
+	private DSpace space;
+	private DHeightfield heightfield;
+	private DTriMesh ground;
+	private final List<DGeom> geoms = new ArrayList<DGeom>();
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		space = OdeHelper.createHashSpace(null);
+		// the terrain is in a nested space, to have its pairs expanded
+		DSpace terrain = OdeHelper.createSimpleSpace(space);
+
+		DHeightfieldData hd = OdeHelper.createHeightfieldData();
+		double[] heights = new double[16 * 16];
+		for (int i = 0; i < heights.length; i++) {
+			heights[i] = 0.5 * Math.sin(i % 16) * Math.cos(i / 16);
+		}
+		hd.build(heights, true, 16, 16, 16, 16, 1, 0, 1, false);
+		hd.setBounds(-1, 1);
+		heightfield = OdeHelper.createHeightfield(terrain, hd, true);
+		heightfield.setData(-1);
+
+		ground = createGrid(terrain, 10, 1.0);
+		ground.setPosition(8, 0, -8);
+		ground.setData(-2);
+
+		Random rnd = new Random(17);
+		for (int i = 0; i < GEOMS; i++) {
+			DGeom g;
+			switch (i % 5) {
+			case 0: g = OdeHelper.createBox(space, 0.6, 0.4, 0.8); break;
+			case 1: g = OdeHelper.createSphere(space, 0.2 + 0.1 * (i % 4)); break;
+			case 2: g = OdeHelper.createCapsule(space, 0.2, 0.6); break;
+			case 3: g = OdeHelper.createCylinder(space, 0.3, 0.5); break;
+			default: g = createGrid(space, 2, 0.3); break;
+			}
+			g.setPosition(-8 + 26 * rnd.nextDouble(), -0.5 + 2.5 * rnd.nextDouble(),
+					-8 + 16 * rnd.nextDouble());
+			DQuaternion q = new DQuaternion(rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5,
+					rnd.nextDouble() - 0.5, rnd.nextDouble() - 0.5);
+			q.normalize();
+			g.setQuaternion(q);
+			g.setData(i);
+			geoms.add(g);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		space.destroy();
+		OdeHelper.closeODE();
+	}
+
+	/** A bumpy grid of n x n cells in the x-z plane. */
+	private static DTriMesh createGrid(DSpace space, int n, double cell) {
+		float[] vertices = new float[(n + 1) * (n + 1) * 3];
+		for (int x = 0; x <= n; x++) {
+			for (int z = 0; z <= n; z++) {
+				int v = 3 * (x * (n + 1) + z);
+				vertices[v] = (float) (x * cell);
+				vertices[v + 1] = (float) (0.2 * cell * ((x + z) % 3));
+				vertices[v + 2] = (float) (z * cell);
+			}
+		}
+		int[] indices = new int[n * n * 6];
+		int t = 0;
+		for (int x = 0; x < n; x++) {
+			for (int z = 0; z < n; z++) {
+				int a = x * (n + 1) + z;
+				int b = a + n + 1;
+				indices[t++] = a; indices[t++] = a + 1; indices[t++] = b;
+				indices[t++] = b; indices[t++] = a + 1; indices[t++] = b + 1;
+			}
+		}
+		DTriMeshData data = OdeHelper.createTriMeshData();
+		data.build(vertices, indices);
+		return OdeHelper.createTriMesh(space, data, null, null, null);
+	}
+
+	private static String toString(DContactGeom c) {
+		return c.g1.getData() + "-" + c.g2.getData() + " " + c.pos + " " + c.normal
+				+ " " + c.depth;
+	}
+
+	/** Contacts of a near callback that calls the colliders. */
+	private List<String> referenceContacts() {
+		final List<String> contacts = new ArrayList<String>();
+		final DContactGeomBuffer buffer = new DContactGeomBuffer(MAX_CONTACTS);
+		space.collide(null, new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				if (o1 instanceof DSpace || o2 instanceof DSpace) {
+					OdeHelper.spaceCollide2(o1, o2, data, this);
+					return;
+				}
+				int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, buffer);
+				for (int i = 0; i < n; i++) {
+					contacts.add(CollidePipelineTest.toString(buffer.get(i)));
+				}
+			}
+		});
+		return contacts;
+	}
+
+	private static List<String> pipelineContacts(DCollidePipeline pipeline, DSpace space) {
+		int n = pipeline.collide(space, MAX_CONTACTS);
+		assertEquals(n, pipeline.getContactCount());
+		List<String> contacts = new ArrayList<String>();
+		int next = 0;
+		for (int p = 0; p < pipeline.getPairCount(); p++) {
+			assertEquals(next, pipeline.getPairContactStart(p));
+			for (int i = 0; i < pipeline.getPairContactCount(p); i++) {
+				DContactGeom c = pipeline.getContact(next++).geom;
+				assertTrue(c.g1 == pipeline.getPairGeom1(p) || c.g1 == pipeline.getPairGeom2(p));
+				contacts.add(toString(c));
+			}
+		}
+		assertEquals(n, next);
+		return contacts;
+	}
+
+	@Test
+	public void testSameContacts() {
+		List<String> expected = referenceContacts();
+		DCollidePipeline pipeline = OdeHelper.createCollidePipeline();
+		for (int frame = 0; frame < 3; frame++) {
+			assertEquals(expected, pipelineContacts(pipeline, space));
+		}
+		boolean heightfieldContact = false, trimeshContact = false;
+		for (int i = 0; i < pipeline.getContactCount(); i++) {
+			DContactGeom c = pipeline.getContact(i).geom;
+			heightfieldContact |= c.g1 == heightfield || c.g2 == heightfield;
+			trimeshContact |= c.g1 == ground || c.g2 == ground;
+		}
+		assertTrue(heightfieldContact && trimeshContact);
+		pipeline.destroy();
+	}
+
+	@Test
+	public void testTaskCounts() {
+		List<String> expected = referenceContacts();
+		DThreadingImplementation threading =
+				DxThreadingImplementation.dThreadingAllocateSelfThreadedImplementation();
+		DCollidePipeline pipeline = OdeHelper.createCollidePipeline();
+		pipeline.setThreadingImplementation(threading.dThreadingImplementationGetFunctions(), threading);
+		for (int count : new int[] { 2, 3, 8, 1000 }) {
+			pipeline.setMaxThreadCount(count);
+			assertEquals(expected, pipelineContacts(pipeline, space));
+		}
+		pipeline.destroy();
+		threading.free();
+	}
+
+	private static void move(DGeom g, double dy) {
+		g.setPosition(g.getPosition().get0(), g.getPosition().get1() + dy, g.getPosition().get2());
+	}
+
+	private static int pairsWith(DCollidePipeline pipeline, DGeom g) {
+		int n = 0;
+		for (int p = 0; p < pipeline.getPairCount(); p++) {
+			if (pipeline.getPairGeom1(p) == g || pipeline.getPairGeom2(p) == g) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Without a tolerance the cached contacts must be the same as the
+	 * contacts of a collider call.
+	 */
+	@Test
+	public void testPairCache() {
+		DCollidePipeline pipeline = OdeHelper.createCollidePipeline();
+		pipeline.setPairCache(true);
+		List<String> expected = referenceContacts();
+		assertEquals(expected, pipelineContacts(pipeline, space));
+		assertEquals(0, pipeline.getCachedPairCount());
+		// nothing has moved
+		assertEquals(expected, pipelineContacts(pipeline, space));
+		assertEquals(pipeline.getPairCount(), pipeline.getCachedPairCount());
+		// move some geoms and the trimesh of the terrain
+		for (int i = 0; i < GEOMS; i += 7) {
+			move(geoms.get(i), 0.05);
+		}
+		move(ground, 0.05);
+		expected = referenceContacts();
+		assertEquals(expected, pipelineContacts(pipeline, space));
+		assertTrue(pipeline.getCachedPairCount() > 0);
+		assertTrue(pipeline.getCachedPairCount() < pipeline.getPairCount() - pairsWith(pipeline, ground));
+		assertEquals(expected, pipelineContacts(pipeline, space));
+		assertEquals(pipeline.getPairCount(), pipeline.getCachedPairCount());
+		// other flags
+		pipeline.collide(space, MAX_CONTACTS - 1);
+		assertEquals(0, pipeline.getCachedPairCount());
+		pipeline.setPairCache(false);
+		assertEquals(expected, pipelineContacts(pipeline, space));
+		assertEquals(0, pipeline.getCachedPairCount());
+		pipeline.destroy();
+	}
+
+	/**
+	 * Movements within the tolerance reuse the contacts, until they add up
+	 * to more than the tolerance.
+	 */
+	@Test
+	public void testPairCacheTolerance() {
+		DCollidePipeline pipeline = OdeHelper.createCollidePipeline();
+		pipeline.setPairCache(true);
+		pipeline.setPairCacheTolerance(0.1, 0.1);
+		List<String> expected = pipelineContacts(pipeline, space);
+		DGeom g = heightfield;
+		for (int p = 0; p < pipeline.getPairCount() && g == heightfield; p++) {
+			if (pipeline.getPairContactCount(p) > 0) {
+				g = pipeline.getPairGeom2(p);
+			}
+		}
+		int pairs = pipeline.getPairCount();
+		int moved = pairsWith(pipeline, g);
+		assertTrue(moved > 0);
+
+		move(g, 0.06);
+		assertEquals(expected, pipelineContacts(pipeline, space));
+		assertEquals(pairs, pipeline.getPairCount());
+		assertEquals(pairs, pipeline.getCachedPairCount());
+		move(g, 0.06);
+		assertEquals(referenceContacts(), pipelineContacts(pipeline, space));
+		assertEquals(pairs, pipeline.getPairCount());
+		assertEquals(pairs - moved, pipeline.getCachedPairCount());
+
+		pipeline.clearPairCache();
+		pipelineContacts(pipeline, space);
+		assertEquals(0, pipeline.getCachedPairCount());
+		pipeline.destroy();
+	}
+
+	/**
+	 * Collide geoms of their own against the shared heightfield and trimesh
+	 * from several threads at once. The trimesh is moved before each round
+	 * to clear its plane cache.
+	 */
+	@Test
+	public void testConcurrentColliders() throws InterruptedException {
+		final int threads = 4;
+		final List<List<DGeom>> own = new ArrayList<List<DGeom>>();
+		for (int t = 0; t < threads; t++) {
+			own.add(geoms.subList(t * GEOMS / threads, (t + 1) * GEOMS / threads));
+		}
+		final DGeom[] shared = { heightfield, ground };
+		for (int round = 0; round < 20; round++) {
+			ground.setPosition(8, 0.01 * round, -8);
+			final List<List<String>> expected = new ArrayList<List<String>>();
+			for (int t = 0; t < threads; t++) {
+				expected.add(collideShared(shared, own.get(t)));
+			}
+			ground.setPosition(8, 0.01 * round, -8);
+			ground.getAABB();
+			final List<List<String>> actual = new ArrayList<List<String>>();
+			Thread[] workers = new Thread[threads];
+			for (int t = 0; t < threads; t++) {
+				actual.add(null);
+				final int tt = t;
+				workers[t] = new Thread() {
+					@Override
+					public void run() {
+						OdeHelper.allocateODEDataForThread(OdeConstants.dAllocateMaskAll);
+						List<String> contacts = null;
+						for (int i = 0; i < 5; i++) {
+							contacts = collideShared(shared, own.get(tt));
+						}
+						actual.set(tt, contacts);
+					}
+				};
+				workers[t].start();
+			}
+			for (Thread w : workers) {
+				w.join();
+			}
+			assertEquals(expected, actual);
+		}
+	}
+
+	private static List<String> collideShared(DGeom[] shared, List<DGeom> geoms) {
+		List<String> contacts = new ArrayList<String>();
+		DContactGeomBuffer buffer = new DContactGeomBuffer(MAX_CONTACTS);
+		for (DGeom s : shared) {
+			for (DGeom g : geoms) {
+				if (g instanceof DTriMesh && s instanceof DTriMesh) {
+					continue;
+				}
+				int n = OdeHelper.collide(s, g, MAX_CONTACTS, buffer);
+				for (int i = 0; i < n; i++) {
+					contacts.add(toString(buffer.get(i)));
+				}
+			}
+		}
+		return contacts;
+	}
+}
@@ -0,0 +1,235 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DBox;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.internal.ErrorHandler.dMessageFunction;
+
+/**
+ * The contact impulse cache used for warm starting: eviction of contacts
+ * that are not generated again, sleeping contacts, the size limit, and the
+ * effect of warm starting on a stack solved with few iterations.
+ */
+public class ContactImpulseCacheTest {
+
+	private static final double STEP_SIZE = 0.01;
+	private static final int MAX_CONTACTS = 4;
+
+	private DWorld world;
+	private DxContactImpulseCache cache;
+	private dMessageFunction messageHandler;
+	private int messages;
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		world = OdeHelper.createWorld();
+		cache = ((DxWorld) world).contactImpulseCache();
+		messageHandler = ErrorHandler.dGetMessageHandler();
+		ErrorHandler.dSetMessageHandler(new dMessageFunction() {
+			@Override
+			public void call(int errnum, String msg, Object... ap) {
+				messages++;
+			}
+		});
+	}
+
+	@After
+	public void tearDown() {
+		ErrorHandler.dSetMessageHandler(messageHandler);
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	private DBody body(double x) {
+		DBody b = OdeHelper.createBody(world);
+		b.setPosition(x, 0, 0.5);
+		b.setAutoDisableFlag(true);
+		return b;
+	}
+
+	/** The contact of a body with the ground. */
+	private static DContactGeom contact(DBody b) {
+		DContactGeom g = new DContactGeom();
+		g.pos.set(b.getPosition().get0(), 0, 0);
+		return g;
+	}
+
+	/** Store one impulse for the contact of each body, as one island would. */
+	private void step(DBody... bodies) {
+		DxContactImpulseCache.Batch batch = cache.acquireBatch();
+		for (DBody b : bodies) {
+			double[] lambda = { b.getPosition().get0() };
+			batch.store((DxBody) b, null, contact(b), lambda, 0, 1);
+		}
+		cache.submit(batch);
+		cache.endStep();
+	}
+
+	private boolean isCached(DBody b) {
+		DxContactImpulseCache.Batch batch = cache.acquireBatch();
+		double[] lambda = { -1 };
+		boolean found = cache.load((DxBody) b, null, contact(b), lambda, 0, 1, 1, batch);
+		cache.submit(batch);
+		if (found) {
+			assertEquals(b.getPosition().get0(), lambda[0], 0);
+		}
+		return found;
+	}
+
+	@Test
+	public void testEvictsContactsNotGeneratedAgain() {
+		DBody b1 = body(1);
+		DBody b2 = body(2);
+		step(b1, b2);
+		assertEquals(2, cache.size());
+		assertTrue(isCached(b1));
+		assertTrue(isCached(b2));
+		step(b2);
+		assertEquals(1, cache.size());
+		assertFalse(isCached(b1));
+		assertTrue(isCached(b2));
+		step();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testKeepsSleepingContacts() {
+		DBody b1 = body(1);
+		DBody b2 = body(2);
+		step(b1, b2);
+		b1.disable();
+		for (int i = 0; i < 10; i++) {
+			step(b2);
+		}
+		assertEquals(2, cache.size());
+		assertTrue(isCached(b1));
+		// the island wakes up, its contact is generated again
+		b1.enable();
+		step(b1, b2);
+		step(b2);
+		assertFalse(isCached(b1));
+		// destroying a sleeping body evicts its contacts
+		step(b1, b2);
+		b1.disable();
+		step(b2);
+		assertEquals(2, cache.size());
+		b1.destroy();
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testBounded() {
+		world.setQuickStepWarmStartingCacheSize(4);
+		DBody[] b = new DBody[8];
+		for (int i = 0; i < b.length; i++) {
+			b[i] = body(i);
+		}
+		// the oldest sleeping contact is evicted first
+		step(b[0]);
+		b[0].disable();
+		step(b[1]);
+		b[1].disable();
+		step(b[2], b[3]);
+		assertEquals(4, cache.size());
+		step(b[2], b[3], b[4]);
+		assertEquals(4, cache.size());
+		assertFalse(isCached(b[0]));
+		assertTrue(isCached(b[1]));
+		step(b[2], b[3], b[4], b[5]);
+		assertEquals(4, cache.size());
+		assertFalse(isCached(b[1]));
+		assertEquals(0, messages);
+		// then the contacts that were not generated again
+		step(b[6], b[7], b[2], b[3]);
+		assertEquals(4, cache.size());
+		for (int i = 2; i < 8; i++) {
+			assertEquals(i != 4 && i != 5, isCached(b[i]));
+		}
+		assertEquals(0, messages);
+		// more contacts in one step than the cache can hold
+		step(b[2], b[3], b[4], b[5], b[6], b[7]);
+		assertEquals(4, cache.size());
+		step(b[2], b[3], b[4], b[5], b[6], b[7]);
+		assertEquals(4, cache.size());
+		assertEquals(1, messages);
+		// shrinking the cache evicts the oldest contacts
+		world.setQuickStepWarmStartingCacheSize(2);
+		assertEquals(2, cache.size());
+	}
+
+	/** A stack of boxes, the top box is returned. */
+	private static DBody stack(DWorld world, DSpace space, int boxes) {
+		DBody b = null;
+		for (int i = 0; i < boxes; i++) {
+			b = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setBox(1, 1, 1, 1);
+			b.setMass(m);
+			b.setPosition(0, 0, 0.5 + i);
+			DBox box = OdeHelper.createBox(space, 1, 1, 1);
+			box.setBody(b);
+		}
+		return b;
+	}
+
+	/** @return how far the top of a ten box stack has sunk after 500 steps */
+	private static double sink(boolean warmStarting, int iterations) {
+		final DWorld world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		world.setQuickStepNumIterations(iterations);
+		world.setQuickStepWarmStarting(warmStarting);
+		DSpace space = OdeHelper.createSimpleSpace();
+		final DJointGroup contactGroup = OdeHelper.createJointGroup();
+		OdeHelper.createPlane(space, 0, 0, 1, 0);
+		DBody top = stack(world, space, 10);
+		DNearCallback nearCallback = new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				// the contact joints keep the contacts, they cannot be reused
+				DContactBuffer contacts = new DContactBuffer(MAX_CONTACTS);
+				int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, contacts.getGeomBuffer());
+				for (int i = 0; i < n; i++) {
+					DContact contact = contacts.get(i);
+					contact.surface.mu = 0.5;
+					DJoint c = OdeHelper.createContactJoint(world, contactGroup, contact);
+					c.attach(o1.getBody(), o2.getBody());
+				}
+			}
+		};
+		Misc.dRandSetSeed(0);
+		for (int s = 0; s < 500; s++) {
+			contactGroup.empty();
+			space.collide(null, nearCallback);
+			world.quickStep(STEP_SIZE);
+		}
+		double sink = 9.5 - top.getPosition().get2();
+		assertEquals(0, top.getPosition().get0(), 0.5);
+		contactGroup.destroy();
+		space.destroy();
+		world.destroy();
+		return sink;
+	}
+
+	@Test
+	public void testStackWithFewIterations() {
+		double cold = sink(false, 4);
+		double warm = sink(true, 4);
+		assertTrue("cold " + cold + " warm " + warm, warm < 0.02 && warm < cold * 0.5);
+	}
+}
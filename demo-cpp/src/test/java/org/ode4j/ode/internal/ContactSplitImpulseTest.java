@@ -0,0 +1,202 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DBox;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeConstants;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * A box that starts deep in the ground plane must be pushed out. With split
+ * impulse it is pushed out without gaining velocity, except for the speed 
+ * with which ERP corrects the penetration up to the threshold. Resting 
+ * stacks must not drift more than with ERP.
+ */
+public class ContactSplitImpulseTest {
+
+	private static final double STEP_SIZE = 0.01;
+	private static final double START_DEPTH = 0.2;
+
+	private DWorld world;
+	private DJointGroup contactGroup;
+	private DGeom plane;
+	private DGeom box;
+	private DBody body;
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		// the constraints are reordered randomly, every run sees the same order
+		Misc.dRandSetSeed(0);
+		world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		world.setERP(0.2);
+		contactGroup = OdeHelper.createJointGroup();
+		plane = OdeHelper.createPlane(null, 0, 0, 1, 0);
+		body = OdeHelper.createBody(world);
+		DMass m = OdeHelper.createMass();
+		m.setBox(1, 1, 1, 1);
+		body.setMass(m);
+		body.setPosition(0, 0, 0.5 - START_DEPTH);
+		box = OdeHelper.createBox(null, 1, 1, 1);
+		box.setBody(body);
+	}
+
+	@After
+	public void tearDown() {
+		contactGroup.destroy();
+		box.destroy();
+		plane.destroy();
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	/**
+	 * @return the highest upward speed of the box
+	 */
+	private double run(int steps) {
+		double maxVel = 0;
+		for (int s = 0; s < steps; s++) {
+			DContactBuffer contacts = new DContactBuffer(4);
+			int n = OdeHelper.collide(box, plane, 4, contacts.getGeomBuffer());
+			for (int i = 0; i < n; i++) {
+				DContact contact = contacts.get(i);
+				contact.surface.mu = 0.5;
+				DJoint c = OdeHelper.createContactJoint(world, contactGroup, contact);
+				c.attach(body, null);
+			}
+			world.quickStep(STEP_SIZE);
+			contactGroup.empty();
+			maxVel = Math.max(maxVel, body.getLinearVel().get2());
+		}
+		return maxVel;
+	}
+
+	@Test
+	public void testErp() {
+		assertFalse(world.getContactSplitImpulse());
+		double maxVel = run(100);
+		assertEquals(0.5, body.getPosition().get2(), 0.01);
+		assertTrue("vel " + maxVel, maxVel > 1);
+	}
+
+	@Test
+	public void testSplitImpulse() {
+		world.setContactSplitImpulse(true);
+		assertTrue(world.getContactSplitImpulse());
+		// the whole penetration is corrected with pseudo velocities
+		world.setContactSplitImpulseThreshold(0);
+		double maxVel = run(50);
+		assertEquals(0.5, body.getPosition().get2(), 0.01);
+		assertTrue("vel " + maxVel, maxVel < 0.1);
+		// the box stays in contact and rests
+		for (int s = 0; s < 100; s++) {
+			run(1);
+			assertEquals("step " + s, 0, body.getLinearVel().length(), 1e-3);
+			assertEquals("step " + s, 0.5, body.getPosition().get2(), 0.002);
+		}
+	}
+
+	@Test
+	public void testSplitImpulseThreshold() {
+		world.setContactSplitImpulse(true);
+		double threshold = world.getContactSplitImpulseThreshold();
+		assertTrue(threshold > 0);
+		double maxVel = run(100);
+		assertEquals(0.5, body.getPosition().get2(), 0.01);
+		// ERP corrects at most the threshold depth
+		assertTrue("vel " + maxVel, maxVel < 0.2 * threshold / STEP_SIZE * 1.01);
+	}
+
+	/**
+	 * @return how far the top boxes of resting stacks move in 10 seconds
+	 */
+	private static double stackDrift(boolean splitImpulse, int iterations) {
+		final double stepSize = 0.02;
+		final DWorld world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		world.setERP(0.2);
+		world.setCFM(1e-5);
+		world.setContactSurfaceLayer(0.001);
+		world.setQuickStepNumIterations(iterations);
+		world.setQuickStepWarmStarting(true);
+		world.setContactSplitImpulse(splitImpulse);
+		DSpace space = OdeHelper.createSimpleSpace();
+		final DJointGroup contactGroup = OdeHelper.createJointGroup();
+		OdeHelper.createPlane(space, 0, 0, 1, 0);
+		DBody[] top = new DBody[4];
+		for (int s = 0; s < top.length; s++) {
+			for (int i = 0; i < 6; i++) {
+				DBody b = OdeHelper.createBody(world);
+				DMass m = OdeHelper.createMass();
+				m.setBox(1, 1, 1, 1);
+				b.setMass(m);
+				b.setPosition(s * 3, 0, i + 0.5);
+				DBox box = OdeHelper.createBox(space, 1, 1, 1);
+				box.setBody(b);
+				top[s] = b;
+			}
+		}
+		DNearCallback nearCallback = new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				// the contact joints keep the contacts, they cannot be reused
+				DContactBuffer contacts = new DContactBuffer(4);
+				int n = OdeHelper.collide(o1, o2, 4, contacts.getGeomBuffer());
+				for (int i = 0; i < n; i++) {
+					DContact contact = contacts.get(i);
+					contact.surface.mode = OdeConstants.dContactApprox1;
+					contact.surface.mu = 0.8;
+					DJoint c = OdeHelper.createContactJoint(world, contactGroup, contact);
+					c.attach(o1.getBody(), o2.getBody());
+				}
+			}
+		};
+		// the constraints are reordered randomly, both runs see the same order
+		Misc.dRandSetSeed(1);
+		DVector3[] start = new DVector3[top.length];
+		double drift = 0;
+		for (int step = 0; step < 650; step++) {
+			if (step == 150) {
+				// the stacks have settled
+				for (int s = 0; s < top.length; s++) {
+					start[s] = new DVector3(top[s].getPosition());
+				}
+			}
+			contactGroup.empty();
+			space.collide(null, nearCallback);
+			world.quickStep(stepSize);
+		}
+		for (int s = 0; s < top.length; s++) {
+			drift = Math.max(drift, top[s].getPosition().distance(start[s]));
+		}
+		contactGroup.destroy();
+		space.destroy();
+		world.destroy();
+		return drift;
+	}
+
+	@Test
+	public void testStackDrift() {
+		for (int iterations : new int[] { 10, 20, 40 }) {
+			double erp = stackDrift(false, iterations);
+			double split = stackDrift(true, iterations);
+			assertTrue(iterations + " iterations: ERP " + erp + " split impulse " + split, 
+					split <= erp + 0.005);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.internal.ErrorHandler.dMessageFunction;
+import org.ode4j.ode.internal.cpp4j.java.RefInt;
+import org.ode4j.ode.internal.joints.DxJoint;
+
+public class DxIslandGraphTest {
+
+	private DxWorld world;
+	private DBody[] b;
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		world = (DxWorld) OdeHelper.createWorld();
+		b = new DBody[5];
+		for (int i = 0; i < b.length; i++) {
+			b[i] = OdeHelper.createBody(world);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	private DJoint ball(DBody b1, DBody b2) {
+		DJoint j = OdeHelper.createBallJoint(world);
+		j.attach(b1, b2);
+		return j;
+	}
+
+	/** @return the bodies of the island of body <tt>start</tt>. */
+	private Set<DBody> island(DBody start) {
+		DxIslandGraph graph = world.islandGraph();
+		graph.beginIslandSearch();
+		DxBody[] bodies = new DxBody[world.nb];
+		DxJoint[] joints = new DxJoint[world.nj];
+		int n = graph.collectIsland((DxBody) start, bodies, 0, joints, new RefInt());
+		return new HashSet<DBody>(Arrays.asList(bodies).subList(0, n));
+	}
+
+	private Set<DBody> set(DBody ... bodies) {
+		return new HashSet<DBody>(Arrays.asList(bodies));
+	}
+
+	@Test
+	public void testAttachDetach() {
+		DJoint j01 = ball(b[0], b[1]);
+		ball(b[1], b[2]);
+		ball(b[3], null);
+		assertEquals(set(b[0], b[1], b[2]), island(b[0]));
+		assertEquals(set(b[3]), island(b[3]));
+
+		j01.destroy();
+		assertEquals(set(b[0]), island(b[0]));
+		assertEquals(set(b[1], b[2]), island(b[2]));
+
+		// re-attaching a joint moves it between islands
+		DJoint j = ball(b[2], b[3]);
+		assertEquals(set(b[1], b[2], b[3]), island(b[1]));
+		j.attach(b[0], b[4]);
+		assertEquals(set(b[1], b[2]), island(b[1]));
+		assertEquals(set(b[0], b[4]), island(b[4]));
+	}
+
+	@Test
+	public void testEnableDisable() {
+		ball(b[0], b[1]);
+		DJoint j12 = ball(b[1], b[2]);
+		j12.disable();
+		assertEquals(set(b[0], b[1]), island(b[0]));
+		assertEquals(set(b[2]), island(b[2]));
+		j12.enable();
+		assertEquals(set(b[0], b[1], b[2]), island(b[2]));
+
+		// bodies reached through a joint are enabled
+		b[1].disable();
+		assertEquals(set(b[0], b[1], b[2]), island(b[0]));
+		assertTrue(b[1].isEnabled());
+	}
+
+	@Test
+	public void testBodyDestroy() {
+		ball(b[0], b[1]);
+		ball(b[1], b[2]);
+		ball(b[2], b[3]);
+		assertEquals(set(b[0], b[1], b[2], b[3]), island(b[3]));
+		b[1].destroy();
+		assertEquals(set(b[0]), island(b[0]));
+		assertEquals(set(b[2], b[3]), island(b[2]));
+	}
+
+	@Test
+	public void testSleepingIsland() {
+		DJointGroup group = OdeHelper.createJointGroup();
+		for (int i = 0; i < 3; i++) {
+			b[i].setAutoDisableFlag(true);
+			if (i > 0) {
+				OdeHelper.createBallJoint(world, group).attach(b[i - 1], b[i]);
+			}
+		}
+		DxBody[] bodies = new DxBody[3];
+		for (int i = 0; i < 3; i++) {
+			bodies[i] = (DxBody) b[i];
+			b[i].disable();
+		}
+		world.islandGraph().islandAsleep(bodies, 0, 3, new DxJoint[0], 0, 0);
+
+		// the island stays together without its joints and wakes up as a whole
+		group.empty();
+		ball(b[3], b[2]);
+		assertEquals(set(b[0], b[1], b[2], b[3]), island(b[3]));
+		for (int i = 0; i < 3; i++) {
+			assertTrue(b[i].isEnabled());
+		}
+
+		// once awake, it is split along its joints again
+		assertEquals(set(b[2], b[3]), island(b[3]));
+		assertEquals(set(b[0]), island(b[0]));
+		group.destroy();
+	}
+
+	/**
+	 * Bodies 0, 2, 3 and 4 hanging from body 1, stepped twice.
+	 * @return the joint from body 0 to body 1
+	 */
+	private static DJoint chain(DWorld world, DBody[] bodies) {
+		world.setGravity(0, 0, -9.81);
+		for (int i = 0; i < bodies.length; i++) {
+			bodies[i] = OdeHelper.createBody(world);
+			bodies[i].setPosition(i, 0, 5);
+			// the joints only carry a load if the bodies move apart
+			bodies[i].setLinearVel(0, i, 0);
+		}
+		DJoint j01 = null;
+		// the joint to body 0 is created last, Step gives it the lowest index
+		for (int i = bodies.length - 1; i >= 1; i--) {
+			DBallJoint j = OdeHelper.createBallJoint(world);
+			if (i == 1) {
+				j.attach(bodies[0], bodies[1]);
+				j01 = j;
+			} else {
+				j.attach(bodies[1], bodies[i]);
+			}
+			j.setAnchor(1, 0, 5);
+		}
+		world.step(0.01);
+		world.step(0.01);
+		return j01;
+	}
+
+	/**
+	 * A disabled joint whose first body is not stepped must not keep the tag
+	 * of an earlier step, Step would take it for the index of another joint
+	 * of the island of its second body.
+	 */
+	@Test
+	public void testDisabledJointToDisabledBody() {
+		final List<String> messages = new ArrayList<String>();
+		ErrorHdl.dSetDebugHandler(new dMessageFunction() {
+			@Override
+			public void call(int errnum, String msg, Object... ap) {
+				messages.add(msg);
+			}
+		});
+		try {
+			DJoint j01 = chain(world, b);
+			j01.disable();
+			b[0].disable();
+
+			// the same without the joint
+			DWorld reference = OdeHelper.createWorld();
+			DBody[] rb = new DBody[b.length];
+			chain(reference, rb).destroy();
+			rb[0].disable();
+
+			for (int step = 0; step < 10; step++) {
+				world.step(0.01);
+				reference.step(0.01);
+			}
+			for (int i = 1; i < b.length; i++) {
+				assertEquals(rb[i].getPosition().toString(), b[i].getPosition().toString());
+			}
+			assertEquals(new ArrayList<String>(), messages);
+			reference.destroy();
+		} finally {
+			ErrorHdl.dSetDebugHandler(null);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DHingeJoint;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Contact joints emptied from a joint group are reused by the next
+ * createContactJoint() on that group.
+ */
+public class JointGroupContactPoolTest {
+
+	private DWorld world;
+	private DBody b1, b2;
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		world = OdeHelper.createWorld();
+		b1 = OdeHelper.createBody(world);
+		b2 = OdeHelper.createBody(world);
+	}
+
+	@After
+	public void tearDown() {
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testEmptiedJointsAreReused() {
+		DJointGroup group = OdeHelper.createJointGroup();
+		DContact c = new DContactBuffer(1).get(0);
+		DJoint[] first = new DJoint[3];
+		for (int i = 0; i < first.length; i++) {
+			first[i] = OdeHelper.createContactJoint(world, group, c);
+			first[i].attach(b1, b2);
+		}
+		assertEquals(3, b1.getNumJoints());
+		assertEquals(3, ((DxWorld) world).nj);
+
+		group.empty();
+		assertEquals(0, b1.getNumJoints());
+		assertEquals(0, b2.getNumJoints());
+		assertEquals(0, ((DxWorld) world).nj);
+
+		DJoint j = OdeHelper.createContactJoint(world, group, c);
+		assertTrue(j == first[0] || j == first[1] || j == first[2]);
+		assertNull(j.getBody(0));
+		assertNull(j.getBody(1));
+		assertNull(j.getFeedback());
+		assertNull(j.getData());
+		assertEquals(1, ((DxWorld) world).nj);
+		j.attach(b1, null);
+		assertEquals(1, b1.getNumJoints());
+		assertEquals(0, b2.getNumJoints());
+		group.destroy();
+		assertEquals(0, b1.getNumJoints());
+	}
+
+	@Test
+	public void testOtherJointsAreNotReused() {
+		DJointGroup group = OdeHelper.createJointGroup();
+		DHingeJoint h = OdeHelper.createHingeJoint(world, group);
+		h.attach(b1, b2);
+		group.empty();
+		DJoint j = OdeHelper.createContactJoint(world, group, new DContactBuffer(1).get(0));
+		assertNotSame(h, j);
+		group.destroy();
+	}
+
+	@Test
+	public void testReuseInOtherWorld() {
+		DJointGroup group = OdeHelper.createJointGroup();
+		DContact c = new DContactBuffer(1).get(0);
+		DJoint j1 = OdeHelper.createContactJoint(world, group, c);
+		j1.attach(b1, b2);
+		group.empty();
+		DWorld world2 = OdeHelper.createWorld();
+		DBody b3 = OdeHelper.createBody(world2);
+		DJoint j2 = OdeHelper.createContactJoint(world2, group, c);
+		assertSame(j1, j2);
+		j2.attach(b3, null);
+		assertEquals(0, ((DxWorld) world).nj);
+		assertEquals(1, ((DxWorld) world2).nj);
+		group.destroy();
+		world2.destroy();
+	}
+}
@@ -0,0 +1,135 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.DWorld.DQuickStepStats;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * NNCG must converge to the solution of SOR, and in fewer iterations on a
+ * chain with a heavy end mass. Once it has converged, further iterations
+ * must not change the result.
+ */
+public class NNCGStepTest {
+
+	private static final double STEP_SIZE = 0.01;
+	private static final int LINKS = 10;
+
+	private DWorld sorWorld;
+	private DWorld nncgWorld;
+	private DBody[] sorChain;
+	private DBody[] nncgChain;
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		sorWorld = OdeHelper.createWorld();
+		nncgWorld = OdeHelper.createWorld();
+		sorChain = chain(sorWorld);
+		nncgChain = chain(nncgWorld);
+	}
+
+	@After
+	public void tearDown() {
+		sorWorld.destroy();
+		nncgWorld.destroy();
+		OdeHelper.closeODE();
+	}
+
+	/** A horizontal chain hanging from one end, the last link is heavy. */
+	private static DBody[] chain(DWorld world) {
+		world.setGravity(0, 0, -9.81);
+		world.setQuickStepW(1);
+		DBody[] bodies = new DBody[LINKS];
+		DBody prev = null;
+		for (int i = 0; i < LINKS; i++) {
+			DBody b = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setBoxTotal(i == LINKS - 1 ? 10 : 1, 0.5, 0.5, 0.5);
+			b.setMass(m);
+			b.setPosition(i, 0, 50);
+			DBallJoint j = OdeHelper.createBallJoint(world);
+			j.attach(b, prev);
+			j.setAnchor(i - 0.5, 0, 50);
+			bodies[i] = b;
+			prev = b;
+		}
+		return bodies;
+	}
+
+	@Test
+	public void testSameSolutionAsSOR() {
+		sorWorld.setQuickStepNumIterations(5000);
+		nncgWorld.setQuickStepNumIterations(5000);
+		for (int s = 0; s < 10; s++) {
+			sorWorld.quickStep(STEP_SIZE);
+			nncgWorld.nncgStep(STEP_SIZE);
+		}
+		for (int i = 0; i < LINKS; i++) {
+			for (int k = 0; k < 3; k++) {
+				assertEquals(sorChain[i].getLinearVel().get(k), nncgChain[i].getLinearVel().get(k), 1e-9);
+				assertEquals(sorChain[i].getPosition().get(k), nncgChain[i].getPosition().get(k), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testConvergence() {
+		// reference solution
+		DWorld world = OdeHelper.createWorld();
+		DBody[] chain = chain(world);
+		world.setQuickStepNumIterations(20000);
+		sorWorld.setQuickStepNumIterations(200);
+		nncgWorld.setQuickStepNumIterations(200);
+		for (int s = 0; s < 3; s++) {
+			world.quickStep(STEP_SIZE);
+			sorWorld.quickStep(STEP_SIZE);
+			nncgWorld.nncgStep(STEP_SIZE);
+		}
+		double sorError = 0;
+		double nncgError = 0;
+		for (int i = 0; i < LINKS; i++) {
+			for (int k = 0; k < 3; k++) {
+				double v = chain[i].getLinearVel().get(k);
+				sorError = Math.max(sorError, Math.abs(sorChain[i].getLinearVel().get(k) - v));
+				nncgError = Math.max(nncgError, Math.abs(nncgChain[i].getLinearVel().get(k) - v));
+			}
+		}
+		world.destroy();
+		assertTrue("SOR " + sorError + " NNCG " + nncgError, nncgError < sorError * 0.1);
+		assertEquals(0, nncgError, 1e-9);
+	}
+
+	@Test
+	public void testFewerIterations() {
+		DQuickStepStats sorStats = new DQuickStepStats();
+		DQuickStepStats nncgStats = new DQuickStepStats();
+		for (DWorld w : new DWorld[] { sorWorld, nncgWorld }) {
+			w.setQuickStepNumIterations(500);
+			w.setQuickStepTolerance(1e-3);
+		}
+		sorWorld.setQuickStepStats(sorStats);
+		nncgWorld.setQuickStepStats(nncgStats);
+		long sorTotal = 0;
+		long nncgTotal = 0;
+		for (int s = 0; s < 100; s++) {
+			sorWorld.quickStep(STEP_SIZE);
+			nncgWorld.nncgStep(STEP_SIZE);
+			assertEquals(1, sorStats.islandCount);
+			assertEquals(1, nncgStats.islandCount);
+			sorTotal += sorStats.totalIterations;
+			nncgTotal += nncgStats.totalIterations;
+		}
+		assertTrue("SOR " + sorTotal + " NNCG " + nncgTotal, nncgTotal < sorTotal * 0.6);
+		// both reach the tolerance, the chain behaves the same
+		assertEquals(sorChain[LINKS - 1].getPosition().get2(),
+				nncgChain[LINKS - 1].getPosition().get2(), 0.05);
+	}
+}
@@ -0,0 +1,58 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * A joint with feedback must act in QuickStep like one without.
+ */
+public class QuickStepFeedbackTest {
+
+	private static final double STEP_SIZE = 0.01;
+	private static final double GRAVITY = 9.81;
+
+	private DWorld world;
+	private DBody body;
+	private DBallJoint joint;
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -GRAVITY);
+		body = OdeHelper.createBody(world);
+		DMass m = OdeHelper.createMass();
+		m.setBoxTotal(2, 0.5, 0.5, 0.5);
+		body.setMass(m);
+		body.setPosition(0, 0, 4);
+		joint = OdeHelper.createBallJoint(world);
+		joint.attach(body, null);
+		joint.setAnchor(0, 0, 5);
+	}
+
+	@After
+	public void tearDown() {
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testHangingBody() {
+		DJoint.DJointFeedback feedback = new DJoint.DJointFeedback();
+		joint.setFeedback(feedback);
+		for (int i = 0; i < 100; i++) {
+			world.quickStep(STEP_SIZE);
+		}
+		assertEquals(4, body.getPosition().get2(), 1e-3);
+		assertEquals(2 * GRAVITY, feedback.f1.get2(), 1e-3);
+	}
+}
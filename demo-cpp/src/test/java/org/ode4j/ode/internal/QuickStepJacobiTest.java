@@ -0,0 +1,141 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DBox;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * The Jacobi solver of QuickStep must converge toward the solution of SOR
+ * as the number of iterations grows.
+ */
+public class QuickStepJacobiTest {
+
+	private static final double STEP_SIZE = 0.01;
+	private static final int MAX_CONTACTS = 4;
+	private static final int BOXES = 3;
+	private static final int STEPS = 5;
+
+	/** A small stack of boxes on the ground. */
+	private static class Scene {
+		final DWorld world;
+		final DSpace space;
+		final DJointGroup contactGroup;
+		final DBody[] bodies = new DBody[BOXES];
+
+		private final DNearCallback nearCallback = new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				// the contact joints keep the contacts, they cannot be reused
+				DContactBuffer contacts = new DContactBuffer(MAX_CONTACTS);
+				int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, contacts.getGeomBuffer());
+				for (int i = 0; i < n; i++) {
+					DContact contact = contacts.get(i);
+					contact.surface.mu = 0.5;
+					DJoint c = OdeHelper.createContactJoint(world, contactGroup, contact);
+					c.attach(o1.getBody(), o2.getBody());
+				}
+			}
+		};
+
+		Scene(boolean jacobi, int iterations) {
+			world = OdeHelper.createWorld();
+			world.setGravity(0, 0, -9.81);
+			world.setQuickStepNumIterations(iterations);
+			world.setQuickStepW(1);
+			world.setQuickStepJacobi(jacobi);
+			space = OdeHelper.createSimpleSpace();
+			contactGroup = OdeHelper.createJointGroup();
+			OdeHelper.createPlane(space, 0, 0, 1, 0);
+			for (int i = 0; i < BOXES; i++) {
+				DBody b = OdeHelper.createBody(world);
+				DMass m = OdeHelper.createMass();
+				m.setBox(1, 1, 1, 1);
+				b.setMass(m);
+				// the boxes overhang, so that the contacts do not share the load evenly
+				b.setPosition(0.2 * i, 0, 0.49 + i);
+				DBox box = OdeHelper.createBox(space, 1, 1, 1);
+				box.setBody(b);
+				bodies[i] = b;
+			}
+		}
+
+		void step() {
+			contactGroup.empty();
+			space.collide(null, nearCallback);
+			world.quickStep(STEP_SIZE);
+		}
+
+		/** The largest velocity difference to the other scene. */
+		double error(Scene reference) {
+			double error = 0;
+			for (int i = 0; i < BOXES; i++) {
+				for (int k = 0; k < 3; k++) {
+					error = Math.max(error, Math.abs(bodies[i].getLinearVel().get(k)
+							- reference.bodies[i].getLinearVel().get(k)));
+					error = Math.max(error, Math.abs(bodies[i].getAngularVel().get(k)
+							- reference.bodies[i].getAngularVel().get(k)));
+				}
+			}
+			return error;
+		}
+
+		void destroy() {
+			contactGroup.destroy();
+			space.destroy();
+			world.destroy();
+		}
+	}
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+	}
+
+	@After
+	public void tearDown() {
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testConvergesToSOR() {
+		Scene sor = new Scene(false, 5000);
+		int[] iterations = { 10, 100, 1000, 100000 };
+		Scene[] jacobi = new Scene[iterations.length];
+		for (int i = 0; i < iterations.length; i++) {
+			jacobi[i] = new Scene(true, iterations[i]);
+			assertTrue(jacobi[i].world.getQuickStepJacobi());
+		}
+		double[] errors = new double[iterations.length];
+		for (int s = 0; s < STEPS; s++) {
+			sor.step();
+			for (int i = 0; i < iterations.length; i++) {
+				jacobi[i].step();
+				errors[i] = Math.max(errors[i], jacobi[i].error(sor));
+			}
+		}
+		for (int i = 1; i < iterations.length; i++) {
+			assertTrue("errors " + Arrays.toString(errors), errors[i] < errors[i - 1]);
+		}
+		assertEquals(0, errors[iterations.length - 1], 1e-6);
+		sor.destroy();
+		for (Scene scene : jacobi) {
+			scene.destroy();
+		}
+	}
+}
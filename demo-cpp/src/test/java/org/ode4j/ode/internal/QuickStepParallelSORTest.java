@@ -0,0 +1,146 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DHingeJoint;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.internal.processmem.DxWorldProcessMemArena;
+
+/**
+ * The parallel SOR of QuickStep solves the rows in color batches. No two
+ * rows of a batch may act on the same body, and with enough iterations the
+ * result must be the same as the one of the serial SOR.
+ */
+public class QuickStepParallelSORTest {
+
+	private static final double STEP_SIZE = 0.01;
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+	}
+
+	@After
+	public void tearDown() {
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testColorsAreBodyDisjoint() {
+		Random r = new Random(0);
+		for (int test = 0; test < 100; test++) {
+			int nb = 1 + r.nextInt(30);
+			int m = r.nextInt(200);
+			int[] jb = new int[m * 2];
+			int[] findex = new int[m];
+			for (int i = 0; i < m; i++) {
+				jb[i * 2] = r.nextInt(nb);
+				// the second body is never the first one
+				int b2 = nb == 1 || r.nextInt(4) == 0 ? -1 : r.nextInt(nb - 1);
+				jb[i * 2 + 1] = b2 >= jb[i * 2] ? b2 + 1 : b2;
+				// friction rows refer to an earlier normal row of the same bodies
+				findex[i] = -1;
+				if (i > 0 && r.nextBoolean()) {
+					findex[i] = r.nextInt(i);
+					jb[i * 2] = jb[findex[i] * 2];
+					jb[i * 2 + 1] = jb[findex[i] * 2 + 1];
+				}
+			}
+			int[] colorRows = new int[m];
+			int[] colorStart = new int[m + 1];
+			DxWorldProcessMemArena memarena = DxWorldProcessMemArena.allocateTemporary(0, null, null);
+			int colorCount = DxQuickStep.SOR_LCP_ColorRows(memarena, m, nb, jb, findex, colorRows, colorStart);
+
+			assertEquals(0, colorStart[0]);
+			assertEquals(m, colorStart[colorCount]);
+			boolean[] seen = new boolean[m];
+			int[] rowColor = new int[m];
+			for (int c = 0; c < colorCount; c++) {
+				assertTrue(colorStart[c] < colorStart[c + 1]);
+				boolean[] used = new boolean[nb];
+				for (int k = colorStart[c]; k < colorStart[c + 1]; k++) {
+					int row = colorRows[k];
+					assertFalse(seen[row]);
+					seen[row] = true;
+					rowColor[row] = c;
+					int b1 = jb[row * 2];
+					int b2 = jb[row * 2 + 1];
+					assertFalse("test " + test + " color " + c, used[b1]);
+					used[b1] = true;
+					if (b2 != -1) {
+						assertFalse("test " + test + " color " + c, used[b2]);
+						used[b2] = true;
+					}
+				}
+			}
+			for (int i = 0; i < m; i++) {
+				assertTrue(seen[i]);
+				if (findex[i] != -1) {
+					assertNotEquals(rowColor[findex[i]], rowColor[i]);
+				}
+			}
+		}
+	}
+
+	/** A hanging chain of ball joints with a hinge every few links. */
+	private static DBody[] chain(DWorld world, int links) {
+		DBody[] bodies = new DBody[links];
+		DBody prev = null;
+		for (int i = 0; i < links; i++) {
+			DBody b = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setBox(1, 0.5, 0.5, 0.5);
+			b.setMass(m);
+			b.setPosition(i, 0, 5);
+			if (i % 4 == 0) {
+				DHingeJoint h = OdeHelper.createHingeJoint(world);
+				h.attach(b, prev);
+				h.setAnchor(i - 0.5, 0, 5);
+				h.setAxis(0, 1, 0);
+			} else {
+				DBallJoint j = OdeHelper.createBallJoint(world);
+				j.attach(b, prev);
+				j.setAnchor(i - 0.5, 0, 5);
+			}
+			bodies[i] = b;
+			prev = b;
+		}
+		return bodies;
+	}
+
+	@Test
+	public void testSameAsSerial() {
+		DWorld serial = OdeHelper.createWorld();
+		DWorld parallel = OdeHelper.createWorld();
+		for (DWorld w : new DWorld[] { serial, parallel }) {
+			w.setGravity(0, 0, -9.81);
+			w.setQuickStepNumIterations(2000);
+			w.setQuickStepW(1);
+		}
+		parallel.setQuickStepParallelSOR(true);
+		DBody[] b1 = chain(serial, 12);
+		DBody[] b2 = chain(parallel, 12);
+		for (int s = 0; s < 20; s++) {
+			serial.quickStep(STEP_SIZE);
+			parallel.quickStep(STEP_SIZE);
+			for (int i = 0; i < b1.length; i++) {
+				for (int k = 0; k < 3; k++) {
+					assertEquals(b1[i].getLinearVel().get(k), b2[i].getLinearVel().get(k), 1e-9);
+					assertEquals(b1[i].getAngularVel().get(k), b2[i].getAngularVel().get(k), 1e-9);
+					assertEquals(b1[i].getPosition().get(k), b2[i].getPosition().get(k), 1e-9);
+				}
+			}
+		}
+		serial.destroy();
+		parallel.destroy();
+	}
+}
@@ -0,0 +1,200 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.math.DQuaternionC;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DBox;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DHingeJoint;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.threading.DThreadingImplementation;
+import org.ode4j.ode.threading.Threading_H;
+import org.ode4j.ode.threading.ThreadingImpl_H.dxSelfThreadedThreading;
+
+/**
+ * The threaded Stage0/Stage1 path of QuickStep must give the same results
+ * as the serial path. The self-threaded implementation runs all posted calls
+ * in the calling thread, it is made to report more threads so that
+ * <tt>m_stepperAllowedThreads()</tt> is greater than one.
+ * The threading interface is disabled by default and is enabled for this test.
+ */
+public class QuickStepThreadedTest {
+
+	private static final int THREADS = 4;
+	private static final int STEPS = 300;
+	private static final double STEP_SIZE = 0.01;
+	private static final int MAX_CONTACTS = 4;
+
+	/** A world with a box stack and a hinge chain, stepped with QuickStep. */
+	private static class Scene {
+		final DWorld world;
+		final DSpace space;
+		final DJointGroup contactGroup;
+		final List<DBody> bodies = new ArrayList<DBody>();
+
+		private final DNearCallback nearCallback = new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				// the contact joints keep the contacts, they cannot be reused
+				DContactBuffer contacts = new DContactBuffer(MAX_CONTACTS);
+				int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, contacts.getGeomBuffer());
+				for (int i = 0; i < n; i++) {
+					DContact contact = contacts.get(i);
+					contact.surface.mu = 0.5;
+					DJoint c = OdeHelper.createContactJoint(world, contactGroup, contact);
+					c.attach(o1.getBody(), o2.getBody());
+				}
+			}
+		};
+
+		Scene() {
+			world = OdeHelper.createWorld();
+			world.setGravity(0, 0, -9.81);
+			space = OdeHelper.createSimpleSpace();
+			contactGroup = OdeHelper.createJointGroup();
+			OdeHelper.createPlane(space, 0, 0, 1, 0);
+			for (int i = 0; i < 6; i++) {
+				DBody b = OdeHelper.createBody(world);
+				DMass m = OdeHelper.createMass();
+				m.setBox(1, 1, 1, 1);
+				b.setMass(m);
+				// a small offset, so that the stack does not stay symmetric
+				b.setPosition(0.02 * i, 0, 0.5 + i);
+				DBox box = OdeHelper.createBox(space, 1, 1, 1);
+				box.setBody(b);
+				bodies.add(b);
+			}
+			DBody prev = null;
+			for (int i = 0; i < 12; i++) {
+				DBody b = OdeHelper.createBody(world);
+				DMass m = OdeHelper.createMass();
+				m.setBox(1, 0.5, 0.5, 0.5);
+				b.setMass(m);
+				b.setPosition(3 + i, 3, 15);
+				DJoint j;
+				if (i % 3 == 0) {
+					DHingeJoint h = OdeHelper.createHingeJoint(world);
+					h.attach(b, prev);
+					h.setAnchor(2.5 + i, 3, 15);
+					h.setAxis(0, 1, 0);
+					j = h;
+				} else {
+					DBallJoint bj = OdeHelper.createBallJoint(world);
+					bj.attach(b, prev);
+					bj.setAnchor(2.5 + i, 3, 15);
+					j = bj;
+				}
+				j.setFeedback(new DJoint.DJointFeedback());
+				bodies.add(b);
+				prev = b;
+			}
+		}
+
+		void step() {
+			contactGroup.empty();
+			space.collide(null, nearCallback);
+			world.quickStep(STEP_SIZE);
+		}
+
+		void destroy() {
+			contactGroup.destroy();
+			space.destroy();
+			world.destroy();
+		}
+	}
+
+	private DThreadingImplementation threading;
+	private boolean threadingDisabled;
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		threadingDisabled = Threading_H.dTHREADING_INTF_DISABLED;
+		Threading_H.dTHREADING_INTF_DISABLED = false;
+		// the self-threaded job list needs no initialization
+		threading = new dxSelfThreadedThreading() {
+			@Override
+			public int RetrieveActiveThreadsCount() {
+				return THREADS;
+			}
+		};
+	}
+
+	@After
+	public void tearDown() {
+		threading.free();
+		Threading_H.dTHREADING_INTF_DISABLED = threadingDisabled;
+		OdeHelper.closeODE();
+	}
+
+	private static void assertSameState(int step, DBody expected, DBody actual) {
+		assertSame(step, expected.getPosition(), actual.getPosition());
+		assertSame(step, expected.getLinearVel(), actual.getLinearVel());
+		assertSame(step, expected.getAngularVel(), actual.getAngularVel());
+		DQuaternionC q1 = expected.getQuaternion();
+		DQuaternionC q2 = actual.getQuaternion();
+		for (int i = 0; i < 4; i++) {
+			assertEquals("step " + step, Double.doubleToLongBits(q1.get(i)),
+					Double.doubleToLongBits(q2.get(i)));
+		}
+	}
+
+	private static void assertSame(int step, DVector3C expected, DVector3C actual) {
+		for (int i = 0; i < 3; i++) {
+			assertEquals("step " + step, Double.doubleToLongBits(expected.get(i)),
+					Double.doubleToLongBits(actual.get(i)));
+		}
+	}
+
+	private void compare(boolean parallelSOR) {
+		Scene serial = new Scene();
+		Scene threaded = new Scene();
+		threaded.world.setStepThreadingImplementation(
+				threading.dThreadingImplementationGetFunctions(), threading);
+		serial.world.setQuickStepParallelSOR(parallelSOR);
+		threaded.world.setQuickStepParallelSOR(parallelSOR);
+		assertEquals(THREADS, ((DxWorld) threaded.world).GetThreadingIslandsMaxThreadsCount(null));
+		assertEquals(1, ((DxWorld) serial.world).GetThreadingIslandsMaxThreadsCount(null));
+		for (int s = 0; s < STEPS; s++) {
+			// QuickStep reorders the constraints randomly
+			long seed = Misc.dRandGetSeed();
+			serial.step();
+			Misc.dRandSetSeed(seed);
+			threaded.step();
+			for (int i = 0; i < serial.bodies.size(); i++) {
+				assertSameState(s, serial.bodies.get(i), threaded.bodies.get(i));
+			}
+		}
+		// the stack must have come to rest on the ground
+		assertEquals(0.5, serial.bodies.get(0).getPosition().get2(), 0.05);
+		serial.destroy();
+		threaded.destroy();
+	}
+
+	@Test
+	public void testSameAsSerial() {
+		compare(false);
+	}
+
+	@Test
+	public void testSameAsSerialParallelSOR() {
+		compare(true);
+	}
+}
@@ -0,0 +1,154 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DBox;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.DWorld.DQuickStepStats;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * With a tolerance, QuickStep stops iterating a resting island early, and
+ * the statistics report the iterations of each island.
+ */
+public class QuickStepToleranceTest {
+
+	private static final double STEP_SIZE = 0.01;
+	private static final int MAX_CONTACTS = 4;
+	private static final int ITERATIONS = 100;
+
+	private DWorld world;
+	private DSpace space;
+	private DJointGroup contactGroup;
+	private DBody box;
+
+	private final DNearCallback nearCallback = new DNearCallback() {
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			// the contact joints keep the contacts, they cannot be reused
+			DContactBuffer contacts = new DContactBuffer(MAX_CONTACTS);
+			int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, contacts.getGeomBuffer());
+			for (int i = 0; i < n; i++) {
+				DContact contact = contacts.get(i);
+				contact.surface.mu = 0.5;
+				DJoint c = OdeHelper.createContactJoint(world, contactGroup, contact);
+				c.attach(o1.getBody(), o2.getBody());
+			}
+		}
+	};
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		world.setQuickStepNumIterations(ITERATIONS);
+		space = OdeHelper.createSimpleSpace();
+		contactGroup = OdeHelper.createJointGroup();
+		OdeHelper.createPlane(space, 0, 0, 1, 0);
+		// a box resting on the ground and a box falling freely far above
+		box = box(0, 0.5);
+		box(5, 100);
+	}
+
+	@After
+	public void tearDown() {
+		contactGroup.destroy();
+		space.destroy();
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	private DBody box(double x, double z) {
+		DBody b = OdeHelper.createBody(world);
+		DMass m = OdeHelper.createMass();
+		m.setBox(1, 1, 1, 1);
+		b.setMass(m);
+		b.setPosition(x, 0, z);
+		DBox g = OdeHelper.createBox(space, 1, 1, 1);
+		g.setBody(b);
+		return b;
+	}
+
+	private void step() {
+		contactGroup.empty();
+		space.collide(null, nearCallback);
+		world.quickStep(STEP_SIZE);
+	}
+
+	/** Checks the totals and returns the iterations of the island that was solved. */
+	private static int solvedIterations(DQuickStepStats stats, int islands) {
+		assertEquals(islands, stats.islandCount);
+		int total = 0;
+		int max = 0;
+		int solved = 0;
+		for (int i = 0; i < stats.islandCount; i++) {
+			int iterations = stats.iterations[i];
+			total += iterations;
+			max = Math.max(max, iterations);
+			if (iterations != 0) {
+				solved++;
+			}
+		}
+		assertEquals(total, stats.totalIterations);
+		assertEquals(max, stats.maxIterations);
+		// the falling box has no constraints and reports no iterations
+		assertEquals(islands - 1, solved);
+		return max;
+	}
+
+	@Test
+	public void testNoTolerance() {
+		DQuickStepStats stats = new DQuickStepStats();
+		world.setQuickStepStats(stats);
+		assertSame(stats, world.getQuickStepStats());
+		assertEquals(0, world.getQuickStepTolerance(), 0);
+		for (int s = 0; s < 50; s++) {
+			step();
+			assertEquals(ITERATIONS, solvedIterations(stats, 2));
+			assertEquals(ITERATIONS, stats.totalIterations);
+		}
+	}
+
+	@Test
+	public void testTolerance() {
+		DQuickStepStats stats = new DQuickStepStats();
+		world.setQuickStepStats(stats);
+		world.setQuickStepTolerance(1e-6);
+		assertEquals(1e-6, world.getQuickStepTolerance(), 0);
+		for (int s = 0; s < 50; s++) {
+			step();
+		}
+		int iterations = solvedIterations(stats, 2);
+		assertTrue("iterations " + iterations, iterations < ITERATIONS / 2);
+		// the box still rests on the ground
+		assertEquals(0.5, box.getPosition().get2(), 1e-3);
+		assertEquals(0, box.getLinearVel().length(), 1e-3);
+	}
+
+	@Test
+	public void testTwoIslands() {
+		DQuickStepStats stats = new DQuickStepStats();
+		world.setQuickStepStats(stats);
+		world.setQuickStepTolerance(1e-6);
+		// a second resting box
+		box(-5, 0.5);
+		for (int s = 0; s < 50; s++) {
+			step();
+		}
+		int iterations = solvedIterations(stats, 3);
+		assertTrue("iterations " + iterations, iterations < ITERATIONS / 2);
+	}
+}
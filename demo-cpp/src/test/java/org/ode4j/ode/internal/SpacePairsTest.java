@@ -0,0 +1,388 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DBVHSpace;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DGeomPairBuffer;
+import org.ode4j.ode.DHashSpace;
+import org.ode4j.ode.DSapSpace;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.threading.DThreadingImplementation;
+import org.ode4j.ode.threading.DxThreadingImplementation;
+
+/**
+ * All spaces must report the same pairs with overlapping AABBs as the simple
+ * space while geoms are moved, added, removed, disabled and put to sleep.
+ * Spaces may report additional pairs with disjoint AABBs, e.g. for planes,
+ * but no pair twice.
+ */
+public class SpacePairsTest {
+
+	private static final int GEOMS = 300;
+	private static final int FRAMES = 40;
+
+	private DWorld world;
+	private Random rnd;
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		world = OdeHelper.createWorld();
+	}
+
+	@After
+	public void tearDown() {
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	private static Set<String> pairs(DSpace space) {
+		final Set<String> all = new TreeSet<String>();
+		final Set<String> pairs = new TreeSet<String>();
+		space.collide(null, new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				int i1 = (Integer) o1.getData();
+				int i2 = (Integer) o2.getData();
+				String pair = Math.min(i1, i2) + "-" + Math.max(i1, i2);
+				if (!all.add(pair)) {
+					throw new IllegalStateException("pair reported twice: " + pair);
+				}
+				if (!o1.getAABB().isDisjoint(o2.getAABB())) {
+					pairs.add(pair);
+				}
+			}
+		});
+		return pairs;
+	}
+
+	private DGeom createGeom(DSpace space, int i, DBody body) {
+		DGeom g;
+		switch (i % 4) {
+		case 0: g = OdeHelper.createBox(space, 1, 2, 0.5); break;
+		case 1: g = OdeHelper.createSphere(space, 0.3 + (i % 7) * 0.2); break;
+		case 2: g = OdeHelper.createCapsule(space, 0.3, 1.5); break;
+		default: g = OdeHelper.createBox(space, 8, 0.2, 0.2); break;
+		}
+		g.setData(i);
+		if (body != null) {
+			g.setBody(body);
+		}
+		return g;
+	}
+
+	private void place(DGeom g, double size) {
+		g.setPosition((rnd.nextDouble() - 0.5) * size, (rnd.nextDouble() - 0.5) * size,
+				(rnd.nextDouble() - 0.5) * size);
+	}
+
+	/**
+	 * Run the same scene in the simple space and in the given space and
+	 * compare the pairs of each frame.
+	 */
+	private void check(DSpace space, long seed) {
+		DSpace simple = OdeHelper.createSimpleSpace();
+		List<DGeom> reference = new ArrayList<DGeom>();
+		List<DGeom> tested = new ArrayList<DGeom>();
+		List<DBody> bodies = new ArrayList<DBody>();
+		double size = 20;
+		rnd = new Random(seed);
+		for (int i = 0; i < GEOMS; i++) {
+			// a third of the geoms is static
+			DBody body = null;
+			if (i % 3 != 0) {
+				body = OdeHelper.createBody(world);
+				bodies.add(body);
+			}
+			DGeom g1 = createGeom(simple, i, body);
+			DGeom g2 = createGeom(space, i, body);
+			if (body == null) {
+				long s = rnd.nextLong();
+				rnd.setSeed(s);
+				place(g1, size);
+				rnd.setSeed(s);
+				place(g2, size);
+			} else {
+				place(g1, size);
+			}
+			reference.add(g1);
+			tested.add(g2);
+		}
+		DGeom plane1 = OdeHelper.createPlane(simple, 0, 0, 1, -5);
+		DGeom plane2 = OdeHelper.createPlane(space, 0, 0, 1, -5);
+		plane1.setData(-1);
+		plane2.setData(-1);
+
+		for (int frame = 0; frame < FRAMES; frame++) {
+			assertEquals("frame " + frame, pairs(simple), pairs(space));
+			// move the bodies, some of them far
+			for (DBody b : bodies) {
+				double d = rnd.nextInt(100) == 0 ? 5 : 0.1;
+				b.setPosition(b.getPosition().get0() + (rnd.nextDouble() - 0.5) * d,
+						b.getPosition().get1() + (rnd.nextDouble() - 0.5) * d,
+						b.getPosition().get2() + (rnd.nextDouble() - 0.5) * d);
+			}
+			int i = rnd.nextInt(GEOMS);
+			switch (frame % 5) {
+			case 0:
+				// move a static geom
+				if (reference.get(i).getBody() == null) {
+					long s = rnd.nextLong();
+					rnd.setSeed(s);
+					place(reference.get(i), size);
+					rnd.setSeed(s);
+					place(tested.get(i), size);
+				}
+				break;
+			case 1:
+				// toggle a geom
+				if (reference.get(i).isEnabled()) {
+					reference.get(i).disable();
+					tested.get(i).disable();
+				} else {
+					reference.get(i).enable();
+					tested.get(i).enable();
+				}
+				break;
+			case 2:
+				// toggle a body
+				DBody b = bodies.get(rnd.nextInt(bodies.size()));
+				if (b.isEnabled()) {
+					b.disable();
+				} else {
+					b.enable();
+				}
+				break;
+			case 3:
+				// remove a geom and add it again
+				simple.remove(reference.get(i));
+				space.remove(tested.get(i));
+				simple.add(reference.get(i));
+				space.add(tested.get(i));
+				break;
+			default:
+				// replace a geom
+				DBody body = reference.get(i).getBody();
+				reference.get(i).destroy();
+				tested.get(i).destroy();
+				DGeom g1 = createGeom(simple, i, body);
+				DGeom g2 = createGeom(space, i, body);
+				if (body == null) {
+					long s = rnd.nextLong();
+					rnd.setSeed(s);
+					place(g1, size);
+					rnd.setSeed(s);
+					place(g2, size);
+				}
+				reference.set(i, g1);
+				tested.set(i, g2);
+			}
+		}
+		simple.destroy();
+		space.destroy();
+		for (DBody b : bodies) {
+			b.destroy();
+		}
+	}
+
+	@Test
+	public void testSapSpace() {
+		check(OdeHelper.createSapSpace(DSapSpace.AXES.XZY), 2);
+		check(OdeHelper.createSapSpace(DSapSpace.AXES.ZYX), 3);
+	}
+
+	@Test
+	public void testHashSpace() {
+		check(OdeHelper.createHashSpace(), 6);
+		DHashSpace space = OdeHelper.createHashSpace();
+		space.setLevels(-1, 2);
+		check(space, 7);
+	}
+
+	@Test
+	public void testBVHSpace() {
+		check(OdeHelper.createBVHSpace(), 4);
+		DBVHSpace space = OdeHelper.createBVHSpace();
+		space.setMargin(0);
+		check(space, 5);
+	}
+
+	/** Split the pair search of a space into parts run by the threading framework. */
+	private static <T extends DSpace> T parallel(T space, DThreadingImplementation impl, int count) {
+		space.setThreadingImplementation(impl.dThreadingImplementationGetFunctions(), impl);
+		space.setCollideMaxThreadCount(count);
+		return space;
+	}
+
+	@Test
+	public void testParallelCollide() {
+		DThreadingImplementation impl = DxThreadingImplementation.dThreadingAllocateSelfThreadedImplementation();
+		check(parallel(OdeHelper.createHashSpace(), impl, 3), 8);
+		check(parallel(OdeHelper.createSapSpace(DSapSpace.AXES.XYZ), impl, 4), 9);
+		check(parallel(OdeHelper.createBVHSpace(), impl, 5), 10);
+		impl.free();
+	}
+
+	/** @return the pairs in the order they are reported */
+	private static List<String> orderedPairs(DSpace space) {
+		final List<String> pairs = new ArrayList<String>();
+		space.collide(null, new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				pairs.add(o1.getData() + "-" + o2.getData());
+			}
+		});
+		return pairs;
+	}
+
+	private List<String> orderedPairs(DSpace space, int count) {
+		space.setCollideMaxThreadCount(count);
+		rnd = new Random(11);
+		List<DBody> bodies = new ArrayList<DBody>();
+		for (int i = 0; i < GEOMS; i++) {
+			DBody body = null;
+			if (i % 3 != 0) {
+				body = OdeHelper.createBody(world);
+				bodies.add(body);
+			}
+			place(createGeom(space, i, body), 20);
+		}
+		List<String> pairs = orderedPairs(space);
+		// move all dynamic geoms once
+		for (DBody b : bodies) {
+			b.setPosition(b.getPosition().get0() + 0.3, b.getPosition().get1(), b.getPosition().get2());
+		}
+		pairs.addAll(orderedPairs(space));
+		space.destroy();
+		for (DBody b : bodies) {
+			b.destroy();
+		}
+		return pairs;
+	}
+
+	@Test
+	public void testParallelCollideOrder() {
+		List<String> hash = orderedPairs(OdeHelper.createHashSpace(), 2);
+		assertTrue(hash.size() > 100);
+		assertEquals(hash, orderedPairs(OdeHelper.createHashSpace(), 7));
+		List<String> sap = orderedPairs(OdeHelper.createSapSpace(DSapSpace.AXES.XYZ), 2);
+		assertEquals(sap, orderedPairs(OdeHelper.createSapSpace(DSapSpace.AXES.XYZ), 7));
+		List<String> bvh = orderedPairs(OdeHelper.createBVHSpace(), 2);
+		assertEquals(bvh, orderedPairs(OdeHelper.createBVHSpace(), 7));
+	}
+
+	/** @return the pairs of collidePairs() in the order they are written */
+	private static List<String> bufferedPairs(DSpace space, DGeomPairBuffer buffer) {
+		space.collidePairs(buffer);
+		List<String> pairs = new ArrayList<String>();
+		int[] p = buffer.getPairs();
+		for (int i = 0; i < buffer.getPairCount(); i++) {
+			pairs.add(buffer.getGeom(p[2 * i]).getData() + "-" + buffer.getGeom(p[2 * i + 1]).getData());
+		}
+		return pairs;
+	}
+
+	/**
+	 * collidePairs() must write the same pairs as collide() reports, in the
+	 * same order.
+	 */
+	private void checkBuffered(DSpace space, DGeomPairBuffer buffer) {
+		rnd = new Random(12);
+		List<DBody> bodies = new ArrayList<DBody>();
+		for (int i = 0; i < GEOMS; i++) {
+			DBody body = null;
+			if (i % 3 != 0) {
+				body = OdeHelper.createBody(world);
+				bodies.add(body);
+			}
+			place(createGeom(space, i, body), 20);
+		}
+		OdeHelper.createPlane(space, 0, 0, 1, -5).setData(-1);
+		for (int frame = 0; frame < 3; frame++) {
+			List<String> pairs = orderedPairs(space);
+			assertTrue(pairs.size() > 100);
+			assertEquals("frame " + frame, pairs, bufferedPairs(space, buffer));
+			for (DBody b : bodies) {
+				b.setPosition(b.getPosition().get0() + 0.3, b.getPosition().get1(), b.getPosition().get2());
+			}
+		}
+		space.destroy();
+		for (DBody b : bodies) {
+			b.destroy();
+		}
+	}
+
+	@Test
+	public void testCollidePairs() {
+		DGeomPairBuffer buffer = new DGeomPairBuffer();
+		checkBuffered(OdeHelper.createSimpleSpace(), buffer);
+		checkBuffered(OdeHelper.createHashSpace(), buffer);
+		checkBuffered(OdeHelper.createSapSpace(DSapSpace.AXES.XZY), buffer);
+		checkBuffered(OdeHelper.createBVHSpace(), buffer);
+		checkBuffered(OdeHelper.createQuadTreeSpace(new DVector3(), new DVector3(20, 20, 20), 5), buffer);
+		DThreadingImplementation impl = DxThreadingImplementation.dThreadingAllocateSelfThreadedImplementation();
+		checkBuffered(parallel(OdeHelper.createHashSpace(), impl, 3), buffer);
+		checkBuffered(parallel(OdeHelper.createSapSpace(DSapSpace.AXES.XYZ), impl, 3), buffer);
+		impl.free();
+	}
+
+	/**
+	 * A near callback that disables a geom must not get further pairs with
+	 * that geom.
+	 */
+	private void checkDisableInCallback(DSpace space) {
+		rnd = new Random(13);
+		List<DBody> bodies = new ArrayList<DBody>();
+		for (int i = 0; i < GEOMS; i++) {
+			DBody body = null;
+			if (i % 3 != 0) {
+				body = OdeHelper.createBody(world);
+				bodies.add(body);
+			}
+			place(createGeom(space, i, body), 20);
+		}
+		final Set<DGeom> disabled = new HashSet<DGeom>();
+		final int[] count = { 0 };
+		space.collide(null, new DNearCallback() {
+			@Override
+			public void call(Object data, DGeom o1, DGeom o2) {
+				assertFalse(disabled.contains(o1) || disabled.contains(o2));
+				if (count[0]++ % 3 == 0) {
+					o1.disable();
+					disabled.add(o1);
+				}
+			}
+		});
+		assertTrue(count[0] > 50);
+		space.destroy();
+		for (DBody b : bodies) {
+			b.destroy();
+		}
+	}
+
+	@Test
+	public void testDisableInCallback() {
+		checkDisableInCallback(OdeHelper.createSimpleSpace());
+		checkDisableInCallback(OdeHelper.createHashSpace());
+		checkDisableInCallback(OdeHelper.createSapSpace(DSapSpace.AXES.XYZ));
+		checkDisableInCallback(OdeHelper.createBVHSpace());
+	}
+}
@@ -0,0 +1,119 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.DWorld.DStepProfile;
+import org.ode4j.ode.DWorld.DStepProfileListener;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * The step profile must be filled by all steppers without allocating.
+ */
+public class StepProfileTest {
+
+	private static final double STEP_SIZE = 0.01;
+
+	private DWorld world;
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+	}
+
+	@After
+	public void tearDown() {
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	/** A hanging chain of ball joints, i.e. 3 rows per link. */
+	private void chain(double y, int links) {
+		DBody prev = null;
+		for (int i = 0; i < links; i++) {
+			DBody b = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setBox(1, 0.5, 0.5, 0.5);
+			b.setMass(m);
+			b.setPosition(i, y, 5);
+			DBallJoint j = OdeHelper.createBallJoint(world);
+			j.attach(b, prev);
+			j.setAnchor(i - 0.5, y, 5);
+			prev = b;
+		}
+	}
+
+	@Test
+	public void testQuickStep() {
+		chain(0, 10);
+		chain(3, 5);
+		DStepProfile profile = new DStepProfile();
+		assertNull(world.getStepProfile());
+		world.setStepProfile(profile);
+		assertSame(profile, world.getStepProfile());
+
+		for (int i = 0; i < 3; i++) {
+			world.quickStep(STEP_SIZE);
+			assertEquals(2, profile.islandCount);
+			assertEquals(15, profile.bodyCount);
+			assertEquals(15, profile.jointCount);
+			assertEquals(45, profile.rowCount);
+			long sum = profile.islandsNanos + profile.autoDisableNanos;
+			for (int s = 0; s < DStepProfile.STAGE_COUNT; s++) {
+				assertTrue("stage " + s, profile.stageNanos[s] > 0);
+				sum += profile.stageNanos[s];
+			}
+			assertTrue(profile.totalNanos >= sum);
+		}
+	}
+
+	@Test
+	public void testStep() {
+		chain(0, 4);
+		DStepProfile profile = new DStepProfile();
+		world.setStepProfile(profile);
+		world.step(STEP_SIZE);
+		assertEquals(1, profile.islandCount);
+		assertEquals(4, profile.bodyCount);
+		assertEquals(4, profile.jointCount);
+		assertTrue(profile.totalNanos > 0);
+	}
+
+	@Test
+	public void testListener() {
+		chain(0, 3);
+		final DStepProfile profile = new DStepProfile();
+		final int[] calls = new int[1];
+		DStepProfileListener listener = new DStepProfileListener() {
+			@Override
+			public void stepProfiled(DWorld w, DStepProfile p) {
+				assertSame(world, w);
+				assertSame(profile, p);
+				assertEquals(9, p.rowCount);
+				calls[0]++;
+			}
+		};
+		world.setStepProfileListener(listener);
+		assertSame(listener, world.getStepProfileListener());
+		world.quickStep(STEP_SIZE);
+		// no profile, no calls
+		assertEquals(0, calls[0]);
+		world.setStepProfile(profile);
+		world.quickStep(STEP_SIZE);
+		world.quickStep(STEP_SIZE);
+		assertEquals(2, calls[0]);
+
+		world.setStepProfile(null);
+		world.quickStep(STEP_SIZE);
+		assertEquals(2, calls[0]);
+		assertEquals(9, profile.rowCount);
+	}
+}
@@ -0,0 +1,124 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DHingeJoint;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Large islands of the exact stepper are solved with the block sparse LCP
+ * ({@link DLCPSparse}). It must give the same result as the dense LCP up to
+ * round-off.
+ */
+public class StepSparseLCPTest {
+
+	private static final double STEP_SIZE = 0.01;
+	private static final int STEPS = 20;
+
+	private int sparseMinRows;
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		sparseMinRows = Step.dxSTEPISLAND_SPARSE_MIN_ROWS;
+	}
+
+	@After
+	public void tearDown() {
+		Step.dxSTEPISLAND_SPARSE_MIN_ROWS = sparseMinRows;
+		OdeHelper.closeODE();
+	}
+
+	/**
+	 * A horizontal chain hanging from one end, with a hinge every few links
+	 * and a limited hinge at the other end. Ball joints have 3 rows, hinges 5.
+	 */
+	private static DBody[] chain(DWorld world, int links) {
+		world.setGravity(0, 0, -9.81);
+		DBody[] bodies = new DBody[links];
+		DBody prev = null;
+		for (int i = 0; i < links; i++) {
+			DBody b = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setBoxTotal(i == links - 1 ? 10 : 1, 0.5, 0.5, 0.5);
+			b.setMass(m);
+			b.setPosition(i, 0, 50);
+			if (i % 5 == 0 || i == links - 1) {
+				DHingeJoint h = OdeHelper.createHingeJoint(world);
+				h.attach(b, prev);
+				h.setAnchor(i - 0.5, 0, 50);
+				h.setAxis(0, 1, 0);
+				if (i == links - 1) {
+					// an inequality row
+					h.setParamLoStop(-0.1);
+					h.setParamHiStop(0.1);
+				}
+			} else {
+				DBallJoint j = OdeHelper.createBallJoint(world);
+				j.attach(b, prev);
+				j.setAnchor(i - 0.5, 0, 50);
+			}
+			bodies[i] = b;
+			prev = b;
+		}
+		return bodies;
+	}
+
+	private static void assertClose(String msg, DVector3C expected, DVector3C actual) {
+		for (int k = 0; k < 3; k++) {
+			double e = expected.get(k);
+			assertEquals(msg, e, actual.get(k), 1e-9 * Math.max(1, Math.abs(e)));
+		}
+	}
+
+	private void compare(int links) {
+		DWorld dense = OdeHelper.createWorld();
+		DWorld sparse = OdeHelper.createWorld();
+		DBody[] b1 = chain(dense, links);
+		DBody[] b2 = chain(sparse, links);
+		for (int s = 0; s < STEPS; s++) {
+			Step.dxSTEPISLAND_SPARSE_MIN_ROWS = Integer.MAX_VALUE;
+			dense.step(STEP_SIZE);
+			Step.dxSTEPISLAND_SPARSE_MIN_ROWS = 0;
+			sparse.step(STEP_SIZE);
+			for (int i = 0; i < links; i++) {
+				String msg = links + " links, step " + s + ", body " + i;
+				assertClose(msg, b1[i].getPosition(), b2[i].getPosition());
+				assertClose(msg, b1[i].getLinearVel(), b2[i].getLinearVel());
+				assertClose(msg, b1[i].getAngularVel(), b2[i].getAngularVel());
+			}
+		}
+		// the chain hangs and swings, the solution is not trivial
+		assertTrue(b1[links - 1].getLinearVel().length() > 0.1);
+		dense.destroy();
+		sparse.destroy();
+	}
+
+	@Test
+	public void testSmallChain() {
+		compare(10);
+	}
+
+	@Test
+	public void testChain250Rows() {
+		compare(75);
+	}
+
+	@Test
+	public void testChain400Rows() {
+		compare(120);
+	}
+
+	@Test
+	public void testChain600Rows() {
+		compare(180);
+	}
+}
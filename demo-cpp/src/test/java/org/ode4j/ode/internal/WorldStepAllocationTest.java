@@ -0,0 +1,215 @@
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DBox;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DHingeJoint;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.DWorld.DStepProfile;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Stepping an unchanged scene must not allocate once the world has been
+ * warmed up. Only the stepper is measured, the contacts of the scenes with
+ * collisions are created outside of the measured calls.
+ */
+public class WorldStepAllocationTest {
+
+	private static final int WARMUP_STEPS = 3000;
+	private static final int MEASURED_STEPS = 500;
+	private static final double STEP_SIZE = 0.01;
+
+	private static final int MAX_CONTACTS = 4;
+
+	private DWorld world;
+	private DSpace space;
+	private DJointGroup contactGroup;
+	private final DContactBuffer contacts = new DContactBuffer(MAX_CONTACTS);
+
+	private final DNearCallback nearCallback = new DNearCallback() {
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, contacts.getGeomBuffer());
+			for (int i = 0; i < n; i++) {
+				DContact contact = contacts.get(i);
+				contact.surface.mu = 0.5;
+				DJoint c = OdeHelper.createContactJoint(world, contactGroup, contact);
+				c.attach(o1.getBody(), o2.getBody());
+			}
+		}
+	};
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+	}
+
+	@After
+	public void tearDown() {
+		if (space != null) {
+			contactGroup.destroy();
+			space.destroy();
+		}
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	/** A hanging chain of ball joints with a hinge every few links. */
+	private void chain(double y, int links) {
+		DBody prev = null;
+		for (int i = 0; i < links; i++) {
+			DBody b = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setBox(1, 0.5, 0.5, 0.5);
+			b.setMass(m);
+			b.setPosition(i, y, 5);
+			if (i % 4 == 0) {
+				DHingeJoint h = OdeHelper.createHingeJoint(world);
+				h.attach(b, prev);
+				h.setAnchor(i - 0.5, y, 5);
+				h.setAxis(0, 1, 0);
+			} else {
+				DBallJoint j = OdeHelper.createBallJoint(world);
+				j.attach(b, prev);
+				j.setAnchor(i - 0.5, y, 5);
+			}
+			prev = b;
+		}
+	}
+
+	/**
+	 * A stack of boxes standing on the ground.
+	 * @return the top box
+	 */
+	private DBody stack(double x, int boxes) {
+		if (space == null) {
+			space = OdeHelper.createSimpleSpace();
+			contactGroup = OdeHelper.createJointGroup();
+			OdeHelper.createPlane(space, 0, 0, 1, 0);
+		}
+		DBody b = null;
+		for (int i = 0; i < boxes; i++) {
+			b = OdeHelper.createBody(world);
+			DMass m = OdeHelper.createMass();
+			m.setBox(1, 1, 1, 1);
+			b.setMass(m);
+			b.setPosition(x, 0, 0.5 + i);
+			DBox box = OdeHelper.createBox(space, 1, 1, 1);
+			box.setBody(b);
+		}
+		return b;
+	}
+
+	/** Create the contacts for the next step. */
+	private void collide() {
+		if (space != null) {
+			contactGroup.empty();
+			space.collide(null, nearCallback);
+		}
+	}
+
+	/**
+	 * @return bytes allocated by this thread per step after warm-up
+	 */
+	private double allocatedBytesPerQuickStep() {
+		for (int i = 0; i < WARMUP_STEPS; i++) {
+			collide();
+			world.quickStep(STEP_SIZE);
+		}
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(mx.isThreadAllocatedMemorySupported() && mx.isThreadAllocatedMemoryEnabled());
+		long thread = Thread.currentThread().getId();
+		// a late JIT deoptimization may allocate, measure a few times
+		double best = Double.MAX_VALUE;
+		for (int round = 0; round < 5 && best >= 1; round++) {
+			long bytes = 0;
+			for (int i = 0; i < MEASURED_STEPS; i++) {
+				collide();
+				long before = mx.getThreadAllocatedBytes(thread);
+				world.quickStep(STEP_SIZE);
+				bytes += mx.getThreadAllocatedBytes(thread) - before;
+			}
+			best = Math.min(best, bytes / (double) MEASURED_STEPS);
+		}
+		return best;
+	}
+
+	@Test
+	public void testQuickStepChain() {
+		chain(0, 20);
+		double bytes = allocatedBytesPerQuickStep();
+		assertTrue("quickStep allocates " + bytes + " bytes per step", bytes < 1);
+	}
+
+	@Test
+	public void testQuickStepIslands() {
+		chain(0, 12);
+		chain(3, 7);
+		chain(6, 1);
+		world.setQuickStepNumIterations(40);
+		double bytes = allocatedBytesPerQuickStep();
+		assertTrue("quickStep allocates " + bytes + " bytes per step", bytes < 1);
+	}
+
+	@Test
+	public void testQuickStepProfiled() {
+		chain(0, 20);
+		world.setStepProfile(new DStepProfile());
+		double bytes = allocatedBytesPerQuickStep();
+		assertTrue("quickStep allocates " + bytes + " bytes per step", bytes < 1);
+	}
+
+	@Test
+	public void testQuickStepContacts() {
+		stack(0, 4);
+		stack(3, 2);
+		chain(6, 5);
+		double bytes = allocatedBytesPerQuickStep();
+		assertTrue("quickStep allocates " + bytes + " bytes per step", bytes < 1);
+	}
+
+	@Test
+	public void testQuickStepWarmStarting() {
+		world.setQuickStepWarmStarting(true);
+		stack(0, 4);
+		stack(3, 2);
+		chain(6, 5);
+		double bytes = allocatedBytesPerQuickStep();
+		assertTrue("quickStep allocates " + bytes + " bytes per step", bytes < 1);
+	}
+
+	@Test
+	public void testQuickStepAutoDisable() {
+		// the stacks are sampled every step, but never idle for long enough
+		// to be disabled
+		world.setAutoDisableFlag(true);
+		world.setAutoDisableAverageSamplesCount(10);
+		world.setAutoDisableSteps(Integer.MAX_VALUE);
+		DBody top = stack(0, 4);
+		stack(3, 4);
+		double bytes = allocatedBytesPerQuickStep();
+		assertTrue(top.isEnabled());
+		assertTrue("quickStep allocates " + bytes + " bytes per step", bytes < 1);
+	}
+}
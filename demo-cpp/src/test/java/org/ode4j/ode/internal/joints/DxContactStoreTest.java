@@ -0,0 +1,203 @@
+package org.ode4j.ode.internal.joints;
+
+import static org.junit.Assert.*;
+import static org.ode4j.ode.OdeConstants.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.internal.DxBody;
+import org.ode4j.ode.internal.DxWorld;
+
+/**
+ * The rows written by {@link DxContactStore} must be identical to the rows
+ * created with {@link DxJointContact#getInfo2(double, double, DxJoint.Info2Descr)}.
+ */
+public class DxContactStoreTest {
+
+	private static final double STEPSIZE_RECIP = 1 / 0.01;
+	private static final double ERP = 0.2;
+
+	private DWorld world;
+	private DJointGroup group;
+	private DBody b1, b2;
+	private final List<DxJointContact> joints = new ArrayList<DxJointContact>();
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		world = OdeHelper.createWorld();
+		world.setCFM(1e-5);
+		world.setContactSurfaceLayer(0.001);
+		world.setContactMaxCorrectingVel(5);
+		group = OdeHelper.createJointGroup();
+		b1 = OdeHelper.createBody(world);
+		b1.setPosition(0.1, 0.2, 0.3);
+		b1.setLinearVel(0.5, -1, -2);
+		b1.setAngularVel(0.3, 0.2, -0.1);
+		b2 = OdeHelper.createBody(world);
+		b2.setPosition(-0.4, 0.1, 1.3);
+		b2.setLinearVel(-0.1, 0.2, 1.5);
+		b2.setAngularVel(-0.2, 0.1, 0.4);
+		((DxBody) b1).tag = 0;
+		((DxBody) b2).tag = 1;
+	}
+
+	@After
+	public void tearDown() {
+		group.destroy();
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	private DContact contact(double nx, double ny, double nz, int mode) {
+		DContact c = new DContactBuffer(1).get(0);
+		c.geom.pos.set(0.05, 0.15, 0.8);
+		c.geom.normal.set(nx, ny, nz).normalize();
+		c.geom.depth = 0.02;
+		c.surface.mode = mode;
+		c.surface.mu = 0.7;
+		c.surface.mu2 = 0.4;
+		c.surface.soft_erp = 0.6;
+		c.surface.soft_cfm = 0.003;
+		c.surface.bounce = 0.5;
+		c.surface.bounce_vel = 0.1;
+		c.surface.motion1 = 0.25;
+		c.surface.motion2 = -0.5;
+		c.surface.motionN = 0.125;
+		c.surface.slip1 = 0.01;
+		c.surface.slip2 = 0.02;
+		c.fdir1.set(ny, -nx, 0).normalize();
+		return c;
+	}
+
+	private void add(DContact c, DBody a, DBody b) {
+		DxJointContact j = (DxJointContact) OdeHelper.createContactJoint(world, group, c);
+		j.attach(a, b);
+		joints.add(j);
+	}
+
+	private void addAllModes(double nx, double ny, double nz) {
+		int[] modes = {
+				0,
+				dContactBounce,
+				dContactSoftERP | dContactSoftCFM | dContactMotionN,
+				dContactApprox1,
+				dContactMu2 | dContactSlip1 | dContactSlip2 | dContactMotion1 | dContactMotion2,
+				dContactFDir1 | dContactApprox1_1 | dContactBounce | dContactMotionN,
+		};
+		for (int mode: modes) {
+			add(contact(nx, ny, nz, mode), b1, b2);
+			add(contact(nx, ny, nz, mode), b2, b1);
+			add(contact(nx, ny, nz, mode), b1, null);
+			add(contact(nx, ny, nz, mode), null, b2);
+		}
+		DContact c = contact(nx, ny, nz, 0);
+		c.surface.mu = 0;
+		add(c, b1, b2);
+		c = contact(nx, ny, nz, dContactMu2);
+		c.surface.mu = 0;
+		add(c, b2, b1);
+		c = contact(nx, ny, nz, dContactBounce);
+		c.surface.mu = dInfinity;
+		add(c, b1, b2);
+	}
+
+	private void checkRows() {
+		final int nj = joints.size();
+		int[] ofs = new int[nj + 1];
+		DxContactStore store = new DxContactStore();
+		store.reset();
+		for (int i = 0; i < nj; i++) {
+			DxJointContact j = joints.get(i);
+			DxJoint.Info1 info = new DxJoint.Info1();
+			j.getInfo1(info);
+			ofs[i + 1] = ofs[i] + info.m;
+			assertTrue(DxContactStore.accepts(j));
+			store.add(j, i, ofs[i], info.m);
+		}
+		assertEquals(nj, store.count());
+		assertEquals(0, store.otherCount());
+		final int m = ofs[nj];
+		DxWorld w = (DxWorld) world;
+		double cfm0 = world.getCFM();
+
+		// reference: the generic path of the QuickStep Stage2a
+		double[] J = new double[m * 12], rhs = new double[m], cfm = new double[m];
+		double[] lo = new double[m], hi = new double[m];
+		int[] findex = new int[m], jb = new int[m * 2];
+		DxJoint.Info2Descr info2 = new DxJoint.Info2Descr();
+		info2.setRowskip(12);
+		info2.setArrays(J, rhs, cfm, lo, hi, findex);
+		for (int i = 0; i < nj; i++) {
+			DxJointContact j = joints.get(i);
+			int ofsi = ofs[i], infom = ofs[i + 1] - ofsi;
+			info2.J1lp = ofsi * 12;
+			info2.J1ap = ofsi * 12 + 3;
+			info2.J2lp = ofsi * 12 + 6;
+			info2.J2ap = ofsi * 12 + 9;
+			info2.setAllP(ofsi);
+			Arrays.fill(cfm, ofsi, ofsi + infom, cfm0);
+			Arrays.fill(lo, ofsi, ofsi + infom, -dInfinity);
+			Arrays.fill(hi, ofsi, ofsi + infom, dInfinity);
+			Arrays.fill(findex, ofsi, ofsi + infom, -1);
+			j.getInfo2(STEPSIZE_RECIP, ERP, info2);
+			for (int r = ofsi; r < ofsi + infom; r++) {
+				rhs[r] *= STEPSIZE_RECIP;
+				cfm[r] *= STEPSIZE_RECIP;
+				if (findex[r] != -1) findex[r] += ofsi;
+				jb[r * 2] = j.node[0].body != null ? j.node[0].body.tag : -1;
+				jb[r * 2 + 1] = j.node[1].body != null ? j.node[1].body.tag : -1;
+			}
+		}
+
+		double[] J2 = new double[m * 12], rhs2 = new double[m], cfm2 = new double[m];
+		double[] lo2 = new double[m], hi2 = new double[m];
+		int[] findex2 = new int[m], jb2 = new int[m * 2];
+		Arrays.fill(J2, Double.NaN);
+		store.writeRows(0, 5, STEPSIZE_RECIP, ERP, cfm0, w.contactp.min_depth, w.contactp.max_vel, false,
+				w.contactp.split_impulse_threshold, J2, rhs2, cfm2, lo2, hi2, findex2, jb2);
+		store.writeRows(5, nj, STEPSIZE_RECIP, ERP, cfm0, w.contactp.min_depth, w.contactp.max_vel, false,
+				w.contactp.split_impulse_threshold, J2, rhs2, cfm2, lo2, hi2, findex2, jb2);
+
+		assertArrayEquals(J, J2, 0);
+		assertArrayEquals(rhs, rhs2, 0);
+		assertArrayEquals(cfm, cfm2, 0);
+		assertArrayEquals(lo, lo2, 0);
+		assertArrayEquals(hi, hi2, 0);
+		assertArrayEquals(findex, findex2);
+		assertArrayEquals(jb, jb2);
+	}
+
+	@Test
+	public void testRowsMatchGetInfo2() {
+		addAllModes(0.3, -0.2, 1);
+		checkRows();
+	}
+
+	@Test
+	public void testRowsMatchGetInfo2SideNormal() {
+		addAllModes(1, 0.4, -0.3);
+		checkRows();
+	}
+
+	@Test
+	public void testAccepts() {
+		DxJointContact j = (DxJointContact) OdeHelper.createContactJoint(world, group,
+				contact(0.3, -0.2, 1, dContactRolling));
+		assertFalse(DxContactStore.accepts(j));
+		j.contact.surface.mode = dContactBounce;
+		assertTrue(DxContactStore.accepts(j));
+		assertFalse(DxContactStore.accepts((DxJoint) OdeHelper.createBallJoint(world)));
+	}
+}
@@ -0,0 +1,75 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.demo.headless;
+
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * The world of DemoBoxstack with auto-disabling: 50 objects per scale,
+ * boxes, spheres, capsules, cylinders and composites, dropped in layers
+ * onto a plane.
+ */
+public class BoxstackScenario extends Scenario {
+
+	private static final int NUM = 50;
+	private static final double GRAVITY = 0.5;
+	private static final String OBJECTS = "bscyx";
+
+	@Override
+	public String getName() {
+		return "boxstack";
+	}
+
+	@Override
+	protected String getDefaultSpace() {
+		return "hash";
+	}
+
+	@Override
+	protected void build(int scale) {
+		maxContacts = 8;
+		world.setGravity(0,0,-GRAVITY);
+		world.setCFM(1e-5);
+		world.setAutoDisableFlag(true);
+		world.setAutoDisableAverageSamplesCount(10);
+		world.setLinearDamping(0.00001);
+		world.setAngularDamping(0.005);
+		world.setMaxAngularSpeed(200);
+		world.setContactMaxCorrectingVel(0.1);
+		world.setContactSurfaceLayer(0.001);
+		OdeHelper.createPlane(space,0,0,1,0);
+		double w = Math.sqrt(scale);
+		int perLayer = 10 * scale;
+		for (int i = 0; i < NUM * scale; i++) {
+			dropObject(OBJECTS.charAt(i % OBJECTS.length()),
+					(dRandReal()*2-1)*w, (dRandReal()*2-1)*w, dRandReal()+2 + (i / perLayer));
+		}
+	}
+
+	@Override
+	protected void stepWorld() {
+		world.quickStep(0.02);
+	}
+}
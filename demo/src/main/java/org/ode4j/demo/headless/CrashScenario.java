@@ -0,0 +1,309 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.demo.headless;
+
+import static org.ode4j.ode.DRotation.dQFromAxisAndAngle;
+import static org.ode4j.ode.DRotation.dRFromAxisAndAngle;
+import static org.ode4j.ode.OdeConstants.dContactApprox1;
+import static org.ode4j.ode.OdeConstants.dContactSlip1;
+import static org.ode4j.ode.OdeConstants.dContactSlip2;
+import static org.ode4j.ode.OdeConstants.dContactSoftCFM;
+import static org.ode4j.ode.OdeConstants.dContactSoftERP;
+import static org.ode4j.ode.OdeConstants.dInfinity;
+import static org.ode4j.ode.OdeMath.dMultiply0;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ode4j.math.DMatrix3;
+import org.ode4j.math.DQuaternion;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DBox;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DFixedJoint;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DHinge2Joint;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSphere;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * The world of DemoCrash: a car, a wall of boxes, a ball, a centipede and
+ * a cannon ball that is shot at the wall in the first frame. Each scale
+ * adds a copy of the whole layout. Stepped with <code>step()</code> and the
+ * manual disabling of the wall boxes, as in the demo.
+ */
+public class CrashScenario extends Scenario {
+
+	private static final double LENGTH = 3.5;		// chassis length
+	private static final double WIDTH = 2.5;		// chassis width
+	private static final double HEIGHT = 1.0;		// chassis height
+	private static final double RADIUS = 0.5;		// wheel radius
+	private static final double STARTZ = 1.0;		// starting height of chassis
+	private static final double CMASS = 1;			// chassis mass
+	private static final double WMASS = 1;			// wheel mass
+	private static final double COMOFFSET = -5;		// center of mass offset
+	private static final double WALLMASS = 1;		// wall box mass
+	private static final double FMAX = 25;			// car engine fmax
+	private static final int ITERS = 20;			// number of iterations
+	private static final double WBOXSIZE = 1.0;		// size of wall boxes
+	private static final double WALLWIDTH = 12;		// width of wall
+	private static final double WALLHEIGHT = 10;	// height of wall
+	private static final double DISABLE_THRESHOLD = 0.008;	// maximum velocity (squared) a body can have and be disabled
+	private static final int DISABLE_STEPS = 10;	// number of steps a box has to have been disable-able before it will be disabled
+	private static final double CANNON_X = -10;		// x position of cannon
+	private static final double CANNON_Y = 5;		// y position of cannon
+	private static final double CANNON_BALL_MASS = 10;	// mass of the cannon ball
+	private static final double CANNON_BALL_RADIUS = 0.5;
+	private static final double CANNON_ANGLE = 0;
+	private static final double CANNON_ELEVATION = -1.2;
+	/** distance between the copies of the layout */
+	private static final double COPY_DISTANCE = 50;
+
+	private final List<DHinge2Joint> joints = new ArrayList<DHinge2Joint>();
+	private final List<DBox> wallBoxes = new ArrayList<DBox>();
+	private int[] wb_stepsdis;
+	private final DMass m = OdeHelper.createMass();
+
+	@Override
+	public String getName() {
+		return "crash";
+	}
+
+	@Override
+	protected String getDefaultSpace() {
+		return "sap";
+	}
+
+	@Override
+	protected double getWorldExtent() {
+		return 25;
+	}
+
+	@Override
+	protected void setSurface(DContact contact, DGeom o1, DGeom o2) {
+		contact.surface.mode = dContactSlip1 | dContactSlip2 | dContactSoftERP | dContactSoftCFM | dContactApprox1;
+		if ( o1 instanceof DSphere || o2 instanceof DSphere )
+			contact.surface.mu = 20;
+		else
+			contact.surface.mu = 0.5;
+		contact.surface.slip1 = 0.0;
+		contact.surface.slip2 = 0.0;
+		contact.surface.soft_erp = 0.8;
+		contact.surface.soft_cfm = 0.01;
+	}
+
+	@Override
+	protected void build(int scale) {
+		world.setGravity(0,0,-1.5);
+		world.setCFM(1e-5);
+		world.setERP(0.8);
+		world.setQuickStepNumIterations(ITERS);
+		OdeHelper.createPlane(space,0,0,1,0);
+		for (int i = 0; i < scale; i++) {
+			double oy = i * COPY_DISTANCE;
+			makeCar(0, oy);
+			makeWall(oy);
+			makeBall(0, oy, 2);
+			makeCentipede(oy);
+			shootCannon(oy);
+		}
+		wb_stepsdis = new int[wallBoxes.size()];
+	}
+
+	private void makeCar(double x, double y) {
+		DBody chassis = OdeHelper.createBody(world);
+		chassis.setPosition(x,y,STARTZ);
+		m.setBox(1,LENGTH,WIDTH,HEIGHT);
+		m.adjust(CMASS/2.0);
+		chassis.setMass(m);
+		OdeHelper.createBox(space,LENGTH,WIDTH,HEIGHT).setBody(chassis);
+
+		DBody[] wheel = new DBody[4];
+		for (int i=0; i<4; i++) {
+			wheel[i] = OdeHelper.createBody(world);
+			DQuaternion q = new DQuaternion();
+			dQFromAxisAndAngle(q,1,0,0,Math.PI*0.5);
+			wheel[i].setQuaternion(q);
+			m.setSphere(1,RADIUS);
+			m.adjust(WMASS);
+			wheel[i].setMass(m);
+			OdeHelper.createSphere(space,RADIUS).setBody(wheel[i]);
+		}
+		wheel[0].setPosition(x+0.4*LENGTH-0.5*RADIUS,y+WIDTH*0.5,STARTZ-HEIGHT*0.5);
+		wheel[1].setPosition(x+0.4*LENGTH-0.5*RADIUS,y-WIDTH*0.5,STARTZ-HEIGHT*0.5);
+		wheel[2].setPosition(x-0.4*LENGTH+0.5*RADIUS,y+WIDTH*0.5,STARTZ-HEIGHT*0.5);
+		wheel[3].setPosition(x-0.4*LENGTH+0.5*RADIUS,y-WIDTH*0.5,STARTZ-HEIGHT*0.5);
+
+		for (int i=0; i<4; i++) {
+			DHinge2Joint j = OdeHelper.createHinge2Joint(world,null);
+			j.attach(chassis,wheel[i]);
+			j.setAnchor(wheel[i].getPosition());
+			j.setAxis1(0,0,(i<2 ? 1 : -1));
+			j.setAxis2(0,1,0);
+			j.setParamSuspensionERP(0.8);
+			j.setParamSuspensionCFM(1e-5);
+			j.setParamVel2(0);
+			j.setParamFMax2(FMAX);
+			joints.add(j);
+		}
+
+		// center of mass offset body (hang another copy of the body COMOFFSET units below it by a fixed joint)
+		DBody b = OdeHelper.createBody(world);
+		b.setPosition(x,y,STARTZ+COMOFFSET);
+		m.setBox(1,LENGTH,WIDTH,HEIGHT);
+		m.adjust(CMASS/2.0);
+		b.setMass(m);
+		DFixedJoint j = OdeHelper.createFixedJoint(world, null);
+		j.attach(chassis, b);
+		j.setFixed();
+	}
+
+	private void makeWall(double oy) {
+		for (double z = WBOXSIZE/2.0; z <= WALLHEIGHT; z+=WBOXSIZE) {
+			for (double y = (-WALLWIDTH+z)/2; y <= (WALLWIDTH-z)/2; y+=WBOXSIZE) {
+				DBody b = OdeHelper.createBody(world);
+				b.setPosition(-20,oy+y,z);
+				m.setBox(1,WBOXSIZE,WBOXSIZE,WBOXSIZE);
+				m.adjust(WALLMASS);
+				b.setMass(m);
+				DBox box = OdeHelper.createBox(space,WBOXSIZE,WBOXSIZE,WBOXSIZE);
+				box.setBody(b);
+				wallBoxes.add(box);
+			}
+		}
+	}
+
+	private DBody makeBall(double x, double y, double z) {
+		DBody b = OdeHelper.createBody(world);
+		b.setPosition(x,y,z);
+		m.setSphere(1,RADIUS);
+		m.adjust(1);
+		b.setMass(m);
+		OdeHelper.createSphere(space,RADIUS).setBody(b);
+		return b;
+	}
+
+	private DBody makeWheel(double x, double y, DBody attach, double vel2) {
+		DBody wheel = OdeHelper.createBody(world);
+		wheel.setPosition(x, y, STARTZ);
+		m.setSphere(1, RADIUS);
+		m.adjust(WMASS);
+		wheel.setMass(m);
+		OdeHelper.createSphere(space, RADIUS).setBody(wheel);
+		DHinge2Joint j = OdeHelper.createHinge2Joint(world,null);
+		j.attach(attach, wheel);
+		j.setAnchor(wheel.getPosition());
+		j.setAxis1(0,0,1);
+		j.setAxis2(1,0,0);
+		j.setParamSuspensionERP(1.0);
+		j.setParamSuspensionCFM(1e-5);
+		j.setParamLoStop(0);
+		j.setParamHiStop(0);
+		j.setParamVel2(vel2);
+		j.setParamFMax2(FMAX);
+		joints.add(j);
+		return wheel;
+	}
+
+	private void makeCentipede(double oy) {
+		DBody lastb = null;
+		for (double y = 0; y < 10*LENGTH; y+=LENGTH+0.1) {
+			DBody b = OdeHelper.createBody(world);
+			b.setPosition(-15,oy+y,STARTZ);
+			m.setBox(1,WIDTH,LENGTH,HEIGHT);
+			m.adjust(CMASS);
+			b.setMass(m);
+			OdeHelper.createBox(space,WIDTH,LENGTH,HEIGHT).setBody(b);
+
+			DBody left = b;
+			DBody right = b;
+			for (double x = -17; x > -20; x-=RADIUS*2) {
+				left = makeWheel(x, oy+y, left, -10.0);
+				right = makeWheel(-30 - x, oy+y, right, 10.0);
+			}
+			if (lastb != null) {
+				DFixedJoint j = OdeHelper.createFixedJoint(world,null);
+				j.attach(b, lastb);
+				j.setFixed();
+			}
+			lastb = b;
+		}
+	}
+
+	private void shootCannon(double oy) {
+		DBody ball = OdeHelper.createBody(world);
+		OdeHelper.createSphere(space,CANNON_BALL_RADIUS).setBody(ball);
+		m.setSphereTotal(CANNON_BALL_MASS,CANNON_BALL_RADIUS);
+		ball.setMass(m);
+
+		DMatrix3 R2 = new DMatrix3(), R3 = new DMatrix3(), R4 = new DMatrix3();
+		dRFromAxisAndAngle(R2,0,0,1,CANNON_ANGLE);
+		dRFromAxisAndAngle(R3,0,1,0,CANNON_ELEVATION);
+		dMultiply0(R4,R2,R3);
+		double[] cpos = {CANNON_X,oy+CANNON_Y,1};
+		for (int i=0; i<3; i++) cpos[i] += 3*R4.get(i, 2);
+		ball.setPosition(cpos[0],cpos[1],cpos[2]);
+		double force = 10;
+		ball.setLinearVel(force*R4.get(0, 2),force*R4.get(1,2),force*R4.get(2,2));
+		ball.setAngularVel(0,0,0);
+	}
+
+	@Override
+	protected void stepWorld() {
+		for (DHinge2Joint j2 : joints) {
+			double curturn = j2.getAngle1();
+			j2.setParamVel(-curturn);
+			j2.setParamFMax(dInfinity);
+			j2.setParamVel2(0);
+			j2.setParamFMax2(FMAX);
+			j2.getBody(0).enable();
+			j2.getBody(1).enable();
+		}
+		world.step(0.05);
+
+		// disable the wall boxes that came to rest
+		for (int i = 0; i < wallBoxes.size(); i++) {
+			DBody b = wallBoxes.get(i).getBody();
+			if (b.isEnabled()) {
+				boolean disable = true;
+				DVector3C lvel = b.getLinearVel();
+				if (lvel.lengthSquared() > DISABLE_THRESHOLD)
+					disable = false;
+				DVector3C avel = b.getAngularVel();
+				if (avel.lengthSquared() > DISABLE_THRESHOLD)
+					disable = false;
+				if (disable)
+					wb_stepsdis[i]++;
+				else
+					wb_stepsdis[i] = 0;
+				if (wb_stepsdis[i] > DISABLE_STEPS) {
+					b.disable();
+				}
+			}
+		}
+	}
+}
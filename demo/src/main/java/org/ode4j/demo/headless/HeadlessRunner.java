@@ -0,0 +1,290 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.demo.headless;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CyclicBarrier;
+
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Runs the demo worlds of {@link Scenario} without rendering and reports
+ * frame latency percentiles, stepped bodies per second and contacts per
+ * second.
+ * <p>
+ * Usage:
+ * <pre>
+ * HeadlessRunner [-frames N] [-warmup N] [-seed S] [-scale A,B,...]
+ *                [-threads A,B,...] [-space simple|hash|sap|quad] [-csv]
+ *                [scenario ...]
+ * </pre>
+ * Without scenario names all scenarios are run. Every combination of the
+ * scales and thread counts is run, which makes sweeps easy to script; with
+ * <code>-csv</code> one line is printed per run.
+ * <p>
+ * With more than one thread, each thread steps its own copy of the world,
+ * all copies are built with the same seed. Latency percentiles are taken
+ * over the frames of all threads, the rates are totals over all threads.
+ * Worlds are only deterministic with one thread, because QuickStep shares
+ * its random number generator between worlds.
+ */
+public class HeadlessRunner {
+
+	public static final String[] SCENARIOS = {
+		"spacestress", "boxstack", "crash", "trimesh", "heightfield", "ragdoll" };
+
+	private int frames = 1000;
+	private int warmup = 100;
+	private long seed = 1;
+	private int[] scales = { 1 };
+	private int[] threadCounts = { 1 };
+	private String spaceType = null;
+	private boolean csv = false;
+	private final List<String> scenarios = new ArrayList<String>();
+
+	/**
+	 * Result of one run.
+	 */
+	public static class RunResult {
+		public String scenario;
+		public String space;
+		public int scale;
+		public int threads;
+		/** number of measured frames over all threads */
+		public int frames;
+		/** sorted frame times */
+		public long[] frameNanos;
+		public long wallNanos;
+		public long steppedBodies;
+		public long contacts;
+
+		/**
+		 * @param q quantile in (0, 1]
+		 * @return frame time in milliseconds
+		 */
+		public double percentileMillis(double q) {
+			int i = (int) Math.ceil(q * frameNanos.length) - 1;
+			return frameNanos[Math.max(i, 0)] / 1e6;
+		}
+
+		public double meanMillis() {
+			long sum = 0;
+			for (long t : frameNanos) {
+				sum += t;
+			}
+			return sum / 1e6 / frameNanos.length;
+		}
+
+		public double bodiesPerSecond() {
+			return steppedBodies * 1e9 / wallNanos;
+		}
+
+		public double contactsPerSecond() {
+			return contacts * 1e9 / wallNanos;
+		}
+	}
+
+	public static Scenario createScenario(String name) {
+		if ("spacestress".equals(name)) {
+			return new SpaceStressScenario();
+		} else if ("boxstack".equals(name)) {
+			return new BoxstackScenario();
+		} else if ("crash".equals(name)) {
+			return new CrashScenario();
+		} else if ("trimesh".equals(name)) {
+			return new TrimeshScenario();
+		} else if ("heightfield".equals(name)) {
+			return new HeightfieldScenario();
+		} else if ("ragdoll".equals(name)) {
+			return new RagdollScenario();
+		}
+		throw new IllegalArgumentException("Unknown scenario: " + name);
+	}
+
+	/**
+	 * Run a scenario on one or more threads.
+	 * @param frames measured frames per thread
+	 * @param warmup frames run per thread before measuring
+	 * @param spaceType see {@link Scenario#setUp(String, long, int)}
+	 */
+	public static RunResult run(final String scenario, final String spaceType, final long seed,
+			final int scale, final int threads, final int frames, final int warmup) {
+		final long[] nanos = new long[frames * threads];
+		final long[] start = new long[threads];
+		final long[] end = new long[threads];
+		final long[] bodies = new long[threads];
+		final long[] contacts = new long[threads];
+		final String[] space = new String[1];
+		final Throwable[] failure = new Throwable[1];
+		final CyclicBarrier barrier = new CyclicBarrier(threads);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			workers[t] = new Thread("headless-" + t) {
+				@Override
+				public void run() {
+					try {
+						Scenario s = createScenario(scenario);
+						s.setUp(spaceType, seed, scale);
+						space[0] = spaceType != null ? spaceType : s.getDefaultSpace();
+						for (int i = 0; i < warmup; i++) {
+							s.frame();
+						}
+						long bodies0 = s.getSteppedBodies();
+						barrier.await();
+						start[id] = System.nanoTime();
+						int ofs = id * frames;
+						for (int i = 0; i < frames; i++) {
+							long t0 = System.nanoTime();
+							contacts[id] += s.frame();
+							nanos[ofs + i] = System.nanoTime() - t0;
+						}
+						end[id] = System.nanoTime();
+						bodies[id] = s.getSteppedBodies() - bodies0;
+						s.tearDown();
+					} catch (Throwable e) {
+						failure[0] = e;
+						barrier.reset();
+					}
+				}
+			};
+			workers[t].start();
+		}
+		for (Thread w : workers) {
+			try {
+				w.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		if (failure[0] != null) {
+			throw new RuntimeException("Run of " + scenario + " failed", failure[0]);
+		}
+
+		RunResult r = new RunResult();
+		r.scenario = scenario;
+		r.space = space[0];
+		r.scale = scale;
+		r.threads = threads;
+		r.frames = nanos.length;
+		Arrays.sort(nanos);
+		r.frameNanos = nanos;
+		long first = Long.MAX_VALUE;
+		long last = Long.MIN_VALUE;
+		for (int t = 0; t < threads; t++) {
+			first = Math.min(first, start[t]);
+			last = Math.max(last, end[t]);
+			r.steppedBodies += bodies[t];
+			r.contacts += contacts[t];
+		}
+		r.wallNanos = last - first;
+		return r;
+	}
+
+	private void runAll(PrintStream out) {
+		List<String> names = scenarios.isEmpty() ? Arrays.asList(SCENARIOS) : scenarios;
+		if (csv) {
+			out.println("scenario,space,scale,threads,frames,mean_ms,p50_ms,p90_ms,p99_ms,max_ms,"
+					+ "bodies_per_s,contacts_per_s");
+		} else {
+			out.println(String.format(Locale.ROOT, "%-12s %-6s %5s %7s %7s %8s %8s %8s %8s %8s %12s %12s",
+					"scenario", "space", "scale", "threads", "frames", "mean ms", "p50 ms", "p90 ms",
+					"p99 ms", "max ms", "bodies/s", "contacts/s"));
+		}
+		for (String name : names) {
+			for (int scale : scales) {
+				for (int threads : threadCounts) {
+					RunResult r = run(name, spaceType, seed, scale, threads, frames, warmup);
+					String format = csv
+							? "%s,%s,%d,%d,%d,%.4f,%.4f,%.4f,%.4f,%.4f,%.0f,%.0f"
+							: "%-12s %-6s %5d %7d %7d %8.3f %8.3f %8.3f %8.3f %8.3f %12.0f %12.0f";
+					out.println(String.format(Locale.ROOT, format,
+							r.scenario, r.space, r.scale, r.threads, r.frames, r.meanMillis(),
+							r.percentileMillis(0.5), r.percentileMillis(0.9), r.percentileMillis(0.99),
+							r.percentileMillis(1), r.bodiesPerSecond(), r.contactsPerSecond()));
+				}
+			}
+		}
+	}
+
+	private static int[] parseInts(String s) {
+		String[] parts = s.split(",");
+		int[] v = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			v[i] = Integer.parseInt(parts[i].trim());
+		}
+		return v;
+	}
+
+	private boolean parseArgs(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.startsWith("-") && !arg.equals("-csv") && !arg.equals("-h") && i + 1 >= args.length) {
+				System.err.println("Missing value for " + arg);
+				return false;
+			}
+			if (arg.equals("-frames")) {
+				frames = Integer.parseInt(args[++i]);
+			} else if (arg.equals("-warmup")) {
+				warmup = Integer.parseInt(args[++i]);
+			} else if (arg.equals("-seed")) {
+				seed = Long.parseLong(args[++i]);
+			} else if (arg.equals("-scale")) {
+				scales = parseInts(args[++i]);
+			} else if (arg.equals("-threads")) {
+				threadCounts = parseInts(args[++i]);
+			} else if (arg.equals("-space")) {
+				spaceType = args[++i];
+			} else if (arg.equals("-csv")) {
+				csv = true;
+			} else if (arg.startsWith("-")) {
+				return false;
+			} else if (Arrays.asList(SCENARIOS).contains(arg)) {
+				scenarios.add(arg);
+			} else {
+				System.err.println("Unknown scenario: " + arg);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static void main(String[] args) {
+		HeadlessRunner runner = new HeadlessRunner();
+		if (!runner.parseArgs(args)) {
+			System.err.println("Usage: HeadlessRunner [-frames N] [-warmup N] [-seed S] [-scale A,B,...]");
+			System.err.println("       [-threads A,B,...] [-space simple|hash|sap|quad] [-csv] [scenario ...]");
+			System.err.println("Scenarios: " + Arrays.toString(SCENARIOS));
+			System.exit(1);
+		}
+		OdeHelper.initODE2(0);
+		runner.runAll(System.out);
+		OdeHelper.closeODE();
+	}
+}
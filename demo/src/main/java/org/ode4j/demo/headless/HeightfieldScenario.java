@@ -0,0 +1,107 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.demo.headless;
+
+import static org.ode4j.ode.DRotation.dRFromAxisAndAngle;
+
+import org.ode4j.math.DMatrix3;
+import org.ode4j.ode.DHeightfield;
+import org.ode4j.ode.DHeightfield.DHeightfieldGetHeight;
+import org.ode4j.ode.DHeightfieldData;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * The world of DemoHeightfield: a hump shaped heightfield with
+ * auto-disabling, 50 objects per scale are dropped onto it.
+ */
+public class HeightfieldScenario extends Scenario {
+
+	private static final int NUM = 50;
+	private static final String OBJECTS = "bscyx";
+
+	private static final int HFIELD_WSTEP = 15;			// Vertex count along edge >= 2
+	private static final int HFIELD_DSTEP = 31;
+	private static final double HFIELD_WIDTH = 4.0;
+	private static final double HFIELD_DEPTH = 8.0;
+
+	private DHeightfieldData heightData;
+
+	private final DHeightfieldGetHeight heightfield_callback = new DHeightfieldGetHeight() {
+		@Override
+		public double call(Object pUserData, int x, int z) {
+			double fx = ( ((double)x) - ( HFIELD_WSTEP-1 )/2 ) / ( HFIELD_WSTEP-1 );
+			double fz = ( ((double)z) - ( HFIELD_DSTEP-1 )/2 ) / ( HFIELD_DSTEP-1 );
+			// Create an interesting 'hump' shape
+			return ( 1.0 ) + ( ( -16.0 ) * ( fx*fx*fx + fz*fz*fz ) );
+		}
+	};
+
+	@Override
+	public String getName() {
+		return "heightfield";
+	}
+
+	@Override
+	protected String getDefaultSpace() {
+		return "hash";
+	}
+
+	@Override
+	protected void build(int scale) {
+		maxContacts = 64;
+		world.setGravity(0,0,-0.05);
+		world.setCFM(1e-5);
+		world.setAutoDisableFlag(true);
+		world.setContactMaxCorrectingVel(0.1);
+		world.setContactSurfaceLayer(0.001);
+		world.setAutoDisableAverageSamplesCount(1);
+		OdeHelper.createPlane(space, 0, 0, 1, 0);
+
+		heightData = OdeHelper.createHeightfieldData();
+		heightData.buildCallback(null, heightfield_callback,
+				HFIELD_WIDTH, HFIELD_DEPTH, HFIELD_WSTEP, HFIELD_DSTEP,
+				1.0, 0.0, 0.0, false);
+		heightData.setBounds(-4.0, +6.0);
+		DHeightfield gheight = OdeHelper.createHeightfield(space, heightData, true);
+		DMatrix3 R = new DMatrix3();
+		dRFromAxisAndAngle(R, 1, 0, 0, Math.PI / 2);
+		gheight.setRotation(R);
+		gheight.setPosition(0, 0, 0);
+
+		int perLayer = 10 * scale;
+		for (int i = 0; i < NUM * scale; i++) {
+			dropObject(OBJECTS.charAt(i % OBJECTS.length()),
+					(dRandReal()-0.5)*HFIELD_WIDTH*0.75,
+					(dRandReal()-0.5)*HFIELD_DEPTH*0.75,
+					dRandReal()+2 + (i / perLayer));
+		}
+	}
+
+	@Override
+	public void tearDown() {
+		super.tearDown();
+		heightData.destroy();
+	}
+}
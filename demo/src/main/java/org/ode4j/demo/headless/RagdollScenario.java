@@ -0,0 +1,128 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.demo.headless;
+
+import static org.ode4j.ode.OdeConstants.dContactBounce;
+import static org.ode4j.ode.OdeConstants.dContactSoftCFM;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ode4j.demo.ragdoll.DxDefaultHumanRagdollConfig;
+import org.ode4j.math.DMatrix3;
+import org.ode4j.math.DQuaternion;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.OdeMath;
+import org.ode4j.ode.internal.Rotation;
+import org.ode4j.ode.internal.ragdoll.DxRagdoll;
+import org.ode4j.ode.internal.ragdoll.DxRagdoll.DxRagdollBody;
+
+/**
+ * The world of DemoRagdoll: human ragdolls lying on a plane, one per scale,
+ * on a grid. Each ragdoll is kicked upwards in the first frame, like
+ * pressing space in the demo, with a random velocity. Every frame does four
+ * steps, as the demo does.
+ */
+public class RagdollScenario extends Scenario {
+
+	private static final double SPACING = 2.5;
+
+	private final List<DxRagdoll> ragdolls = new ArrayList<DxRagdoll>();
+
+	@Override
+	public String getName() {
+		return "ragdoll";
+	}
+
+	@Override
+	protected String getDefaultSpace() {
+		return "simple";
+	}
+
+	@Override
+	protected void setSurface(DContact contact, DGeom o1, DGeom o2) {
+		contact.surface.mode = dContactBounce | dContactSoftCFM;
+		contact.surface.mu = 100;
+		contact.surface.mu2 = 0;
+		contact.surface.bounce = 0.01;
+		contact.surface.bounce_vel = 0.01;
+		contact.surface.soft_cfm = 0.0001;
+	}
+
+	@Override
+	protected void build(int scale) {
+		maxContacts = 64;
+		world.setGravity(0,0,-9.8);
+		world.setDamping(1e-4, 1e-5);
+		OdeHelper.createPlane(space, 0, 0, 1, 0);
+
+		DQuaternion q = new DQuaternion(1, 0, 0, 0);
+		Rotation.dQFromAxisAndAngle(q, new DVector3(1, 0, 0), -0.5 * Math.PI);
+		DMatrix3 R = new DMatrix3();
+		OdeMath.dRfromQ(R, q);
+		int side = (int) Math.ceil(Math.sqrt(scale));
+		for (int r = 0; r < scale; r++) {
+			double ox = (r % side) * SPACING;
+			double oy = (r / side) * SPACING;
+			DxRagdoll ragdoll = new DxRagdoll(world, space, new DxDefaultHumanRagdollConfig());
+			ragdoll.setAngularDamping(0.1);
+			for (DxRagdollBody bone : ragdoll.getBones()) {
+				DGeom g = OdeHelper.createCapsule(space, bone.getRadius(), bone.getLength());
+				DBody body = bone.getBody();
+				DQuaternion qq = new DQuaternion();
+				OdeMath.dQMultiply1(qq, q, body.getQuaternion());
+				body.setQuaternion(qq);
+				DVector3 v = new DVector3();
+				OdeMath.dMultiply0_133(v, body.getPosition(), R);
+				body.setPosition(v.get0() + ox, v.get1() + oy, v.get2());
+				g.setBody(body);
+			}
+			ragdoll.getBones().get(DxDefaultHumanRagdollConfig.PELVIS).getBody()
+					.setLinearVel(0, 0, 20 + 60 * dRandReal());
+			ragdolls.add(ragdoll);
+		}
+	}
+
+	@Override
+	protected void stepWorld() {
+		final double step = 0.005;
+		final int nsteps = 4;
+		for (int i=0; i<nsteps; ++i) {
+			world.quickStep(step);
+		}
+	}
+
+	@Override
+	public void tearDown() {
+		for (DxRagdoll ragdoll : ragdolls) {
+			ragdoll.destroy();
+		}
+		super.tearDown();
+	}
+}
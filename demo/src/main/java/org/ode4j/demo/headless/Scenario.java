@@ -0,0 +1,301 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.demo.headless;
+
+import static org.ode4j.ode.DRotation.dRFromAxisAndAngle;
+import static org.ode4j.ode.OdeConstants.dContactBounce;
+import static org.ode4j.ode.OdeConstants.dContactSoftCFM;
+import static org.ode4j.ode.OdeConstants.dInfinity;
+
+import java.util.Random;
+
+import org.ode4j.math.DMatrix3;
+import org.ode4j.math.DVector3;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DContactJoint;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DMisc;
+import org.ode4j.ode.DSapSpace;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.DWorld.DStepProfile;
+import org.ode4j.ode.DWorld.DStepProfileListener;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * A demo world without drawstuff. Subclasses build the world of one of the
+ * demos in {@link #build(int)}, {@link #frame()} then does what the demo
+ * does in one call of <code>step()</code>: collide, step and empty the
+ * contact group.
+ * <p>
+ * All random numbers are drawn from {@link #rnd}, which is seeded in
+ * {@link #setUp(String, long, int)}, so a scenario with the same seed and
+ * scale always builds the same world. <code>setUp()</code> also seeds the
+ * generator of {@link DMisc#dRand()} that QuickStep uses, which makes the
+ * simulation repeatable as long as only one world is stepped at a time.
+ */
+public abstract class Scenario {
+
+	protected static final double DENSITY = 5.0;
+	/** maximum number of geometries per body, see {@link #dropObject(char, double, double, double)} */
+	protected static final int GPB = 3;
+
+	protected DWorld world;
+	protected DSpace space;
+	protected DJointGroup contactgroup;
+	protected Random rnd;
+	/** maximum number of contact points per geom pair */
+	protected int maxContacts = 4;
+
+	private int frameContacts;
+	private long steppedBodies;
+	private final DStepProfile profile = new DStepProfile();
+
+	private final DNearCallback nearCallback = new DNearCallback() {
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			nearCallback(o1, o2);
+		}
+	};
+
+	/**
+	 * @return the name used on the command line of {@link HeadlessRunner}
+	 */
+	public abstract String getName();
+
+	/**
+	 * @return the space the demo uses, see {@link #createSpace(String)}
+	 */
+	protected abstract String getDefaultSpace();
+
+	/**
+	 * Set up the world and create the bodies.
+	 * @param scale number of copies of the demo's objects, &gt;= 1
+	 */
+	protected abstract void build(int scale);
+
+	/**
+	 * Set the surface parameters of a contact, called before collide().
+	 */
+	protected void setSurface(DContact contact, DGeom o1, DGeom o2) {
+		contact.surface.mode = dContactBounce | dContactSoftCFM;
+		contact.surface.mu = dInfinity;
+		contact.surface.mu2 = 0;
+		contact.surface.bounce = 0.1;
+		contact.surface.bounce_vel = 0.1;
+		contact.surface.soft_cfm = 0.01;
+	}
+
+	/**
+	 * Step the world once or several times, as the demo does per frame.
+	 */
+	protected void stepWorld() {
+		world.quickStep(0.05);
+	}
+
+	/**
+	 * @return half the edge length of the region the objects are in, used
+	 * for the quadtree space
+	 */
+	protected double getWorldExtent() {
+		return 11;
+	}
+
+	/**
+	 * Create the world, the space and all objects.
+	 * @param spaceType <code>simple</code>, <code>hash</code>,
+	 * <code>sap</code>, <code>quad</code>, or <code>null</code> for the
+	 * space of the demo
+	 */
+	public void setUp(String spaceType, long seed, int scale) {
+		rnd = new Random(seed);
+		DMisc.dRandSetSeed(seed);
+		world = OdeHelper.createWorld();
+		world.setStepProfile(profile);
+		world.setStepProfileListener(new DStepProfileListener() {
+			@Override
+			public void stepProfiled(DWorld w, DStepProfile p) {
+				steppedBodies += p.bodyCount;
+			}
+		});
+		space = createSpace(spaceType != null ? spaceType : getDefaultSpace());
+		contactgroup = OdeHelper.createJointGroup();
+		build(scale);
+	}
+
+	private DSpace createSpace(String type) {
+		if ("simple".equals(type)) {
+			return OdeHelper.createSimpleSpace();
+		} else if ("hash".equals(type)) {
+			return OdeHelper.createHashSpace();
+		} else if ("sap".equals(type)) {
+			return OdeHelper.createSapSpace(DSapSpace.AXES.XYZ);
+		} else if ("quad".equals(type)) {
+			double e = getWorldExtent();
+			return OdeHelper.createQuadTreeSpace(new DVector3(0, 0, 0), new DVector3(e, e, e), 6);
+		}
+		throw new IllegalArgumentException("Unknown space: " + type);
+	}
+
+	/**
+	 * Run one frame.
+	 * @return the number of contacts created in this frame
+	 */
+	public int frame() {
+		frameContacts = 0;
+		space.collide(null, nearCallback);
+		stepWorld();
+		contactgroup.empty();
+		return frameContacts;
+	}
+
+	/**
+	 * @return the sum of the bodies of all stepped islands over all steps,
+	 * bodies that sleep are not counted
+	 */
+	public long getSteppedBodies() {
+		return steppedBodies;
+	}
+
+	public void tearDown() {
+		contactgroup.destroy();
+		space.destroy();
+		world.destroy();
+	}
+
+	private void nearCallback(DGeom o1, DGeom o2) {
+		DBody b1 = o1.getBody();
+		DBody b2 = o2.getBody();
+		if (b1 != null && b2 != null && OdeHelper.areConnectedExcluding(b1, b2, DContactJoint.class)) {
+			return;
+		}
+		// contact joints keep a reference to their DContact
+		DContactBuffer contacts = new DContactBuffer(maxContacts);
+		int numc = OdeHelper.collide(o1, o2, maxContacts, contacts.getGeomBuffer());
+		for (int i = 0; i < numc; i++) {
+			DContact contact = contacts.get(i);
+			setSurface(contact, o1, o2);
+			DJoint c = OdeHelper.createContactJoint(world, contactgroup, contact);
+			c.attach(b1, b2);
+		}
+		frameContacts += numc;
+	}
+
+	protected double dRandReal() {
+		return rnd.nextDouble();
+	}
+
+	/**
+	 * Create an object like the <code>command()</code> of DemoBoxstack and
+	 * DemoSpaceStress, with a random size and orientation.
+	 * @param cmd <code>b</code>ox, <code>s</code>phere, <code>c</code>apsule,
+	 * c<code>y</code>linder or a composite of three geoms (<code>x</code>)
+	 */
+	protected DBody dropObject(char cmd, double x, double y, double z) {
+		DBody body = OdeHelper.createBody(world);
+		DMass m = OdeHelper.createMass();
+		double[] sides = new double[3];
+		for (int k = 0; k < 3; k++) {
+			sides[k] = dRandReal()*0.5+0.1;
+		}
+		DMatrix3 R = new DMatrix3();
+		body.setPosition(x, y, z);
+		dRFromAxisAndAngle(R, dRandReal()*2.0-1.0, dRandReal()*2.0-1.0,
+				dRandReal()*2.0-1.0, dRandReal()*10.0-5.0);
+		body.setRotation(R);
+		DGeom geom;
+		if (cmd == 'b') {
+			m.setBox(DENSITY, sides[0], sides[1], sides[2]);
+			geom = OdeHelper.createBox(space, sides[0], sides[1], sides[2]);
+		} else if (cmd == 'c') {
+			sides[0] *= 0.5;
+			m.setCapsule(DENSITY, 3, sides[0], sides[1]);
+			geom = OdeHelper.createCapsule(space, sides[0], sides[1]);
+		} else if (cmd == 'y') {
+			m.setCylinder(DENSITY, 3, sides[0], sides[1]);
+			geom = OdeHelper.createCylinder(space, sides[0], sides[1]);
+		} else if (cmd == 's') {
+			sides[0] *= 0.5;
+			m.setSphere(DENSITY, sides[0]);
+			geom = OdeHelper.createSphere(space, sides[0]);
+		} else if (cmd == 'x') {
+			dropComposite(body, m, sides);
+			return body;
+		} else {
+			throw new IllegalArgumentException("Unknown object: " + cmd);
+		}
+		geom.setBody(body);
+		body.setMass(m);
+		return body;
+	}
+
+	private void dropComposite(DBody body, DMass m, double[] sides) {
+		DMass m2 = OdeHelper.createMass();
+		m.setZero();
+		DGeom[] geom = new DGeom[GPB];
+		DVector3[] dpos = DVector3.newArray(GPB);	// delta-positions for encapsulated geometries
+		DMatrix3[] drot = DMatrix3.newArray(GPB);
+		for (int j = 0; j < GPB; j++) {
+			for (int k = 0; k < 3; k++) {
+				dpos[j].set(k, dRandReal()*0.3-0.15);
+			}
+		}
+		for (int k = 0; k < GPB; k++) {
+			if (k == 0) {
+				double radius = dRandReal()*0.25+0.05;
+				geom[k] = OdeHelper.createSphere(space, radius);
+				m2.setSphere(DENSITY, radius);
+			} else if (k == 1) {
+				geom[k] = OdeHelper.createBox(space, sides[0], sides[1], sides[2]);
+				m2.setBox(DENSITY, sides[0], sides[1], sides[2]);
+			} else {
+				double radius = dRandReal()*0.1+0.05;
+				double length = dRandReal()*1.0+0.1;
+				geom[k] = OdeHelper.createCapsule(space, radius, length);
+				m2.setCapsule(DENSITY, 3, radius, length);
+			}
+			dRFromAxisAndAngle(drot[k], dRandReal()*2.0-1.0, dRandReal()*2.0-1.0,
+					dRandReal()*2.0-1.0, dRandReal()*10.0-5.0);
+			m2.rotate(drot[k]);
+			m2.translate(dpos[k]);
+			m.add(m2);
+		}
+		DVector3C negC = m.getC().clone().scale(-1);
+		for (int k = 0; k < GPB; k++) {
+			geom[k].setBody(body);
+			geom[k].setOffsetPosition(dpos[k].reAdd(negC));
+			geom[k].setOffsetRotation(drot[k]);
+		}
+		m.translate(negC);
+		body.setMass(m);
+	}
+}
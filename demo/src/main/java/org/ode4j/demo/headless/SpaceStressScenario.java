@@ -0,0 +1,57 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.demo.headless;
+
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * The world of DemoSpaceStress: 2000 spheres per scale dropped onto a
+ * plane from random positions.
+ */
+public class SpaceStressScenario extends Scenario {
+
+	private static final int NUM = 2000;
+
+	@Override
+	public String getName() {
+		return "spacestress";
+	}
+
+	@Override
+	protected String getDefaultSpace() {
+		return "sap";
+	}
+
+	@Override
+	protected void build(int scale) {
+		world.setGravity(0,0,-0.5);
+		world.setCFM(1e-5);
+		OdeHelper.createPlane(space,0,0,1,0);
+		double w = Math.sqrt(scale);
+		for (int i = 0; i < NUM * scale; i++) {
+			dropObject('s', (dRandReal()*2-1)*w, (dRandReal()*2-1)*w, dRandReal()+2);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.demo.headless;
+
+import org.ode4j.ode.DTriMeshData;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * The world of DemoTrimesh: a pyramid shaped trimesh, opened upwards,
+ * catching 50 objects per scale, stepped with <code>step()</code>.
+ */
+public class TrimeshScenario extends Scenario {
+
+	private static final int NUM = 50;
+	private static final String OBJECTS = "bscyx";
+
+	private DTriMeshData data;
+
+	@Override
+	public String getName() {
+		return "trimesh";
+	}
+
+	@Override
+	protected String getDefaultSpace() {
+		return "simple";
+	}
+
+	@Override
+	protected void build(int scale) {
+		maxContacts = 40;
+		world.setGravity(0,0,-0.5);
+		world.setCFM(1e-5);
+		float[] size = { 5.0f, 5.0f, 2.5f };
+		float[] vertices = {
+				-size[0], -size[1], size[2],
+				 size[0], -size[1], size[2],
+				 size[0],  size[1], size[2],
+				-size[0],  size[1], size[2],
+				0f, 0f, 0f};
+		int[] indices = {
+				0, 1, 4,
+				1, 2, 4,
+				2, 3, 4,
+				3, 0, 4
+		};
+		data = OdeHelper.createTriMeshData();
+		data.build(vertices, indices);
+		OdeHelper.createTriMesh(space, data, null, null, null);
+		double w = Math.sqrt(scale);
+		int perLayer = 10 * scale;
+		for (int i = 0; i < NUM * scale; i++) {
+			dropObject(OBJECTS.charAt(i % OBJECTS.length()),
+					(dRandReal()*2-1)*w, (dRandReal()*2-1)*w, dRandReal()+1 + (i / perLayer));
+		}
+	}
+
+	@Override
+	protected void stepWorld() {
+		world.step(0.05);
+	}
+
+	@Override
+	public void tearDown() {
+		super.tearDown();
+		data.destroy();
+	}
+}
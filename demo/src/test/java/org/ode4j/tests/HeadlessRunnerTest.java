@@ -0,0 +1,51 @@
+package org.ode4j.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.demo.headless.HeadlessRunner;
+import org.ode4j.demo.headless.HeadlessRunner.RunResult;
+import org.ode4j.ode.OdeHelper;
+
+public class HeadlessRunnerTest {
+
+	@Before
+	public void initODE() {
+		OdeHelper.initODE2(0);
+	}
+
+	@After
+	public void closeODE() {
+		OdeHelper.closeODE();
+	}
+
+	@Test
+	public void testAllScenarios() {
+		for (String name : HeadlessRunner.SCENARIOS) {
+			RunResult r = HeadlessRunner.run(name, null, 1, 1, 1, 20, 5);
+			assertEquals(20, r.frames);
+			assertTrue(name, r.steppedBodies > 0);
+			assertTrue(name, r.contacts > 0);
+			assertTrue(name, r.percentileMillis(0.5) <= r.percentileMillis(1));
+		}
+	}
+
+	@Test
+	public void testSameSeedSameWorld() {
+		RunResult r1 = HeadlessRunner.run("boxstack", null, 7, 1, 1, 30, 0);
+		RunResult r2 = HeadlessRunner.run("boxstack", null, 7, 1, 1, 30, 0);
+		assertEquals(r1.contacts, r2.contacts);
+		assertEquals(r1.steppedBodies, r2.steppedBodies);
+	}
+
+	@Test
+	public void testThreads() {
+		RunResult r = HeadlessRunner.run("ragdoll", "hash", 1, 2, 2, 10, 0);
+		assertEquals("hash", r.space);
+		assertEquals(20, r.frames);
+		assertTrue(r.bodiesPerSecond() > 0);
+	}
+}
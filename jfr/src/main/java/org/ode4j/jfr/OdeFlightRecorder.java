@@ -0,0 +1,186 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.jfr;
+
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DTracer;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeConfig;
+
+/**
+ * Records world steps, islands, broadphase passes and expensive 
+ * narrowphase calls as JDK Flight Recorder events. 
+ * <p>
+ * Call {@link #install()} once, then enable the events in the settings 
+ * (<tt>.jfc</tt> file) of a recording or with 
+ * <code>recording.enable("org.ode4j.WorldStep")</code>. The event names
+ * are <tt>org.ode4j.WorldStep</tt>, <tt>org.ode4j.IslandStep</tt>,
+ * <tt>org.ode4j.SpaceCollide</tt> and <tt>org.ode4j.Narrowphase</tt>. 
+ * <p>
+ * The events are disabled by default. While they are not recorded, each
+ * traced operation only checks whether its event type is enabled and 
+ * nothing is allocated.
+ */
+public final class OdeFlightRecorder implements DTracer {
+
+	private static final OdeFlightRecorder INSTANCE = new OdeFlightRecorder();
+
+	// isEnabled() does not depend on the instance, these are never committed
+	private static final WorldStepEvent WORLD_STEP = new WorldStepEvent();
+	private static final IslandStepEvent ISLAND_STEP = new IslandStepEvent();
+	private static final SpaceCollideEvent SPACE_COLLIDE = new SpaceCollideEvent();
+	private static final NarrowphaseEvent NARROWPHASE = new NarrowphaseEvent();
+
+	private OdeFlightRecorder() {
+		// see install()
+	}
+
+	/**
+	 * Install the recorder as tracer of ode4j, see {@link OdeConfig#setTracer(DTracer)}.
+	 */
+	public static void install() {
+		OdeConfig.setTracer(INSTANCE);
+	}
+
+	/**
+	 * Remove the recorder if it is installed.
+	 */
+	public static void uninstall() {
+		if (OdeConfig.getTracer() == INSTANCE) {
+			OdeConfig.setTracer(null);
+		}
+	}
+
+	@Override
+	public Object beginWorldStep(DWorld world, String stepper, double stepSize) {
+		if (!WORLD_STEP.isEnabled()) {
+			return null;
+		}
+		WorldStepEvent event = new WorldStepEvent();
+		event.stepper = stepper;
+		event.stepSize = stepSize;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endWorldStep(Object token, int islands, int bodies, int joints) {
+		WorldStepEvent event = (WorldStepEvent) token;
+		event.end();
+		if (event.shouldCommit()) {
+			event.islands = islands;
+			event.bodies = bodies;
+			event.joints = joints;
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginIslandStep(DWorld world) {
+		if (!ISLAND_STEP.isEnabled()) {
+			return null;
+		}
+		IslandStepEvent event = new IslandStepEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endIslandStep(Object token, int bodies, int joints, int rows, int iterations) {
+		IslandStepEvent event = (IslandStepEvent) token;
+		event.end();
+		if (event.shouldCommit()) {
+			event.bodies = bodies;
+			event.joints = joints;
+			event.rows = rows;
+			event.iterations = iterations;
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginSpaceCollide(DSpace space) {
+		if (!SPACE_COLLIDE.isEnabled()) {
+			return null;
+		}
+		SpaceCollideEvent event = new SpaceCollideEvent();
+		event.geom1 = space.getClass().getSimpleName();
+		event.geom1Count = space.getNumGeoms();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public Object beginSpaceCollide2(DGeom o1, DGeom o2) {
+		if (!SPACE_COLLIDE.isEnabled()) {
+			return null;
+		}
+		SpaceCollideEvent event = new SpaceCollideEvent();
+		event.geom1 = o1.getClass().getSimpleName();
+		event.geom1Count = geomCount(o1);
+		event.geom2 = o2.getClass().getSimpleName();
+		event.geom2Count = geomCount(o2);
+		event.begin();
+		return event;
+	}
+
+	private static int geomCount(DGeom geom) {
+		return geom instanceof DSpace ? ((DSpace) geom).getNumGeoms() : 1;
+	}
+
+	@Override
+	public void endSpaceCollide(Object token, int pairs) {
+		SpaceCollideEvent event = (SpaceCollideEvent) token;
+		event.end();
+		if (event.shouldCommit()) {
+			event.pairs = pairs;
+			event.commit();
+		}
+	}
+
+	@Override
+	public Object beginNarrowphase(DGeom o1, DGeom o2, int maxContacts) {
+		if (!NARROWPHASE.isEnabled()) {
+			return null;
+		}
+		NarrowphaseEvent event = new NarrowphaseEvent();
+		event.geom1 = o1.getClass().getSimpleName();
+		event.geom2 = o2.getClass().getSimpleName();
+		event.maxContacts = maxContacts;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void endNarrowphase(Object token, int contacts) {
+		NarrowphaseEvent event = (NarrowphaseEvent) token;
+		event.end();
+		if (event.shouldCommit()) {
+			event.contacts = contacts;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine, Copyright (C) 2001,2002 Russell L. Smith.       *
+ * All rights reserved.  Email: russ@q12.org   Web: www.q12.org          *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2014 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("org.ode4j.SpaceCollide")
+@Label("Space Collide")
+@Description("A broadphase pass of DSpace.collide() or DGeom.collide2()")
+@Category({"ode4j", "Collision"})
+@Enabled(false)
+@StackTrace(false)
+class SpaceCollideEvent extends Event {
+	@Label("Geom 1")
+	@Description("Class of the space, or of the first geom for collide2()")
+	String geom1;
+
+	@Label("Geom 1 Count")
+	@Description("Number of geoms in the first space, 1 if it is not a space")
+	int geom1Count;
+
+	@Label("Geom 2")
+	@Description("Class of the second geom, only for collide2()")
+	String geom2;
+
+	@Label("Geom 2 Count")
+	@Description("Number of geoms in the second space, 1 if it is not a space, 0 for collide()")
+	int geom2Count;
+
+	@Label("Pairs")
+	@Description("Number of calls to the near callback")
+	int pairs;
+}
@@ -0,0 +1,158 @@
+package org.ode4j.jfr;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeConfig;
+import org.ode4j.ode.OdeHelper;
+
+public class OdeFlightRecorderTest {
+
+	private static final int STEPS = 5;
+
+	private DWorld world;
+	private DSpace space;
+	private DJointGroup contactGroup;
+
+	private final DNearCallback nearCallback = new DNearCallback() {
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			DContactBuffer contacts = new DContactBuffer(4);
+			int n = OdeHelper.collide(o1, o2, 4, contacts.getGeomBuffer());
+			for (int i = 0; i < n; i++) {
+				DContact contact = contacts.get(i);
+				contact.surface.mu = 0.5;
+				DJoint c = OdeHelper.createContactJoint(world, contactGroup, contact);
+				c.attach(o1.getBody(), o2.getBody());
+			}
+		}
+	};
+
+	@Before
+	public void setUp() {
+		OdeHelper.initODE2(0);
+		world = OdeHelper.createWorld();
+		world.setGravity(0, 0, -9.81);
+		space = OdeHelper.createHashSpace();
+		contactGroup = OdeHelper.createJointGroup();
+		OdeHelper.createPlane(space, 0, 0, 1, 0);
+		// a pair of cylinders uses the libccd collider, a pair of boxes does not
+		body(OdeHelper.createCylinder(space, 0.5, 1), 0, 0.5);
+		body(OdeHelper.createCylinder(space, 0.5, 1), 0, 1.4);
+		body(OdeHelper.createBox(space, 1, 1, 1), 5, 0.5);
+		body(OdeHelper.createBox(space, 1, 1, 1), 5, 1.4);
+		OdeFlightRecorder.install();
+	}
+
+	private void body(DGeom geom, double x, double z) {
+		DBody b = OdeHelper.createBody(world);
+		DMass m = OdeHelper.createMass();
+		m.setBox(1, 1, 1, 1);
+		b.setMass(m);
+		b.setPosition(x, 0, z);
+		geom.setBody(b);
+	}
+
+	@After
+	public void tearDown() {
+		OdeFlightRecorder.uninstall();
+		assertNull(OdeConfig.getTracer());
+		contactGroup.destroy();
+		space.destroy();
+		world.destroy();
+		OdeHelper.closeODE();
+	}
+
+	private List<RecordedEvent> record(boolean enable) throws IOException {
+		File file = File.createTempFile("ode4j", ".jfr");
+		try {
+			Recording recording = new Recording();
+			try {
+				if (enable) {
+					recording.enable(WorldStepEvent.class);
+					recording.enable(IslandStepEvent.class);
+					recording.enable(SpaceCollideEvent.class);
+					recording.enable(NarrowphaseEvent.class);
+				}
+				recording.start();
+				for (int i = 0; i < STEPS; i++) {
+					space.collide(null, nearCallback);
+					world.quickStep(0.01);
+					contactGroup.empty();
+				}
+				recording.stop();
+				recording.dump(file.toPath());
+			} finally {
+				recording.close();
+			}
+			return RecordingFile.readAllEvents(file.toPath());
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static int count(List<RecordedEvent> events, String name) {
+		int n = 0;
+		for (RecordedEvent e: events) {
+			if (e.getEventType().getName().equals(name)) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	@Test
+	public void testEvents() throws IOException {
+		List<RecordedEvent> events = record(true);
+		assertEquals(STEPS, count(events, "org.ode4j.WorldStep"));
+		assertEquals(STEPS, count(events, "org.ode4j.SpaceCollide"));
+		assertTrue(count(events, "org.ode4j.IslandStep") >= STEPS);
+		assertTrue(count(events, "org.ode4j.Narrowphase") >= STEPS);
+		for (RecordedEvent e: events) {
+			String name = e.getEventType().getName();
+			if (name.equals("org.ode4j.WorldStep")) {
+				assertEquals("quickStep", e.getString("stepper"));
+				assertEquals(0.01, e.getDouble("stepSize"), 0);
+				assertEquals(4, e.getInt("bodies"));
+			} else if (name.equals("org.ode4j.SpaceCollide")) {
+				assertEquals(5, e.getInt("geom1Count"));
+				assertTrue(e.getInt("pairs") > 0);
+			} else if (name.equals("org.ode4j.IslandStep")) {
+				assertTrue(e.getInt("rows") > 0);
+			} else if (name.equals("org.ode4j.Narrowphase")) {
+				// only the cylinders use an expensive collider
+				assertEquals("DxCylinder", e.getString("geom1"));
+				assertEquals("DxCylinder", e.getString("geom2"));
+				assertEquals(4, e.getInt("maxContacts"));
+			}
+		}
+	}
+
+	@Test
+	public void testDisabledByDefault() throws IOException {
+		List<RecordedEvent> events = record(false);
+		for (RecordedEvent e: events) {
+			assertFalse(e.getEventType().getName().startsWith("org.ode4j."));
+		}
+	}
+}